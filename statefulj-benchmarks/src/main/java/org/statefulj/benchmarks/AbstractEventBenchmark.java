@@ -0,0 +1,93 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Common parameters for all the event path benchmarks.
+ *
+ * Every benchmark drives the same shape of graph: <code>stateCount</code> States named
+ * <code>state0..stateN</code>, each with <code>transitionsPerState</code> Transitions named
+ * <code>event0..eventM</code>.  Event <code>k</code> moves <code>state i</code> to
+ * <code>state (i + k + 1) % stateCount</code>, so every event fired is a State change and
+ * the Stateful Entity walks the whole graph.
+ *
+ * @author Andrew Hall
+ *
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractEventBenchmark {
+
+	@Param({ "10", "100" })
+	protected int stateCount;
+
+	@Param({ "1", "10" })
+	protected int transitionsPerState;
+
+	@Param({ "0", "2" })
+	protected int argCount;
+
+	protected String[] events;
+
+	protected Object[] args;
+
+	protected void init() {
+		this.events = new String[this.transitionsPerState];
+		for(int i = 0; i < this.transitionsPerState; i++) {
+			this.events[i] = eventName(i);
+		}
+		this.args = new Object[this.argCount];
+		for(int i = 0; i < this.argCount; i++) {
+			this.args[i] = "arg" + i;
+		}
+	}
+
+	protected String stateName(int i) {
+		return "state" + i;
+	}
+
+	protected String eventName(int i) {
+		return "event" + i;
+	}
+
+	protected int nextState(int from, int event) {
+		return (from + event + 1) % this.stateCount;
+	}
+
+	/**
+	 * Round robin through the events, one cursor per benchmark thread
+	 */
+	@State(Scope.Thread)
+	public static class EventCursor {
+
+		private int next = 0;
+
+		public String next(AbstractEventBenchmark benchmark) {
+			return benchmark.events[nextIndex(benchmark)];
+		}
+
+		public int nextIndex(AbstractEventBenchmark benchmark) {
+			int index = this.next;
+			this.next = (this.next + 1 == benchmark.events.length) ? 0 : this.next + 1;
+			return index;
+		}
+	}
+}
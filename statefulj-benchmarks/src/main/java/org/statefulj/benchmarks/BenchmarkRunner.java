@@ -0,0 +1,60 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar.  Accepts the standard JMH command line, always attaches
+ * the GC profiler so that the allocation rate is reported next to the throughput, and runs
+ * the selected benchmarks once per thread count.
+ *
+ * The thread counts are read from the <code>statefulj.threads</code> System property,
+ * a comma separated list which defaults to <code>1,4</code>:
+ *
+ * <pre>
+ * mvn -pl statefulj-benchmarks -am package -DskipTests
+ * java -Dstatefulj.threads=1,2,8 -jar statefulj-benchmarks/target/benchmarks.jar MemoryPersister -p stateCount=100
+ * </pre>
+ *
+ * @author Andrew Hall
+ *
+ */
+public class BenchmarkRunner {
+
+	public static final String THREADS_PROPERTY = "statefulj.threads";
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions cmdOptions = new CommandLineOptions(args);
+		String[] threadCounts = System.getProperty(THREADS_PROPERTY, "1,4").split(",");
+
+		for(String threadCount : threadCounts) {
+			ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(cmdOptions)
+				.addProfiler(GCProfiler.class)
+				.threads(Integer.parseInt(threadCount.trim()));
+			new Runner(options.build()).run();
+		}
+	}
+}
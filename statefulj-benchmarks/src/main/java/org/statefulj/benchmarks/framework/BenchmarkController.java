@@ -0,0 +1,52 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.framework;
+
+import org.statefulj.benchmarks.model.BenchmarkEntity;
+
+/**
+ * Controller invoked by the {@link org.statefulj.framework.core.actions.MethodInvocationAction}.
+ * There is one overload per supported argument count.
+ *
+ * @author Andrew Hall
+ *
+ */
+public class BenchmarkController {
+
+	public static final int MAX_ARGS = 4;
+
+	public Object handle(BenchmarkEntity entity, String event) {
+		return entity;
+	}
+
+	public Object handle(BenchmarkEntity entity, String event, Object arg0) {
+		return arg0;
+	}
+
+	public Object handle(BenchmarkEntity entity, String event, Object arg0, Object arg1) {
+		return arg1;
+	}
+
+	public Object handle(BenchmarkEntity entity, String event, Object arg0, Object arg1, Object arg2) {
+		return arg2;
+	}
+
+	public Object handle(BenchmarkEntity entity, String event, Object arg0, Object arg1, Object arg2, Object arg3) {
+		return arg3;
+	}
+}
@@ -0,0 +1,182 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.data.annotation.Id;
+import org.statefulj.benchmarks.AbstractEventBenchmark;
+import org.statefulj.benchmarks.model.BenchmarkEntity;
+import org.statefulj.framework.core.actions.MethodInvocationAction;
+import org.statefulj.framework.core.fsm.FSM;
+import org.statefulj.framework.core.fsm.TransitionImpl;
+import org.statefulj.framework.core.model.FSMHarness;
+import org.statefulj.framework.core.model.Finder;
+import org.statefulj.framework.core.model.StatefulFSM;
+import org.statefulj.framework.core.model.impl.FSMHarnessImpl;
+import org.statefulj.framework.core.model.impl.FactoryImpl;
+import org.statefulj.framework.core.model.impl.StatefulFSMImpl;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.model.Action;
+import org.statefulj.fsm.model.impl.StateImpl;
+import org.statefulj.persistence.memory.MemoryPersisterImpl;
+
+/**
+ * Measures the Framework event path: the {@link org.statefulj.framework.core.model.FSMHarness}
+ * as invoked by a Binder and the {@link org.statefulj.framework.core.model.StatefulFSM}, down through the Framework {@link org.statefulj.framework.core.fsm.FSM}
+ * and the {@link org.statefulj.framework.core.actions.MethodInvocationAction} into a Controller.
+ * The State is held in memory, so the difference against
+ * {@link org.statefulj.benchmarks.fsm.MemoryPersisterBenchmark} is the cost of the Framework.
+ *
+ * @author Andrew Hall
+ *
+ */
+@State(Scope.Benchmark)
+public class FrameworkFSMBenchmark extends AbstractEventBenchmark {
+
+	private GenericApplicationContext appContext;
+
+	private StatefulFSM<BenchmarkEntity> statefulFSM;
+
+	private FSMHarness harness;
+
+	private Object[] harnessParms;
+
+	private final Map<Object, BenchmarkEntity> entities = new ConcurrentHashMap<Object, BenchmarkEntity>();
+
+	@Setup
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void setup() {
+		init();
+		if (this.argCount > BenchmarkController.MAX_ARGS) {
+			throw new IllegalArgumentException("argCount must be <= " + BenchmarkController.MAX_ARGS);
+		}
+
+		this.appContext = new GenericApplicationContext();
+		this.appContext.refresh();
+
+		List<org.statefulj.fsm.model.State<BenchmarkEntity>> states = new ArrayList<org.statefulj.fsm.model.State<BenchmarkEntity>>();
+		for(int i = 0; i < this.stateCount; i++) {
+			states.add(new StateImpl<BenchmarkEntity>(stateName(i)));
+		}
+		MemoryPersisterImpl<BenchmarkEntity> persister = new MemoryPersisterImpl<BenchmarkEntity>(states, states.get(0));
+
+		FSM<BenchmarkEntity, Object> fsm = new FSM<BenchmarkEntity, Object>(
+				"benchmark",
+				persister,
+				20,
+				250,
+				BenchmarkEntity.class,
+				Id.class,
+				this.appContext);
+
+		// Same shape of Action that the StatefulFactory registers for a Controller method
+		//
+		Class<?>[] parameters = new Class<?>[this.argCount + 2];
+		parameters[0] = BenchmarkEntity.class;
+		parameters[1] = String.class;
+		for(int i = 2; i < parameters.length; i++) {
+			parameters[i] = Object.class;
+		}
+		Action action;
+		try {
+			action = new MethodInvocationAction(
+					BenchmarkController.class.getMethod("handle", parameters),
+					(org.statefulj.fsm.FSM)fsm,
+					new BenchmarkController());
+		} catch (NoSuchMethodException e) {
+			throw new RuntimeException(e);
+		}
+
+		for(int i = 0; i < this.stateCount; i++) {
+			for(int k = 0; k < this.transitionsPerState; k++) {
+				new TransitionImpl<BenchmarkEntity>(
+						states.get(i),
+						states.get(nextState(i, k)),
+						eventName(k),
+						action,
+						false,
+						false);
+			}
+		}
+
+		this.statefulFSM = new StatefulFSMImpl<BenchmarkEntity>(
+				fsm,
+				BenchmarkEntity.class,
+				new FactoryImpl<BenchmarkEntity, Object>());
+
+		// The Harness is what the Binders invoke: a Context followed by the arguments
+		//
+		this.harness = new FSMHarnessImpl<BenchmarkEntity, Object>(
+				this.statefulFSM,
+				BenchmarkEntity.class,
+				new FactoryImpl<BenchmarkEntity, Object>(),
+				new Finder<BenchmarkEntity, Object>() {
+
+					@Override
+					public BenchmarkEntity find(Class<BenchmarkEntity> clazz, String event, Object context) {
+						return null;
+					}
+
+					@Override
+					public BenchmarkEntity find(Class<BenchmarkEntity> clazz, Object id, String event, Object context) {
+						return entities.get(id);
+					}
+				});
+		this.harnessParms = new Object[this.argCount + 1];
+		System.arraycopy(this.args, 0, this.harnessParms, 1, this.argCount);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.appContext.close();
+	}
+
+	@Benchmark
+	public Object onEvent(StatefulHolder holder, EventCursor cursor) throws TooBusyException {
+		return this.statefulFSM.onEvent(holder.entity, cursor.next(this), this.args);
+	}
+
+	@Benchmark
+	public Object onHarnessEvent(StatefulHolder holder, EventCursor cursor) throws TooBusyException {
+		return this.harness.onEvent(cursor.next(this), holder.entity.getId(), this.harnessParms);
+	}
+
+	/**
+	 * One Stateful Entity per benchmark thread, so there is no contention on the State
+	 */
+	@State(Scope.Thread)
+	public static class StatefulHolder {
+
+		BenchmarkEntity entity = new BenchmarkEntity(Thread.currentThread().getId());
+
+		@Setup
+		public void setup(FrameworkFSMBenchmark benchmark) {
+			benchmark.entities.put(this.entity.getId(), this.entity);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.fsm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.statefulj.benchmarks.AbstractEventBenchmark;
+import org.statefulj.benchmarks.model.BenchmarkEntity;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.model.Action;
+
+/**
+ * Measures {@link org.statefulj.fsm.FSM#onEvent} backed by the
+ * {@link org.statefulj.persistence.memory.MemoryPersisterImpl}.  This is the cost of the
+ * core engine with no framework or database in the way.
+ *
+ * @author Andrew Hall
+ *
+ */
+@State(Scope.Benchmark)
+public class MemoryPersisterBenchmark extends AbstractEventBenchmark {
+
+	@Param({ "false", "true" })
+	private boolean compiled;
+
+	private FSM<BenchmarkEntity> fsm;
+
+	private int[] eventIds;
+
+	@Setup
+	public void setup() {
+		init();
+
+		Action<BenchmarkEntity> action = new ArgsAction();
+		FSM.FSMBuilder<BenchmarkEntity> builder = FSM.FSMBuilder
+				.newBuilder(BenchmarkEntity.class)
+				.setCompiled(this.compiled);
+		for(int i = 0; i < this.stateCount; i++) {
+			FSM.FSMBuilder.StateBuilder<BenchmarkEntity> state = builder.buildState(stateName(i), i == 0);
+			for(int k = 0; k < this.transitionsPerState; k++) {
+				state.addTransition(eventName(k), stateName(nextState(i, k)), action);
+			}
+		}
+		this.fsm = builder.build();
+
+		if (this.compiled) {
+			this.eventIds = new int[this.events.length];
+			for(int i = 0; i < this.events.length; i++) {
+				this.eventIds[i] = this.fsm.getEventId(this.events[i]);
+			}
+		}
+	}
+
+	/**
+	 * Dispatch by Event name.  When compiled, the Transition is resolved through the
+	 * compiled TransitionTable
+	 */
+	@Benchmark
+	public Object onEvent(StatefulHolder holder, EventCursor cursor) throws TooBusyException {
+		return this.fsm.onEvent(holder.entity, cursor.next(this), this.args);
+	}
+
+	/**
+	 * Dispatch by Event ordinal.  Only meaningful when compiled, otherwise it falls back to
+	 * dispatching by name
+	 */
+	@Benchmark
+	public Object onEventId(StatefulHolder holder, EventCursor cursor) throws TooBusyException {
+		return (this.compiled)
+				? this.fsm.onEvent(holder.entity, this.eventIds[cursor.nextIndex(this)], this.args)
+				: this.fsm.onEvent(holder.entity, cursor.next(this), this.args);
+	}
+
+	/**
+	 * One Stateful Entity per benchmark thread, so there is no contention on the State
+	 */
+	@State(Scope.Thread)
+	public static class StatefulHolder {
+
+		BenchmarkEntity entity = new BenchmarkEntity();
+	}
+
+	/**
+	 * Stateless Action, so the threads don't share any writes outside of the FSM
+	 */
+	static class ArgsAction implements Action<BenchmarkEntity> {
+
+		@Override
+		public void execute(BenchmarkEntity stateful, String event, Object... args) throws RetryException {
+			if (args == null) {
+				throw new IllegalArgumentException("args are required");
+			}
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.Database;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.statefulj.benchmarks.AbstractEventBenchmark;
+import org.statefulj.benchmarks.model.JPABenchmarkEntity;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.model.impl.DeterministicTransitionImpl;
+import org.statefulj.fsm.model.impl.StateImpl;
+import org.statefulj.persistence.jpa.JPAPerister;
+
+/**
+ * Measures {@link org.statefulj.fsm.FSM#onEvent} backed by the
+ * {@link org.statefulj.persistence.jpa.JPAPerister} against an embedded H2 database.
+ *
+ * Each invocation is a single transaction which loads the Stateful Entity and fires
+ * the event - the same unit of work as the JPA FSMHarness.
+ *
+ * @author Andrew Hall
+ *
+ */
+@State(Scope.Benchmark)
+public class JPAPersisterBenchmark extends AbstractEventBenchmark {
+
+	private EmbeddedDatabase database;
+
+	private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+
+	private EntityManager entityManager;
+
+	private TransactionTemplate transactionTemplate;
+
+	private FSM<JPABenchmarkEntity> fsm;
+
+	@Setup
+	public void setup() {
+		init();
+
+		this.database = new EmbeddedDatabaseBuilder()
+			.setType(EmbeddedDatabaseType.H2)
+			.setName("statefulj-benchmarks-" + UUID.randomUUID())
+			.build();
+
+		HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+		vendorAdapter.setDatabase(Database.H2);
+		vendorAdapter.setGenerateDdl(true);
+
+		this.entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+		this.entityManagerFactoryBean.setPersistenceUnitName("statefulj-benchmarks");
+		this.entityManagerFactoryBean.setDataSource(this.database);
+		this.entityManagerFactoryBean.setJpaVendorAdapter(vendorAdapter);
+		this.entityManagerFactoryBean.setPackagesToScan(JPABenchmarkEntity.class.getPackage().getName());
+		this.entityManagerFactoryBean.afterPropertiesSet();
+
+		EntityManagerFactory entityManagerFactory = this.entityManagerFactoryBean.getObject();
+		JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+
+		List<org.statefulj.fsm.model.State<JPABenchmarkEntity>> states = new ArrayList<org.statefulj.fsm.model.State<JPABenchmarkEntity>>();
+		for(int i = 0; i < this.stateCount; i++) {
+			states.add(new StateImpl<JPABenchmarkEntity>(stateName(i)));
+		}
+		for(int i = 0; i < this.stateCount; i++) {
+			for(int k = 0; k < this.transitionsPerState; k++) {
+				new DeterministicTransitionImpl<JPABenchmarkEntity>(
+						states.get(i),
+						states.get(nextState(i, k)),
+						eventName(k));
+			}
+		}
+
+		JPAPerister<JPABenchmarkEntity> persister = new JPAPerister<JPABenchmarkEntity>(
+				states,
+				null,
+				states.get(0),
+				JPABenchmarkEntity.class,
+				this.entityManager,
+				transactionManager);
+
+		this.fsm = new FSM<JPABenchmarkEntity>("benchmark", persister);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.entityManagerFactoryBean.destroy();
+		this.database.shutdown();
+	}
+
+	@Benchmark
+	public Object onEvent(final StatefulHolder holder, final EventCursor cursor) {
+		return this.transactionTemplate.execute(new TransactionCallback<Object>() {
+
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				JPABenchmarkEntity entity = entityManager.find(JPABenchmarkEntity.class, holder.id);
+				try {
+					return fsm.onEvent(entity, cursor.next(JPAPersisterBenchmark.this), args);
+				} catch (TooBusyException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * One persisted Stateful Entity per benchmark thread, so there is no contention on the row
+	 */
+	@State(Scope.Thread)
+	public static class StatefulHolder {
+
+		Long id;
+
+		@Setup
+		public void setup(final JPAPersisterBenchmark benchmark) {
+			this.id = benchmark.transactionTemplate.execute(new TransactionCallback<Long>() {
+
+				@Override
+				public Long doInTransaction(TransactionStatus status) {
+					JPABenchmarkEntity entity = new JPABenchmarkEntity(benchmark.stateName(0));
+					benchmark.entityManager.persist(entity);
+					return entity.getId();
+				}
+			});
+		}
+	}
+}
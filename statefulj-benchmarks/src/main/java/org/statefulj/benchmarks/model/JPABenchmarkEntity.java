@@ -0,0 +1,61 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.statefulj.persistence.annotations.State;
+
+/**
+ * JPA Stateful Entity used by the benchmarks
+ *
+ * @author Andrew Hall
+ *
+ */
+@Entity
+@Table(name="benchmark_entity")
+public class JPABenchmarkEntity {
+
+	@Id
+	@GeneratedValue(strategy=GenerationType.IDENTITY)
+	private Long id;
+
+	@State
+	@Column(insertable=true, updatable=false)
+	private String state;
+
+	public JPABenchmarkEntity() {
+	}
+
+	public JPABenchmarkEntity(String state) {
+		this.state = state;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getState() {
+		return state;
+	}
+}
@@ -0,0 +1,261 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.common.utils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Builds getter and setter functions which avoid the cost of reflection on each call.
+ *
+ * Public getter and setter methods of public classes are bound with the {@link LambdaMetafactory},
+ * which yields a class that invokes the method directly.  Everything else is bound with a
+ * {@link MethodHandle}.  If neither can be built, null is returned and the caller is expected
+ * to fall back to reflection.  As with {@link Method#invoke(Object, Object...)}, anything thrown by a
+ * getter or setter method is wrapped in a RuntimeException caused by an InvocationTargetException
+ *
+ * @author Andrew Hall
+ *
+ */
+public final class Accessors {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private Accessors() {
+	}
+
+	/**
+	 * Build a getter function from a getter method
+	 *
+	 * @param method The getter method
+	 * @return The getter function or null if one couldn't be built
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T, V> Function<T, V> getter(Method method) {
+		try {
+			MethodHandle handle = LOOKUP.unreflect(method);
+			if (isLinkable(method)) {
+				try {
+					CallSite site = LambdaMetafactory.metafactory(
+							LOOKUP,
+							"apply",
+							MethodType.methodType(Function.class),
+							GETTER_TYPE,
+							handle,
+							MethodType.methodType(
+									box(method.getReturnType()),
+									method.getDeclaringClass()));
+					return invoking((Function<T, V>)site.getTarget().invoke());
+				} catch (Throwable t) {
+					// Unable to link, fall through to the MethodHandle
+					//
+				}
+			}
+			return getter(handle, true);
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Build a getter function which reads the field directly
+	 *
+	 * @param field The field, it must be accessible
+	 * @return The getter function or null if one couldn't be built
+	 */
+	public static <T, V> Function<T, V> getter(Field field) {
+		try {
+			return getter(LOOKUP.unreflectGetter(field), false);
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Build a setter function from a setter method
+	 *
+	 * @param method The setter method
+	 * @return The setter function or null if one couldn't be built
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T, V> BiConsumer<T, V> setter(Method method) {
+		try {
+			MethodHandle handle = LOOKUP.unreflect(method);
+			if (isLinkable(method)) {
+				try {
+					CallSite site = LambdaMetafactory.metafactory(
+							LOOKUP,
+							"accept",
+							MethodType.methodType(BiConsumer.class),
+							SETTER_TYPE,
+							handle,
+							MethodType.methodType(
+									void.class,
+									method.getDeclaringClass(),
+									box(method.getParameterTypes()[0])));
+					return invoking((BiConsumer<T, V>)site.getTarget().invoke());
+				} catch (Throwable t) {
+					// Unable to link, fall through to the MethodHandle
+					//
+				}
+			}
+			return setter(handle, true);
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Build a setter function which updates the field directly
+	 *
+	 * @param field The field, it must be accessible
+	 * @return The setter function or null if one couldn't be built
+	 */
+	public static <T, V> BiConsumer<T, V> setter(Field field) {
+		try {
+			return setter(LOOKUP.unreflectSetter(field), false);
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param method Whether the handle invokes a method, rather than accessing a field
+	 */
+	private static <T, V> Function<T, V> getter(MethodHandle handle, final boolean method) {
+		final MethodHandle getter = handle.asType(GETTER_TYPE);
+		return new Function<T, V>() {
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public V apply(T object) {
+				try {
+					return (V)getter.invokeExact((Object)object);
+				} catch (Throwable t) {
+					throw failure(t, method);
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * @param method Whether the handle invokes a method, rather than accessing a field
+	 */
+	private static <T, V> BiConsumer<T, V> setter(MethodHandle handle, final boolean method) {
+		final MethodHandle setter = handle.asType(SETTER_TYPE);
+		return new BiConsumer<T, V>() {
+
+			@Override
+			public void accept(T object, V value) {
+				try {
+					setter.invokeExact((Object)object, (Object)value);
+				} catch (Throwable t) {
+					throw failure(t, method);
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * Wrap what the getter method throws, as Method.invoke would
+	 */
+	private static <T, V> Function<T, V> invoking(final Function<T, V> getter) {
+		return new Function<T, V>() {
+
+			@Override
+			public V apply(T object) {
+				try {
+					return getter.apply(object);
+				} catch (Throwable t) {
+					throw failure(t, true);
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * Wrap what the setter method throws, as Method.invoke would
+	 */
+	private static <T, V> BiConsumer<T, V> invoking(final BiConsumer<T, V> setter) {
+		return new BiConsumer<T, V>() {
+
+			@Override
+			public void accept(T object, V value) {
+				try {
+					setter.accept(object, value);
+				} catch (Throwable t) {
+					throw failure(t, true);
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * A failure of a getter or setter method is wrapped in an InvocationTargetException, as
+	 * Method.invoke would.  A field access only fails on a bad argument, which is rethrown
+	 */
+	private static RuntimeException failure(Throwable t, boolean method) {
+		if (method) {
+			return new RuntimeException(new InvocationTargetException(t));
+		}
+		if (t instanceof RuntimeException) {
+			return (RuntimeException)t;
+		}
+		if (t instanceof Error) {
+			throw (Error)t;
+		}
+		return new RuntimeException(t);
+	}
+
+	/**
+	 * The class spun by the LambdaMetafactory is defined against this class, so it can only
+	 * link to public methods of public classes that are visible from this ClassLoader
+	 */
+	private static boolean isLinkable(Method method) {
+		Class<?> declaringClass = method.getDeclaringClass();
+		if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(declaringClass.getModifiers())) {
+			return false;
+		}
+		try {
+			return Class.forName(declaringClass.getName(), false, Accessors.class.getClassLoader()) == declaringClass;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	private static Class<?> box(Class<?> type) {
+		return (type.isPrimitive()) ? MethodType.methodType(type).wrap().returnType() : type;
+	}
+}
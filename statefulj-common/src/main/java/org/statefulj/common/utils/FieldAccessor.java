@@ -7,11 +7,14 @@ import java.beans.PropertyDescriptor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Class that encapsulates access to a field.  If the field has a getter or setter
  * method, per JavaBean spec, the methods will be used; otherwise, the accessor will
- * directly read or update the field via reflection
+ * directly read or update the field.  Access is bound to generated getter and setter
+ * functions, see {@link Accessors}; reflection is only used if they can't be built
  *
  * Created by andrewhall on 7/24/16.
  */
@@ -21,6 +24,8 @@ public class FieldAccessor<T, V> {
     protected Field field;
     protected Method getMethod;
     protected Method setMethod;
+    protected Function<T, V> getter;
+    protected BiConsumer<T, V> setter;
 
     /**
      * Constructor for a Field Accessor.  Specify the Class and Fields
@@ -33,6 +38,7 @@ public class FieldAccessor<T, V> {
             this.clazz = clazz;
             this.field = field;
             init(field, clazz);
+            bind();
         } catch (IntrospectionException e) {
             throw new RuntimeException(e);
         }
@@ -45,6 +51,9 @@ public class FieldAccessor<T, V> {
      * @return
      */
     public V getValue(T object) {
+        if (this.getter != null) {
+            return this.getter.apply(object);
+        }
         try {
             if (this.getMethod != null) {
                 return (V)this.getMethod.invoke(object);
@@ -65,6 +74,10 @@ public class FieldAccessor<T, V> {
      * @param value
      */
     public void setValue(T object, V value) {
+        if (this.setter != null) {
+            this.setter.accept(object, value);
+            return;
+        }
         try {
             if (this.setMethod != null) {
                 this.setMethod.invoke(object, value);
@@ -94,6 +107,15 @@ public class FieldAccessor<T, V> {
         return setMethod;
     }
 
+    /**
+     * Bind the getter and setter functions to the methods resolved by {@link #init(Field, Class)},
+     * or to the field if there isn't a method
+     */
+    protected void bind() {
+        this.getter = (this.getMethod != null) ? Accessors.<T, V>getter(this.getMethod) : Accessors.<T, V>getter(this.field);
+        this.setter = (this.setMethod != null) ? Accessors.<T, V>setter(this.setMethod) : Accessors.<T, V>setter(this.field);
+    }
+
     protected void init(Field field, Class<T> clazz) throws IntrospectionException {
         PropertyDescriptor statePropertyDescriptor = null;
         BeanInfo beanInfo = Introspector.getBeanInfo(clazz);
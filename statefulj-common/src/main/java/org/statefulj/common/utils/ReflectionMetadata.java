@@ -0,0 +1,163 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.common.utils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Caches the results of the {@link ReflectionUtils} lookups for a Class, so that paths which run
+ * for every event or message don't rescan the Class hierarchy.  The metadata is held in a
+ * {@link ClassValue}, so it doesn't prevent the Class, or its ClassLoader, from being unloaded
+ *
+ * @author Andrew Hall
+ *
+ */
+public final class ReflectionMetadata {
+
+	private static final ClassValue<ReflectionMetadata> METADATA = new ClassValue<ReflectionMetadata>() {
+
+		@Override
+		protected ReflectionMetadata computeValue(Class<?> type) {
+			return new ReflectionMetadata(type);
+		}
+
+	};
+
+	private final Class<?> clazz;
+
+	private final ConcurrentMap<Class<? extends Annotation>, FieldReference> annotatedFields =
+			new ConcurrentHashMap<Class<? extends Annotation>, FieldReference>();
+
+	private final ConcurrentMap<Class<? extends Annotation>, FieldReference> referencedFields =
+			new ConcurrentHashMap<Class<? extends Annotation>, FieldReference>();
+
+	private final ConcurrentMap<String, FieldReference> publicFields =
+			new ConcurrentHashMap<String, FieldReference>();
+
+	private ReflectionMetadata(Class<?> clazz) {
+		this.clazz = clazz;
+	}
+
+	public static ReflectionMetadata forClass(Class<?> clazz) {
+		return METADATA.get(clazz);
+	}
+
+	public Class<?> getType() {
+		return clazz;
+	}
+
+	/**
+	 * @see ReflectionUtils#getFirstAnnotatedField(Class, Class)
+	 */
+	public FieldReference getFirstAnnotatedField(Class<? extends Annotation> annotationClass) {
+		FieldReference ref = this.annotatedFields.get(annotationClass);
+		if (ref == null) {
+			ref = FieldReference.of(ReflectionUtils.getFirstAnnotatedField(this.clazz, annotationClass));
+			this.annotatedFields.putIfAbsent(annotationClass, ref);
+		}
+		return ref;
+	}
+
+	/**
+	 * @see ReflectionUtils#getReferencedField(Class, Class)
+	 */
+	public FieldReference getReferencedField(Class<? extends Annotation> annotationClass) {
+		FieldReference ref = this.referencedFields.get(annotationClass);
+		if (ref == null) {
+			ref = FieldReference.of(ReflectionUtils.getReferencedField(this.clazz, annotationClass));
+			this.referencedFields.putIfAbsent(annotationClass, ref);
+		}
+		return ref;
+	}
+
+	/**
+	 * @see Class#getField(String)
+	 */
+	public FieldReference getPublicField(String name) {
+		FieldReference ref = this.publicFields.get(name);
+		if (ref == null) {
+			Field field;
+			try {
+				field = this.clazz.getField(name);
+			} catch (NoSuchFieldException e) {
+				field = null;
+			}
+			ref = FieldReference.of(field);
+			this.publicFields.putIfAbsent(name, ref);
+		}
+		return ref;
+	}
+
+	/**
+	 * The result of a lookup.  If the Field wasn't found, {@link #getField()} returns null and
+	 * {@link #getValue(Object)} always returns null
+	 */
+	public static final class FieldReference {
+
+		private static final FieldReference NOT_FOUND = new FieldReference(null, null);
+
+		private final Field field;
+
+		private final Function<Object, Object> getter;
+
+		private FieldReference(Field field, Function<Object, Object> getter) {
+			this.field = field;
+			this.getter = getter;
+		}
+
+		static FieldReference of(Field field) {
+			if (field == null) {
+				return NOT_FOUND;
+			}
+			field.setAccessible(true);
+			return new FieldReference(field, Accessors.<Object, Object>getter(field));
+		}
+
+		public Field getField() {
+			return this.field;
+		}
+
+		public boolean isFound() {
+			return this.field != null;
+		}
+
+		/**
+		 * Read the value of the Field directly, bypassing any getter
+		 *
+		 * @param obj The object to read the Field from
+		 * @return the value of the Field
+		 */
+		public Object getValue(Object obj) {
+			if (this.field == null) {
+				return null;
+			}
+			if (this.getter != null) {
+				return this.getter.apply(obj);
+			}
+			try {
+				return this.field.get(obj);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
@@ -3,6 +3,7 @@ package org.statefulj.common.utils;
 import org.junit.Test;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 import static org.junit.Assert.*;
@@ -12,6 +13,19 @@ import static org.junit.Assert.*;
  */
 public class FieldAccessorTest {
 
+    public static class FailingClass {
+
+        private String field;
+
+        public String getField() {
+            throw new IllegalStateException("get");
+        }
+
+        public void setField(String field) {
+            throw new IllegalStateException("set");
+        }
+    }
+
     static class TestClass1 {
 
         private String field;
@@ -50,6 +64,19 @@ public class FieldAccessorTest {
 
     }
 
+    public static class TestClass5 {
+
+        private long field;
+
+        public long getField() {
+            return field;
+        }
+
+        public void setField(long field) {
+            this.field = field;
+        }
+    }
+
     @Test
     public void testTestClass1() throws NoSuchMethodException {
         Field field = ReflectionUtils.getField(TestClass1.class, "field");
@@ -130,4 +157,51 @@ public class FieldAccessorTest {
         assertEquals("foo", testClass4StringFieldAccessor.getValue(testClass4));
     }
 
+    @Test
+    public void testSetFieldClass5() throws NoSuchMethodException {
+        Field field = ReflectionUtils.getField(TestClass5.class, "field");
+        FieldAccessor<TestClass5, Long> testClass5LongFieldAccessor =
+                new FieldAccessor<TestClass5, Long>(TestClass5.class, field);
+        TestClass5 testClass5 = new TestClass5();
+        testClass5LongFieldAccessor.setValue(testClass5, 10L);
+        assertEquals(10L, testClass5.getField());
+        assertEquals(Long.valueOf(10L), testClass5LongFieldAccessor.getValue(testClass5));
+    }
+
+    @Test
+    public void testBoundAccessors() throws NoSuchMethodException {
+
+        // Public methods are bound with the LambdaMetafactory, non public with MethodHandles
+        //
+        FieldAccessor<TestClass5, Long> testClass5LongFieldAccessor =
+                new FieldAccessor<TestClass5, Long>(TestClass5.class, ReflectionUtils.getField(TestClass5.class, "field"));
+        assertNotNull(testClass5LongFieldAccessor.getter);
+        assertNotNull(testClass5LongFieldAccessor.setter);
+
+        FieldAccessor<TestClass4, String> testClass4StringFieldAccessor =
+                new FieldAccessor<TestClass4, String>(TestClass4.class, ReflectionUtils.getField(TestClass4.class, "field"));
+        assertNotNull(testClass4StringFieldAccessor.getter);
+        assertNotNull(testClass4StringFieldAccessor.setter);
+    }
+
+    @Test
+    public void testFailingAccessors() {
+        FieldAccessor<FailingClass, String> accessor =
+                new FieldAccessor<FailingClass, String>(FailingClass.class, ReflectionUtils.getField(FailingClass.class, "field"));
+        try {
+            accessor.getValue(new FailingClass());
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof InvocationTargetException);
+            assertEquals("get", e.getCause().getCause().getMessage());
+        }
+        try {
+            accessor.setValue(new FailingClass(), "value");
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof InvocationTargetException);
+            assertEquals("set", e.getCause().getCause().getMessage());
+        }
+    }
+
 }
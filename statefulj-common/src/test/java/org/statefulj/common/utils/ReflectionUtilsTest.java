@@ -59,4 +59,27 @@ public class ReflectionUtilsTest {
 		assertNotNull(foo);
 		assertEquals("foo", foo.getName());
 	}
+
+	@Test
+	public void testReflectionMetadata() {
+
+		class Foo {
+
+			@Bar
+			private String foo = "boo";
+		}
+
+		ReflectionMetadata metadata = ReflectionMetadata.forClass(Foo.class);
+		assertSame(metadata, ReflectionMetadata.forClass(Foo.class));
+
+		ReflectionMetadata.FieldReference foo = metadata.getFirstAnnotatedField(Bar.class);
+		assertTrue(foo.isFound());
+		assertEquals("foo", foo.getField().getName());
+		assertEquals("boo", foo.getValue(new Foo()));
+		assertSame(foo, metadata.getFirstAnnotatedField(Bar.class));
+
+		ReflectionMetadata.FieldReference id = metadata.getPublicField("id");
+		assertFalse(id.isFound());
+		assertNull(id.getValue(new Foo()));
+	}
 }
@@ -17,7 +17,6 @@
  */
 package org.statefulj.framework.binders.camel;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
@@ -44,7 +43,8 @@ import org.slf4j.LoggerFactory;
 
 import static org.statefulj.framework.binders.common.utils.JavassistUtils.*;
 
-import org.statefulj.common.utils.ReflectionUtils;
+import org.statefulj.common.utils.ReflectionMetadata;
+import org.statefulj.common.utils.ReflectionMetadata.FieldReference;
 import org.statefulj.framework.core.model.EndpointBinder;
 import org.statefulj.framework.core.model.FSMHarness;
 import org.statefulj.framework.core.model.ReferenceFactory;
@@ -72,36 +72,24 @@ public class CamelBinder implements EndpointBinder {
 			if (BeanInvocation.class.isAssignableFrom(msg.getClass())) {
 				msg = ((BeanInvocation)msg).getArgs()[0];
 			}
-			Field idField = null;
+			ReflectionMetadata metadata = ReflectionMetadata.forClass(msg.getClass());
+			FieldReference idField = null;
 			try {
-				idField = ReflectionUtils.getFirstAnnotatedField(msg.getClass(), Id.class);
+				idField = metadata.getFirstAnnotatedField(Id.class);
 			} catch(Throwable t) {
 				// ignore
 			}
-			if (idField == null) {
+			if (idField == null || !idField.isFound()) {
 				try {
-					idField = ReflectionUtils.getFirstAnnotatedField(msg.getClass(), org.springframework.data.annotation.Id.class);
+					idField = metadata.getFirstAnnotatedField(org.springframework.data.annotation.Id.class);
 				} catch(Throwable t) {
 					// ignore
 				}
 			}
-			if (idField == null) {
-				try {
-					idField = msg.getClass().getField("id");
-				} catch (Throwable t) {
-					// ignore
-				}
-			}
-			if (idField != null) {
-				try {
-					idField.setAccessible(true);
-					id = idField.get(msg);
-				} catch (IllegalArgumentException e) {
-					throw new RuntimeException(e);
-				} catch (IllegalAccessException e) {
-					throw new RuntimeException(e);
-				}
+			if (idField == null || !idField.isFound()) {
+				idField = metadata.getPublicField("id");
 			}
+			id = idField.getValue(msg);
 		}
 		return id;
 	}
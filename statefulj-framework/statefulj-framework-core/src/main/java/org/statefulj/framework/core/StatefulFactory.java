@@ -17,6 +17,7 @@
  */
 package org.statefulj.framework.core;
 
+import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -44,6 +45,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.annotation.QualifierAnnotationAutowireCandidateResolver;
@@ -52,6 +54,7 @@ import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.config.ConstructorArgumentValues;
 import org.springframework.beans.factory.config.DependencyDescriptor;
 import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
@@ -65,18 +68,23 @@ import org.springframework.data.repository.core.support.RepositoryFactoryBeanSup
 import org.statefulj.common.utils.ReflectionUtils;
 import org.statefulj.framework.core.actions.DomainEntityMethodInvocationAction;
 import org.statefulj.framework.core.actions.MethodInvocationAction;
+import org.statefulj.framework.core.annotations.StateCode;
 import org.statefulj.framework.core.annotations.StatefulController;
 import org.statefulj.framework.core.annotations.Transition;
 import org.statefulj.framework.core.annotations.Transitions;
 import org.statefulj.framework.core.fsm.FSM;
+import org.statefulj.framework.core.fsm.MailboxExecutor;
 import org.statefulj.framework.core.fsm.TransitionImpl;
 import org.statefulj.framework.core.model.EndpointBinder;
 import org.statefulj.framework.core.model.PersistenceSupportBeanFactory;
 import org.statefulj.framework.core.model.ReferenceFactory;
 import org.statefulj.framework.core.model.StatefulFSM;
+import org.statefulj.framework.core.model.impl.MailboxFSMHarnessImpl;
 import org.statefulj.framework.core.model.impl.MemoryPersistenceSupportBeanFactoryImpl;
 import org.statefulj.framework.core.model.impl.ReferenceFactoryImpl;
 import org.statefulj.framework.core.model.impl.StatefulFSMImpl;
+import org.statefulj.fsm.LockMode;
+import org.statefulj.fsm.management.FSMControl;
 import org.statefulj.fsm.model.impl.StateImpl;
 
 /**
@@ -452,7 +460,7 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 
 		// ReferenceFactory will generate all the necessary bean ids
 		//
-		ReferenceFactory referenceFactory = new ReferenceFactoryImpl(statefulControllerBeanId);
+		ReferenceFactoryImpl referenceFactory = new ReferenceFactoryImpl(statefulControllerBeanId);
 
 		// We need to map Transitions across all Methods
 		//
@@ -652,12 +660,17 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 		if (hasBinders) {
 			registerFSMHarness(
 					referenceFactory,
+					statefulControllerBeanId,
 					factory,
 					managedClass,
 					statefulFSMBeanId,
 					factoryId,
 					finderId,
 					repoBeanDefinitionFactory,
+					scAnnotation.mailboxes(),
+					scAnnotation.groupCommitSize(),
+					scAnnotation.groupCommitWindow(),
+					scAnnotation.tracerId(),
 					reg);
 		}
 	}
@@ -899,13 +912,14 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 				.genericBeanDefinition(methodInvocationAction)
 				.getBeanDefinition();
 
+		// Pass the resolved Method, so that the Action can generate its invoker up front
+		//
 		ConstructorArgumentValues args = actionBean.getConstructorArgumentValues();
-		args.addIndexedArgumentValue(0, method.getName());
-		args.addIndexedArgumentValue(1, method.getParameterTypes());
-		args.addIndexedArgumentValue(2, new RuntimeBeanReference(referenceFactory.getFSMId()));
+		args.addIndexedArgumentValue(0, method, Method.class.getName());
+		args.addIndexedArgumentValue(1, new RuntimeBeanReference(referenceFactory.getFSMId()));
 
 		if (!isDomainEntity) {
-			args.addIndexedArgumentValue(3, controllerRef);
+			args.addIndexedArgumentValue(2, controllerRef);
 		}
 
 		reg.registerBeanDefinition(actionId, actionBean);
@@ -934,7 +948,7 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 	}
 
 	private String registerFSM(
-			ReferenceFactory referenceFactory,
+			ReferenceFactoryImpl referenceFactory,
 			Class<?> statefulControllerClass,
 			StatefulController scAnnotation,
 			String persisterId,
@@ -962,7 +976,48 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 			args.addIndexedArgumentValue(7, new RuntimeBeanReference(finderId));
 		}
 
+		String retryPolicyId = scAnnotation.retryPolicyId();
+		if (!StringUtils.isEmpty(retryPolicyId)) {
+			fsmBean.getPropertyValues().add("retryPolicy", new RuntimeBeanReference(retryPolicyId));
+		}
+
+		if (scAnnotation.lockMode() != LockMode.OPTIMISTIC) {
+			fsmBean.getPropertyValues().add("lockMode", scAnnotation.lockMode());
+		}
+
+		String listenerId = scAnnotation.listenerId();
+		if (!StringUtils.isEmpty(listenerId)) {
+			fsmBean.getPropertyValues().add("listener", new RuntimeBeanReference(listenerId));
+		}
+
+		if (scAnnotation.stateCodes().length > 0) {
+			Map<String, Integer> stateCodes = new HashMap<String, Integer>();
+			for(StateCode stateCode : scAnnotation.stateCodes()) {
+				stateCodes.put(stateCode.state(), stateCode.code());
+			}
+			fsmBean.getPropertyValues().add("stateCodes", stateCodes);
+		}
+
+		String tracerId = scAnnotation.tracerId();
+		if (!StringUtils.isEmpty(tracerId)) {
+			fsmBean.getPropertyValues().add("tracer", new RuntimeBeanReference(tracerId));
+		}
+
 		reg.registerBeanDefinition(fsmBeanId, fsmBean);
+
+		// Expose the FSM over JMX
+		//
+		if (scAnnotation.jmx()) {
+			BeanDefinition controlBean = BeanDefinitionBuilder
+					.genericBeanDefinition(FSMControl.class)
+					.setInitMethodName("register")
+					.setDestroyMethodName("unregister")
+					.getBeanDefinition();
+			controlBean.getConstructorArgumentValues().addIndexedArgumentValue(0, new RuntimeBeanReference(fsmBeanId));
+			controlBean.getConstructorArgumentValues().addIndexedArgumentValue(1, fsmBeanId);
+			reg.registerBeanDefinition(referenceFactory.getFSMControlId(), controlBean);
+		}
+
 		return fsmBeanId;
 	}
 
@@ -1079,22 +1134,71 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 
 	private String registerFSMHarness(
 				ReferenceFactory referenceFactory,
+				String statefulControllerBeanId,
 				PersistenceSupportBeanFactory persistenceFactory,
 				Class<?> statefulClass,
 				String fsmBeanId,
 				String factoryId,
 				String finderId,
 				BeanDefinition repoBeanFactory,
+				int mailboxes,
+				int groupCommitSize,
+				int groupCommitWindow,
+				String tracerId,
 				BeanDefinitionRegistry reg) {
 		String fsmHarnessId = referenceFactory.getFSMHarnessId();
-		reg.registerBeanDefinition(
-				fsmHarnessId,
-				persistenceFactory.buildFSMHarnessBean(
-						statefulClass,
-						fsmBeanId,
-						factoryId,
-						finderId,
-						repoBeanFactory));
+		BeanDefinition fsmHarnessBean = persistenceFactory.buildFSMHarnessBean(
+				statefulClass,
+				fsmBeanId,
+				factoryId,
+				finderId,
+				repoBeanFactory);
+
+		if (!StringUtils.isEmpty(tracerId)) {
+			fsmHarnessBean.getPropertyValues().add("tracer", new RuntimeBeanReference(tracerId));
+		}
+
+		// Coalesce events into group commits, only the FSMHarness of the JPA persistence supports it
+		//
+		if (groupCommitSize > 1) {
+			if (!supportsGroupCommit(fsmHarnessBean, reg)) {
+				throw new RuntimeException(
+						"StatefulController " + statefulControllerBeanId + " specifies a groupCommitSize of " + groupCommitSize +
+						", but its FSMHarness " + fsmHarnessBean.getBeanClassName() + " doesn't support group commit");
+			}
+			fsmHarnessBean.getPropertyValues().add("groupCommitSize", groupCommitSize);
+			fsmHarnessBean.getPropertyValues().add("groupCommitWindow", groupCommitWindow);
+			if (fsmHarnessBean instanceof AbstractBeanDefinition) {
+				((AbstractBeanDefinition)fsmHarnessBean).setDestroyMethodName("shutdown");
+			}
+		}
+
+		// If the events are dispatched onto mailboxes, put the mailboxes in front of the FSMHarness
+		//
+		if (mailboxes > 0) {
+			String mailboxId = referenceFactory.getMailboxId();
+			BeanDefinition mailboxBean = BeanDefinitionBuilder
+					.genericBeanDefinition(MailboxExecutor.class)
+					.setDestroyMethodName("shutdown")
+					.getBeanDefinition();
+			ConstructorArgumentValues args = mailboxBean.getConstructorArgumentValues();
+			args.addIndexedArgumentValue(0, mailboxId);
+			args.addIndexedArgumentValue(1, mailboxes);
+			reg.registerBeanDefinition(mailboxId, mailboxBean);
+
+			BeanDefinition mailboxHarnessBean = BeanDefinitionBuilder
+					.genericBeanDefinition(MailboxFSMHarnessImpl.class)
+					.getBeanDefinition();
+			args = mailboxHarnessBean.getConstructorArgumentValues();
+			args.addIndexedArgumentValue(0, fsmHarnessBean);
+			args.addIndexedArgumentValue(1, new RuntimeBeanReference(mailboxId));
+			if (!StringUtils.isEmpty(tracerId)) {
+				mailboxHarnessBean.getPropertyValues().add("tracer", new RuntimeBeanReference(tracerId));
+			}
+			fsmHarnessBean = mailboxHarnessBean;
+		}
+
+		reg.registerBeanDefinition(fsmHarnessId, fsmHarnessBean);
 		return fsmHarnessId;
 	}
 
@@ -1118,6 +1222,21 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 		return null;
 	}
 
+	/**
+	 * @return Whether the FSMHarness Bean has a groupCommitSize property
+	 */
+	private boolean supportsGroupCommit(BeanDefinition fsmHarnessBean, BeanDefinitionRegistry reg) {
+		try {
+			Class<?> harnessClass = getClassFromBeanDefinition(fsmHarnessBean, reg);
+			PropertyDescriptor groupCommitSize = (harnessClass != null)
+					? BeanUtils.getPropertyDescriptor(harnessClass, "groupCommitSize")
+					: null;
+			return groupCommitSize != null && groupCommitSize.getWriteMethod() != null;
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	private Class<?> getClassFromBeanDefinition(BeanDefinition bf, BeanDefinitionRegistry reg) throws ClassNotFoundException {
 		Class<?> clazz = null;
 
@@ -18,9 +18,9 @@
 package org.statefulj.framework.core.actions;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.reflect.Method;
 
+import org.statefulj.framework.core.fsm.EventInvocation;
 import org.statefulj.fsm.FSM;
 import org.statefulj.fsm.RetryException;
 
@@ -38,22 +38,27 @@ public class DomainEntityMethodInvocationAction extends MethodInvocationAction {
 			FSM<Object> fsm) {
 		super(method, parameters, fsm, null);
 	}
+
+	public DomainEntityMethodInvocationAction(
+			Method method,
+			FSM<Object> fsm) {
+		super(method, fsm, null);
+	}
 	
 	@Override
-	protected Object invoke(Object stateful, String event, List<Object> invokeParmList) throws RetryException, SecurityException, IllegalArgumentException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
-		return invoke(stateful, invokeParmList);
+	protected Object invoke(Object stateful, String event, Object[] invokeParms) throws RetryException, SecurityException, IllegalArgumentException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+		return invoke(stateful, invokeParms);
 	}
 	
 	@Override
-	protected List<Object> buildInvokeParameters(Object stateful, String event, List<Object> parmList) {
+	protected Object[] buildInvokeParameters(Object stateful, String event, EventInvocation<?> invocation) {
 
-		// Add the Entity and Event to the parm list to pass to the Controller
-		// TODO : Inspect method signature - make entity and event optional
+		// Add the Event to the parm list to pass to the Domain Entity
+		// TODO : Inspect method signature - make event optional
 		//
-		ArrayList<Object> invokeParmList = new ArrayList<Object>(parmList.size() + 1);
-		invokeParmList.add(event);
-		invokeParmList.addAll(parmList);
-		
-		return invokeParmList;
+		Object[] invokeParms = allocateInvokeParameters(1, invocation);
+		invokeParms[0] = event;
+		invocation.copyArgs(invokeParms, 1, invokeParms.length - 1);
+		return invokeParms;
 	}
 }
@@ -19,20 +19,15 @@ package org.statefulj.framework.core.actions;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import org.apache.commons.lang3.mutable.MutableObject;
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.springframework.util.ReflectionUtils;
-import org.statefulj.framework.core.fsm.ContextWrapper;
+import org.statefulj.framework.core.fsm.EventInvocation;
 import org.statefulj.fsm.FSM;
 import org.statefulj.fsm.RetryException;
 import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.jfr.FlightRecorder;
 import org.statefulj.fsm.model.Action;
 
 /**
@@ -44,7 +39,7 @@ import org.statefulj.fsm.model.Action;
  */
 public class MethodInvocationAction implements Action<Object> {
 
-	private final Pattern protocol = Pattern.compile("(([^:]*):)?(.*)");
+	private static final String EVENT_PREFIX = "event:";
 
 	private Object controller;
 	
@@ -54,6 +49,12 @@ public class MethodInvocationAction implements Action<Object> {
 
 	private FSM<Object> fsm;
 	
+	private volatile ResolvedMethod resolved;
+
+	private final ConcurrentMap<Class<?>, MethodInvoker> invokersByClass = new ConcurrentHashMap<Class<?>, MethodInvoker>();
+
+	private final ConcurrentMap<Method, MethodInvoker> invokersByMethod = new ConcurrentHashMap<Method, MethodInvoker>();
+	
 	public MethodInvocationAction(
 			String method,
 			Class<?>[] parameters,
@@ -65,50 +66,56 @@ public class MethodInvocationAction implements Action<Object> {
 		this.controller = controller;
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Construct the MethodInvocationAction with an already resolved method.  A direct invoker
+	 * is generated for the method up front, rather than on the first invocation
+	 *
+	 * @param method The Action method
+	 * @param fsm The FSM
+	 * @param controller The Stateful Controller
+	 */
+	public MethodInvocationAction(
+			Method method,
+			FSM<Object> fsm,
+			Object controller) {
+		this(method.getName(), method.getParameterTypes(), fsm, controller);
+		this.resolved = new ResolvedMethod(method.getDeclaringClass(), MethodInvokerFactory.create(method));
+	}
+
 	public void execute(Object stateful, String event, Object... parms) throws RetryException {
 		try {
 			
-			// Parse out incoming parms to pass into the method
+			// Fetch the EventInvocation - it holds the incoming parms and will hold our Return Value.
+			// If we were invoked outside of the Framework, treat all the parms as arguments
 			//
-			List<Object> parmList = new ArrayList<Object>(Arrays.asList(parms));
-
-			// Remove the first Object in the parm list - it's our Return Value
-			//
-			MutableObject<Object> returnValue = (MutableObject<Object>)parmList.remove(0);
+			EventInvocation<Object> invocation = EventInvocation.from(parms);
+			if (invocation == null) {
+				invocation = new EventInvocation<Object>().reset(null, parms, 0);
+				parms = invocation.getParms();
+			}
 
-			// If there is a retry parameter object, pop it off 
-			//
-			popOffRetryParms(parmList);
-			
 			// Now build the list of parameters to pass into the method
 			//
-			List<Object> invokeParmList = buildInvokeParameters(stateful, event, parmList);
-			
-			if (invokeParmList.size() < this.parameters.length) {
-				throw new RuntimeException(
-						"Incoming parameter list is incorrect, expected " 
-						+ this.parameters.length 
-						+ " parameters, but have " 
-						+ invokeParmList.size());
-			}
+			Object[] invokeParms = buildInvokeParameters(stateful, event, invocation);
 			
 			// Call the method on the Controller
 			//
-			Object retVal = invoke(stateful, event, invokeParmList);
+			Object retVal;
+			Object recording = FlightRecorder.beginAction();
+			try {
+				retVal = invoke(stateful, event, invokeParms);
+			} finally {
+				invocation.releaseInvokeBuffer(invokeParms);
+				FlightRecorder.endAction(recording, this.method, stateful, event);
+			}
 			
 			// If the return value is a String prefixed with "event:", then it's an event 
 			// so forward the event to the FSM.  Else, return the value as-is
 			//
-			if (retVal instanceof String) {
-				Pair<String, String> pair = this.parseResponse((String)retVal);
-				if ("event".equals(pair.getLeft())) {
-					this.fsm.onEvent(stateful, pair.getRight(), parms);
-				} else {
-					returnValue.setValue(retVal);
-				}
+			if (retVal instanceof String && ((String)retVal).startsWith(EVENT_PREFIX)) {
+				this.fsm.onEvent(stateful, ((String)retVal).substring(EVENT_PREFIX.length()), parms);
 			} else {
-				returnValue.setValue(retVal);
+				invocation.setReturnValue(retVal);
 			}
 		} catch (NoSuchMethodException e) {
 			throw new RuntimeException(e);
@@ -125,6 +132,10 @@ public class MethodInvocationAction implements Action<Object> {
 			if (e.getCause() instanceof RetryException) {
 				throw (RetryException)e.getCause();
 			}
+
+			// Don't swallow a checked exception thrown by the Action, fail the event with it
+			//
+			throw new RuntimeException(e.getCause());
 		} catch (TooBusyException e) {
 			throw new RuntimeException(e);
 		}
@@ -135,47 +146,109 @@ public class MethodInvocationAction implements Action<Object> {
 		return this.method;
 	}
 	
-	protected Object invoke(Object stateful, String event, List<Object> invokeParmList) throws RetryException, SecurityException, IllegalArgumentException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
-		return invoke(this.controller, invokeParmList);
+	protected Object invoke(Object stateful, String event, Object[] invokeParms) throws RetryException, SecurityException, IllegalArgumentException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+		return invoke(this.controller, invokeParms);
 	}
 	
-	protected Object invoke(Object context, List<Object> invokeParmList) throws SecurityException, NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = ReflectionUtils.findMethod(context.getClass(), this.method, this.parameters);
-		if (method == null) {
-			throw new NoSuchMethodException(this.method);
+	protected Object invoke(Object context, Object[] invokeParms) throws SecurityException, NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		MethodInvoker invoker = getInvoker(context);
+		try {
+			return invoker.invoke(context, invokeParms);
+		} catch (Exception e) {
+			throw new InvocationTargetException(e);
 		}
-		Object[] methodParms = invokeParmList.subList(0, this.parameters.length).toArray();
-		method.setAccessible(true);
-		return method.invoke(context, methodParms);
 	}
 	
-	protected List<Object> buildInvokeParameters(Object stateful, String event, List<Object> parmList) {
+	/**
+	 * Build the parameters to pass into the method: the Entity, the Event and the arguments.  The
+	 * parameters are held in the invocation's buffer for the arity of the method, so they must be 
+	 * released once the method returns
+	 * 
+	 * @param stateful The Stateful Entity
+	 * @param event The Event
+	 * @param invocation The EventInvocation holding the arguments
+	 * @return The parameters
+	 */
+	protected Object[] buildInvokeParameters(Object stateful, String event, EventInvocation<?> invocation) {
 
 		// Add the Entity and Event to the parm list to pass to the Controller
 		// TODO : Inspect method signature - make entity and event optional
 		//
-		ArrayList<Object> invokeParmList = new ArrayList<Object>(parmList.size() + 2);
-		invokeParmList.add(stateful);
-		invokeParmList.add(event);
-		invokeParmList.addAll(parmList);
-		
-		return invokeParmList;
+		Object[] invokeParms = allocateInvokeParameters(2, invocation);
+		invokeParms[0] = stateful;
+		invokeParms[1] = event;
+		invocation.copyArgs(invokeParms, 2, invokeParms.length - 2);
+		return invokeParms;
+	}
+	
+	/**
+	 * Obtain the array of parameters to pass into the method, ensuring that there are 
+	 * enough incoming arguments to satisfy the method
+	 *  
+	 * @param prefix Number of parameters which precede the arguments
+	 * @param invocation The EventInvocation holding the arguments
+	 * @return Array sized to the method's arity
+	 */
+	protected Object[] allocateInvokeParameters(int prefix, EventInvocation<?> invocation) {
+		if (prefix + invocation.getArgCount() < this.parameters.length) {
+			throw new RuntimeException(
+					"Incoming parameter list is incorrect, expected " 
+					+ this.parameters.length 
+					+ " parameters, but have " 
+					+ (prefix + invocation.getArgCount()));
+		}
+		return invocation.getInvokeBuffer(this.parameters.length);
 	}
 	
-	private Pair<String, String> parseResponse(String response) {
-		Matcher matcher = this.protocol.matcher(response);
-		if (!matcher.matches()) {
-			throw new RuntimeException("Unable to parse response=" + response);
+	/**
+	 * Resolve the MethodInvoker for the target.  If the Action was constructed with a Method, it
+	 * was resolved at construction; otherwise, it's resolved against the class of the target.  Invokers
+	 * are cached by the class of the target and by the resolved method, so each method is only generated once
+	 * 
+	 * @param context The target
+	 * @return The MethodInvoker
+	 * @throws NoSuchMethodException
+	 */
+	MethodInvoker getInvoker(Object context) throws NoSuchMethodException {
+		ResolvedMethod resolved = this.resolved;
+		if (resolved != null && resolved.clazz.isInstance(context)) {
+			return resolved.invoker;
+		}
+		Class<?> clazz = context.getClass();
+		MethodInvoker invoker = this.invokersByClass.get(clazz);
+		if (invoker == null) {
+			Method method = ReflectionUtils.findMethod(clazz, this.method, this.parameters);
+			if (method == null) {
+				throw new NoSuchMethodException(this.method);
+			}
+			invoker = this.invokersByMethod.get(method);
+			if (invoker == null) {
+				invoker = MethodInvokerFactory.create(method);
+				MethodInvoker existing = this.invokersByMethod.putIfAbsent(method, invoker);
+				if (existing != null) {
+					invoker = existing;
+				}
+			}
+			this.invokersByClass.putIfAbsent(clazz, invoker);
+			if (resolved == null) {
+				this.resolved = new ResolvedMethod(method.getDeclaringClass(), invoker);
+			}
 		}
-		return new ImmutablePair<String, String>(matcher.group(2), matcher.group(3));
+		return invoker;
 	}
 
 	/**
-	 * @param parmList
+	 * Pairs the MethodInvoker with the class that declares the method
 	 */
-	private void popOffRetryParms(List<Object> parmList) {
-		if (parmList.size() > 0 && (parmList.get(0) instanceof ContextWrapper<?>)) {
-			parmList.remove(0);			
+	private static class ResolvedMethod {
+		
+		final Class<?> clazz;
+		
+		final MethodInvoker invoker;
+		
+		ResolvedMethod(Class<?> clazz, MethodInvoker invoker) {
+			this.clazz = clazz;
+			this.invoker = invoker;
 		}
 	}
 
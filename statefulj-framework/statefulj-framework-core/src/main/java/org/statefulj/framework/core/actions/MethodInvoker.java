@@ -0,0 +1,38 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.core.actions;
+
+/**
+ * Invokes a resolved Action method on a target.  Implementations are generated by the
+ * {@link MethodInvokerFactory} so that the call is a direct call rather than a reflective one
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface MethodInvoker {
+
+	/**
+	 * Invoke the method
+	 *
+	 * @param target The object to invoke the method on
+	 * @param parms The parameters of the method, primitives are boxed
+	 * @return The return value of the method, boxed if a primitive.  Null if the method is void
+	 * @throws Exception Any exception thrown by the method, unwrapped
+	 */
+	Object invoke(Object target, Object[] parms) throws Exception;
+}
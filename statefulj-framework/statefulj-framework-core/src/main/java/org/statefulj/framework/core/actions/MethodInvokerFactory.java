@@ -0,0 +1,215 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.core.actions;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds a {@link MethodInvoker} for an Action method.  For each method, a class which
+ * calls the method directly is generated with Javassist and defined in the ClassLoader of the
+ * method's class.  On Java 9+, the class is defined through a private Lookup on the method's
+ * class, as ClassLoader.defineClass is no longer accessible; otherwise through the ClassLoader.
+ * If the method can't be called directly (e.g. it's private) or the class can't be generated,
+ * the MethodInvoker falls back to reflection
+ *
+ * @author Andrew Hall
+ *
+ */
+public class MethodInvokerFactory {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodInvokerFactory.class);
+
+	private static final String INVOKER_SUFFIX = "$$StatefulJInvoker$$";
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	private static final AtomicBoolean fallbackLogged = new AtomicBoolean();
+
+	/**
+	 * MethodHandles.privateLookupIn and Lookup.defineClass, only available from Java 9
+	 */
+	private static final Method privateLookupIn;
+
+	private static final Method defineClass;
+
+	static {
+		Method lookupIn = null;
+		Method define = null;
+		try {
+			lookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+			define = MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+		} catch (NoSuchMethodException e) {
+			lookupIn = null;
+			define = null;
+		}
+		privateLookupIn = lookupIn;
+		defineClass = define;
+	}
+
+	public static MethodInvoker create(Method method) {
+		MethodInvoker invoker = null;
+		if (isDirectlyInvokable(method)) {
+			try {
+				invoker = generate(method);
+			} catch (Throwable t) {
+
+				// Log the first fallback loudly, as it's likely every invoker will fall back
+				//
+				if (fallbackLogged.compareAndSet(false, true)) {
+					logger.warn("Unable to generate an invoker for {}, falling back to reflection", method, t);
+				} else {
+					logger.debug("Unable to generate an invoker for {}, falling back to reflection", method, t);
+				}
+			}
+		}
+		return (invoker != null) ? invoker : new ReflectiveMethodInvoker(method);
+	}
+
+	private static boolean isDirectlyInvokable(Method method) {
+		Class<?> clazz = method.getDeclaringClass();
+		return
+				!Modifier.isPrivate(method.getModifiers()) &&
+				!Modifier.isPrivate(clazz.getModifiers()) &&
+				!clazz.isInterface() &&
+				!clazz.isAnonymousClass() &&
+				!clazz.isLocalClass() &&
+				clazz.getClassLoader() != null;
+	}
+
+	private static MethodInvoker generate(Method method) throws Exception {
+		Class<?> clazz = method.getDeclaringClass();
+
+		// Define the invoker in the package of the target so that it may call
+		// package visible methods
+		//
+		ClassPool cp = new ClassPool(true);
+		cp.appendClassPath(new LoaderClassPath(clazz.getClassLoader()));
+		cp.appendClassPath(new ClassClassPath(MethodInvoker.class));
+
+		String invokerName = clazz.getName() + INVOKER_SUFFIX + counter.incrementAndGet();
+		CtClass invokerClass = cp.makeClass(invokerName);
+		invokerClass.addInterface(cp.get(MethodInvoker.class.getName()));
+
+		CtMethod invoke = CtNewMethod.make(buildInvokeMethod(method), invokerClass);
+		invokerClass.addMethod(invoke);
+
+		Class<?> generated = define(invokerClass, clazz);
+		invokerClass.detach();
+		return (MethodInvoker)generated.getDeclaredConstructor().newInstance();
+	}
+
+	/**
+	 * Define the generated class alongside its neighbor
+	 */
+	private static Class<?> define(CtClass invokerClass, Class<?> neighbor) throws Exception {
+		if (defineClass != null) {
+			Object lookup = privateLookupIn.invoke(null, neighbor, MethodHandles.lookup());
+			return (Class<?>)defineClass.invoke(lookup, (Object)invokerClass.toBytecode());
+		}
+		return invokerClass.toClass(neighbor.getClassLoader(), neighbor.getProtectionDomain());
+	}
+
+	/**
+	 * public Object invoke(Object target, Object[] parms) throws Exception {
+	 *     return ($w)((Target)target).method((P0)parms[0], ...);
+	 * }
+	 */
+	private static String buildInvokeMethod(Method method) {
+		StringBuilder call = new StringBuilder();
+		call.append("((").append(typeName(method.getDeclaringClass())).append(")$1).");
+		call.append(method.getName()).append("(");
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for(int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0) {
+				call.append(", ");
+			}
+			call.append(unbox(parameterTypes[i], "$2[" + i + "]"));
+		}
+		call.append(")");
+
+		StringBuilder body = new StringBuilder();
+		body.append("public Object invoke(Object target, Object[] parms) throws Exception {");
+		if (method.getReturnType() == void.class) {
+			body.append(call).append("; return null;");
+		} else {
+			body.append("return ($w)").append(call).append(";");
+		}
+		body.append("}");
+		return body.toString();
+	}
+
+	private static String unbox(Class<?> type, String value) {
+		if (!type.isPrimitive()) {
+			return "(" + typeName(type) + ")" + value;
+		}
+		if (type == boolean.class) {
+			return "((Boolean)" + value + ").booleanValue()";
+		}
+		if (type == char.class) {
+			return "((Character)" + value + ").charValue()";
+		}
+		return "((Number)" + value + ")." + type.getName() + "Value()";
+	}
+
+	private static String typeName(Class<?> type) {
+		return (type.isArray()) ? typeName(type.getComponentType()) + "[]" : type.getName();
+	}
+
+	/**
+	 * Fallback for methods which can't be called directly
+	 */
+	private static class ReflectiveMethodInvoker implements MethodInvoker {
+
+		private final Method method;
+
+		ReflectiveMethodInvoker(Method method) {
+			this.method = method;
+			this.method.setAccessible(true);
+		}
+
+		@Override
+		public Object invoke(Object target, Object[] parms) throws Exception {
+			try {
+				return this.method.invoke(target, parms);
+			} catch (InvocationTargetException e) {
+				if (e.getCause() instanceof Exception) {
+					throw (Exception)e.getCause();
+				}
+				if (e.getCause() instanceof Error) {
+					throw (Error)e.getCause();
+				}
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.framework.core.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A StateCode maps a State to a stable integer code.  Persisters which support codes, such as
+ * the JPA Persister with an Integer or Short State field, store the code in place of the name of
+ * the State.  Declare the codes within the {@link org.statefulj.framework.core.annotations.StatefulController#stateCodes()}
+ * field
+ * 
+ * @author Andrew Hall
+ *
+ */
+@Target({})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface StateCode {
+
+	/**
+	 * The name of the State
+	 * 
+	 * @return the State
+	 */
+	String state();
+
+	/**
+	 * The code of the State.  A code must never be reassigned to another State
+	 * 
+	 * @return the code
+	 */
+	int code();
+}
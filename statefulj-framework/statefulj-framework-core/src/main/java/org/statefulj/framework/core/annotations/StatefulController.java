@@ -24,6 +24,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import org.springframework.stereotype.Component;
+import org.statefulj.fsm.LockMode;
 
 
 /**
@@ -108,6 +109,15 @@ public @interface StatefulController {
 	 */
 	String[] blockingStates() default {};
 
+	/**
+	 * The stable code of each State, see {@link org.statefulj.framework.core.annotations.StateCode}.  The
+	 * codes are merged with any codes the Persister already has.  Requires a Persister implementing
+	 * {@link org.statefulj.fsm.VersionedPersister}
+	 * 
+	 * @return Array of State codes
+	 */
+	StateCode[] stateCodes() default {};
+
 	/**
 	 * A set of NOOP {@link org.statefulj.framework.core.annotations.Transition}
 	 * 
@@ -130,4 +140,90 @@ public @interface StatefulController {
 	 */
 	int retryInterval() default 250;
 	
+	/**
+	 * The bean Id of the RetryPolicy for this Entity.
+	 * The RetryPolicy must implement the {@link org.statefulj.fsm.RetryPolicy} Interface and supersedes
+	 * retryAttempts.  To share a retry budget across controllers, reference
+	 * {@link org.statefulj.fsm.retry.BudgetedRetryPolicy} beans wrapping the same
+	 * {@link org.statefulj.fsm.retry.RetryBudget}.  If not specified, retryAttempts and retryInterval are used.
+	 * 
+	 * @return Id of the RetryPolicy Bean
+	 */
+	String retryPolicyId() default "";
+
+	/**
+	 * How concurrent events on the same Entity are serialized.  With {@link org.statefulj.fsm.LockMode#OPTIMISTIC}
+	 * a conflicting event is retried after the retryInterval.  The pessimistic modes lock the Entity
+	 * within the Transaction of the FSMHarness before the Transition is evaluated, so events on a
+	 * heavily contended Entity queue on the lock rather than retrying.  A retry, e.g. after a
+	 * {@link org.statefulj.fsm.LockMode#PESSIMISTIC_NOWAIT} lock failed, is made within a new Transaction;
+	 * an event which joins a Transaction that is already active isn't retried and fails with a
+	 * TooBusyException.  The pessimistic modes require a Persister implementing
+	 * {@link org.statefulj.fsm.LockingPersister}, such as the JPA Persister
+	 *
+	 * @return the LockMode
+	 */
+	LockMode lockMode() default LockMode.OPTIMISTIC;
+
+	/**
+	 * The bean Id of the FSMListener for this Entity.
+	 * The FSMListener must implement the {@link org.statefulj.fsm.FSMListener} Interface, e.g.
+	 * {@link org.statefulj.fsm.metrics.MetricsFSMListener}.  If not specified, no listener is notified.
+	 * 
+	 * @return Id of the FSMListener Bean
+	 */
+	String listenerId() default "";
+
+	/**
+	 * The bean Id of the Tracer for this Entity.
+	 * The Tracer must implement the {@link org.statefulj.framework.core.tracing.Tracer} Interface and is
+	 * injected into the FSM and the FSMHarness, which trace each event as a Span with a child Span for
+	 * each phase.  If not specified, events aren't traced.
+	 * 
+	 * @return Id of the Tracer Bean
+	 */
+	String tracerId() default "";
+
+	/**
+	 * Whether to register the FSM with the platform MBeanServer as an
+	 * {@link org.statefulj.fsm.management.FSMControlMBean}, named
+	 * <code>org.statefulj:type=FSM,name=&lt;FSM bean Id&gt;</code>.  The MBean exposes the event
+	 * counters and allows the retryAttempts and retryInterval to be changed at runtime, unless a
+	 * retryPolicyId is specified
+	 *
+	 * @return false to not register the MBean
+	 */
+	boolean jmx() default true;
+	
+	/**
+	 * The number of mailboxes events from the Binders are dispatched onto.  Events are routed to
+	 * a mailbox by the id of the Stateful Entity, so events for the same Entity are processed in order,
+	 * one at a time, rather than racing each other into retries, while events for different Entities are
+	 * processed in parallel.  Events are processed on the mailbox thread and not on the caller's thread,
+	 * within the Transaction of the FSMHarness.  If 0, events are processed on the caller's thread
+	 * 
+	 * @return number of mailboxes
+	 */
+	int mailboxes() default 0;
+
+	/**
+	 * The maximum number of events coalesced into a single Transaction.  Events arriving within the
+	 * groupCommitWindow are processed one after the other within one Transaction, trading a little
+	 * latency per event for fewer commits.  Should an event fail, the remaining events of the group are
+	 * processed within their own Transaction, so the Actions of events which preceded the failure are
+	 * executed again and must be safe to repeat.  If less than 2, each event commits its own Transaction.
+	 * Group commit is only supported by the JPA persistence, specifying a groupCommitSize for any other
+	 * persistence fails the registration of the StatefulController
+	 *
+	 * @return maximum number of events per Transaction
+	 */
+	int groupCommitSize() default 0;
+
+	/**
+	 * How long, in milliseconds, to wait for further events to join a group commit
+	 *
+	 * @return group commit window in milliseconds
+	 */
+	int groupCommitWindow() default 5;
+	
 }
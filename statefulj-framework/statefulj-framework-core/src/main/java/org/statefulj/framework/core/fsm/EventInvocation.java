@@ -0,0 +1,208 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.core.fsm;
+
+/**
+ * Carries a single event through the Framework: the Context of the originating request, the
+ * arguments destined for the Action method and the value returned by the Action method.
+ *
+ * The EventInvocation travels through the {@link org.statefulj.fsm.FSM} as the sole
+ * element of the <code>Object...</code> parameters, see {@link #getParms()}.  The arguments are
+ * referenced in place, they are never copied.  Instances are reused per thread, see
+ * {@link #acquire(Object, Object[], int)}, so that a steady state event doesn't allocate.
+ *
+ * @author Andrew Hall
+ *
+ * @param <CT> The Context Type
+ */
+public class EventInvocation<CT> {
+
+	private static final Object[] EMPTY = new Object[0];
+
+	private static final int MAX_CACHED_ARITY = 16;
+
+	private static final ThreadLocal<EventInvocation<?>> cache = new ThreadLocal<EventInvocation<?>>() {
+
+		@Override
+		protected EventInvocation<?> initialValue() {
+			return new EventInvocation<Object>(true);
+		}
+	};
+
+	private final Object[] parms = new Object[] { this };
+
+	private final boolean pooled;
+
+	private boolean inUse = false;
+
+	private CT context;
+
+	private Object returnValue;
+
+	private Object[] args = EMPTY;
+
+	private int offset = 0;
+
+	private Object[][] invokeBuffers;
+
+	/**
+	 * Obtain an EventInvocation for the current thread.  If the thread's EventInvocation is
+	 * already in use - an Action firing an event from within an event - a new instance is returned.
+	 * Every acquired EventInvocation must be {@link #release() released}.
+	 *
+	 * @param context The Context of the originating request, may be null
+	 * @param args The arguments, referenced in place
+	 * @param offset Index of the first argument within args
+	 * @return The EventInvocation
+	 */
+	@SuppressWarnings("unchecked")
+	public static <CT> EventInvocation<CT> acquire(CT context, Object[] args, int offset) {
+		EventInvocation<CT> invocation = (EventInvocation<CT>)cache.get();
+		if (invocation.inUse) {
+			invocation = new EventInvocation<CT>(false);
+		}
+		invocation.inUse = true;
+		return invocation.reset(context, args, offset);
+	}
+
+	/**
+	 * Return the EventInvocation passed as the parameters of an Action, if any
+	 *
+	 * @param parms The parameters passed to the Action
+	 * @return The EventInvocation or null
+	 */
+	@SuppressWarnings("unchecked")
+	public static <CT> EventInvocation<CT> from(Object... parms) {
+		return (parms.length > 0 && parms[0] instanceof EventInvocation<?>)
+				? (EventInvocation<CT>)parms[0]
+				: null;
+	}
+
+	/**
+	 * Create an EventInvocation which isn't bound to a thread, e.g. for an event that completes
+	 * on another thread
+	 */
+	public EventInvocation() {
+		this(false);
+	}
+
+	private EventInvocation(boolean pooled) {
+		this.pooled = pooled;
+	}
+
+	/**
+	 * Reinitialize the EventInvocation
+	 *
+	 * @param context The Context of the originating request, may be null
+	 * @param args The arguments, referenced in place
+	 * @param offset Index of the first argument within args
+	 * @return this
+	 */
+	public EventInvocation<CT> reset(CT context, Object[] args, int offset) {
+		this.context = context;
+		this.args = (args != null) ? args : EMPTY;
+		this.offset = (offset < this.args.length) ? offset : this.args.length;
+		this.returnValue = null;
+		return this;
+	}
+
+	/**
+	 * Clear all references and hand the EventInvocation back to the thread
+	 */
+	public void release() {
+		this.context = null;
+		this.args = EMPTY;
+		this.offset = 0;
+		this.returnValue = null;
+		if (this.pooled) {
+			this.inUse = false;
+		}
+	}
+
+	/**
+	 * @return The parameters to pass into the FSM - a single element array holding this EventInvocation
+	 */
+	public Object[] getParms() {
+		return this.parms;
+	}
+
+	public CT getContext() {
+		return this.context;
+	}
+
+	public Object getReturnValue() {
+		return this.returnValue;
+	}
+
+	public void setReturnValue(Object returnValue) {
+		this.returnValue = returnValue;
+	}
+
+	public int getArgCount() {
+		return this.args.length - this.offset;
+	}
+
+	public Object getArg(int index) {
+		return this.args[this.offset + index];
+	}
+
+	/**
+	 * Copy the arguments into the destination array
+	 *
+	 * @param dest The destination array
+	 * @param destPos Starting position within the destination array
+	 * @param length Number of arguments to copy
+	 */
+	public void copyArgs(Object[] dest, int destPos, int length) {
+		System.arraycopy(this.args, this.offset, dest, destPos, length);
+	}
+
+	/**
+	 * Return an array to hold the parameters of a method invocation.  The array is reused
+	 * for each invocation of the same arity, so it must be cleared with
+	 * {@link #releaseInvokeBuffer(Object[])} once the method returns
+	 *
+	 * @param length The arity of the method
+	 * @return An array of the specified length
+	 */
+	public Object[] getInvokeBuffer(int length) {
+		if (length >= MAX_CACHED_ARITY) {
+			return new Object[length];
+		}
+		if (this.invokeBuffers == null) {
+			this.invokeBuffers = new Object[MAX_CACHED_ARITY][];
+		}
+		Object[] buffer = this.invokeBuffers[length];
+		if (buffer == null) {
+			buffer = new Object[length];
+			this.invokeBuffers[length] = buffer;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Null out the invocation parameters so that we don't hold onto the caller's objects
+	 *
+	 * @param buffer The array returned by {@link #getInvokeBuffer(int)}
+	 */
+	public void releaseInvokeBuffer(Object[] buffer) {
+		for(int i = 0; i < buffer.length; i++) {
+			buffer[i] = null;
+		}
+	}
+}
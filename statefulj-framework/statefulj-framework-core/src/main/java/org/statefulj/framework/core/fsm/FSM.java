@@ -18,17 +18,26 @@
 package org.statefulj.framework.core.fsm;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
-import org.statefulj.common.utils.ReflectionUtils;
+import org.statefulj.common.utils.ReflectionMetadata;
+import org.statefulj.common.utils.ReflectionMetadata.FieldReference;
 import org.statefulj.framework.core.model.Finder;
+import org.statefulj.framework.core.tracing.NoopTracer;
+import org.statefulj.framework.core.tracing.Span;
+import org.statefulj.framework.core.tracing.Tracer;
+import org.statefulj.framework.core.tracing.Tracing;
+import org.statefulj.fsm.EventOutcome;
 import org.statefulj.fsm.Persister;
 import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.StaleStateException;
 import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.model.Action;
 import org.statefulj.fsm.model.State;
 import org.statefulj.fsm.model.StateActionPair;
 import org.statefulj.fsm.model.Transition;
@@ -54,6 +63,8 @@ public class FSM<T, CT> extends org.statefulj.fsm.FSM<T> {
 
 	private ApplicationContext appContext;
 
+	private Tracer tracer = NoopTracer.INSTANCE;
+
 	public FSM(
 			String name,
 			Persister<T> persister,
@@ -88,22 +99,59 @@ public class FSM<T, CT> extends org.statefulj.fsm.FSM<T> {
 	}
 
 	@Override
-	protected State<T> transition(T stateful, State<T> current, String event, Transition<T> t, Object... args) throws RetryException {
+	public CompletableFuture<State<T>> onEventAsync(T stateful, String event, Object... parms) {
+		autowire(stateful);
+		return super.onEventAsync(stateful, event, parms);
+	}
 
-		TransitionImpl<T> transition = (TransitionImpl<T>)t;
-		StateActionPair<T> pair = transition.getStateActionPair(stateful, event, args);
+	@Override
+	public State<T> onEventAttempt(T stateful, String event, Object... parms) throws RetryException {
+		autowire(stateful);
+		return super.onEventAttempt(stateful, event, parms);
+	}
+
+	@Override
+	public List<EventOutcome> onEvents(List<T> statefuls, String event, Object... parms) {
+		for(T stateful : statefuls) {
+			autowire(stateful);
+		}
+		return super.onEvents(statefuls, event, parms);
+	}
+
+	public Tracer getTracer() {
+		return tracer;
+	}
+
+	/**
+	 * @param tracer Traces the phases of a Transition, or null to stop tracing
+	 */
+	public void setTracer(Tracer tracer) {
+		this.tracer = (tracer != null) ? tracer : NoopTracer.INSTANCE;
+	}
+
+	@Override
+	protected boolean isStateChange(Transition<T> transition, StateActionPair<T> pair) {
 
 		// If this transition is applicable to every state and doesn't cause a State change, don't bother
 		// with setting the current state
 		//
-		if (!transition.isAny()) {
-			setCurrent(stateful, current, pair.getState());
-		}
+		return !((TransitionImpl<T>)transition).isAny();
+	}
+
+	@Override
+	protected State<T> completeTransition(T stateful, State<T> current, String event, Transition<T> t, StateActionPair<T> pair, Object... args) throws RetryException {
+
+		TransitionImpl<T> transition = (TransitionImpl<T>)t;
 
 		// Reloading MUST happen after we successful set the current state
 		//
 		if (transition.isReload()) {
-			stateful = reload(stateful, event, args);
+			Span span = this.tracer.startSpan(Tracing.RELOAD);
+			try {
+				stateful = reload(stateful, event, args);
+			} finally {
+				span.end();
+			}
 			autowire(stateful);
 		}
 
@@ -118,15 +166,76 @@ public class FSM<T, CT> extends org.statefulj.fsm.FSM<T> {
 		return pair.getState();
 	}
 
+	@Override
+	protected void setCurrent(T stateful, State<T> current, State<T> next) throws StaleStateException {
+		Span span = this.tracer
+				.startSpan(Tracing.PERSIST)
+				.setAttribute("statefulj.from", current.getName())
+				.setAttribute("statefulj.to", next.getName());
+		try {
+			super.setCurrent(stateful, current, next);
+		} catch(StaleStateException e) {
+			span.recordException(e);
+			throw e;
+		} finally {
+			span.end();
+		}
+	}
+
+	@Override
+	protected boolean[] setCurrent(List<T> statefuls, State<T> current, State<T> next) {
+		Span span = this.tracer
+				.startSpan(Tracing.PERSIST)
+				.setAttribute("statefulj.from", current.getName())
+				.setAttribute("statefulj.to", next.getName())
+				.setAttribute("statefulj.count", statefuls.size());
+		try {
+			return super.setCurrent(statefuls, current, next);
+		} finally {
+			span.end();
+		}
+	}
+
+	@Override
+	protected void executeAction(
+			Action<T> action,
+			T stateful,
+			String event,
+			String from,
+			String to,
+			Object... args) throws RetryException {
+		if (action == null) {
+			super.executeAction(action, stateful, event, from, to, args);
+			return;
+		}
+		Span span = this.tracer.startSpan(Tracing.ACTION);
+		try {
+			super.executeAction(action, stateful, event, from, to, args);
+		} catch(RetryException e) {
+			span.recordException(e);
+			throw e;
+		} catch(RuntimeException e) {
+			span.recordException(e);
+			throw e;
+		} finally {
+			span.end();
+		}
+	}
+
 
 	private void autowire(T stateful) {
 		// Autowire instantiated object
 		// TODO: Make this configurable - if using @Configurable - then this isn't necessary
 		//
-		this.appContext.getAutowireCapableBeanFactory().autowireBeanProperties(
-				stateful,
-			    AutowireCapableBeanFactory.AUTOWIRE_NO,
-			    false);
+		Span span = this.tracer.startSpan(Tracing.AUTOWIRE);
+		try {
+			this.appContext.getAutowireCapableBeanFactory().autowireBeanProperties(
+					stateful,
+				    AutowireCapableBeanFactory.AUTOWIRE_NO,
+				    false);
+		} finally {
+			span.end();
+		}
 	}
 
 	private T reload(T stateful, String event, Object... args) {
@@ -181,9 +290,8 @@ public class FSM<T, CT> extends org.statefulj.fsm.FSM<T> {
 	@SuppressWarnings("unchecked")
 	private CT getContext(Object... args) {
 		CT context = null;
-		if (args.length > 0 && (args[0] instanceof ContextWrapper<?>)) {
-			ContextWrapper<CT> retryParms = (ContextWrapper<CT>)args[0];
-			context = retryParms.getContext();
+		if (args.length > 0 && args[0] instanceof EventInvocation<?>) {
+			context = ((EventInvocation<CT>)args[0]).getContext();
 		}
 		return context;
 	}
@@ -195,16 +303,9 @@ public class FSM<T, CT> extends org.statefulj.fsm.FSM<T> {
 	private Object getId(T stateful) {
 		Object id = null;
 		if (this.idType != null) {
-			Field idField = ReflectionUtils.getReferencedField(stateful.getClass(), this.idType);
-			if (idField != null) {
-				idField.setAccessible(true);
-				try {
-					id = idField.get(stateful);
-				} catch (IllegalArgumentException e) {
-					logger.warn("Unable to locate id field for " + stateful);
-				} catch (IllegalAccessException e) {
-					logger.warn("Unable to locate id field for " + stateful);
-				}
+			FieldReference idField = ReflectionMetadata.forClass(stateful.getClass()).getReferencedField(this.idType);
+			if (idField.isFound()) {
+				id = idField.getValue(stateful);
 			}
 		}
 		return id;
@@ -0,0 +1,186 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.core.fsm;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+
+import org.statefulj.fsm.TooBusyException;
+
+/**
+ * A striped set of single threaded mailboxes.  Work is routed to a mailbox by the id of the Stateful
+ * Entity, so work for an Entity runs in order, one at a time, while work for different Entities runs in
+ * parallel across the mailboxes.  Ids are routed by their String value so that an id parsed from a
+ * request and the Entity's own id land in the same mailbox
+ *
+ * @author Andrew Hall
+ *
+ */
+public class MailboxExecutor {
+
+	private final String name;
+
+	private final ExecutorService[] mailboxes;
+
+	/**
+	 * @param name Name of the mailboxes, used to name the threads
+	 * @param size Number of mailboxes
+	 */
+	public MailboxExecutor(final String name, int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("There must be at least one mailbox");
+		}
+		this.name = name;
+		this.mailboxes = new ExecutorService[size];
+		for(int i = 0; i < size; i++) {
+			final String threadName = name + "-mailbox-" + i;
+			this.mailboxes[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new MailboxThread(MailboxExecutor.this, runnable, threadName);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Queue the work onto the id's mailbox.  The work returns a future of its own, e.g. to
+	 * complete retries off the mailbox; the returned future completes with it
+	 *
+	 * @param id The id of the Stateful Entity
+	 * @param work The work
+	 * @return A future of the work's result
+	 */
+	public <R> CompletableFuture<R> submit(Object id, final Callable<CompletableFuture<R>> work) {
+		final CompletableFuture<R> result = new CompletableFuture<R>();
+		try {
+			this.mailboxes[getMailbox(id)].execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						work.call().whenComplete(new BiConsumer<R, Throwable>() {
+
+							@Override
+							public void accept(R value, Throwable t) {
+								if (t != null) {
+									result.completeExceptionally(t);
+								} else {
+									result.complete(value);
+								}
+							}
+						});
+					} catch(Throwable t) {
+						result.completeExceptionally(t);
+					}
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Wait for the future, unwrapping the cause of its failure
+	 *
+	 * @param future The future
+	 * @return The result
+	 * @throws TooBusyException
+	 */
+	public <R> R await(CompletableFuture<R> future) throws TooBusyException {
+		try {
+			return future.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TooBusyException) {
+				throw (TooBusyException)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * @return Whether the current thread is one of these mailboxes.  Work on a mailbox must not wait on
+	 * another mailbox, it would deadlock should that mailbox wait on it
+	 */
+	public boolean isMailboxThread() {
+		Thread thread = Thread.currentThread();
+		return thread instanceof MailboxThread && ((MailboxThread)thread).owner == this;
+	}
+
+	/**
+	 * @param id The id of the Stateful Entity
+	 * @return The id's mailbox, work executed on it runs in order with the work submitted for the id
+	 */
+	public Executor getExecutor(Object id) {
+		return this.mailboxes[getMailbox(id)];
+	}
+
+	public int getMailbox(Object id) {
+		int hash = String.valueOf(id).hashCode();
+		hash ^= (hash >>> 16);
+		return (hash & 0x7fffffff) % this.mailboxes.length;
+	}
+
+	public int getSize() {
+		return this.mailboxes.length;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Stop accepting work, queued work is still run
+	 */
+	public void shutdown() {
+		for(ExecutorService mailbox : this.mailboxes) {
+			mailbox.shutdown();
+		}
+	}
+
+	private static class MailboxThread extends Thread {
+
+		private final MailboxExecutor owner;
+
+		MailboxThread(MailboxExecutor owner, Runnable runnable, String name) {
+			super(runnable, name);
+			this.owner = owner;
+		}
+	}
+}
@@ -17,6 +17,9 @@
  */
 package org.statefulj.framework.core.model;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import org.statefulj.fsm.TooBusyException;
 
 public interface FSMHarness {
@@ -25,4 +28,48 @@ public interface FSMHarness {
 
 	public Object onEvent(String event, Object[] parms) throws TooBusyException, InstantiationException;
 
+	/**
+	 * Unless overridden, the event is processed by {@link #onEvent(String, Object, Object[])} on the
+	 * calling thread
+	 */
+	public default CompletableFuture<Object> onEventAsync(String event, Object id, Object[] parms) {
+		CompletableFuture<Object> future = new CompletableFuture<Object>();
+		try {
+			future.complete(this.onEvent(event, id, parms));
+		} catch(Throwable t) {
+			future.completeExceptionally(t);
+		}
+		return future;
+	}
+
+	/**
+	 * Unless overridden, the event is processed by {@link #onEvent(String, Object[])} on the
+	 * calling thread
+	 */
+	public default CompletableFuture<Object> onEventAsync(String event, Object[] parms) {
+		CompletableFuture<Object> future = new CompletableFuture<Object>();
+		try {
+			future.complete(this.onEvent(event, parms));
+		} catch(Throwable t) {
+			future.completeExceptionally(t);
+		}
+		return future;
+	}
+
+	/**
+	 * Process the event without blocking the caller, running any retry of the event on the
+	 * retryExecutor.  Unless overridden, the retryExecutor is ignored
+	 */
+	public default CompletableFuture<Object> onEventAsync(String event, Object id, Object[] parms, Executor retryExecutor) {
+		return this.onEventAsync(event, id, parms);
+	}
+
+	/**
+	 * Process the event without blocking the caller, running any retry of the event on the
+	 * retryExecutor.  Unless overridden, the retryExecutor is ignored
+	 */
+	public default CompletableFuture<Object> onEventAsync(String event, Object[] parms, Executor retryExecutor) {
+		return this.onEventAsync(event, parms);
+	}
+
 }
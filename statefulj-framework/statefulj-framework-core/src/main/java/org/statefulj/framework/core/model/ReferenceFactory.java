@@ -27,6 +27,13 @@ public interface ReferenceFactory {
 	
 	String getFSMHarnessId(); 
 
+	/**
+	 * Unless overridden, the mailbox is named after the FSMHarness
+	 */
+	default String getMailboxId() {
+		return getFSMHarnessId() + ".mailbox";
+	}
+
 	String getPersisterId(); 
 
 	String getFactoryId();
@@ -17,7 +17,12 @@
  */
 package org.statefulj.framework.core.model;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import org.statefulj.framework.core.annotations.FSM;
+import org.statefulj.fsm.EventOutcome;
 import org.statefulj.fsm.TooBusyException;
 
 /**
@@ -56,4 +61,71 @@ public interface StatefulFSM<T> {
 	 */
 	Object onEvent(T stateful, String event, Object... parms)  throws TooBusyException ;
 
+	/**
+	 * Pass an event to the FSM for a non-existent Stateful Entity without blocking the caller
+	 * on retries.  Retries are scheduled instead of waited on
+	 *
+	 * @param event the Event
+	 * @param parms Optional parameters passed into the Action method
+	 * @return a future of the returned Object from the Action Method.  Completes exceptionally
+	 * with a TooBusyException if the FSM cannot process the event.  Unless overridden, the event
+	 * is processed by {@link #onEvent(String, Object...)} on the calling thread
+	 */
+	default CompletableFuture<Object> onEventAsync(String event, Object... parms) {
+		CompletableFuture<Object> future = new CompletableFuture<Object>();
+		try {
+			future.complete(this.onEvent(event, parms));
+		} catch(Throwable t) {
+			future.completeExceptionally(t);
+		}
+		return future;
+	}
+
+	/**
+	 * Pass an event to the FSM for existing Stateful Entity without blocking the caller
+	 * on retries.  Retries are scheduled instead of waited on
+	 *
+	 * @param stateful the Stateful Entity
+	 * @param event the Event
+	 * @param parms Optional parameters passed into the Action method
+	 * @return a future of the returned Object from the Action Method.  Completes exceptionally
+	 * with a TooBusyException if the FSM cannot process the event.  Unless overridden, the event
+	 * is processed by {@link #onEvent(Object, String, Object...)} on the calling thread
+	 */
+	default CompletableFuture<Object> onEventAsync(T stateful, String event, Object... parms) {
+		CompletableFuture<Object> future = new CompletableFuture<Object>();
+		try {
+			future.complete(this.onEvent(stateful, event, parms));
+		} catch(Throwable t) {
+			future.completeExceptionally(t);
+		}
+		return future;
+	}
+
+	/**
+	 * Pass the same event to the FSM for a batch of existing Stateful Entities.  The State changes
+	 * are persisted in bulk before the Action methods are invoked.  No retries are made
+	 *
+	 * @param statefuls the Stateful Entities
+	 * @param event the Event
+	 * @param parms Optional parameters passed into the Action method
+	 * @return the outcome for each Stateful Entity, in the order of the statefuls.  Unless overridden,
+	 * each Stateful Entity is passed to {@link #onEvent(Object, String, Object...)} in turn, and a NOOP
+	 * is reported as a SUCCESS
+	 */
+	default List<EventOutcome> onEvents(List<T> statefuls, String event, Object... parms) {
+		List<EventOutcome> outcomes = new ArrayList<EventOutcome>(statefuls.size());
+		for(T stateful : statefuls) {
+			try {
+				this.onEvent(stateful, event, parms);
+				outcomes.add(EventOutcome.SUCCESS);
+			} catch(TooBusyException e) {
+				outcomes.add(EventOutcome.STALE);
+			} catch(RuntimeException e) {
+				outcomes.add(EventOutcome.FAILED);
+			}
+		}
+		return outcomes;
+	}
+
 }
@@ -17,16 +17,22 @@
  */
 package org.statefulj.framework.core.model.impl;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.statefulj.framework.core.fsm.ContextWrapper;
+import org.statefulj.framework.core.fsm.EventInvocation;
 import org.statefulj.framework.core.model.FSMHarness;
 import org.statefulj.framework.core.model.Factory;
 import org.statefulj.framework.core.model.Finder;
 import org.statefulj.framework.core.model.StatefulFSM;
+import org.statefulj.framework.core.tracing.NoopTracer;
+import org.statefulj.framework.core.tracing.Span;
+import org.statefulj.framework.core.tracing.Tracer;
+import org.statefulj.framework.core.tracing.Tracing;
+import org.statefulj.fsm.RetryException;
 import org.statefulj.fsm.TooBusyException;
 
 public class FSMHarnessImpl<T, CT> implements FSMHarness {
@@ -40,6 +46,8 @@ public class FSMHarnessImpl<T, CT> implements FSMHarness {
 	private StatefulFSM<T> fsm;
 	
 	private Class<T> clazz;
+
+	private Tracer tracer = NoopTracer.INSTANCE;
 	
 	public FSMHarnessImpl(
 			StatefulFSM<T> fsm, 
@@ -53,20 +61,176 @@ public class FSMHarnessImpl<T, CT> implements FSMHarness {
 	}
 	
 	@Override
-	@SuppressWarnings({ "unchecked" })
 	public Object onEvent(String event, Object id, Object[] parms) throws TooBusyException {
-		
-		ArrayList<Object> parmList = new ArrayList<Object>(Arrays.asList(parms));
-		CT context = (parmList.size() > 0) ? (CT)parmList.remove(0) : null;
-		ContextWrapper<CT> retryParms = new ContextWrapper<CT>(context);
-		parmList.add(0, retryParms);
-		
+		return traceEvent(event, id, parms, 0);
+	}
+
+	@Override
+	public Object onEvent(String event, Object[] parms) throws TooBusyException {
+		return traceEvent(event, parms[0], parms, 1);
+	}
+
+	/**
+	 * Process the event within a {@link Tracing#EVENT} Span, the phases of the event are traced as
+	 * child Spans
+	 */
+	private Object traceEvent(String event, Object id, Object[] parms, int offset) throws TooBusyException {
+		Span span = startEventSpan(event, id);
+		try {
+			return onEvent(event, id, parms, offset);
+		} catch(TooBusyException e) {
+			span.recordException(e);
+			throw e;
+		} catch(RuntimeException e) {
+			span.recordException(e);
+			throw e;
+		} finally {
+			span.end();
+		}
+	}
+
+	private Span startEventSpan(String event, Object id) {
+		return this.tracer
+				.startSpan(Tracing.EVENT)
+				.setAttribute("statefulj.entity", this.clazz.getName())
+				.setAttribute("statefulj.event", event)
+				.setAttribute("statefulj.id", id);
+	}
+
+	/**
+	 * Process the event.  The parms are referenced in place: the element at offset is the Context
+	 * and the elements that follow are the arguments to the Action
+	 *
+	 * @param event The Event
+	 * @param id The id of the Stateful Entity, may be null
+	 * @param parms The incoming parameters
+	 * @param offset Index of the Context within the parms
+	 * @return The returned Object from the Action Method
+	 * @throws TooBusyException
+	 */
+	@SuppressWarnings({ "unchecked" })
+	protected Object onEvent(String event, Object id, Object[] parms, int offset) throws TooBusyException {
+
+		CT context = (parms.length > offset) ? (CT)parms[offset] : null;
+		EventInvocation<CT> invocation = EventInvocation.acquire(context, parms, offset + 1);
+		try {
+			T stateful = findOrCreateStateful(event, id, context);
+			return fsm.onEvent(stateful, event, invocation.getParms());
+		} finally {
+			invocation.release();
+		}
+	}
+
+	@Override
+	public CompletableFuture<Object> onEventAsync(String event, Object id, Object[] parms) {
+		return onEventAsync(event, id, parms, 0, null);
+	}
+
+	@Override
+	public CompletableFuture<Object> onEventAsync(String event, Object[] parms) {
+		return onEventAsync(event, parms[0], parms, 1, null);
+	}
+
+	@Override
+	public CompletableFuture<Object> onEventAsync(String event, Object id, Object[] parms, Executor retryExecutor) {
+		return onEventAsync(event, id, parms, 0, retryExecutor);
+	}
+
+	@Override
+	public CompletableFuture<Object> onEventAsync(String event, Object[] parms, Executor retryExecutor) {
+		return onEventAsync(event, parms[0], parms, 1, retryExecutor);
+	}
+
+	/**
+	 * Process the event without blocking the caller on retries.  See {@link #onEvent(String, Object, Object[], int)}
+	 *
+	 * @param event The Event
+	 * @param id The id of the Stateful Entity, may be null
+	 * @param parms The incoming parameters
+	 * @param offset Index of the Context within the parms
+	 * @param retryExecutor Runs the retries, or null to run them on the FSM's scheduler
+	 * @return A future of the returned Object from the Action Method
+	 */
+	@SuppressWarnings({ "unchecked" })
+	protected CompletableFuture<Object> onEventAsync(final String event, final Object id, Object[] parms, int offset, Executor retryExecutor) {
+
+		// The caller is free to reuse parms once we return, so take a copy
+		//
+		CT context = (parms.length > offset) ? (CT)parms[offset] : null;
+		final EventInvocation<CT> invocation = new EventInvocation<CT>().reset(context, parms.clone(), offset + 1);
+
+		// If we can drive the attempts ourselves, fetch the Stateful Entity on every attempt
+		// so that a retry never works off a stale copy
+		//
+		if (this.fsm instanceof StatefulFSMImpl) {
+
+			// A retry runs on another thread, so parent every attempt to the caller's Span
+			//
+			final Span parent = this.tracer.getCurrentSpan();
+			return ((StatefulFSMImpl<T>)this.fsm).retryAsync(new Callable<Object>() {
+
+				@Override
+				public Object call() throws Exception {
+					Span previous = tracer.makeCurrent(parent);
+					Span span = startEventSpan(event, id);
+					try {
+						return onEventAttempt(event, id, invocation);
+					} catch(Exception e) {
+						span.recordException(e);
+						throw e;
+					} finally {
+						span.end();
+						tracer.makeCurrent(previous);
+					}
+				}
+			}, retryExecutor);
+		}
+
+		T stateful = findOrCreateStateful(event, id, context);
+		return fsm.onEventAsync(stateful, event, invocation.getParms());
+	}
+
+	/**
+	 * Make a single attempt at processing the event
+	 *
+	 * @param event The Event
+	 * @param id The id of the Stateful Entity, may be null
+	 * @param invocation The EventInvocation holding the Context and parameters
+	 * @return The returned Object from the Action Method
+	 * @throws RetryException
+	 */
+	protected Object onEventAttempt(String event, Object id, EventInvocation<CT> invocation) throws RetryException {
+		T stateful = findOrCreateStateful(event, id, invocation.getContext());
+		return ((StatefulFSMImpl<T>)this.fsm).onEventAttempt(stateful, event, invocation);
+	}
+
+	public StatefulFSM<T> getFSM() {
+		return fsm;
+	}
+
+	public Tracer getTracer() {
+		return tracer;
+	}
+
+	/**
+	 * @param tracer Traces each event, or null to stop tracing
+	 */
+	public void setTracer(Tracer tracer) {
+		this.tracer = (tracer != null) ? tracer : NoopTracer.INSTANCE;
+	}
+
+	private T findOrCreateStateful(String event, Object id, CT context) {
 		T stateful = null;
-		
-		if (id == null) {
-			stateful = findStateful(event, context);
-		} else {
-			stateful = findStateful(event, id, context);
+
+		Span span = this.tracer.startSpan(Tracing.FIND);
+		try {
+			if (id == null) {
+				stateful = findStateful(event, context);
+			} else {
+				stateful = findStateful(event, id, context);
+			}
+		} finally {
+			span.end();
 		}
 
 		if (stateful == null) {
@@ -74,22 +238,19 @@ public class FSMHarnessImpl<T, CT> implements FSMHarness {
 				logger.error("Unable to locate object of type {}, id={}, event={}", clazz.getName(), id, event);
 				throw new RuntimeException("Unable to locate object of type " + clazz.getName() + ", id=" + ((id == null) ? "null" : id) + ", event=" + event);
 			} else {
-				stateful = this.factory.create(this.clazz, event, context);
+				span = this.tracer.startSpan(Tracing.CREATE);
+				try {
+					stateful = this.factory.create(this.clazz, event, context);
+				} finally {
+					span.end();
+				}
 				if (stateful == null) {
 					logger.error("Unable to create object of type {}, event={}", clazz.getName(), event);
 					throw new RuntimeException("Unable to create object of type " + clazz.getName() + ", event=" + event);
 				}
 			}
 		}
-		
-		return fsm.onEvent(stateful, event, parmList.toArray());
-	}
-
-	@Override
-	public Object onEvent(String event, Object[] parms) throws TooBusyException {
-		ArrayList<Object> parmList = new ArrayList<Object>(Arrays.asList(parms));
-		Object id = parmList.remove(0);
-		return onEvent(event, id, parmList.toArray());
+		return stateful;
 	}
 
 	/**
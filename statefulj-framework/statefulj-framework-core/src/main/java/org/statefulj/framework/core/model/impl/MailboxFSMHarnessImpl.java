@@ -0,0 +1,133 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.core.model.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.statefulj.framework.core.fsm.MailboxExecutor;
+import org.statefulj.framework.core.model.FSMHarness;
+import org.statefulj.framework.core.tracing.NoopTracer;
+import org.statefulj.framework.core.tracing.Span;
+import org.statefulj.framework.core.tracing.Tracer;
+import org.statefulj.fsm.TooBusyException;
+
+/**
+ * Dispatches the events for an existing Stateful Entity onto the Entity's mailbox, see {@link MailboxExecutor}.
+ * Concurrent events for the same Entity are processed one after the other rather than racing each other
+ * into a StaleStateException and retrying.  Every attempt at an event runs on the mailbox; should
+ * the event need to be retried, e.g. on a Blocking State, the retry waits off the mailbox and is then
+ * queued back onto the Entity's mailbox, so that the Entity's next event can run in the meantime.
+ *
+ * Events without an id, and events raised from within a mailbox, are processed directly
+ *
+ * @author Andrew Hall
+ *
+ */
+public class MailboxFSMHarnessImpl implements FSMHarness {
+
+	private FSMHarness harness;
+
+	private MailboxExecutor mailboxes;
+
+	private Tracer tracer = NoopTracer.INSTANCE;
+
+	public MailboxFSMHarnessImpl(FSMHarness harness, MailboxExecutor mailboxes) {
+		this.harness = harness;
+		this.mailboxes = mailboxes;
+	}
+
+	@Override
+	public Object onEvent(String event, Object id, Object[] parms) throws TooBusyException {
+		if (id == null || this.mailboxes.isMailboxThread()) {
+			return this.harness.onEvent(event, id, parms);
+		}
+		return this.mailboxes.await(dispatch(event, id, parms, false));
+	}
+
+	@Override
+	public Object onEvent(String event, Object[] parms) throws TooBusyException, InstantiationException {
+		Object id = parms[0];
+		if (id == null || this.mailboxes.isMailboxThread()) {
+			return this.harness.onEvent(event, parms);
+		}
+		return this.mailboxes.await(dispatch(event, id, parms, true));
+	}
+
+	@Override
+	public CompletableFuture<Object> onEventAsync(String event, Object id, Object[] parms) {
+		if (id == null) {
+			return this.harness.onEventAsync(event, id, parms);
+		}
+
+		// We return before the event is dispatched, so copy the parms
+		//
+		return dispatch(event, id, parms.clone(), false);
+	}
+
+	@Override
+	public CompletableFuture<Object> onEventAsync(String event, Object[] parms) {
+		Object id = parms[0];
+		if (id == null) {
+			return this.harness.onEventAsync(event, parms);
+		}
+		return dispatch(event, id, parms.clone(), true);
+	}
+
+	private CompletableFuture<Object> dispatch(final String event, final Object id, final Object[] parms, final boolean idInParms) {
+		final Executor mailbox = this.mailboxes.getExecutor(id);
+
+		// The event is processed on the mailbox thread, so carry the caller's Span over to it
+		//
+		final Span parent = this.tracer.getCurrentSpan();
+		return this.mailboxes.submit(id, new Callable<CompletableFuture<Object>>() {
+
+			@Override
+			public CompletableFuture<Object> call() throws Exception {
+				Span previous = tracer.makeCurrent(parent);
+				try {
+					return (idInParms)
+							? harness.onEventAsync(event, parms, mailbox)
+							: harness.onEventAsync(event, id, parms, mailbox);
+				} finally {
+					tracer.makeCurrent(previous);
+				}
+			}
+		});
+	}
+
+	public FSMHarness getHarness() {
+		return harness;
+	}
+
+	public MailboxExecutor getMailboxes() {
+		return mailboxes;
+	}
+
+	public Tracer getTracer() {
+		return tracer;
+	}
+
+	/**
+	 * @param tracer The Tracer whose current Span is carried over to the mailbox, or null to stop tracing
+	 */
+	public void setTracer(Tracer tracer) {
+		this.tracer = (tracer != null) ? tracer : NoopTracer.INSTANCE;
+	}
+}
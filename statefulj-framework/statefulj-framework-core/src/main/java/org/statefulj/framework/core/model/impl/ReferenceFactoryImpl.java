@@ -48,6 +48,11 @@ public class ReferenceFactoryImpl implements ReferenceFactory {
 		return decapitalize(ctrl + ".fsmHarness");
 	}
 
+	@Override
+	public String getMailboxId() {
+		return decapitalize(ctrl + ".mailbox");
+	}
+
 	@Override
 	public String getPersisterId() {
 		return decapitalize(ctrl + ".persister");
@@ -67,6 +72,13 @@ public class ReferenceFactoryImpl implements ReferenceFactory {
 	public String getFSMId() {
 		return decapitalize(ctrl + ".fsm");
 	}
+
+	/**
+	 * Only the StatefulFactory registers the FSMControl, so its id isn't part of the ReferenceFactory
+	 */
+	public String getFSMControlId() {
+		return decapitalize(ctrl + ".fsmControl");
+	}
 	
 	@Override
 	public String getStateId(String state) {
@@ -17,15 +17,19 @@
  */
 package org.statefulj.framework.core.model.impl;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-import org.apache.commons.lang3.mutable.MutableObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.statefulj.framework.core.fsm.EventInvocation;
 import org.statefulj.framework.core.model.Factory;
 import org.statefulj.framework.core.model.StatefulFSM;
+import org.statefulj.fsm.EventOutcome;
 import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.RetryException;
 import org.statefulj.fsm.TooBusyException;
 
 public class StatefulFSMImpl<T> implements StatefulFSM<T> {
@@ -49,30 +53,122 @@ public class StatefulFSMImpl<T> implements StatefulFSM<T> {
 	
 	@Override
 	public Object onEvent(String event, Object... parms) throws TooBusyException {
-		T stateful = this.factory.create(this.clazz, event, null);
-		if (stateful == null) {
-			logger.error("Unable to create object of type {}, event={}", clazz.getName(), event);
-			throw new RuntimeException("Unable to create object of type " + clazz.getName() + ", event=" + event);
-		}
-		return onEvent(stateful, event, parms);
+		return onEvent(createStateful(event), event, parms);
 	}
 
 	@Override
 	public Object onEvent(T stateful, String event, Object... parms) throws TooBusyException {
-		ArrayList<Object> parmList = new ArrayList<Object>(Arrays.asList(parms));
-		
-		// Create a Mutable Object and add it to the Parameter List - it will be used
+
+		// If we were handed an EventInvocation by the FSMHarness, pass it along as is.
+		// Otherwise, wrap the parms in this thread's EventInvocation - it will be used
 		// to return the returned value from the Controller as the FSM returns the State
 		//
-		MutableObject<T> returnValue = new MutableObject<T>();
-		ArrayList<Object> invokeParmlist = new ArrayList<Object>(parms.length + 1);
-		invokeParmlist.add(returnValue);
-		invokeParmlist.addAll(parmList);
-		
-		// Call the FSM
-		// 
-		fsm.onEvent(stateful, event, invokeParmlist.toArray());
-		return returnValue.getValue();
+		EventInvocation<Object> invocation = EventInvocation.from(parms);
+		if (invocation != null) {
+			fsm.onEvent(stateful, event, parms);
+			return invocation.getReturnValue();
+		}
+
+		invocation = EventInvocation.acquire(null, parms, 0);
+		try {
+
+			// Call the FSM
+			//
+			fsm.onEvent(stateful, event, invocation.getParms());
+			return invocation.getReturnValue();
+		} finally {
+			invocation.release();
+		}
+	}
+
+	@Override
+	public CompletableFuture<Object> onEventAsync(String event, Object... parms) {
+		return onEventAsync(createStateful(event), event, parms);
+	}
+
+	@Override
+	public CompletableFuture<Object> onEventAsync(final T stateful, final String event, Object... parms) {
+
+		// The attempts may run on another thread, so never use the thread's pooled EventInvocation
+		// and don't reference the caller's parms in place
+		//
+		EventInvocation<Object> passed = EventInvocation.from(parms);
+		final EventInvocation<Object> invocation = (passed != null)
+				? passed
+				: new EventInvocation<Object>().reset(null, parms.clone(), 0);
+
+		return retryAsync(new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				return onEventAttempt(stateful, event, invocation);
+			}
+		});
+	}
+
+	@Override
+	public List<EventOutcome> onEvents(List<T> statefuls, String event, Object... parms) {
+		EventInvocation<Object> invocation = EventInvocation.acquire(null, parms, 0);
+		try {
+			return fsm.onEvents(statefuls, event, invocation.getParms());
+		} finally {
+			invocation.release();
+		}
+	}
+
+	/**
+	 * Make a single attempt at processing the event
+	 *
+	 * @param stateful the Stateful Entity
+	 * @param event the Event
+	 * @param invocation the EventInvocation holding the Context and parameters
+	 * @return the returned Object from the Action Method
+	 * @throws RetryException thrown if the event must be retried
+	 */
+	public Object onEventAttempt(T stateful, String event, EventInvocation<?> invocation) throws RetryException {
+		fsm.onEventAttempt(stateful, event, invocation.getParms());
+		return invocation.getReturnValue();
+	}
+
+	/**
+	 * Run the attempt on the calling thread, waiting between any retries using the FSM's retry settings
+	 *
+	 * @param attempt a single attempt at processing an event
+	 * @return the attempt's result
+	 * @throws TooBusyException thrown if the attempts exceed maximum retries
+	 */
+	public <R> R retry(Callable<R> attempt) throws TooBusyException {
+		return fsm.retry(attempt);
+	}
+
+	/**
+	 * Run the attempt, scheduling any retries using the FSM's retry settings
+	 *
+	 * @param attempt a single attempt at processing an event
+	 * @return a future of the attempt's result
+	 */
+	public <R> CompletableFuture<R> retryAsync(Callable<R> attempt) {
+		return fsm.retryAsync(attempt);
+	}
+
+	/**
+	 * Run the attempt, running any retries on the retryExecutor once the FSM's retry wait has elapsed
+	 *
+	 * @param attempt a single attempt at processing an event
+	 * @param retryExecutor runs the retries, or null to run them on the FSM's scheduler
+	 * @return a future of the attempt's result
+	 */
+	public <R> CompletableFuture<R> retryAsync(Callable<R> attempt, Executor retryExecutor) {
+		return fsm.retryAsync(attempt, retryExecutor);
+	}
+
+	private T createStateful(String event) {
+		T stateful = this.factory.create(this.clazz, event, null);
+		if (stateful == null) {
+			logger.error("Unable to create object of type {}, event={}", clazz.getName(), event);
+			throw new RuntimeException("Unable to create object of type " + clazz.getName() + ", event=" + event);
+		}
+		return stateful;
 	}
 
 }
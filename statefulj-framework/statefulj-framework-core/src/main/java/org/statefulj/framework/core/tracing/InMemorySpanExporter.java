@@ -0,0 +1,62 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.framework.core.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A {@link SpanExporter} which holds the ended Spans in memory, for tests
+ *
+ * @author Andrew Hall
+ *
+ */
+public class InMemorySpanExporter implements SpanExporter {
+
+	private final ConcurrentLinkedQueue<RecordedSpan> spans = new ConcurrentLinkedQueue<RecordedSpan>();
+
+	@Override
+	public void export(RecordedSpan span) {
+		spans.add(span);
+	}
+
+	/**
+	 * @return The ended Spans, in the order they ended
+	 */
+	public List<RecordedSpan> getFinishedSpans() {
+		return new ArrayList<RecordedSpan>(spans);
+	}
+
+	/**
+	 * @return The ended Spans which are children of the parent, in the order they ended
+	 */
+	public List<RecordedSpan> getChildren(RecordedSpan parent) {
+		List<RecordedSpan> children = new ArrayList<RecordedSpan>();
+		for(RecordedSpan span : spans) {
+			if (parent.getSpanId().equals(span.getParentSpanId())) {
+				children.add(span);
+			}
+		}
+		return children;
+	}
+
+	public void reset() {
+		spans.clear();
+	}
+}
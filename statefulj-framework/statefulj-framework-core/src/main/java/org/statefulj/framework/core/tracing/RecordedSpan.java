@@ -0,0 +1,128 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.framework.core.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link Span} recorded by a {@link RecordingTracer}.  Ids follow the OpenTelemetry format: a
+ * 32 hex digit trace id, shared by the whole trace, and a 16 hex digit span id
+ *
+ * @author Andrew Hall
+ *
+ */
+public class RecordedSpan implements Span {
+
+	private final RecordingTracer tracer;
+	private final RecordedSpan parent;
+	private final String name;
+	private final String traceId;
+	private final String spanId;
+	private final long startNanos;
+	private long endNanos = -1;
+	private final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+	private Throwable exception;
+
+	RecordedSpan(RecordingTracer tracer, String name, RecordedSpan parent) {
+		this.tracer = tracer;
+		this.name = name;
+		this.parent = parent;
+		this.traceId = (parent != null) ? parent.getTraceId() : randomId() + randomId();
+		this.spanId = randomId();
+		this.startNanos = System.nanoTime();
+	}
+
+	@Override
+	public Span setAttribute(String key, Object value) {
+		attributes.put(key, value);
+		return this;
+	}
+
+	@Override
+	public Span recordException(Throwable exception) {
+		this.exception = exception;
+		return this;
+	}
+
+	@Override
+	public void end() {
+		if (endNanos < 0) {
+			endNanos = System.nanoTime();
+			tracer.onEnd(this);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getTraceId() {
+		return traceId;
+	}
+
+	public String getSpanId() {
+		return spanId;
+	}
+
+	/**
+	 * @return The span id of the parent, or null if this is a root Span
+	 */
+	public String getParentSpanId() {
+		return (parent != null) ? parent.getSpanId() : null;
+	}
+
+	RecordedSpan getParent() {
+		return parent;
+	}
+
+	public long getStartNanos() {
+		return startNanos;
+	}
+
+	public long getEndNanos() {
+		return endNanos;
+	}
+
+	public long getDurationNanos() {
+		return endNanos - startNanos;
+	}
+
+	public Map<String, Object> getAttributes() {
+		return Collections.unmodifiableMap(attributes);
+	}
+
+	public Object getAttribute(String key) {
+		return attributes.get(key);
+	}
+
+	public Throwable getException() {
+		return exception;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[%dns]%s", name, getDurationNanos(), attributes);
+	}
+
+	private static String randomId() {
+		return String.format("%016x", ThreadLocalRandom.current().nextLong());
+	}
+}
@@ -0,0 +1,72 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.framework.core.tracing;
+
+/**
+ * A {@link Tracer} which records Spans and hands them to a {@link SpanExporter} as they end
+ *
+ * @author Andrew Hall
+ *
+ */
+public class RecordingTracer implements Tracer {
+
+	private final ThreadLocal<RecordedSpan> current = new ThreadLocal<RecordedSpan>();
+
+	private final SpanExporter exporter;
+
+	public RecordingTracer(SpanExporter exporter) {
+		this.exporter = exporter;
+	}
+
+	@Override
+	public Span startSpan(String name) {
+		RecordedSpan span = new RecordedSpan(this, name, current.get());
+		current.set(span);
+		return span;
+	}
+
+	@Override
+	public Span getCurrentSpan() {
+		return current.get();
+	}
+
+	@Override
+	public Span makeCurrent(Span span) {
+		RecordedSpan previous = current.get();
+		if (span instanceof RecordedSpan) {
+			current.set((RecordedSpan)span);
+		} else {
+			current.remove();
+		}
+		return previous;
+	}
+
+	void onEnd(RecordedSpan span) {
+
+		// Only restore the parent if the Span ended in order
+		//
+		if (current.get() == span) {
+			if (span.getParent() == null) {
+				current.remove();
+			} else {
+				current.set(span.getParent());
+			}
+		}
+		exporter.export(span);
+	}
+}
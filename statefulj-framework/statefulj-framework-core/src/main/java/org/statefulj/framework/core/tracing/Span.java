@@ -0,0 +1,39 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.framework.core.tracing;
+
+/**
+ * A timed phase of processing an event.  Modelled on the OpenTelemetry Span, so that a
+ * {@link Tracer} may be backed by an OpenTelemetry Tracer.  A Span is ended by the thread which
+ * started it, other threads only use it as the parent of their Spans
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface Span {
+
+	Span setAttribute(String key, Object value);
+
+	Span recordException(Throwable exception);
+
+	/**
+	 * End the Span.  The Span's parent becomes the current Span again
+	 */
+	void end();
+
+}
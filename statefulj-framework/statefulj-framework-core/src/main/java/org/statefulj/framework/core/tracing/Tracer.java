@@ -0,0 +1,50 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.framework.core.tracing;
+
+/**
+ * Starts {@link Span}s.  The Tracer tracks the current Span of each thread: a started Span is the
+ * child of the thread's current Span and becomes the current Span until it ends.  When work is handed
+ * to another thread, e.g. a mailbox or a retry, the current Span is captured with {@link #getCurrentSpan()}
+ * when the work is submitted and made current on the thread running the work with {@link #makeCurrent(Span)}
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface Tracer {
+
+	Span startSpan(String name);
+
+	/**
+	 * @return The current Span of the calling thread, or null if there isn't one
+	 */
+	default Span getCurrentSpan() {
+		return null;
+	}
+
+	/**
+	 * Make the Span the current Span of the calling thread
+	 *
+	 * @param span The Span, or null to clear the current Span
+	 * @return The Span which was current, so that it can be restored once the work is done
+	 */
+	default Span makeCurrent(Span span) {
+		return null;
+	}
+
+}
@@ -0,0 +1,50 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.framework.core.tracing;
+
+/**
+ * Names the Spans traced whilst processing an event.  Each event processed by an
+ * {@link org.statefulj.framework.core.model.FSMHarness} is traced as an {@link #EVENT} Span, with a
+ * child Span for each phase.  The {@link Tracer} is injected into the FSM and the FSMHarness, see
+ * {@link org.statefulj.framework.core.annotations.StatefulController#tracerId()}; unless set, a
+ * {@link NoopTracer} is used
+ *
+ * @author Andrew Hall
+ *
+ */
+public final class Tracing {
+
+	public static final String EVENT = "statefulj.event";
+
+	public static final String FIND = "statefulj.find";
+
+	public static final String CREATE = "statefulj.create";
+
+	public static final String AUTOWIRE = "statefulj.autowire";
+
+	public static final String PERSIST = "statefulj.persist";
+
+	public static final String RELOAD = "statefulj.reload";
+
+	public static final String ACTION = "statefulj.action";
+
+	public static final String COMMIT = "statefulj.commit";
+
+	private Tracing() {
+	}
+}
@@ -25,11 +25,15 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.statefulj.framework.core.controllers.FailedMemoryController;
+import org.statefulj.framework.core.controllers.GroupCommitController;
 import org.statefulj.framework.core.controllers.MemoryController;
 import org.statefulj.framework.core.controllers.NoRetryController;
+import org.statefulj.framework.core.controllers.RetryPolicyController;
 import org.statefulj.framework.core.controllers.UserController;
 import org.statefulj.framework.core.dao.UserRepository;
 import org.statefulj.framework.core.mocks.MockBeanDefinitionRegistryImpl;
@@ -37,6 +41,7 @@ import org.statefulj.framework.core.mocks.MockProxy;
 import org.statefulj.framework.core.mocks.MockRepositoryFactoryBeanSupport;
 import org.statefulj.framework.core.model.ReferenceFactory;
 import org.statefulj.framework.core.model.impl.ReferenceFactoryImpl;
+import org.statefulj.fsm.management.FSMControl;
 import org.statefulj.persistence.memory.MemoryPersisterImpl;
 
 public class StatefulFactoryTest {
@@ -60,7 +65,7 @@ public class StatefulFactoryTest {
 
 		registry.registerBeanDefinition("userController", userController);
 	
-		ReferenceFactory refFactory = new ReferenceFactoryImpl("userController");
+		ReferenceFactoryImpl refFactory = new ReferenceFactoryImpl("userController");
 		StatefulFactory factory = new StatefulFactory();
 		
 		factory.postProcessBeanDefinitionRegistry(registry);
@@ -85,6 +90,12 @@ public class StatefulFactoryTest {
 		assertNotNull(fsm);
 		assertEquals(20, fsm.getConstructorArgumentValues().getArgumentValue(2, Integer.class).getValue());
 		assertEquals(250, fsm.getConstructorArgumentValues().getArgumentValue(3, Integer.class).getValue());
+
+		// Every FSM is exposed over JMX, named by the FSM bean Id
+		//
+		BeanDefinition control = registry.getBeanDefinition(refFactory.getFSMControlId());
+		assertEquals(FSMControl.class.getName(), control.getBeanClassName());
+		assertEquals(refFactory.getFSMId(), control.getConstructorArgumentValues().getIndexedArgumentValue(1, String.class).getValue());
 	}
  
 	@Test
@@ -117,6 +128,45 @@ public class StatefulFactoryTest {
 		assertEquals(1, fsm.getConstructorArgumentValues().getArgumentValue(3, Integer.class).getValue());
 	}
  
+	@Test
+	public void testFSMConstructionWithRetryPolicy() throws ClassNotFoundException {
+		
+		BeanDefinitionRegistry registry = new MockBeanDefinitionRegistryImpl();
+		
+		BeanDefinition userRepo = BeanDefinitionBuilder
+				.genericBeanDefinition(MockRepositoryFactoryBeanSupport.class)
+				.getBeanDefinition();
+		userRepo.getPropertyValues().add("repositoryInterface", UserRepository.class.getName());
+
+		registry.registerBeanDefinition("userRepo", userRepo);
+	
+		BeanDefinition retryPolicyController = BeanDefinitionBuilder
+				.genericBeanDefinition(RetryPolicyController.class)
+				.getBeanDefinition();
+
+		registry.registerBeanDefinition("retryPolicyController", retryPolicyController);
+	
+		ReferenceFactoryImpl refFactory = new ReferenceFactoryImpl("retryPolicyController");
+
+		StatefulFactory factory = new StatefulFactory();
+		
+		factory.postProcessBeanDefinitionRegistry(registry);
+
+		BeanDefinition fsm = registry.getBeanDefinition(refFactory.getFSMId());
+		assertNotNull(fsm);
+		RuntimeBeanReference retryPolicy = (RuntimeBeanReference)fsm.getPropertyValues().getPropertyValue("retryPolicy").getValue();
+		assertEquals("backoffRetryPolicy", retryPolicy.getBeanName());
+		RuntimeBeanReference listener = (RuntimeBeanReference)fsm.getPropertyValues().getPropertyValue("listener").getValue();
+		assertEquals("metricsListener", listener.getBeanName());
+
+		BeanDefinition control = registry.getBeanDefinition(refFactory.getFSMControlId());
+		assertNotNull(control);
+		assertEquals(FSMControl.class.getName(), control.getBeanClassName());
+		assertEquals("register", ((AbstractBeanDefinition)control).getInitMethodName());
+		RuntimeBeanReference controlled = (RuntimeBeanReference)control.getConstructorArgumentValues().getIndexedArgumentValue(0, null).getValue();
+		assertEquals(refFactory.getFSMId(), controlled.getBeanName());
+	}
+ 
 	@Test
 	public void testAlternativePackages() throws ClassNotFoundException {
 		BeanDefinitionRegistry registry = new MockBeanDefinitionRegistryImpl();
@@ -183,6 +233,36 @@ public class StatefulFactoryTest {
 		assertNull(harness);
 	}
 
+	@Test
+	public void testGroupCommitUnsupported() throws ClassNotFoundException {
+		BeanDefinitionRegistry registry = new MockBeanDefinitionRegistryImpl();
+		
+		BeanDefinition userRepo = BeanDefinitionBuilder
+				.genericBeanDefinition(MockRepositoryFactoryBeanSupport.class)
+				.getBeanDefinition();
+		userRepo.getPropertyValues().add("repositoryInterface", UserRepository.class.getName());
+
+		registry.registerBeanDefinition("userRepo", userRepo);
+	
+		BeanDefinition groupCommitController = BeanDefinitionBuilder
+				.genericBeanDefinition(GroupCommitController.class)
+				.getBeanDefinition();
+
+		registry.registerBeanDefinition("groupCommitController", groupCommitController);
+	
+		StatefulFactory factory = new StatefulFactory();
+		
+		// The mock FSMHarness has no groupCommitSize, so the StatefulController is rejected by name
+		//
+		try {
+			factory.postProcessBeanDefinitionRegistry(registry);
+			fail("Expected RuntimeException");
+		} catch(RuntimeException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("groupCommitController"));
+			assertTrue(e.getMessage(), e.getMessage().contains("doesn't support group commit"));
+		}
+	}
+
 	@Test(expected=RuntimeException.class)
 	public void testMemoryFailurePersistor() throws ClassNotFoundException {
 		BeanDefinitionRegistry registry = new MockBeanDefinitionRegistryImpl();
@@ -0,0 +1,77 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.core.actions;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * @author Andrew Hall
+ *
+ */
+public class MethodInvocationActionTest {
+
+	public static class Controller {
+
+		public void fail(Object stateful, String event) throws IOException {
+			throw new IOException("checked");
+		}
+
+		public void noop(Object stateful, String event) {
+		}
+	}
+
+	public static class FirstController extends Controller {
+	}
+
+	public static class SecondController extends Controller {
+	}
+
+	@Test
+	public void testCheckedExceptionIsRethrown() throws Exception {
+		MethodInvocationAction action = new MethodInvocationAction(
+				"fail",
+				new Class<?>[] { Object.class, String.class },
+				null,
+				new Controller());
+		try {
+			action.execute(new Object(), "event");
+			fail("Expected RuntimeException");
+		} catch(RuntimeException e) {
+			assertTrue(e.getCause() instanceof IOException);
+			assertEquals("checked", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void testInvokersAreCached() throws Exception {
+		MethodInvocationAction action = new MethodInvocationAction(
+				"noop",
+				new Class<?>[] { Object.class, String.class },
+				null,
+				null);
+		MethodInvoker first = action.getInvoker(new FirstController());
+		MethodInvoker second = action.getInvoker(new SecondController());
+		assertSame(first, second);
+		assertSame(first, action.getInvoker(new FirstController()));
+		assertSame(first, action.getInvoker(new SecondController()));
+	}
+}
@@ -0,0 +1,95 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.core.actions;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * @author Andrew Hall
+ *
+ */
+public class MethodInvokerFactoryTest {
+
+	public static class Target {
+
+		int count;
+
+		public String concat(String a, int b, long[] c) {
+			return a + b + c.length;
+		}
+
+		void increment(int by) {
+			this.count += by;
+		}
+
+		public int fail(boolean checked) throws IOException {
+			if (checked) {
+				throw new IOException("checked");
+			}
+			throw new IllegalStateException("unchecked");
+		}
+
+		@SuppressWarnings("unused")
+		private boolean hidden() {
+			return true;
+		}
+	}
+
+	@Test
+	public void testGeneratedInvoker() throws Exception {
+		MethodInvoker invoker = MethodInvokerFactory.create(
+				Target.class.getMethod("concat", String.class, int.class, long[].class));
+		assertTrue(invoker.getClass().getName().startsWith(Target.class.getName()));
+		assertEquals("a12", invoker.invoke(new Target(), new Object[] { "a", 1, new long[2] }));
+
+		// Package visible, void
+		//
+		Target target = new Target();
+		invoker = MethodInvokerFactory.create(Target.class.getDeclaredMethod("increment", int.class));
+		assertNull(invoker.invoke(target, new Object[] { 2 }));
+		assertEquals(2, target.count);
+	}
+
+	@Test
+	public void testExceptionsAreNotWrapped() throws Exception {
+		MethodInvoker invoker = MethodInvokerFactory.create(Target.class.getMethod("fail", boolean.class));
+		try {
+			invoker.invoke(new Target(), new Object[] { true });
+			fail("Expected IOException");
+		} catch(IOException e) {
+			assertEquals("checked", e.getMessage());
+		}
+		try {
+			invoker.invoke(new Target(), new Object[] { false });
+			fail("Expected IllegalStateException");
+		} catch(IllegalStateException e) {
+			assertEquals("unchecked", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testPrivateFallsBackToReflection() throws Exception {
+		MethodInvoker invoker = MethodInvokerFactory.create(Target.class.getDeclaredMethod("hidden"));
+		assertFalse(invoker.getClass().getName().startsWith(Target.class.getName()));
+		assertEquals(Boolean.TRUE, invoker.invoke(new Target(), new Object[0]));
+	}
+}
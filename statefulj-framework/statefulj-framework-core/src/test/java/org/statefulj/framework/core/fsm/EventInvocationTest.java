@@ -0,0 +1,81 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.core.fsm;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author Andrew Hall
+ *
+ */
+public class EventInvocationTest {
+
+	@Test
+	public void testArgsAreReferencedInPlace() {
+		Object context = new Object();
+		Object[] parms = new Object[] { "id", context, "one", "two" };
+
+		EventInvocation<Object> invocation = EventInvocation.acquire(context, parms, 2);
+		try {
+			assertSame(context, invocation.getContext());
+			assertEquals(2, invocation.getArgCount());
+			assertEquals("one", invocation.getArg(0));
+			assertEquals("two", invocation.getArg(1));
+			assertSame(invocation, EventInvocation.from(invocation.getParms()));
+			assertNull(EventInvocation.from(parms));
+		} finally {
+			invocation.release();
+		}
+		assertNull(invocation.getContext());
+		assertEquals(0, invocation.getArgCount());
+	}
+
+	@Test
+	public void testReusedPerThread() {
+		EventInvocation<Object> first = EventInvocation.acquire(null, null, 0);
+		first.release();
+		EventInvocation<Object> second = EventInvocation.acquire(null, null, 0);
+		second.release();
+		assertSame(first, second);
+	}
+
+	@Test
+	public void testNestedInvocation() {
+		EventInvocation<Object> outer = EventInvocation.acquire(null, null, 0);
+		outer.setReturnValue("outer");
+		EventInvocation<Object> inner = EventInvocation.acquire(null, null, 0);
+		inner.setReturnValue("inner");
+		assertNotSame(outer, inner);
+		inner.release();
+		assertEquals("outer", outer.getReturnValue());
+		outer.release();
+	}
+
+	@Test
+	public void testInvokeBuffer() {
+		EventInvocation<Object> invocation = new EventInvocation<Object>();
+		Object[] buffer = invocation.getInvokeBuffer(3);
+		assertEquals(3, buffer.length);
+		buffer[0] = "value";
+		invocation.releaseInvokeBuffer(buffer);
+		assertNull(buffer[0]);
+		assertSame(buffer, invocation.getInvokeBuffer(3));
+	}
+}
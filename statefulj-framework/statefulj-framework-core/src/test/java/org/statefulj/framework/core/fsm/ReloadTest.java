@@ -58,7 +58,7 @@ public class ReloadTest {
 		String event = "pow";
 		Finder<Identifiable, Object> finder = mock(Finder.class);
 		Object context = new Object();
-		ContextWrapper<Object> cw = new ContextWrapper<Object>(context);
+		EventInvocation<Object> invocation = new EventInvocation<Object>().reset(context, null, 0);
 		
 		when(finder.find(clazz, 1L, event, context)).thenReturn(value);
 		
@@ -86,7 +86,8 @@ public class ReloadTest {
 				appContext,
 				finder);
 		
-		fsm.transition(value, from, event, transition, cw);
+		Object[] args = invocation.getParms();
+		fsm.completeTransition(value, from, event, transition, transition.getStateActionPair(value, event, args), args);
 		verify(finder).find(clazz, 1L, event, context);
 	}
 }
@@ -17,19 +17,91 @@
  */
 package org.statefulj.framework.persistence.jpa;
 
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import javax.persistence.EntityManager;
+
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
+import org.statefulj.framework.core.fsm.EventInvocation;
 import org.statefulj.framework.core.model.Factory;
 import org.statefulj.framework.core.model.Finder;
 import org.statefulj.framework.core.model.StatefulFSM;
 import org.statefulj.framework.core.model.impl.FSMHarnessImpl;
+import org.statefulj.framework.core.model.impl.StatefulFSMImpl;
+import org.statefulj.framework.core.tracing.NoopTracer;
+import org.statefulj.framework.core.tracing.Span;
+import org.statefulj.framework.core.tracing.Tracing;
+import org.statefulj.fsm.RetryException;
 import org.statefulj.fsm.TooBusyException;
 
+/**
+ * Processes each event within a Transaction.  By default every event commits its own Transaction.
+ * With group commit enabled, see {@link #setGroupCommitSize(int)}, events arriving within the
+ * groupCommitWindow are coalesced, up to groupCommitSize events, and processed one after the other by
+ * a committer thread within a single Transaction; each caller is completed once the group commits.
+ * Each event makes a single attempt within the group, guarded by a JDBC savepoint.  If the attempt
+ * fails, or must be retried, only that event is rolled back to its savepoint and the rest of the group
+ * still commits.  A failed event fails its caller; an event which must be retried is handed back to its
+ * caller, which retries it outside of the group.  Events raised whilst a Transaction is already active,
+ * e.g. from within an Action, join that Transaction
+ *
+ * @author Andrew Hall
+ *
+ */
 public class JPAFSMHarnessImpl<T, CT> extends FSMHarnessImpl<T, CT> {
-	
+
+	private static final Logger logger = LoggerFactory.getLogger(JPAFSMHarnessImpl.class);
+
+	private static final int DEFAULT_GROUP_COMMIT_WINDOW = 5;  // 5 ms
+
+	private static final int DEFAULT_GROUP_COMMIT_TIMEOUT = 30000;  // 30 s
+
+	/**
+	 * The outcome of a grouped event which must be retried outside of the group
+	 */
+	private static final Object RETRY = new Object();
+
 	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+
+	private int groupCommitSize = 0;
+
+	private int groupCommitWindow = DEFAULT_GROUP_COMMIT_WINDOW;
+
+	private int groupCommitTimeout = DEFAULT_GROUP_COMMIT_TIMEOUT;
+
+	private final BlockingQueue<PendingEvent> pendingEvents = new LinkedBlockingQueue<PendingEvent>();
+
+	private Thread committer;
+
+	private volatile boolean shutdown = false;
 	
 	public JPAFSMHarnessImpl(
 			StatefulFSM<T> fsm, 
@@ -39,17 +111,52 @@ public class JPAFSMHarnessImpl<T, CT> extends FSMHarnessImpl<T, CT> {
 			PlatformTransactionManager transactionManager) {
 		super(fsm, clazz, factory, finder);
 		this.transactionManager = transactionManager;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
 	}
 	
 	@Override
-	public Object onEvent(final String event, final Object id, final Object[] parms) throws TooBusyException {
-		TransactionTemplate tt = new TransactionTemplate(transactionManager);
-		return tt.execute(new TransactionCallback<Object>() {
+	protected Object onEvent(String event, Object id, Object[] parms, int offset) throws TooBusyException {
+		if (isGrouping()) {
+			Object retVal = await(enqueue(event, id, parms, offset, false, null));
+			if (retVal != RETRY) {
+				return retVal;
+			}
+
+			// The event's attempt within the group was rolled back, retry it on the caller's thread
+			//
+		}
+		return processEvent(event, id, parms, offset);
+	}
+
+	/**
+	 * Unless the event joins an active Transaction, each attempt is made within its own Transaction and
+	 * the retries wait outside of it, so a retry neither holds the locks of the previous attempt nor
+	 * runs within a Transaction which the previous attempt marked for rollback
+	 */
+	@SuppressWarnings("unchecked")
+	private Object processEvent(final String event, final Object id, final Object[] parms, final int offset) throws TooBusyException {
+		if (getFSM() instanceof StatefulFSMImpl && !TransactionSynchronizationManager.isActualTransactionActive()) {
+			CT context = (parms.length > offset) ? (CT)parms[offset] : null;
+			final EventInvocation<CT> invocation = EventInvocation.acquire(context, parms, offset + 1);
+			try {
+				return ((StatefulFSMImpl<T>)getFSM()).retry(new Callable<Object>() {
+
+					@Override
+					public Object call() throws Exception {
+						return onEventAttempt(event, id, invocation);
+					}
+				});
+			} finally {
+				invocation.release();
+			}
+		}
+		return this.transactionTemplate.execute(new TransactionCallback<Object>() {
 
 			@Override
 			public Object doInTransaction(TransactionStatus status) {
+				traceCommit();
 				try {
-					return JPAFSMHarnessImpl.super.onEvent(event, id, parms);
+					return JPAFSMHarnessImpl.super.onEvent(event, id, parms, offset);
 				} catch (TooBusyException e) {
 					throw new RuntimeException(e);
 				}
@@ -57,4 +164,456 @@ public class JPAFSMHarnessImpl<T, CT> extends FSMHarnessImpl<T, CT> {
 			
 		});
 	}
+
+	@Override
+	protected CompletableFuture<Object> onEventAsync(String event, Object id, Object[] parms, int offset, Executor retryExecutor) {
+		if (isGrouping()) {
+
+			// The caller is free to reuse parms once we return, so take a copy
+			//
+			return enqueue(event, id, parms.clone(), offset, true, retryExecutor).future;
+		}
+		return super.onEventAsync(event, id, parms, offset, retryExecutor);
+	}
+
+	/**
+	 * Each asynchronous attempt runs in its own Transaction.  A retry rolls back the attempt
+	 */
+	@Override
+	protected Object onEventAttempt(final String event, final Object id, final EventInvocation<CT> invocation) throws RetryException {
+		final MutableObject<RetryException> retry = new MutableObject<RetryException>();
+		Object retVal = this.transactionTemplate.execute(new TransactionCallback<Object>() {
+
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				traceCommit();
+				try {
+					return JPAFSMHarnessImpl.super.onEventAttempt(event, id, invocation);
+				} catch (RetryException e) {
+					status.setRollbackOnly();
+					retry.setValue(e);
+					return null;
+				}
+			}
+
+		});
+		if (retry.getValue() != null) {
+			throw retry.getValue();
+		}
+		return retVal;
+	}
+
+	public int getGroupCommitSize() {
+		return groupCommitSize;
+	}
+
+	/**
+	 * Set the maximum number of events coalesced into a single Transaction.  If less than 2, each
+	 * event commits its own Transaction.  Group commit rolls back a single event to a JDBC savepoint,
+	 * so it requires a JpaTransactionManager with a DataSource.
+	 *
+	 * Should the Transaction of a group fail to commit, every event of the group which didn't fail is
+	 * retried by its caller, so the Actions of those events are executed again
+	 *
+	 * @param groupCommitSize The maximum number of events in a group, defaults to 0
+	 */
+	public void setGroupCommitSize(int groupCommitSize) {
+		if (groupCommitSize > 1
+				&& !(this.transactionManager instanceof JpaTransactionManager
+						&& ((JpaTransactionManager)this.transactionManager).getDataSource() != null)) {
+			throw new IllegalArgumentException("Group commit requires a JpaTransactionManager with a DataSource");
+		}
+		this.groupCommitSize = groupCommitSize;
+	}
+
+	public int getGroupCommitWindow() {
+		return groupCommitWindow;
+	}
+
+	/**
+	 * Set how long, in milliseconds, the committer waits after the first event of a group for further
+	 * events to arrive.  The window bounds the latency added to each event
+	 *
+	 * @param groupCommitWindow The window in milliseconds, defaults to 5
+	 */
+	public void setGroupCommitWindow(int groupCommitWindow) {
+		this.groupCommitWindow = groupCommitWindow;
+	}
+
+	public int getGroupCommitTimeout() {
+		return groupCommitTimeout;
+	}
+
+	/**
+	 * Set how long, in milliseconds, a caller waits for the committer to start processing its grouped
+	 * event.  Once the timeout elapses the caller is failed with a TooBusyException and the event is never
+	 * processed.  An event which the committer has started is awaited until its group completes
+	 *
+	 * @param groupCommitTimeout The timeout in milliseconds, defaults to 30000
+	 */
+	public void setGroupCommitTimeout(int groupCommitTimeout) {
+		this.groupCommitTimeout = groupCommitTimeout;
+	}
+
+	/**
+	 * Stop the committer.  Events which haven't been processed are failed with a RejectedExecutionException
+	 */
+	public synchronized void shutdown() {
+		this.shutdown = true;
+		if (this.committer != null) {
+			this.committer.interrupt();
+		}
+		rejectPendingEvents();
+	}
+
+	/**
+	 * Events are grouped unless a Transaction is already active, in which case the event joins it
+	 */
+	private boolean isGrouping() {
+		return this.groupCommitSize > 1
+				&& getFSM() instanceof StatefulFSMImpl
+				&& !TransactionSynchronizationManager.isActualTransactionActive();
+	}
+
+	private PendingEvent enqueue(String event, Object id, Object[] parms, int offset, boolean async, Executor retryExecutor) {
+		PendingEvent pendingEvent = new PendingEvent(event, id, parms, offset, async, retryExecutor);
+		synchronized(this) {
+			if (this.shutdown) {
+				pendingEvent.future.completeExceptionally(new RejectedExecutionException("Harness has been shut down"));
+				return pendingEvent;
+			}
+			if (this.committer == null || !this.committer.isAlive()) {
+				this.committer = new Thread(new Committer(), "statefulj-group-commit");
+				this.committer.setDaemon(true);
+				this.committer.start();
+			}
+			this.pendingEvents.add(pendingEvent);
+		}
+		return pendingEvent;
+	}
+
+	/**
+	 * Process the group of events within a single Transaction, completing each event once the
+	 * Transaction commits.  Each event makes a single attempt within a savepoint; an event which fails
+	 * or must be retried is rolled back to its savepoint without affecting the rest of the group
+	 */
+	private void commit(final List<PendingEvent> group) {
+		final Object[] results = new Object[group.size()];
+		final Throwable[] failures = new Throwable[group.size()];
+		try {
+			this.transactionTemplate.execute(new TransactionCallback<Object>() {
+
+				@Override
+				public Object doInTransaction(TransactionStatus status) {
+					traceCommit();
+					JpaTransactionManager jpaTransactionManager = (JpaTransactionManager)transactionManager;
+					EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(
+							jpaTransactionManager.getEntityManagerFactory());
+					ConnectionHolder connectionHolder = (ConnectionHolder)TransactionSynchronizationManager.getResource(
+							jpaTransactionManager.getDataSource());
+					if (connectionHolder == null) {
+						throw new IllegalStateException("The JpaDialect doesn't expose the JDBC Connection, unable to create savepoints");
+					}
+					for(int i = 0; i < group.size(); i++) {
+						PendingEvent pendingEvent = group.get(i);
+
+						// Skip the event if its caller has given up on it
+						//
+						if (!pendingEvent.claim()) {
+							continue;
+						}
+						Savepoint savepoint = createSavepoint(connectionHolder);
+						try {
+
+							// Flush the event's changes, so a failure to write them is the event's failure
+							//
+							results[i] = pendingEvent.attempt();
+							entityManager.flush();
+							releaseSavepoint(connectionHolder, savepoint);
+							continue;
+						} catch(RetryException e) {
+							results[i] = RETRY;
+						} catch(Throwable t) {
+							failures[i] = t;
+						}
+
+						// Undo the event in the database and drop the Entities it left in the EntityManager,
+						// the events before it have already been flushed
+						//
+						rollbackToSavepoint(connectionHolder, savepoint);
+						entityManager.clear();
+						if (status.isRollbackOnly()) {
+							throw new IllegalStateException("Event " + pendingEvent.event + " marked the group's Transaction for rollback");
+						}
+					}
+					return null;
+				}
+			});
+		} catch(Throwable t) {
+
+			// The group rolled back, every event which didn't fail is retried by its caller
+			//
+			logger.warn("Group commit of {} events failed, retrying the events individually", group.size(), t);
+			for(int i = 0; i < group.size(); i++) {
+				if (failures[i] != null) {
+					group.get(i).future.completeExceptionally(failures[i]);
+				} else {
+					group.get(i).complete(RETRY);
+				}
+			}
+			return;
+		}
+
+		for(int i = 0; i < group.size(); i++) {
+			if (failures[i] != null) {
+				group.get(i).future.completeExceptionally(failures[i]);
+			} else {
+				group.get(i).complete(results[i]);
+			}
+		}
+	}
+
+	private Savepoint createSavepoint(ConnectionHolder connectionHolder) {
+		try {
+			return connectionHolder.createSavepoint();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void rollbackToSavepoint(ConnectionHolder connectionHolder, Savepoint savepoint) {
+		try {
+			connectionHolder.getConnection().rollback(savepoint);
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void releaseSavepoint(ConnectionHolder connectionHolder, Savepoint savepoint) {
+		try {
+			connectionHolder.getConnection().releaseSavepoint(savepoint);
+		} catch (Throwable t) {
+
+			// Not all databases release savepoints, the savepoint is released when the Transaction completes
+			//
+			logger.debug("Unable to release savepoint", t);
+		}
+	}
+
+	private void rejectPendingEvents() {
+		PendingEvent pendingEvent;
+		while((pendingEvent = this.pendingEvents.poll()) != null) {
+			pendingEvent.future.completeExceptionally(new RejectedExecutionException("Harness has been shut down"));
+		}
+	}
+
+	/**
+	 * Wait for the outcome of the event, unwrapping the cause of its failure.  If the committer
+	 * hasn't started the event within the groupCommitTimeout, give up on the event
+	 */
+	private Object await(PendingEvent pendingEvent) throws TooBusyException {
+		CompletableFuture<Object> future = pendingEvent.future;
+		try {
+			try {
+				return future.get(this.groupCommitTimeout, TimeUnit.MILLISECONDS);
+			} catch(TimeoutException e) {
+
+				// Once claimed, the committer skips the event.  Otherwise the committer is processing
+				// the event, so wait for its group to complete
+				//
+				if (pendingEvent.claim()) {
+					logger.error("Event {} wasn't processed within {} ms", pendingEvent.event, this.groupCommitTimeout);
+					throw new TooBusyException();
+				}
+				return future.get();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TooBusyException) {
+				throw (TooBusyException)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * An event waiting to be processed by the committer
+	 */
+	private class PendingEvent {
+
+		private final String event;
+
+		private final Object id;
+
+		private final Object[] parms;
+
+		private final int offset;
+
+		private final boolean async;
+
+		private final Executor retryExecutor;
+
+		private final CompletableFuture<Object> future = new CompletableFuture<Object>();
+
+		// Claimed either by the committer as it starts the event, or by a caller giving up on the event
+		//
+		private final AtomicBoolean claimed = new AtomicBoolean();
+
+		// The event is processed by the committer, so capture the caller's Span as the parent
+		//
+		private final Span parent = getTracer().getCurrentSpan();
+
+		PendingEvent(String event, Object id, Object[] parms, int offset, boolean async, Executor retryExecutor) {
+			this.event = event;
+			this.id = id;
+			this.parms = parms;
+			this.offset = offset;
+			this.async = async;
+			this.retryExecutor = retryExecutor;
+		}
+
+		boolean claim() {
+			return this.claimed.compareAndSet(false, true);
+		}
+
+		/**
+		 * Complete the event with its outcome within the group.  A synchronous caller retries the event
+		 * itself, nobody waits on an asynchronous event, so it is retried on the retryExecutor, or the
+		 * common pool, rather than on the committer
+		 */
+		void complete(Object retVal) {
+			if (retVal != RETRY || !this.async) {
+				this.future.complete(retVal);
+				return;
+			}
+			Executor executor = (this.retryExecutor != null) ? this.retryExecutor : ForkJoinPool.commonPool();
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					retryAsync();
+				}
+			});
+		}
+
+		private void retryAsync() {
+			Span previous = getTracer().makeCurrent(this.parent);
+			try {
+				JPAFSMHarnessImpl.super.onEventAsync(this.event, this.id, this.parms, this.offset, this.retryExecutor)
+						.whenComplete(new BiConsumer<Object, Throwable>() {
+
+							@Override
+							public void accept(Object retVal, Throwable t) {
+								if (t != null) {
+									future.completeExceptionally(t);
+								} else {
+									future.complete(retVal);
+								}
+							}
+						});
+			} catch(Throwable t) {
+				this.future.completeExceptionally(t);
+			} finally {
+				getTracer().makeCurrent(previous);
+			}
+		}
+
+		/**
+		 * Make a single attempt at processing the event within the group's Transaction
+		 */
+		@SuppressWarnings("unchecked")
+		Object attempt() throws RetryException {
+			Span previous = getTracer().makeCurrent(this.parent);
+			CT context = (this.parms.length > this.offset) ? (CT)this.parms[this.offset] : null;
+			EventInvocation<CT> invocation = EventInvocation.acquire(context, this.parms, this.offset + 1);
+			try {
+				return JPAFSMHarnessImpl.super.onEventAttempt(this.event, this.id, invocation);
+			} finally {
+				invocation.release();
+				getTracer().makeCurrent(previous);
+			}
+		}
+	}
+
+	/**
+	 * Collects the events arriving within the groupCommitWindow, up to groupCommitSize events, and
+	 * commits them as a group
+	 */
+	private class Committer implements Runnable {
+
+		@Override
+		public void run() {
+			List<PendingEvent> group = new ArrayList<PendingEvent>();
+			try {
+				while(!shutdown) {
+					group.add(pendingEvents.take());
+					long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(groupCommitWindow);
+					while(group.size() < groupCommitSize) {
+						long remaining = deadline - System.nanoTime();
+						PendingEvent next = (remaining > 0)
+								? pendingEvents.poll(remaining, TimeUnit.NANOSECONDS)
+								: pendingEvents.poll();
+						if (next == null) {
+							break;
+						}
+						group.add(next);
+					}
+					try {
+						commit(group);
+					} catch(Throwable t) {
+
+						// Keep the committer alive, failing the events of the group which weren't completed
+						//
+						logger.error("Unable to commit a group of {} events", group.size(), t);
+						for(PendingEvent pendingEvent : group) {
+							pendingEvent.future.completeExceptionally(t);
+						}
+					}
+					group.clear();
+				}
+			} catch(InterruptedException e) {
+				// Shutting down
+				//
+			}
+			for(PendingEvent pendingEvent : group) {
+				pendingEvent.future.completeExceptionally(new RejectedExecutionException("Harness has been shut down"));
+			}
+			rejectPendingEvents();
+		}
+	}
+
+	/**
+	 * Trace the commit of the current Transaction as a {@link Tracing#COMMIT} Span, which
+	 * includes flushing the EntityManager
+	 */
+	private void traceCommit() {
+		if (getTracer() != NoopTracer.INSTANCE && TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				private Span span;
+
+				@Override
+				public void beforeCommit(boolean readOnly) {
+					this.span = getTracer().startSpan(Tracing.COMMIT);
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					if (this.span != null) {
+						this.span.setAttribute("statefulj.committed", status == STATUS_COMMITTED);
+						this.span.end();
+					}
+				}
+			});
+		}
+	}
 }
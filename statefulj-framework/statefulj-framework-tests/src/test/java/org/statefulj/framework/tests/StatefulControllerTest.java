@@ -18,6 +18,13 @@
 package org.statefulj.framework.tests;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -41,18 +48,30 @@ import org.statefulj.framework.core.annotations.FSM;
 import org.statefulj.framework.core.model.ReferenceFactory;
 import org.statefulj.framework.core.model.FSMHarness;
 import org.statefulj.framework.core.model.StatefulFSM;
+import org.statefulj.framework.core.model.impl.FSMHarnessImpl;
+import org.statefulj.framework.core.model.impl.MailboxFSMHarnessImpl;
 import org.statefulj.framework.core.model.impl.ReferenceFactoryImpl;
+import org.statefulj.framework.core.tracing.InMemorySpanExporter;
+import org.statefulj.framework.core.tracing.RecordedSpan;
+import org.statefulj.framework.core.tracing.RecordingTracer;
+import org.statefulj.framework.core.tracing.Span;
+import org.statefulj.framework.core.tracing.Tracer;
+import org.statefulj.framework.core.tracing.Tracing;
 import org.statefulj.framework.tests.clients.FSMClient1;
 import org.statefulj.framework.tests.clients.FSMClient2;
+import org.statefulj.framework.tests.controllers.GroupCommitController;
+import org.statefulj.framework.tests.controllers.MailboxController;
 import org.statefulj.framework.tests.dao.UserRepository;
 import org.statefulj.framework.tests.model.MemoryObject;
 import org.statefulj.framework.tests.model.User;
 
 import static org.statefulj.framework.tests.utils.ReflectionUtils.*;
 
+import org.statefulj.fsm.EventOutcome;
 import org.statefulj.fsm.Persister;
 import org.statefulj.fsm.StaleStateException;
 import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.VersionedPersister;
 import org.statefulj.fsm.model.State;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -285,6 +304,220 @@ public class StatefulControllerTest {
 		assertEquals(User.SEVEN_STATE, dbUser.getState());
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAsyncTransitionOutOfBlocking() throws Exception {
+
+		ReferenceFactory refFactory = new ReferenceFactoryImpl("userController");
+		final State<User> stateSix = (State<User>)appContext.getBean(refFactory.getStateId(User.SIX_STATE));
+		final Persister<User> persister = (Persister<User>)appContext.getBean(refFactory.getPersisterId());
+		org.statefulj.framework.core.fsm.FSM<User, ?> fsm = (org.statefulj.framework.core.fsm.FSM<User, ?>)this.appContext.getBean(refFactory.getFSMId());
+		int retryAttempts = fsm.getRetryAttempts();
+		fsm.setRetryAttempts(40);
+
+		try {
+
+			// Create a User and force it to SIX_STATE
+			//
+			final User user = userRepo.save(new User());
+			TransactionTemplate tt = new TransactionTemplate(transactionManager);
+			tt.execute(new TransactionCallback<Object>() {
+
+				@Override
+				public Object doInTransaction(TransactionStatus status) {
+					try {
+						User dbUser = userRepo.findOne(user.getId());
+						persister.setCurrent(dbUser, persister.getCurrent(dbUser), stateSix);
+						return null;
+					} catch (StaleStateException e) {
+						throw new RuntimeException(e);
+					}
+				}
+
+			});
+
+			// The event waits on the blocking State without holding this thread
+			//
+			HttpServletRequest context = mock(HttpServletRequest.class);
+			CompletableFuture<Object> future = userFSMHarness.onEventAsync("this-should-block", user.getId(), new Object[]{context});
+			assertFalse(future.isDone());
+
+			tt.execute(new TransactionCallback<Object>() {
+
+				@Override
+				public Object doInTransaction(TransactionStatus status) {
+					try {
+						User dbUser = userRepo.findOne(user.getId());
+						userFSM.onEvent(dbUser, "unblock");
+						return null;
+					} catch (TooBusyException e) {
+						throw new RuntimeException(e);
+					}
+				}
+
+			});
+
+			future.get(10, TimeUnit.SECONDS);
+
+			User dbUser = userRepo.findOne(user.getId());
+			assertEquals(User.SEVEN_STATE, dbUser.getState());
+		} finally {
+			fsm.setRetryAttempts(retryAttempts);
+		}
+	}
+
+	@Test
+	public void testOnEvents() {
+		final User user1 = userRepo.save(new User());
+		final User user2 = userRepo.save(new User());
+
+		TransactionTemplate tt = new TransactionTemplate(transactionManager);
+		List<EventOutcome> outcomes = tt.execute(new TransactionCallback<List<EventOutcome>>() {
+
+			@Override
+			public List<EventOutcome> doInTransaction(TransactionStatus status) {
+				List<User> users = Arrays.asList(userRepo.findOne(user1.getId()), userRepo.findOne(user2.getId()));
+				return userFSM.onEvents(users, "five");
+			}
+
+		});
+
+		assertEquals(Arrays.asList(EventOutcome.SUCCESS, EventOutcome.SUCCESS), outcomes);
+		assertEquals(User.FIVE_STATE, userRepo.findOne(user1.getId()).getState());
+		assertEquals(User.FIVE_STATE, userRepo.findOne(user2.getId()).getState());
+	}
+
+	@Test
+	public void testMailboxes() throws Exception {
+		final Long id = userRepo.save(new User()).getId();
+
+		ReferenceFactory refFactory = new ReferenceFactoryImpl("mailboxController");
+		assertTrue(this.appContext.getBean(refFactory.getFSMHarnessId()) instanceof MailboxFSMHarnessImpl);
+		MailboxController controller = (MailboxController)this.appContext.getBean("mailboxController");
+		final Object camelBinder = this.appContext.getBean(refFactory.getBinderId("camel"));
+
+		// Fire the events for the same User at once, they should be processed one at a time
+		//
+		int events = 20;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(events);
+		final AtomicInteger failures = new AtomicInteger();
+		for(int i = 0; i < events; i++) {
+			new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						invoke(camelBinder, "$_flip", id);
+					} catch (Exception e) {
+						failures.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+
+		assertEquals(0, failures.get());
+		assertEquals(events, controller.getCount());
+		assertEquals(1, controller.getMaxInFlight());
+		assertEquals(User.ONE_STATE, userRepo.findOne(id).getState());
+
+		// A retry is queued back onto the User's mailbox
+		//
+		Tracer tracer = (Tracer)this.appContext.getBean("mailboxTracer");
+		InMemorySpanExporter exporter = (InMemorySpanExporter)this.appContext.getBean("mailboxSpanExporter");
+		exporter.reset();
+		Span caller = tracer.startSpan("caller");
+		try {
+			invoke(camelBinder, "$_retry", id);
+		} finally {
+			caller.end();
+		}
+		assertEquals(2, controller.getRetryThreads().size());
+		assertTrue(controller.getRetryThreads().get(0).contains("-mailbox-"));
+		assertEquals(controller.getRetryThreads().get(0), controller.getRetryThreads().get(1));
+
+		// Both attempts ran on the mailbox, yet are traced as children of the caller's Span
+		//
+		List<RecordedSpan> attempts = exporter.getChildren((RecordedSpan)caller);
+		assertEquals(2, attempts.size());
+		for(RecordedSpan attempt : attempts) {
+			assertEquals(Tracing.EVENT, attempt.getName());
+			assertEquals(((RecordedSpan)caller).getTraceId(), attempt.getTraceId());
+			assertFalse(exporter.getChildren(attempt).isEmpty());
+		}
+		assertNull(tracer.getCurrentSpan());
+	}
+
+	@Test
+	public void testGroupCommit() throws InterruptedException {
+		final Long id = userRepo.save(new User()).getId();
+
+		ReferenceFactory refFactory = new ReferenceFactoryImpl("groupCommitController");
+		GroupCommitController controller = (GroupCommitController)this.appContext.getBean("groupCommitController");
+		Object camelBinder = this.appContext.getBean(refFactory.getBinderId("camel"));
+
+		// Fire the events at once, they should share Transactions
+		//
+		int events = 16;
+		assertEquals(0, fireGroupEvents(camelBinder, id, events, "$_group", null));
+		assertEquals(events, controller.getCount());
+		assertTrue(controller.getCommits() < events);
+		assertEquals(User.ONE_STATE, userRepo.findOne(id).getState());
+
+		// A failed event only fails its own caller
+		//
+		assertEquals(1, fireGroupEvents(camelBinder, id, 3, "$_group", "$_fail"));
+		assertEquals(User.TWO_STATE, userRepo.findOne(id).getState());
+
+		// A conflicting event is rolled back on its own and retried by its caller, the slow events
+		// commit together and their Actions run once
+		//
+		assertEquals(0, fireGroupEvents(camelBinder, id, 4, "$_slow", "$_conflict"));
+		assertEquals(4, controller.getSlowCount());
+		assertTrue(controller.getSlowCommits() < 4);
+		assertEquals(User.TWO_STATE, userRepo.findOne(id).getState());
+		List<String> conflictThreads = controller.getConflictThreads();
+		assertEquals(2, conflictThreads.size());
+		assertEquals("statefulj-group-commit", conflictThreads.get(0));
+		assertFalse("statefulj-group-commit".equals(conflictThreads.get(1)));
+	}
+
+	/**
+	 * Fire the events for the User at once, optionally along with one other event
+	 *
+	 * @return the number of failed events
+	 */
+	private int fireGroupEvents(final Object camelBinder, final Long id, int events, final String event, final String other) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(events + ((other != null) ? 1 : 0));
+		final AtomicInteger failures = new AtomicInteger();
+		for(int i = 0; i < done.getCount(); i++) {
+			final String fired = (i == events) ? other : event;
+			new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						invoke(camelBinder, fired, id);
+					} catch (Exception e) {
+						failures.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		return failures.get();
+	}
+
 	@Test
 	public void testConcurrency() throws TooBusyException, InterruptedException, InstantiationException {
 		User user = userRepo.save(new User());
@@ -340,6 +573,7 @@ public class StatefulControllerTest {
 		assertEquals(User.THREE_STATE, user2.getState());
 	}
 
+	@SuppressWarnings("unchecked")
 	@Test
 	public void testInMemoryController() throws TooBusyException {
 		MemoryObject memObject = new MemoryObject();
@@ -348,6 +582,13 @@ public class StatefulControllerTest {
 
 		assertNotNull(memObject);
 		assertEquals(MemoryObject.TWO_STATE, memObject.getState());
+
+		// The State codes declared on the StatefulController are published to the Persister
+		//
+		ReferenceFactory refFactory = new ReferenceFactoryImpl("memoryController");
+		VersionedPersister<MemoryObject> persister = (VersionedPersister<MemoryObject>)this.appContext.getBean(refFactory.getPersisterId());
+		assertEquals(2, persister.getDefinition().getStateCode(MemoryObject.TWO_STATE));
+		assertEquals(MemoryObject.ONE_STATE, persister.getDefinition().getStateName(1));
 	}
 
 	@Test(expected=RuntimeException.class)
@@ -356,4 +597,52 @@ public class StatefulControllerTest {
 
 		this.memoryFSM.onEvent(memObject, "fail");
 	}
+
+	@Test
+	public void testTracing() throws Exception {
+		InMemorySpanExporter exporter = new InMemorySpanExporter();
+		ReferenceFactory refFactory = new ReferenceFactoryImpl("userController");
+		FSMHarnessImpl<?, ?> harness = (FSMHarnessImpl<?, ?>)this.appContext.getBean(refFactory.getFSMHarnessId());
+		org.statefulj.framework.core.fsm.FSM<?, ?> fsm =
+				(org.statefulj.framework.core.fsm.FSM<?, ?>)this.appContext.getBean(refFactory.getFSMId());
+		RecordingTracer tracer = new RecordingTracer(exporter);
+		harness.setTracer(tracer);
+		fsm.setTracer(tracer);
+		try {
+			Object mvcBinder = this.appContext.getBean(refFactory.getBinderId("springmvc"));
+			HttpServletRequest context = mock(HttpServletRequest.class);
+			User user = invoke(mvcBinder, "$_get_first", User.class, context);
+			assertEquals(User.TWO_STATE, user.getState());
+		} finally {
+			harness.setTracer(null);
+			fsm.setTracer(null);
+		}
+
+		RecordedSpan event = null;
+		for(RecordedSpan span : exporter.getFinishedSpans()) {
+			if (span.getParentSpanId() == null) {
+				assertNull(event);
+				event = span;
+			}
+		}
+		assertNotNull(event);
+		assertEquals(Tracing.EVENT, event.getName());
+		assertEquals(User.class.getName(), event.getAttribute("statefulj.entity"));
+
+		List<String> phases = new ArrayList<String>();
+		for(RecordedSpan span : exporter.getChildren(event)) {
+			assertEquals(event.getTraceId(), span.getTraceId());
+			assertTrue(span.getDurationNanos() >= 0);
+			phases.add(span.getName());
+		}
+		assertEquals(
+				Arrays.asList(
+						Tracing.FIND,
+						Tracing.CREATE,
+						Tracing.AUTOWIRE,
+						Tracing.PERSIST,
+						Tracing.ACTION,
+						Tracing.COMMIT),
+				phases);
+	}
 }
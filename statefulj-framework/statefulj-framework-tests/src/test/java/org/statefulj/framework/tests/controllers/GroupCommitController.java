@@ -0,0 +1,131 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.tests.controllers;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.statefulj.framework.core.annotations.StatefulController;
+import org.statefulj.framework.core.annotations.Transition;
+import org.statefulj.framework.tests.model.User;
+import org.statefulj.fsm.RetryException;
+
+import static org.statefulj.framework.tests.model.User.*;
+
+@StatefulController(
+	clazz=User.class, 
+	startState=ONE_STATE,
+	groupCommitSize=8,
+	groupCommitWindow=50
+)
+public class GroupCommitController {
+	
+	private AtomicInteger commits = new AtomicInteger();
+	
+	private AtomicInteger count = new AtomicInteger();
+	
+	private AtomicInteger slowCommits = new AtomicInteger();
+	
+	private AtomicInteger slowCount = new AtomicInteger();
+	
+	private List<String> conflictThreads = new CopyOnWriteArrayList<String>();
+	
+	@Transition(from=ONE_STATE, event="camel:group", to=TWO_STATE)
+	public void oneToTwo(User user, String event, Long id) {
+		join(count, commits);
+	}
+
+	@Transition(from=TWO_STATE, event="camel:group", to=ONE_STATE)
+	public void twoToOne(User user, String event, Long id) {
+		join(count, commits);
+	}
+
+	@Transition(from=ONE_STATE, event="camel:slow", to=TWO_STATE)
+	public void slowOneToTwo(User user, String event, Long id) throws InterruptedException {
+		slow();
+	}
+
+	@Transition(from=TWO_STATE, event="camel:slow", to=ONE_STATE)
+	public void slowTwoToOne(User user, String event, Long id) throws InterruptedException {
+		slow();
+	}
+
+	/**
+	 * Conflicts on the first attempt, as if the User had gone stale
+	 */
+	@Transition(event="camel:conflict")
+	public void conflict(User user, String event, Long id) throws RetryException {
+		conflictThreads.add(Thread.currentThread().getName());
+		if (conflictThreads.size() == 1) {
+			throw new RetryException();
+		}
+	}
+
+	@Transition(event="camel:fail")
+	public void fail(User user, String event, Long id) {
+		throw new RuntimeException("Failing " + id);
+	}
+	
+	public int getCommits() {
+		return commits.get();
+	}
+	
+	public int getCount() {
+		return count.get();
+	}
+	
+	public int getSlowCommits() {
+		return slowCommits.get();
+	}
+	
+	public int getSlowCount() {
+		return slowCount.get();
+	}
+	
+	public List<String> getConflictThreads() {
+		return conflictThreads;
+	}
+
+	private void slow() throws InterruptedException {
+		Thread.sleep(100);
+		join(slowCount, slowCommits);
+	}
+
+	/**
+	 * Count the events, and the Transactions the events committed in
+	 */
+	private void join(AtomicInteger count, final AtomicInteger commits) {
+		count.incrementAndGet();
+		if (!TransactionSynchronizationManager.hasResource(commits)) {
+			TransactionSynchronizationManager.bindResource(commits, Boolean.TRUE);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResource(commits);
+					if (status == STATUS_COMMITTED) {
+						commits.incrementAndGet();
+					}
+				}
+			});
+		}
+	}
+}
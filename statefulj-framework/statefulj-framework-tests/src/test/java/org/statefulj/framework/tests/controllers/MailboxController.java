@@ -0,0 +1,86 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.tests.controllers;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.statefulj.framework.core.annotations.StatefulController;
+import org.statefulj.framework.core.annotations.Transition;
+import org.statefulj.framework.tests.model.User;
+import org.statefulj.fsm.RetryException;
+
+import static org.statefulj.framework.tests.model.User.*;
+
+@StatefulController(
+	clazz=User.class, 
+	startState=ONE_STATE,
+	mailboxes=4,
+	tracerId="mailboxTracer"
+)
+public class MailboxController {
+	
+	private AtomicInteger inFlight = new AtomicInteger();
+	
+	private AtomicInteger maxInFlight = new AtomicInteger();
+	
+	private AtomicInteger count = new AtomicInteger();
+	
+	private List<String> retryThreads = new CopyOnWriteArrayList<String>();
+	
+	@Transition(from=ONE_STATE, event="camel:flip", to=TWO_STATE)
+	public void oneToTwo(User user, String event, Long id) throws InterruptedException {
+		flip();
+	}
+
+	@Transition(from=TWO_STATE, event="camel:flip", to=ONE_STATE)
+	public void twoToOne(User user, String event, Long id) throws InterruptedException {
+		flip();
+	}
+	
+	@Transition(event="camel:retry")
+	public void retry(User user, String event, Long id) throws RetryException {
+		retryThreads.add(Thread.currentThread().getName());
+		if (retryThreads.size() == 1) {
+			throw new RetryException();
+		}
+	}
+
+	public List<String> getRetryThreads() {
+		return retryThreads;
+	}
+	
+	public int getMaxInFlight() {
+		return maxInFlight.get();
+	}
+	
+	public int getCount() {
+		return count.get();
+	}
+
+	private void flip() throws InterruptedException {
+		int current = inFlight.incrementAndGet();
+		if (current > maxInFlight.get()) {
+			maxInFlight.set(current);
+		}
+		Thread.sleep(5);
+		count.incrementAndGet();
+		inFlight.decrementAndGet();
+	}
+}
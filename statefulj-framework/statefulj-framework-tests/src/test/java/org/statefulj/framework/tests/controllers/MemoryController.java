@@ -17,6 +17,7 @@
  */
 package org.statefulj.framework.tests.controllers;
 
+import org.statefulj.framework.core.annotations.StateCode;
 import org.statefulj.framework.core.annotations.StatefulController;
 import org.statefulj.framework.core.annotations.Transition;
 import org.statefulj.framework.tests.model.MemoryObject;
@@ -25,7 +26,11 @@ import static org.statefulj.framework.tests.model.MemoryObject.*;
 
 @StatefulController(
 	clazz=MemoryObject.class, 
-	startState=ONE_STATE
+	startState=ONE_STATE,
+	stateCodes={
+		@StateCode(state=ONE_STATE, code=1),
+		@StateCode(state=TWO_STATE, code=2)
+	}
 )
 public class MemoryController {
 	
@@ -0,0 +1,191 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.jfr.impl;
+
+import org.statefulj.fsm.jfr.Recorder;
+
+/**
+ * Records the StatefulJ events with the JFR API.  Loaded reflectively by the
+ * {@link org.statefulj.fsm.jfr.FlightRecorder} only if the JVM provides <code>jdk.jfr</code>.
+ * Events are only populated when they will be committed
+ *
+ * @author Andrew Hall
+ *
+ */
+public class JfrRecorder implements Recorder {
+
+	@Override
+	public Object beginTransition() {
+		TransitionEvent event = new TransitionEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endTransition(
+			Object handle,
+			String fsm,
+			Object stateful,
+			String from,
+			String event,
+			String to,
+			boolean completed) {
+		TransitionEvent jfrEvent = (TransitionEvent)handle;
+		jfrEvent.end();
+		if (jfrEvent.shouldCommit()) {
+			jfrEvent.fsm = fsm;
+			jfrEvent.entity = entityName(stateful);
+			jfrEvent.from = from;
+			jfrEvent.event = event;
+			jfrEvent.to = to;
+			jfrEvent.completed = completed;
+			jfrEvent.commit();
+		}
+	}
+
+	@Override
+	public Object beginProcess() {
+		ProcessEvent event = new ProcessEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endProcess(
+			Object handle,
+			String fsm,
+			Object stateful,
+			String event,
+			String from,
+			String to,
+			int attempts,
+			boolean tooBusy) {
+		ProcessEvent jfrEvent = (ProcessEvent)handle;
+		jfrEvent.end();
+		if (jfrEvent.shouldCommit()) {
+			jfrEvent.fsm = fsm;
+			jfrEvent.entity = entityName(stateful);
+			jfrEvent.event = event;
+			jfrEvent.from = from;
+			jfrEvent.to = to;
+			jfrEvent.attempts = attempts;
+			jfrEvent.tooBusy = tooBusy;
+			jfrEvent.commit();
+		}
+	}
+
+	@Override
+	public Object beginRetry() {
+		RetryEvent event = new RetryEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endRetry(
+			Object handle,
+			String fsm,
+			Object stateful,
+			String event,
+			String from,
+			int attempt,
+			long wait) {
+		RetryEvent jfrEvent = (RetryEvent)handle;
+		jfrEvent.end();
+		if (jfrEvent.shouldCommit()) {
+			jfrEvent.fsm = fsm;
+			jfrEvent.entity = entityName(stateful);
+			jfrEvent.event = event;
+			jfrEvent.from = from;
+			jfrEvent.attempt = attempt;
+			jfrEvent.wait = wait;
+			jfrEvent.commit();
+		}
+	}
+
+	@Override
+	public Object beginPersist() {
+		PersistEvent event = new PersistEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endPersist(
+			Object handle,
+			Object persister,
+			Class<?> entity,
+			String from,
+			String to,
+			int count,
+			int stale) {
+		PersistEvent jfrEvent = (PersistEvent)handle;
+		jfrEvent.end();
+		if (jfrEvent.shouldCommit()) {
+			jfrEvent.persister = (persister == null) ? null : persister.getClass().getSimpleName();
+			jfrEvent.entity = (entity == null) ? null : entity.getName();
+			jfrEvent.from = from;
+			jfrEvent.to = to;
+			jfrEvent.count = count;
+			jfrEvent.stale = stale;
+			jfrEvent.commit();
+		}
+	}
+
+	@Override
+	public Object beginAction() {
+		ActionEvent event = new ActionEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endAction(
+			Object handle,
+			String action,
+			Object stateful,
+			String event) {
+		ActionEvent jfrEvent = (ActionEvent)handle;
+		jfrEvent.end();
+		if (jfrEvent.shouldCommit()) {
+			jfrEvent.action = action;
+			jfrEvent.entity = entityName(stateful);
+			jfrEvent.event = event;
+			jfrEvent.commit();
+		}
+	}
+
+	private static String entityName(Object stateful) {
+		return (stateful == null) ? null : stateful.getClass().getName();
+	}
+}
@@ -0,0 +1,54 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.jfr.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Recorded for each call to a Persister to set the current State
+ *
+ * @author Andrew Hall
+ *
+ */
+@Name("org.statefulj.Persist")
+@Label("Persist State")
+@Description("A Persister setting the current State of one or more Stateful Entities")
+@Category("StatefulJ")
+class PersistEvent extends jdk.jfr.Event {
+
+	@Label("Persister")
+	String persister;
+
+	@Label("Entity")
+	String entity;
+
+	@Label("From")
+	String from;
+
+	@Label("To")
+	String to;
+
+	@Label("Count")
+	int count;
+
+	@Label("Stale")
+	int stale;
+}
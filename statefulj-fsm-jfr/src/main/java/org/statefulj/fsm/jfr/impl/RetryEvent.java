@@ -0,0 +1,57 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.jfr.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Recorded when an Event is retried.  The duration is the time spent waiting for the
+ * next attempt
+ *
+ * @author Andrew Hall
+ *
+ */
+@Name("org.statefulj.Retry")
+@Label("Retry")
+@Description("Retry of an Event")
+@Category("StatefulJ")
+class RetryEvent extends jdk.jfr.Event {
+
+	@Label("FSM")
+	String fsm;
+
+	@Label("Entity")
+	String entity;
+
+	@Label("Event")
+	String event;
+
+	@Label("From")
+	String from;
+
+	@Label("Attempt")
+	int attempt;
+
+	@Label("Wait")
+	@Timespan(Timespan.MILLISECONDS)
+	long wait;
+}
@@ -0,0 +1,54 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.jfr.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Recorded for each Transition: setting the State and executing the Action
+ *
+ * @author Andrew Hall
+ *
+ */
+@Name("org.statefulj.Transition")
+@Label("Transition")
+@Description("A Transition of a Stateful Entity")
+@Category("StatefulJ")
+class TransitionEvent extends jdk.jfr.Event {
+
+	@Label("FSM")
+	String fsm;
+
+	@Label("Entity")
+	String entity;
+
+	@Label("From")
+	String from;
+
+	@Label("Event")
+	String event;
+
+	@Label("To")
+	String to;
+
+	@Label("Completed")
+	boolean completed;
+}
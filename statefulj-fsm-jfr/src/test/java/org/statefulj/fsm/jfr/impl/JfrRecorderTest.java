@@ -0,0 +1,163 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.jfr.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.jfr.FlightRecorder;
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.StateActionPair;
+import org.statefulj.fsm.model.Transition;
+import org.statefulj.fsm.model.impl.StateImpl;
+import org.statefulj.persistence.memory.MemoryPersisterImpl;
+
+/**
+ * @author Andrew Hall
+ *
+ */
+public class JfrRecorderTest {
+
+	public static class Foo {
+
+		@org.statefulj.persistence.annotations.State
+		String state;
+	}
+
+	@Test
+	public void testFlightRecorder() throws TooBusyException, IOException, InterruptedException {
+		if (!FlightRecorder.isAvailable()) {
+			return;
+		}
+		Foo foo = new Foo();
+		Foo busy = new Foo();
+
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+		State<Foo> stateC = new StateImpl<Foo>("stateC");
+
+		stateA.addTransition("eventA", stateB);
+		stateC.addTransition("eventA", new Transition<Foo>() {
+
+			@Override
+			public StateActionPair<Foo> getStateActionPair(Foo stateful, String event, Object... args) throws RetryException {
+				throw new RetryException();
+			}
+
+		});
+
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+
+		MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+		persister.setCurrent(foo, stateA);
+		persister.setCurrent(busy, stateC);
+
+		FSM<Foo> fsm = new FSM<Foo>("Recorded", persister);
+		fsm.setRetryAttempts(2);
+		fsm.setRetryInterval(1);
+
+		FSM<Foo> asyncFsm = new FSM<Foo>("RecordedAsync", persister);
+		asyncFsm.setRetryAttempts(2);
+		asyncFsm.setRetryInterval(1);
+
+		Recording recording = new Recording();
+		recording.enable("org.statefulj.Transition").withThreshold(Duration.ZERO);
+		recording.enable("org.statefulj.ProcessEvent").withThreshold(Duration.ZERO);
+		recording.enable("org.statefulj.Retry").withThreshold(Duration.ZERO);
+		recording.start();
+		try {
+			fsm.onEvent(foo, "eventA");
+			try {
+				fsm.onEvent(busy, "eventA");
+				fail("Expected TooBusyException");
+			} catch(TooBusyException e) {
+				// expected
+			}
+			try {
+				asyncFsm.onEventAsync(busy, "eventA").get();
+				fail("Expected TooBusyException");
+			} catch(ExecutionException e) {
+				assertTrue(e.getCause() instanceof TooBusyException);
+			}
+		} finally {
+			recording.stop();
+		}
+
+		Path dump = Files.createTempFile("statefulj", ".jfr");
+		try {
+			recording.dump(dump);
+			int transitions = 0;
+			int retries = 0;
+			int tooBusy = 0;
+			int asyncRetries = 0;
+			for(RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+				String name = event.getEventType().getName();
+
+				// An asynchronous Retry spans the scheduled wait
+				//
+				if ("RecordedAsync".equals(event.getString("fsm")) && name.equals("org.statefulj.Retry")) {
+					assertEquals("stateC", event.getString("from"));
+					assertFalse(event.getDuration().isZero());
+					asyncRetries++;
+				}
+				if (!"Recorded".equals(event.getString("fsm"))) {
+					continue;
+				}
+				if (name.equals("org.statefulj.Transition") && event.getBoolean("completed")) {
+					assertEquals("stateA", event.getString("from"));
+					assertEquals("stateB", event.getString("to"));
+					assertEquals(Foo.class.getName(), event.getString("entity"));
+					transitions++;
+				} else if (name.equals("org.statefulj.Retry")) {
+					assertEquals("stateC", event.getString("from"));
+					retries++;
+				} else if (name.equals("org.statefulj.ProcessEvent") && event.getBoolean("tooBusy")) {
+					assertEquals(2, event.getInt("attempts"));
+					tooBusy++;
+				}
+			}
+			assertEquals(1, transitions);
+			// The FixedRetryPolicy waits after each failed attempt
+			//
+			assertEquals(2, retries);
+			assertEquals(1, tooBusy);
+			assertEquals(2, asyncRetries);
+		} finally {
+			recording.close();
+			Files.delete(dump);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+import java.util.List;
+
+import org.statefulj.fsm.model.State;
+
+/**
+ * An optional extension of the {@link Persister} which is able to set the State of many
+ * Stateful Entities in a single round trip to the underlying database.  When the FSM's
+ * Persister is a BatchPersister, {@link FSM#onEvents(List, String, Object...)} will
+ * use it in place of calling {@link Persister#setCurrent(Object, State, State)} once per
+ * Stateful Entity
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface BatchPersister<T> extends Persister<T> {
+
+	/**
+	 * Set the current state of each Stateful Entity to the next state.  As with
+	 * {@link Persister#setCurrent(Object, State, State)}, each update is qualified by the
+	 * expected current State.  Rather than throwing a StaleStateException, the outcome
+	 * of each update is returned.  A Stateful Entity whose update failed must be left
+	 * holding the latest State known to the Persister
+	 *
+	 * @param statefuls Stateful Entities
+	 * @param current Expected current State of every Stateful Entity
+	 * @param next The value of the updated State
+	 * @return For each Stateful Entity, whether its State was set.  False indicates the Entity's State was stale
+	 */
+	boolean[] setCurrent(List<T> statefuls, State<T> current, State<T> next);
+}
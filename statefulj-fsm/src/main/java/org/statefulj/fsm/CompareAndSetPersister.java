@@ -0,0 +1,45 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+import org.statefulj.fsm.model.State;
+
+/**
+ * An optional extension of the {@link Persister} which reports a stale State by returning false
+ * rather than throwing a {@link StaleStateException}.  When the FSM's Persister is a
+ * CompareAndSetPersister, a conflict is signalled to the FSM with a preallocated, stackless
+ * StaleStateException, so retrying under contention doesn't pay for building an exception.
+ * {@link Persister#setCurrent(Object, State, State)} remains as the throwing adapter
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface CompareAndSetPersister<T> extends Persister<T> {
+
+	/**
+	 * Set the current state to the next state if, and only if, the current state is the expected
+	 * current state.  If the state was stale, the Stateful Entity must be left holding the latest
+	 * State known to the Persister
+	 *
+	 * @param stateful StatefulEntity
+	 * @param current Expected current State of the Stateful Entity
+	 * @param next The value of the updated State
+	 * @return true if the State was set, false if the State was stale
+	 */
+	boolean compareAndSetState(T stateful, State<T> current, State<T> next);
+}
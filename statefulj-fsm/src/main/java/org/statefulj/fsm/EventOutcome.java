@@ -0,0 +1,50 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+/**
+ * The outcome of an event for a single Stateful Entity within a batch, see {@link FSM#onEvents}
+ *
+ * @author Andrew Hall
+ *
+ */
+public enum EventOutcome {
+
+	/**
+	 * The Stateful Entity transitioned and the Action was executed
+	 */
+	SUCCESS,
+
+	/**
+	 * The State of the Stateful Entity changed underneath us, or the Entity is in a Blocking State.
+	 * The event wasn't processed and may be retried
+	 */
+	STALE,
+
+	/**
+	 * There is no Transition for the event from the Stateful Entity's current State
+	 */
+	NOOP,
+
+	/**
+	 * The State of the Stateful Entity was set, but the Action then failed or requested a retry.
+	 * The Entity is already in its new State, so the event must not simply be resubmitted
+	 */
+	FAILED
+
+}
@@ -19,18 +19,34 @@ package org.statefulj.fsm;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.statefulj.fsm.jfr.FlightRecorder;
+import org.statefulj.fsm.metrics.NoopFSMListener;
 import org.statefulj.fsm.model.Action;
 import org.statefulj.fsm.model.State;
 import org.statefulj.fsm.model.StateActionPair;
 import org.statefulj.fsm.model.Transition;
 import org.statefulj.fsm.model.impl.DeterministicTransitionImpl;
+import org.statefulj.fsm.model.impl.CompiledStateImpl;
 import org.statefulj.fsm.model.impl.StateImpl;
+import org.statefulj.fsm.model.impl.TransitionTable;
+import org.statefulj.fsm.retry.FixedRetryPolicy;
 import org.statefulj.persistence.memory.MemoryPersisterImpl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The FSM is responsible for the processing the event with the current State and persisting
@@ -46,11 +62,18 @@ public class FSM<T> {
 	private static final int DEFAULT_RETRIES = 20;
 	private static final int DEFAULT_RETRY_INTERVAL = 250;  // 250 ms
 
-	private int retryAttempts = DEFAULT_RETRIES;
-	private int retryInterval = DEFAULT_RETRY_INTERVAL;
+	private volatile int retryAttempts = DEFAULT_RETRIES;
+	private volatile int retryInterval = DEFAULT_RETRY_INTERVAL;
 
 	private Persister<T> persister;
 	private String name = "FSM";
+	private volatile FSMDefinition<T> definition;
+	private ScheduledExecutorService scheduler;
+	private volatile RetryPolicy retryPolicy;
+	private volatile RetryPolicy fixedRetryPolicy;
+	private FSMListener<T> listener = NoopFSMListener.getInstance();
+	private volatile WaitAndRetryException blockedSignal;
+	private volatile LockMode lockMode = LockMode.OPTIMISTIC;
 
 	/**
 	 * FSM Constructor with the name of the FSM
@@ -96,6 +119,33 @@ public class FSM<T> {
 		this.retryInterval = retryInterval;
 	}
 
+	/**
+	 * FSM Constructor for a compiled FSM
+	 *
+	 * @param name Name associated with the FSM
+	 * @param persister Persister responsible for setting the State on the Entity
+	 * @param retryAttempts Number of Retry Attempts.  A value of -1 indicates unlimited Attempts
+	 * @param retryInterval Time between Retry Attempts in milliseconds
+	 * @param transitionTable The compiled States and Transitions
+	 */
+	public FSM(String name, Persister<T> persister, int retryAttempts, int retryInterval, TransitionTable<T> transitionTable) {
+		this(name, persister, retryAttempts, retryInterval, FSMDefinition.create(transitionTable, null));
+	}
+
+	/**
+	 * FSM Constructor with the FSM's definition
+	 *
+	 * @param name Name associated with the FSM
+	 * @param persister Persister responsible for setting the State on the Entity
+	 * @param retryAttempts Number of Retry Attempts.  A value of -1 indicates unlimited Attempts
+	 * @param retryInterval Time between Retry Attempts in milliseconds
+	 * @param definition The States, start State and, if compiled, the TransitionTable of the FSM
+	 */
+	public FSM(String name, Persister<T> persister, int retryAttempts, int retryInterval, FSMDefinition<T> definition) {
+		this(name, persister, retryAttempts, retryInterval);
+		this.publish(definition);
+	}
+
 	/**
 	 * Process event.  Will handle all retry attempts.  If attempts exceed maximum retries,
 	 * it will throw a TooBusyException.
@@ -107,69 +157,540 @@ public class FSM<T> {
 	 * @throws TooBusyException Exception indicating that we've exceeded the number of RetryAttempts
 	 */
 	public State<T> onEvent(T stateful, String event, Object ... args) throws TooBusyException {
+		return this.onEvent(stateful, event, -1, args);
+	}
 
-		int attempts = 0;
+	/**
+	 * Process event by its ordinal.  Only supported by a compiled FSM, see
+	 * {@link FSMBuilder#setCompiled(boolean)}.  Use {@link #getEventId(String)} to resolve
+	 * the ordinal of an Event once, then dispatch with the ordinal.
+	 *
+	 * @param stateful The Stateful Entity
+	 * @param eventId The ordinal of the Event
+	 * @param args Optional parameters to pass into the Action
+	 * @return The current State
+	 * @throws TooBusyException Exception indicating that we've exceeded the number of RetryAttempts
+	 */
+	public State<T> onEvent(T stateful, int eventId, Object ... args) throws TooBusyException {
+		return this.onEvent(stateful, this.getTransitionTable().getEvent(eventId), eventId, args);
+	}
 
-		while(this.retryAttempts == -1 || attempts < this.retryAttempts) {
-			try {
-				State<T> current = this.getCurrentState(stateful);
+	/**
+	 * Return the ordinal of an Event.  Only supported by a compiled FSM.
+	 *
+	 * @param event The Event
+	 * @return The ordinal of the Event or -1 if the Event isn't known to the FSM
+	 */
+	public int getEventId(String event) {
+		return this.getTransitionTable().getEventId(event);
+	}
 
-				// Fetch the transition for this event from the current state
-				//
-				Transition<T> transition = this.getTransition(event, current);
+	/**
+	 * @return Whether the FSM was compiled into a {@link TransitionTable}
+	 */
+	public boolean isCompiled() {
+		FSMDefinition<T> definition = this.getDefinition();
+		return definition != null && definition.isCompiled();
+	}
 
-				// Is there one?
-				//
-				if (transition != null) {
-					current = this.transition(stateful, current, event, transition, args);
+	/**
+	 * Process event asynchronously.  The first attempt is made on the calling thread; if the event
+	 * needs to be retried, the retries are scheduled on the {@link #getScheduler() scheduler} rather than
+	 * sleeping on the calling thread.  If attempts exceed maximum retries, the returned future completes
+	 * exceptionally with a TooBusyException.
+	 *
+	 * @param stateful The Stateful Entity
+	 * @param event The Event
+	 * @param args Optional parameters to pass into the Action
+	 * @return A future of the current State
+	 */
+	public CompletableFuture<State<T>> onEventAsync(final T stateful, final String event, final Object ... args) {
+		CompletableFuture<State<T>> future = new CompletableFuture<State<T>>();
+		this.attemptAsync(new EventAttempt(stateful, event, -1, args), future, 0, null);
+		return future;
+	}
+
+	/**
+	 * Process event by its ordinal asynchronously.  Only supported by a compiled FSM.
+	 *
+	 * @param stateful The Stateful Entity
+	 * @param eventId The ordinal of the Event
+	 * @param args Optional parameters to pass into the Action
+	 * @return A future of the current State
+	 */
+	public CompletableFuture<State<T>> onEventAsync(final T stateful, final int eventId, final Object ... args) {
+		String event = this.getTransitionTable().getEvent(eventId);
+		CompletableFuture<State<T>> future = new CompletableFuture<State<T>>();
+		this.attemptAsync(new EventAttempt(stateful, event, eventId, args), future, 0, null);
+		return future;
+	}
+
+	/**
+	 * Make a single attempt at processing the event.  No retries are made, a RetryException
+	 * is thrown back to the caller instead
+	 *
+	 * @param stateful The Stateful Entity
+	 * @param event The Event
+	 * @param args Optional parameters to pass into the Action
+	 * @return The current State
+	 * @throws RetryException Indicates the event must be retried
+	 */
+	public State<T> onEventAttempt(T stateful, String event, Object ... args) throws RetryException {
+		State<T> current = null;
+		try {
+			current = this.lockCurrentState(stateful);
+			return this.processEvent(stateful, current, event, -1, args);
+		} catch(StaleStateException sse) {
+
+			// The signal escapes to the caller, so describe the conflict
+			//
+			if (sse.isSignal()) {
+				throw this.describeStaleState(stateful, current);
+			}
+			throw sse;
+		}
+	}
+
+	/**
+	 * Process the same event for a batch of Stateful Entities.  The current State of every Entity is
+	 * resolved first and the Entities are grouped by their State change, so that each group is
+	 * persisted with a single {@link #setCurrent(List, State, State)} call before the Actions are executed.
+	 * No retries are made: an Entity whose State changed underneath us, or which is in a Blocking State,
+	 * is reported as {@link EventOutcome#STALE} and may be resubmitted.  An Entity whose Action fails, or
+	 * requests a retry, once its State was set is reported as {@link EventOutcome#FAILED}; the remaining
+	 * Entities of the batch are still processed
+	 *
+	 * @param statefuls The Stateful Entities
+	 * @param event The Event
+	 * @param args Optional parameters to pass into the Actions
+	 * @return The outcome for each Stateful Entity, in the order of the statefuls
+	 */
+	public List<EventOutcome> onEvents(List<T> statefuls, String event, Object ... args) {
+		int size = statefuls.size();
+		EventOutcome[] outcomes = new EventOutcome[size];
+		List<State<T>> currents = new ArrayList<State<T>>(size);
+		List<Transition<T>> transitions = new ArrayList<Transition<T>>(size);
+		List<StateActionPair<T>> pairs = new ArrayList<StateActionPair<T>>(size);
+		long[] starts = new long[size];
+		Map<State<T>, Map<State<T>, List<Integer>>> groups = new LinkedHashMap<State<T>, Map<State<T>, List<Integer>>>();
+
+		// Resolve the Transition for every Stateful Entity and group them by State change
+		//
+		for(int i = 0; i < size; i++) {
+			T stateful = statefuls.get(i);
+			State<T> current = this.getCurrentState(stateful);
+			Transition<T> transition = this.getTransition(event, current);
+			StateActionPair<T> pair = null;
+
+			if (transition == null) {
+				if (current.isBlocking()) {
+					outcomes[i] = EventOutcome.STALE;
+					this.listener.onRetry(this.name, stateful, current.getName(), event, current.getName());
 				} else {
+					outcomes[i] = EventOutcome.NOOP;
+					this.listener.onNoop(this.name, stateful, current.getName(), event, current.getName());
+				}
+			} else {
+				try {
+					pair = transition.getStateActionPair(stateful, event, args);
+					this.listener.onTransitionStart(this.name, stateful, current.getName(), event, pair.getState().getName());
+					starts[i] = System.nanoTime();
+					if (this.isStateChange(transition, pair)) {
+						addToGroup(groups, current, pair.getState(), i);
+					} else {
+						outcomes[i] = EventOutcome.SUCCESS;
+					}
+				} catch(RetryException re) {
+					outcomes[i] = EventOutcome.STALE;
+					this.listener.onRetry(this.name, stateful, current.getName(), event, null);
+				}
+			}
+			currents.add(current);
+			transitions.add(transition);
+			pairs.add(pair);
+		}
 
-					if (logger.isDebugEnabled())
-                        logger.debug("{}({})::{}({})->{}/noop",
-                                this.name,
-                                stateful.getClass().getSimpleName(),
-                                current.getName(),
-                                event,
-                                current.getName());
-
-					// If blocking, force a transition to the current state as
-					// it's possible that another thread has moved out of the blocking state.
-					// Either way, we'll retry this event
-					//
-					if (current.isBlocking()) {
-						this.setCurrent(stateful, current, current);
-						throw new WaitAndRetryException(this.retryInterval);
+		// Persist each group in one go
+		//
+		for(Map.Entry<State<T>, Map<State<T>, List<Integer>>> byCurrent : groups.entrySet()) {
+			for(Map.Entry<State<T>, List<Integer>> byNext : byCurrent.getValue().entrySet()) {
+				List<Integer> indices = byNext.getValue();
+				List<T> group = new ArrayList<T>(indices.size());
+				for(Integer index : indices) {
+					group.add(statefuls.get(index));
+				}
+				boolean[] updated = this.setCurrent(group, byCurrent.getKey(), byNext.getKey());
+				for(int i = 0; i < updated.length; i++) {
+					outcomes[indices.get(i)] = (updated[i]) ? EventOutcome.SUCCESS : EventOutcome.STALE;
+					if (!updated[i]) {
+						this.listener.onStaleState(this.name, group.get(i), byCurrent.getKey().getName(), event, byNext.getKey().getName());
+						this.listener.onTransitionFailed(this.name, group.get(i), byCurrent.getKey().getName(), event, byNext.getKey().getName());
 					}
 				}
+			}
+		}
 
-				return current;
+		// Now execute the Actions
+		//
+		for(int i = 0; i < size; i++) {
+			if (outcomes[i] == EventOutcome.SUCCESS) {
+				String from = currents.get(i).getName();
+				String to = pairs.get(i).getState().getName();
+				try {
+					this.completeTransition(statefuls.get(i), currents.get(i), event, transitions.get(i), pairs.get(i), args);
+					this.listener.onTransitionEnd(this.name, statefuls.get(i), from, event, to, System.nanoTime() - starts[i]);
+				} catch(RetryException re) {
+
+					// The State was already set, so the event can't simply be retried
+					//
+					outcomes[i] = EventOutcome.FAILED;
+					logger.warn("{}({})::{}({})->{} requested a retry after the State was set", this.name, statefuls.get(i), from, event, to);
+					this.listener.onTransitionFailed(this.name, statefuls.get(i), from, event, to);
+				} catch(RuntimeException re) {
+					outcomes[i] = EventOutcome.FAILED;
+					logger.error("{}({})::{}({})->{} failed", this.name, statefuls.get(i), from, event, to, re);
+					this.listener.onTransitionFailed(this.name, statefuls.get(i), from, event, to);
+				}
+			}
+		}
+
+		List<EventOutcome> results = new ArrayList<EventOutcome>(size);
+		for(EventOutcome outcome : outcomes) {
+			results.add(outcome);
+		}
+		return results;
+	}
+
+	private void addToGroup(Map<State<T>, Map<State<T>, List<Integer>>> groups, State<T> current, State<T> next, int index) {
+		Map<State<T>, List<Integer>> byNext = groups.get(current);
+		if (byNext == null) {
+			byNext = new LinkedHashMap<State<T>, List<Integer>>();
+			groups.put(current, byNext);
+		}
+		List<Integer> indices = byNext.get(next);
+		if (indices == null) {
+			indices = new ArrayList<Integer>();
+			byNext.put(next, indices);
+		}
+		indices.add(index);
+	}
+
+	/**
+	 * Run an attempt until it doesn't throw a RetryException, scheduling each retry on the
+	 * {@link #getScheduler() scheduler} using this FSM's retry settings.  This allows callers
+	 * to wrap each attempt, e.g. in a transaction
+	 *
+	 * @param attempt A single attempt at processing an event
+	 * @return A future of the attempt's result.  Completes exceptionally with a TooBusyException
+	 * if the attempts exceed maximum retries, or with the exception thrown by the attempt
+	 */
+	public <R> CompletableFuture<R> retryAsync(Callable<R> attempt) {
+		return this.retryAsync(attempt, null);
+	}
+
+	/**
+	 * Run an attempt until it doesn't throw a RetryException.  Each retry waits on the
+	 * {@link #getScheduler() scheduler} and is then handed to the retryExecutor, e.g. so that
+	 * the retry is queued behind the work already waiting on the Stateful Entity
+	 *
+	 * @param attempt A single attempt at processing an event
+	 * @param retryExecutor The Executor which runs the retries, or null to run them on the scheduler
+	 * @return A future of the attempt's result.  Completes exceptionally with a TooBusyException
+	 * if the attempts exceed maximum retries, or with the exception thrown by the attempt
+	 */
+	public <R> CompletableFuture<R> retryAsync(Callable<R> attempt, Executor retryExecutor) {
+		CompletableFuture<R> future = new CompletableFuture<R>();
+		this.attemptAsync(attempt, future, 0, retryExecutor);
+		return future;
+	}
 
+	/**
+	 * Run an attempt on the calling thread until it doesn't throw a RetryException, waiting between
+	 * the attempts using this FSM's retry settings.  The wait happens outside of the attempt, so callers
+	 * can wrap each attempt in its own unit of work, e.g. a transaction, and release its locks before
+	 * waiting
+	 *
+	 * @param attempt A single attempt at processing an event
+	 * @return The attempt's result
+	 * @throws TooBusyException if the attempts exceed maximum retries
+	 */
+	public <R> R retry(Callable<R> attempt) throws TooBusyException {
+		int attempts = 0;
+		RetryPolicy retryPolicy = this.getRetryPolicy();
+		while(retryPolicy.canAttempt(attempts)) {
+			try {
+				return attempt.call();
 			} catch(RetryException re) {
 
-				logger.warn("{}({})::Retrying event", this.name, stateful);
+				attempts++;
 
-				// Wait?
+				// Has the policy given up on us?
 				//
-				if (WaitAndRetryException.class.isInstance(re)) {
+				long wait = retryPolicy.getWait(attempts, re);
+				if (wait < 0) {
+					break;
+				}
+
+				logger.warn("{}::Retrying event", this.name);
+				logger.debug("{}::Retrying event", this.name, re);
+
+				if (wait > 0) {
 					try {
-						Thread.sleep(((WaitAndRetryException)re).getWait());
+						Thread.sleep(wait);
 					} catch(InterruptedException ie) {
 						throw new RuntimeException(ie);
 					}
 				}
-				attempts++;
+			} catch(TooBusyException tbe) {
+				throw tbe;
+			} catch(RuntimeException re) {
+				throw re;
+			} catch(Exception e) {
+				throw new RuntimeException(e);
 			}
 		}
-		logger.error("{}({})::Unable to process event", this.name, stateful);
+		logger.error("{}::Unable to process event", this.name);
+		this.notifyTooBusy(null);
 		throw new TooBusyException();
 	}
 
+	/**
+	 * @param attempt The attempt.  If it's an {@link EventAttempt}, its Stateful Entity, Event and the
+	 * State it was last attempted from are reported to the FSMListener
+	 * @param retryExecutor The Executor which runs the retries, or null to run them on the scheduler
+	 */
+	private <R> void attemptAsync(
+			final Callable<R> attempt,
+			final CompletableFuture<R> future,
+			final int attempts,
+			final Executor retryExecutor) {
+		final EventAttempt eventAttempt = (attempt instanceof FSM.EventAttempt) ? (EventAttempt)attempt : null;
+		final T stateful = (eventAttempt != null) ? eventAttempt.stateful : null;
+		final String event = (eventAttempt != null) ? eventAttempt.event : null;
+		RetryPolicy retryPolicy = this.getRetryPolicy();
+		if (!retryPolicy.canAttempt(attempts)) {
+			logger.error("{}::Unable to process event", this.name);
+			this.notifyTooBusy(eventAttempt);
+			future.completeExceptionally(new TooBusyException());
+			return;
+		}
+		try {
+			future.complete(attempt.call());
+		} catch(RetryException re) {
+
+			// Wait?  Don't sleep, schedule the next attempt
+			//
+			final long wait = retryPolicy.getWait(attempts + 1, re);
+			if (wait < 0) {
+				logger.error("{}::Unable to process event", this.name);
+				this.notifyTooBusy(eventAttempt);
+				future.completeExceptionally(new TooBusyException());
+				return;
+			}
+
+			logger.warn("{}::Retrying event", this.name);
+			logger.debug("{}::Retrying event", this.name, re);
+
+			// The Retry event spans the scheduled wait
+			//
+			final Object retry = FlightRecorder.beginRetry();
+			final String from = (eventAttempt != null && eventAttempt.current != null) ? eventAttempt.current.getName() : null;
+
+			try {
+				final Runnable retryAttempt = new Runnable() {
+
+					@Override
+					public void run() {
+						attemptAsync(attempt, future, attempts + 1, retryExecutor);
+					}
+				};
+				this.getScheduler().schedule(new Runnable() {
+
+					@Override
+					public void run() {
+						FlightRecorder.endRetry(retry, name, stateful, event, from, attempts + 1, wait);
+						if (retryExecutor == null) {
+							retryAttempt.run();
+							return;
+						}
+						try {
+							retryExecutor.execute(retryAttempt);
+						} catch(RejectedExecutionException ree) {
+							future.completeExceptionally(ree);
+						}
+					}
+				}, wait, TimeUnit.MILLISECONDS);
+			} catch(RejectedExecutionException ree) {
+				future.completeExceptionally(ree);
+			}
+		} catch(Throwable t) {
+			future.completeExceptionally(t);
+		}
+	}
+
+	private State<T> onEvent(T stateful, String event, int eventId, Object ... args) throws TooBusyException {
+
+		int attempts = 0;
+		RetryPolicy retryPolicy = this.getRetryPolicy();
+		Object recording = FlightRecorder.beginProcess();
+		String from = null;
+		String to = null;
+		State<T> current = null;
+		boolean tooBusy = false;
+
+		try {
+			while(retryPolicy.canAttempt(attempts)) {
+				try {
+					current = this.lockCurrentState(stateful);
+					if (from == null) {
+						from = current.getName();
+					}
+					State<T> next = this.processEvent(stateful, current, event, eventId, args);
+					to = next.getName();
+					return next;
+				} catch(RetryException re) {
+
+					attempts++;
+
+					// Has the policy given up on us?  A pessimistic lock is held by the caller's unit of work,
+					// and a failed lock may have marked it for rollback, so the event is never retried within it
+					//
+					long wait = (this.isLocking()) ? -1 : retryPolicy.getWait(attempts, re);
+					if (wait < 0) {
+						break;
+					}
+
+					logger.warn("{}({})::Retrying event", this.name, stateful);
+					logger.debug("{}({})::Retrying event", this.name, stateful, re);
+
+					// Wait?
+					//
+					Object retry = FlightRecorder.beginRetry();
+					if (wait > 0) {
+						try {
+							Thread.sleep(wait);
+						} catch(InterruptedException ie) {
+							throw new RuntimeException(ie);
+						}
+					}
+					FlightRecorder.endRetry(retry, this.name, stateful, event, (current != null) ? current.getName() : null, attempts, wait);
+				}
+			}
+			logger.error("{}({})::Unable to process event", this.name, stateful);
+			this.notifyTooBusy(stateful, current, event);
+			tooBusy = true;
+			throw new TooBusyException();
+		} finally {
+			FlightRecorder.endProcess(recording, this.name, stateful, event, from, to, (tooBusy) ? attempts : attempts + 1, tooBusy);
+		}
+	}
+
+	/**
+	 * @return The preallocated signal to retry an event on a Blocking State after the retryInterval
+	 */
+	private WaitAndRetryException getBlockedSignal() {
+		WaitAndRetryException signal = this.blockedSignal;
+		if (signal == null || signal.getWait() != this.retryInterval) {
+			signal = WaitAndRetryException.signal(this.retryInterval);
+			this.blockedSignal = signal;
+		}
+		return signal;
+	}
+
+	/**
+	 * @param eventAttempt The attempt which gave up, or null if the FSM was retrying an arbitrary attempt
+	 */
+	private void notifyTooBusy(EventAttempt eventAttempt) {
+		if (eventAttempt == null) {
+			this.listener.onTooBusy(this.name, null, null, null, null);
+		} else {
+			this.notifyTooBusy(eventAttempt.stateful, eventAttempt.current, eventAttempt.event);
+		}
+	}
+
+	/**
+	 * @param current The State the event was last attempted from, or null if it was never attempted
+	 */
+	private void notifyTooBusy(T stateful, State<T> current, String event) {
+		this.listener.onTooBusy(this.name, stateful, (current != null) ? current.getName() : null, event, null);
+	}
+
+	/**
+	 * @return Whether each attempt locks the Stateful Entity
+	 */
+	private boolean isLocking() {
+		return this.lockMode != LockMode.OPTIMISTIC && this.persister instanceof LockingPersister;
+	}
+
+	/**
+	 * Lock the Stateful Entity, if the FSM isn't optimistic, before reading its current State
+	 */
+	private State<T> lockCurrentState(T stateful) throws RetryException {
+		if (this.isLocking()) {
+			((LockingPersister<T>)this.persister).lock(stateful, this.lockMode);
+		}
+		return this.getCurrentState(stateful);
+	}
+
+	/**
+	 * Make a single attempt at processing the event from the current State
+	 *
+	 * @param current The current State, read once the Stateful Entity was locked
+	 * @param eventId The ordinal of the Event, or -1 to resolve the Transition by name
+	 */
+	private State<T> processEvent(T stateful, State<T> current, String event, int eventId, Object ... args) throws RetryException {
+
+		// Fetch the transition for this event from the current state
+		//
+		Transition<T> transition = (eventId < 0)
+				? this.getTransition(event, current)
+				: this.getTransition(eventId, current);
+
+		// Is there one?
+		//
+		if (transition != null) {
+			current = this.transition(stateful, current, event, transition, args);
+		} else {
+
+			if (logger.isDebugEnabled())
+                logger.debug("{}({})::{}({})->{}/noop",
+                        this.name,
+                        stateful.getClass().getSimpleName(),
+                        current.getName(),
+                        event,
+                        current.getName());
+
+			// If blocking, force a transition to the current state as
+			// it's possible that another thread has moved out of the blocking state.
+			// Either way, we'll retry this event
+			//
+			if (current.isBlocking()) {
+				try {
+					this.setCurrent(stateful, current, current);
+				} catch(StaleStateException sse) {
+
+					// Moved on by another thread, report the stale State rather than a retry
+					//
+					this.listener.onStaleState(this.name, stateful, current.getName(), event, current.getName());
+					throw sse;
+				}
+				this.listener.onRetry(this.name, stateful, current.getName(), event, current.getName());
+				throw this.getBlockedSignal();
+			}
+
+			this.listener.onNoop(this.name, stateful, current.getName(), event, current.getName());
+		}
+
+		return current;
+	}
+
 	public int getRetryAttempts() {
 		return retryAttempts;
 	}
 
 	public void setRetryAttempts(int retries) {
 		this.retryAttempts = retries;
+		this.fixedRetryPolicy = null;
 	}
 
 	public int getRetryInterval() {
@@ -180,6 +701,99 @@ public class FSM<T> {
 		this.retryInterval = retryInterval;
 	}
 
+	/**
+	 * @return The RetryPolicy.  Unless set, a {@link FixedRetryPolicy} honouring the
+	 * retryAttempts is used
+	 */
+	public RetryPolicy getRetryPolicy() {
+		if (this.retryPolicy != null) {
+			return this.retryPolicy;
+		}
+		RetryPolicy fixed = this.fixedRetryPolicy;
+		if (fixed == null) {
+			fixed = new FixedRetryPolicy(this.retryAttempts);
+			this.fixedRetryPolicy = fixed;
+		}
+		return fixed;
+	}
+
+	/**
+	 * Set the RetryPolicy, this supersedes the retryAttempts.  The retryInterval is
+	 * still used as the wait requested by a Blocking State
+	 *
+	 * @param retryPolicy The RetryPolicy, or null to revert to the retryAttempts
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * @return Whether a RetryPolicy was set, superseding the retryAttempts
+	 */
+	public boolean hasRetryPolicy() {
+		return this.retryPolicy != null;
+	}
+
+	public FSMListener<T> getListener() {
+		return listener;
+	}
+
+	/**
+	 * Set the FSMListener notified as events are processed.  Defaults to a no-op listener
+	 *
+	 * @param listener The FSMListener
+	 */
+	public void setListener(FSMListener<T> listener) {
+		this.listener = (listener != null) ? listener : NoopFSMListener.<T>getInstance();
+	}
+
+	/**
+	 * @return The scheduler used for asynchronous retries.  Unless set, a shared pool of
+	 * daemon threads is used
+	 */
+	public ScheduledExecutorService getScheduler() {
+		return (this.scheduler != null) ? this.scheduler : SharedScheduler.INSTANCE;
+	}
+
+	public void setScheduler(ScheduledExecutorService scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	public LockMode getLockMode() {
+		return lockMode;
+	}
+
+	/**
+	 * Set how concurrent events on the same Stateful Entity are serialized.  Any mode other than
+	 * {@link LockMode#OPTIMISTIC} requires a {@link LockingPersister}.
+	 *
+	 * The lock is held by the caller's unit of work, so {@link #onEvent(Object, String, Object...)} won't
+	 * retry an event which fails to lock the Stateful Entity, or which must otherwise be retried, within
+	 * it, and throws a TooBusyException instead.  To retry such an event, make each attempt with
+	 * {@link #onEventAttempt(Object, String, Object...)} within its own unit of work, see {@link #retry(Callable)}
+	 *
+	 * @param lockMode The LockMode, defaults to {@link LockMode#OPTIMISTIC}
+	 */
+	public void setLockMode(LockMode lockMode) {
+		if (lockMode != LockMode.OPTIMISTIC && !(this.persister instanceof LockingPersister)) {
+			throw new IllegalArgumentException("LockMode " + lockMode + " requires a LockingPersister, persister=" + this.persister);
+		}
+		this.lockMode = lockMode;
+	}
+
+	/**
+	 * Declare the code of each State, see {@link FSMDefinition#withStateCodes(Map)}.  The codes are merged
+	 * with any codes the Persister already has.  Requires a {@link VersionedPersister}
+	 *
+	 * @param stateCodes The code of each State, keyed by the name of the State
+	 */
+	public void setStateCodes(Map<String, Integer> stateCodes) {
+		if (!(this.persister instanceof VersionedPersister)) {
+			throw new IllegalArgumentException("State codes require a VersionedPersister, persister=" + this.persister);
+		}
+		this.setDefinition(this.getDefinition().withMergedStateCodes(stateCodes));
+	}
+
 	public Persister<T> getPersister() {
 		return persister;
 	}
@@ -200,6 +814,119 @@ public class FSM<T> {
 		return this.persister.getCurrent(obj);
 	}
 
+	/**
+	 * @return The compiled TransitionTable.  Throws a RuntimeException if the FSM isn't compiled
+	 */
+	public TransitionTable<T> getTransitionTable() {
+		FSMDefinition<T> definition = this.getDefinition();
+		if (definition == null || !definition.isCompiled()) {
+			throw new RuntimeException("FSM " + this.name + " is not compiled");
+		}
+		return definition.getTransitionTable();
+	}
+
+	/**
+	 * @return The current definition of the FSM.  When the Persister is a {@link VersionedPersister},
+	 * this is always the Persister's definition, otherwise it's the definition the FSM was given, or null
+	 */
+	public FSMDefinition<T> getDefinition() {
+		if (this.persister instanceof VersionedPersister) {
+			return ((VersionedPersister<T>)this.persister).getDefinition();
+		}
+		return this.definition;
+	}
+
+	/**
+	 * Atomically swap in a new definition of the FSM.  Events already being processed complete against
+	 * the States they read; events that start after the swap are processed against the new States.  Event
+	 * ordinals resolved with {@link #getEventId(String)} are only valid for the definition they were
+	 * resolved against.
+	 *
+	 * The swap is only atomic when the Persister is a {@link VersionedPersister}, which then holds the
+	 * only copy of the definition.  Any other Persister is handed the States and the start State one
+	 * after the other
+	 *
+	 * @param definition The new definition
+	 */
+	public void setDefinition(FSMDefinition<T> definition) {
+		this.publish(definition);
+		logger.info("FSM {} is now at definition version {}", this.name, definition.getVersion());
+	}
+
+	private void publish(FSMDefinition<T> definition) {
+		if (this.persister instanceof VersionedPersister) {
+
+			// A definition without a start State, such as one created from a TransitionTable,
+			// keeps the start State the Persister already has
+			//
+			FSMDefinition<T> current = ((VersionedPersister<T>)this.persister).getDefinition();
+			if (definition.getStartState() == null && current != null && current.getStartState() != null) {
+				definition = definition.withStartState(current.getStartState());
+			}
+
+			// The Persister may already be storing State codes, they must survive the new definition
+			//
+			if (current != null && current.hasStateCodes()) {
+				definition = definition.withMergedStateCodes(current.getStateCodes());
+			}
+			((VersionedPersister<T>)this.persister).setDefinition(definition);
+		} else {
+			if (this.persister != null) {
+				this.persister.setStates(definition.getStates());
+				if (definition.getStartState() != null) {
+					this.persister.setStartState(definition.getStartState());
+				}
+			}
+			this.definition = definition;
+		}
+	}
+
+	/**
+	 * A single attempt at processing an event asynchronously, which remembers the State it was
+	 * last attempted from so it can be reported without reading the State again
+	 */
+	private class EventAttempt implements Callable<State<T>> {
+
+		private final T stateful;
+		private final String event;
+		private final int eventId;
+		private final Object[] args;
+		private volatile State<T> current;
+
+		private EventAttempt(T stateful, String event, int eventId, Object[] args) {
+			this.stateful = stateful;
+			this.event = event;
+			this.eventId = eventId;
+			this.args = args;
+		}
+
+		@Override
+		public State<T> call() throws RetryException {
+			State<T> current = lockCurrentState(this.stateful);
+			this.current = current;
+			return processEvent(this.stateful, current, this.event, this.eventId, this.args);
+		}
+	}
+
+	/**
+	 * Lazily creates the scheduler shared by all FSMs for asynchronous retries
+	 */
+	private static class SharedScheduler {
+
+		private static final ScheduledExecutorService INSTANCE = Executors.newScheduledThreadPool(
+				Runtime.getRuntime().availableProcessors(),
+				new ThreadFactory() {
+
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "statefulj-retry-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
 
 	/**
 	 * Fluid FSM builder
@@ -454,11 +1181,15 @@ public class FSM<T> {
 
 		private int retryAttempts = DEFAULT_RETRIES;
 		private int retryInterval = DEFAULT_RETRY_INTERVAL;
+		private RetryPolicy retryPolicy;
+		private FSMListener<T> listener;
 
 		private Persister<T> persister;
 		private String name = "FSM";
+		private boolean compiled = false;
+		private Map<String, Integer> stateCodes;
 
-		private HashMap<String, State<T>> states = new HashMap<String, State<T>>();
+		private HashMap<String, State<T>> states = new LinkedHashMap<String, State<T>>();
 		private List<StateBuilder<T>> stateBuilders = new LinkedList<StateBuilder<T>>();
 		private String startState;
 
@@ -512,6 +1243,49 @@ public class FSM<T> {
 			return this;
 		}
 
+		/**
+		 * Sets the RetryPolicy for the FSM, this supersedes the retry attempts
+		 * @param retryPolicy
+		 * @return FSMBuilder
+		 */
+		public FSMBuilder<T> setRetryPolicy(RetryPolicy retryPolicy) {
+			this.retryPolicy = retryPolicy;
+			return this;
+		}
+
+		/**
+		 * Sets the FSMListener notified as the FSM processes events
+		 * @param listener
+		 * @return FSMBuilder
+		 */
+		public FSMBuilder<T> setListener(FSMListener<T> listener) {
+			this.listener = listener;
+			return this;
+		}
+
+		/**
+		 * Set whether the FSM is compiled.  A compiled FSM interns its States and Events to ordinals
+		 * and freezes the Transitions into a flat {@link TransitionTable}.  Once built, the
+		 * Transitions of a compiled FSM can't be modified
+		 * @param compiled
+		 * @return FSMBuilder
+		 */
+		public FSMBuilder<T> setCompiled(boolean compiled) {
+			this.compiled = compiled;
+			return this;
+		}
+
+		/**
+		 * Declare the code of each State, see {@link FSMDefinition#withStateCodes(Map)}.  The codes are
+		 * merged with any codes the Persister already has
+		 * @param stateCodes The code of each State, keyed by the name of the State
+		 * @return FSMBuilder
+		 */
+		public FSMBuilder<T> setStateCodes(Map<String, Integer> stateCodes) {
+			this.stateCodes = stateCodes;
+			return this;
+		}
+
 		/**
 		 * Add a specified State
 		 * @param state State to add
@@ -582,13 +1356,22 @@ public class FSM<T> {
 				throw new RuntimeException("No start state defined, state=" + this.startState);
 			}
 
+			FSMDefinition<T> definition = (this.compiled)
+					? FSMDefinition.compile(this.states.values(), startState)
+					: FSMDefinition.create(this.states.values(), startState);
+			if (this.stateCodes != null) {
+				definition = definition.withStateCodes(this.stateCodes);
+			}
+
 			if (this.persister == null) {
 				this.persister = new MemoryPersisterImpl<T>();
 			}
-			this.persister.setStates(this.states.values());
-			this.persister.setStartState(startState);
-
-			return new FSM<T>(this.name, this.persister, this.retryAttempts, this.retryInterval);
+			// The FSM publishes the definition to the Persister
+			//
+			FSM<T> fsm = new FSM<T>(this.name, this.persister, this.retryAttempts, this.retryInterval, definition);
+			fsm.setRetryPolicy(this.retryPolicy);
+			fsm.setListener(this.listener);
+			return fsm;
 		}
 	}
 
@@ -597,9 +1380,69 @@ public class FSM<T> {
 		return current.getTransition(event);
 	}
 
+	protected Transition<T> getTransition(int eventId, State<T> current) {
+		TransitionTable<T> transitionTable = this.getTransitionTable();
+		if (current instanceof CompiledStateImpl &&
+				((CompiledStateImpl<T>)current).getTransitionTable() == transitionTable) {
+			return ((CompiledStateImpl<T>)current).getTransition(eventId);
+		}
+		return current.getTransition(transitionTable.getEvent(eventId));
+	}
+
 	protected State<T> transition(T stateful, State<T> current, String event, Transition<T> transition, Object... args) throws RetryException {
-		StateActionPair<T> pair = transition.getStateActionPair(stateful, event, args);
-		setCurrent(stateful, current, pair.getState());
+		String from = current.getName();
+		String to = null;
+		Object recording = FlightRecorder.beginTransition();
+		boolean completed = false;
+		boolean started = false;
+		try {
+			StateActionPair<T> pair = transition.getStateActionPair(stateful, event, args);
+			to = pair.getState().getName();
+			this.listener.onTransitionStart(this.name, stateful, from, event, to);
+			started = true;
+			long start = System.nanoTime();
+			if (isStateChange(transition, pair)) {
+				try {
+					setCurrent(stateful, current, pair.getState());
+				} catch(StaleStateException sse) {
+					this.listener.onStaleState(this.name, stateful, from, event, to);
+					throw sse;
+				}
+			}
+			State<T> next = completeTransition(stateful, current, event, transition, pair, args);
+			this.listener.onTransitionEnd(this.name, stateful, from, event, to, System.nanoTime() - start);
+			completed = true;
+			return next;
+		} catch(RetryException re) {
+
+			// A stale State was already reported
+			//
+			if (!(re instanceof StaleStateException)) {
+				this.listener.onRetry(this.name, stateful, from, event, to);
+			}
+			throw re;
+		} finally {
+			if (started && !completed) {
+				this.listener.onTransitionFailed(this.name, stateful, from, event, to);
+			}
+			FlightRecorder.endTransition(recording, this.name, stateful, from, event, to, completed);
+		}
+	}
+
+	/**
+	 * Whether the Transition must set the current State.  Every Transition sets the current State,
+	 * even if the State is unchanged, to ensure the expected current State is still the current State
+	 */
+	protected boolean isStateChange(Transition<T> transition, StateActionPair<T> pair) {
+		return true;
+	}
+
+	/**
+	 * Complete the Transition once the current State has been set, by executing the Action
+	 *
+	 * @return The current State
+	 */
+	protected State<T> completeTransition(T stateful, State<T> current, String event, Transition<T> transition, StateActionPair<T> pair, Object... args) throws RetryException {
 		executeAction(
 				pair.getAction(),
 				stateful,
@@ -611,7 +1454,56 @@ public class FSM<T> {
 	}
 
 	protected void setCurrent(T stateful, State<T> current, State<T> next) throws StaleStateException {
-		persister.setCurrent(stateful, current, next);
+
+		// Avoid building an exception for every conflict if the Persister can report it
+		//
+		if (persister instanceof CompareAndSetPersister) {
+			if (!((CompareAndSetPersister<T>)persister).compareAndSetState(stateful, current, next)) {
+				throw (logger.isDebugEnabled())
+						? this.describeStaleState(stateful, current)
+						: StaleStateException.signal();
+			}
+		} else {
+			persister.setCurrent(stateful, current, next);
+		}
+	}
+
+	/**
+	 * Construct a StaleStateException describing the conflict, in place of the signal
+	 *
+	 * @param expected The State the Stateful Entity was evaluated in, null if it wasn't evaluated
+	 */
+	private StaleStateException describeStaleState(T stateful, State<T> expected) {
+		State<T> actual = this.persister.getCurrent(stateful);
+		return new StaleStateException(
+				stateful,
+				(expected != null) ? expected.getName() : null,
+				(actual != null) ? actual.getName() : null);
+	}
+
+	/**
+	 * Set the current State for a group of Stateful Entities sharing the same current and next State
+	 *
+	 * @return For each Stateful Entity, whether its State was set.  False indicates the Entity's State was stale
+	 */
+	protected boolean[] setCurrent(List<T> statefuls, State<T> current, State<T> next) {
+
+		// If the Persister is able to batch the updates, hand over the entire group
+		//
+		if (persister instanceof BatchPersister) {
+			return ((BatchPersister<T>)persister).setCurrent(statefuls, current, next);
+		}
+
+		boolean[] updated = new boolean[statefuls.size()];
+		for(int i = 0; i < updated.length; i++) {
+			try {
+				setCurrent(statefuls.get(i), current, next);
+				updated[i] = true;
+			} catch(StaleStateException sse) {
+				updated[i] = false;
+			}
+		}
+		return updated;
 	}
 
 	protected void executeAction(
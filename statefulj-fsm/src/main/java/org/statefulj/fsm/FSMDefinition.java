@@ -0,0 +1,293 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.impl.TransitionTable;
+
+/**
+ * An immutable, versioned snapshot of an FSM's definition: its States (and through them, their
+ * Transitions), its start State and, for a compiled FSM, its {@link TransitionTable}.
+ *
+ * A definition is published by the {@link FSM} and by a {@link VersionedPersister} through a single
+ * volatile reference, so a new graph can be swapped in while events are being processed.  An event
+ * is evaluated against the definition it read when it started.  The States of a published definition
+ * must not be modified; to change the graph, build new States and publish a new definition.
+ *
+ * A definition may also carry a stable mapping of each State to a small integer code, see
+ * {@link #withStateCodes(Map)}.  Persisters use the codes, in place of the State names, to store
+ * the State compactly.  The codes are kept when the States are replaced, so they remain stable as
+ * the graph evolves.
+ *
+ * @author Andrew Hall
+ *
+ * @param <T> The class of the Stateful Entity
+ */
+public final class FSMDefinition<T> {
+
+	private static final AtomicLong versions = new AtomicLong();
+
+	private final long version;
+
+	private final List<State<T>> states;
+
+	private final Map<String, State<T>> statesByName;
+
+	private final State<T> startState;
+
+	private final TransitionTable<T> transitionTable;
+
+	private final Map<String, Integer> stateCodes;
+
+	private final Map<Integer, String> stateNames;
+
+	private FSMDefinition(
+			Collection<State<T>> states,
+			State<T> startState,
+			TransitionTable<T> transitionTable,
+			Map<String, Integer> stateCodes) {
+		Map<String, State<T>> statesByName = new HashMap<String, State<T>>();
+		for(State<T> state : states) {
+			statesByName.put(state.getName(), state);
+		}
+		this.version = versions.incrementAndGet();
+		this.states = Collections.unmodifiableList(new ArrayList<State<T>>(states));
+		this.statesByName = Collections.unmodifiableMap(statesByName);
+		this.startState = startState;
+		this.transitionTable = transitionTable;
+
+		if (stateCodes != null) {
+			Map<Integer, String> stateNames = new HashMap<Integer, String>();
+			for(Map.Entry<String, Integer> entry : stateCodes.entrySet()) {
+				if (entry.getValue() == null) {
+					throw new RuntimeException("No code for State " + entry.getKey());
+				}
+				String duplicate = stateNames.put(entry.getValue(), entry.getKey());
+				if (duplicate != null) {
+					throw new RuntimeException(
+							"Duplicate State code " + entry.getValue() +
+							", states=" + duplicate + "," + entry.getKey());
+				}
+			}
+			this.stateCodes = Collections.unmodifiableMap(new HashMap<String, Integer>(stateCodes));
+			this.stateNames = Collections.unmodifiableMap(stateNames);
+		} else {
+			this.stateCodes = null;
+			this.stateNames = null;
+		}
+	}
+
+	/**
+	 * Create a definition of the States
+	 *
+	 * @param states The States
+	 * @param startState The start State, returned when the Stateful Entity has no State
+	 * @return The definition
+	 */
+	public static <T> FSMDefinition<T> create(Collection<State<T>> states, State<T> startState) {
+		return new FSMDefinition<T>(states, startState, null, null);
+	}
+
+	/**
+	 * Create a definition of a compiled FSM
+	 *
+	 * @param transitionTable The compiled States and Transitions
+	 * @param startState The start State.  It's resolved by name to the compiled State
+	 * @return The definition
+	 */
+	public static <T> FSMDefinition<T> create(TransitionTable<T> transitionTable, State<T> startState) {
+		State<T> compiledStartState = (startState != null) ? transitionTable.getState(startState.getName()) : null;
+		return new FSMDefinition<T>(transitionTable.getStates(), compiledStartState, transitionTable, null);
+	}
+
+	/**
+	 * Compile the States into a {@link TransitionTable} and create its definition
+	 *
+	 * @param states The States to compile
+	 * @param startState The start State
+	 * @return The definition
+	 */
+	public static <T> FSMDefinition<T> compile(Collection<State<T>> states, State<T> startState) {
+		return create(TransitionTable.compile(states), startState);
+	}
+
+	/**
+	 * @param states The States
+	 * @return A new version of this definition with the States replaced.  If this definition is compiled,
+	 * the States are compiled into a new {@link TransitionTable} and the start State is resolved by name
+	 * to its newly compiled State
+	 */
+	public FSMDefinition<T> withStates(Collection<State<T>> states) {
+		if (this.transitionTable == null) {
+			return new FSMDefinition<T>(states, this.startState, null, this.stateCodes);
+		}
+		TransitionTable<T> transitionTable = TransitionTable.compile(states);
+		return new FSMDefinition<T>(
+				transitionTable.getStates(),
+				resolve(transitionTable, this.startState),
+				transitionTable,
+				this.stateCodes);
+	}
+
+	/**
+	 * @param startState The start State
+	 * @return A new version of this definition with the start State replaced.  If this definition is
+	 * compiled, the start State is resolved by name to its compiled State
+	 */
+	public FSMDefinition<T> withStartState(State<T> startState) {
+		State<T> resolved = (this.transitionTable != null) ? resolve(this.transitionTable, startState) : startState;
+		return new FSMDefinition<T>(this.states, resolved, this.transitionTable, this.stateCodes);
+	}
+
+	private static <T> State<T> resolve(TransitionTable<T> transitionTable, State<T> state) {
+		if (state == null) {
+			return null;
+		}
+		State<T> compiled = transitionTable.getState(state.getName());
+		if (compiled == null) {
+			throw new RuntimeException("State " + state.getName() + " isn't part of the compiled definition");
+		}
+		return compiled;
+	}
+
+	/**
+	 * Define a stable code for each State.  A code identifies its State for as long as the State is
+	 * persisted, so a code must never be reassigned to another State.  The mapping may include codes
+	 * for States which are no longer, or not yet, part of the definition
+	 *
+	 * @param stateCodes The code of each State, keyed by the name of the State.  Codes must be unique
+	 * @return A new version of this definition with the State codes
+	 */
+	public FSMDefinition<T> withStateCodes(Map<String, Integer> stateCodes) {
+		return new FSMDefinition<T>(this.states, this.startState, this.transitionTable, stateCodes);
+	}
+
+	/**
+	 * Merge State codes which are already in use, such as the codes a Persister has been storing, into
+	 * this definition's codes.  Since a code must never be reassigned, a State which is coded differently
+	 * by the two mappings, or a code which is given to two States, throws a RuntimeException
+	 *
+	 * @param stateCodes The codes already in use, keyed by the name of the State
+	 * @return This definition if it already holds all the codes, else a new version of this definition
+	 * with the merged State codes
+	 */
+	public FSMDefinition<T> withMergedStateCodes(Map<String, Integer> stateCodes) {
+		if (this.stateCodes == null) {
+			return this.withStateCodes(stateCodes);
+		}
+		Map<String, Integer> merged = new HashMap<String, Integer>(this.stateCodes);
+		for(Map.Entry<String, Integer> entry : stateCodes.entrySet()) {
+			Integer code = merged.put(entry.getKey(), entry.getValue());
+			if (code != null && !code.equals(entry.getValue())) {
+				throw new RuntimeException(
+						"State " + entry.getKey() + " is already coded, code=" + entry.getValue() +
+						", new code=" + code);
+			}
+		}
+		return (merged.equals(this.stateCodes)) ? this : this.withStateCodes(merged);
+	}
+
+	/**
+	 * @return The version of the definition.  Versions increase monotonically as definitions are created
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The States, in the order they were defined
+	 */
+	public List<State<T>> getStates() {
+		return states;
+	}
+
+	/**
+	 * @param name Name of the State
+	 * @return The State or null if the State isn't part of the definition
+	 */
+	public State<T> getState(String name) {
+		return statesByName.get(name);
+	}
+
+	public State<T> getStartState() {
+		return startState;
+	}
+
+	/**
+	 * @return The compiled TransitionTable or null if the definition isn't compiled
+	 */
+	public TransitionTable<T> getTransitionTable() {
+		return transitionTable;
+	}
+
+	public boolean isCompiled() {
+		return transitionTable != null;
+	}
+
+	/**
+	 * @return Whether the definition maps the States to codes
+	 */
+	public boolean hasStateCodes() {
+		return stateCodes != null;
+	}
+
+	/**
+	 * @return The code of each State, keyed by the name of the State, or null if the States aren't coded
+	 */
+	public Map<String, Integer> getStateCodes() {
+		return stateCodes;
+	}
+
+	/**
+	 * @param name The name of the State
+	 * @return The code of the State.  Throws a RuntimeException if the State has no code
+	 */
+	public int getStateCode(String name) {
+		Integer code = (stateCodes != null) ? stateCodes.get(name) : null;
+		if (code == null) {
+			throw new RuntimeException("No code for State " + name);
+		}
+		return code;
+	}
+
+	/**
+	 * @param code The code of a State
+	 * @return The name of the State.  Throws a RuntimeException if the code isn't mapped to a State
+	 */
+	public String getStateName(int code) {
+		String name = (stateNames != null) ? stateNames.get(code) : null;
+		if (name == null) {
+			throw new RuntimeException("Unknown State code " + code);
+		}
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return "FSMDefinition[version=" + version + ", states=" + statesByName.keySet() + ", startState=" +
+				((startState != null) ? startState.getName() : null) + "]";
+	}
+}
@@ -0,0 +1,75 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+/**
+ * An FSMListener is notified by the {@link FSM} as it processes events, so that Transitions may be
+ * measured without enabling debug logging.  Each callback carries the name of the FSM and the
+ * from State, Event and to State of the Transition.  The to State is null if it wasn't resolved.
+ *
+ * The callbacks are made on the thread processing the event, so implementations must be thread safe,
+ * cheap and must not throw.  See {@link org.statefulj.fsm.metrics.MetricsFSMListener}
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface FSMListener<T> {
+
+	/**
+	 * A Transition is about to set the current State and execute its Action.  It will be followed
+	 * by either {@link #onTransitionEnd} or {@link #onTransitionFailed}
+	 */
+	void onTransitionStart(String fsm, T stateful, String from, String event, String to);
+
+	/**
+	 * A Transition completed
+	 *
+	 * @param nanos The elapsed time of the Transition in nanoseconds
+	 */
+	void onTransitionEnd(String fsm, T stateful, String from, String event, String to, long nanos);
+
+	/**
+	 * A started Transition didn't complete, either because of a {@link RetryException} or because
+	 * the Action threw
+	 */
+	void onTransitionFailed(String fsm, T stateful, String from, String event, String to);
+
+	/**
+	 * An attempt at an event failed with a {@link RetryException}, or the Stateful Entity is in a
+	 * Blocking State.  A {@link StaleStateException} is reported to {@link #onStaleState} instead
+	 */
+	void onRetry(String fsm, T stateful, String from, String event, String to);
+
+	/**
+	 * The current State of the Stateful Entity wasn't the expected from State.  The conflict isn't
+	 * also reported to {@link #onRetry}
+	 */
+	void onStaleState(String fsm, T stateful, String from, String event, String to);
+
+	/**
+	 * There is no Transition for the Event from the current State, the to State is the from State
+	 */
+	void onNoop(String fsm, T stateful, String from, String event, String to);
+
+	/**
+	 * The FSM gave up retrying the event and threw a {@link TooBusyException}.  The Stateful Entity,
+	 * the from State and the Event are null if the FSM was retrying an arbitrary attempt
+	 */
+	void onTooBusy(String fsm, T stateful, String from, String event, String to);
+
+}
@@ -0,0 +1,48 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+/**
+ * How concurrent events on the same Stateful Entity are serialized
+ *
+ * @author Andrew Hall
+ *
+ */
+public enum LockMode {
+
+	/**
+	 * The State is updated with a compare-and-set, a conflicting event is retried
+	 */
+	OPTIMISTIC,
+
+	/**
+	 * The Stateful Entity is locked before the Transition is evaluated, conflicting events wait for the lock
+	 */
+	PESSIMISTIC,
+
+	/**
+	 * As PESSIMISTIC, but if the Stateful Entity is already locked the attempt fails rather than waiting.
+	 * The event is retried within a new unit of work, see {@link FSM#retry(java.util.concurrent.Callable)}
+	 */
+	PESSIMISTIC_NOWAIT,
+
+	/**
+	 * As PESSIMISTIC_NOWAIT, but a locked Stateful Entity is skipped by the lock rather than raising an error
+	 */
+	PESSIMISTIC_SKIP_LOCKED
+}
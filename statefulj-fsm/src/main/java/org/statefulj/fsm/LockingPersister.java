@@ -0,0 +1,39 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+/**
+ * An optional extension of the {@link Persister} which can lock a Stateful Entity for the
+ * remainder of the unit of work.  When the FSM's {@link LockMode} isn't {@link LockMode#OPTIMISTIC},
+ * the FSM locks the Stateful Entity before evaluating each attempt, so that concurrent events
+ * on a hot Entity queue on the lock rather than spinning through retries
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface LockingPersister<T> extends Persister<T> {
+
+	/**
+	 * Lock the Stateful Entity and refresh its State with the locked State
+	 *
+	 * @param stateful StatefulEntity
+	 * @param lockMode How to acquire the lock
+	 * @throws RetryException if the lock couldn't be acquired without waiting
+	 */
+	void lock(T stateful, LockMode lockMode) throws RetryException;
+}
@@ -34,4 +34,16 @@ public class RetryException extends Exception {
 	public RetryException(String msg) {
 		super(msg);
 	}
+
+	/**
+	 * Construct a stackless RetryException.  A stackless RetryException is a cheap signal to retry:
+	 * it doesn't fill in a stack trace and doesn't record suppressed exceptions, so a single instance
+	 * may be thrown repeatedly
+	 *
+	 * @param msg The message
+	 * @param stackless true to construct a stackless RetryException
+	 */
+	protected RetryException(String msg, boolean stackless) {
+		super(msg, null, !stackless, !stackless);
+	}
 }
@@ -0,0 +1,49 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+/**
+ * A RetryPolicy determines whether, and after how long, the {@link FSM} retries an event
+ * that failed with a {@link RetryException}.  When the policy declines to retry, the FSM
+ * throws a {@link TooBusyException}.  A single RetryPolicy may be shared across FSMs and threads,
+ * so implementations must be thread safe
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface RetryPolicy {
+
+	/**
+	 * Whether another attempt at processing the event may be made
+	 *
+	 * @param attempts The number of attempts made so far
+	 * @return true if another attempt may be made
+	 */
+	boolean canAttempt(int attempts);
+
+	/**
+	 * Determine how long to wait before the next attempt
+	 *
+	 * @param attempts The number of attempts made so far, including the failed attempt
+	 * @param exception The RetryException thrown by the failed attempt
+	 * @return The wait in milliseconds before the next attempt, or a negative value to stop
+	 * retrying immediately
+	 */
+	long getWait(int attempts, RetryException exception);
+
+}
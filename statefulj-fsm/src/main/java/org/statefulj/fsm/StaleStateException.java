@@ -18,7 +18,10 @@
 package org.statefulj.fsm;
 
 /**
- * Indicates that the evaluated State was inconsistent with the Persisted State
+ * Indicates that the evaluated State was inconsistent with the Persisted State.  The FSM signals a
+ * stale State with a preallocated instance, see {@link #signal()}; an instance describing the conflict,
+ * i.e. the Stateful Entity with its expected and actual State, is only constructed if debug logging is
+ * on or the exception is thrown to the caller of the FSM
  * 
  * @author Andrew Hall
  *
@@ -28,11 +31,82 @@ public class StaleStateException extends RetryException {
 
 	private static final long serialVersionUID = 1L;
 
+	private static final StaleStateException SIGNAL = new StaleStateException("Stale State", true);
+
+	private final transient Object stateful;
+
+	private final String expected;
+
+	private final String actual;
+
 	public StaleStateException() {
 		super();
+		this.stateful = null;
+		this.expected = null;
+		this.actual = null;
 	}
 	
 	public StaleStateException(String err) {
 		super(err);
+		this.stateful = null;
+		this.expected = null;
+		this.actual = null;
+	}
+
+	/**
+	 * @param stateful The Stateful Entity
+	 * @param expected The State the Stateful Entity was evaluated in, null if it wasn't evaluated
+	 * @param actual The State of the Stateful Entity, null if unknown
+	 */
+	public StaleStateException(Object stateful, String expected, String actual) {
+		super((expected == null)
+				? String.format("Stale State, entity=%s, state=%s", stateful, actual)
+				: String.format("Stale State, entity=%s, expected.state=%s, actual.state=%s", stateful, expected, actual));
+		this.stateful = stateful;
+		this.expected = expected;
+		this.actual = actual;
+	}
+
+	protected StaleStateException(String err, boolean stackless) {
+		super(err, stackless);
+		this.stateful = null;
+		this.expected = null;
+		this.actual = null;
+	}
+
+	/**
+	 * @return A preallocated, stackless StaleStateException for signalling a stale State to the FSM
+	 * without the cost of constructing an exception.  The signal doesn't describe the conflict
+	 */
+	public static StaleStateException signal() {
+		return SIGNAL;
+	}
+
+	/**
+	 * @return true if this is the preallocated signal
+	 */
+	public boolean isSignal() {
+		return this == SIGNAL;
+	}
+
+	/**
+	 * @return The Stateful Entity, if known
+	 */
+	public Object getStateful() {
+		return stateful;
+	}
+
+	/**
+	 * @return The State the Stateful Entity was evaluated in, if known
+	 */
+	public String getExpected() {
+		return expected;
+	}
+
+	/**
+	 * @return The State of the Stateful Entity, if known
+	 */
+	public String getActual() {
+		return actual;
 	}
 }
@@ -0,0 +1,48 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+import java.util.Collection;
+
+import org.statefulj.fsm.model.State;
+
+/**
+ * An optional extension of the {@link Persister} which holds its States and start State as a
+ * single {@link FSMDefinition}.  Reading the current State never locks, and
+ * {@link #setDefinition(FSMDefinition)} swaps both the States and the start State atomically.
+ * When the FSM's Persister is a VersionedPersister, {@link FSM#setDefinition(FSMDefinition)}
+ * will publish the definition to it in place of calling {@link Persister#setStates(Collection)}
+ * and {@link Persister#setStartState(State)}
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface VersionedPersister<T> extends Persister<T> {
+
+	/**
+	 * @return The current definition
+	 */
+	FSMDefinition<T> getDefinition();
+
+	/**
+	 * Atomically replace the definition
+	 *
+	 * @param definition The new definition
+	 */
+	void setDefinition(FSMDefinition<T> definition);
+}
@@ -33,6 +33,22 @@ public class WaitAndRetryException extends RetryException {
 		this.wait = wait;
 	}
 
+	protected WaitAndRetryException(int wait, boolean stackless) {
+		super(null, stackless);
+		this.wait = wait;
+	}
+
+	/**
+	 * Construct a stackless WaitAndRetryException.  The instance may be preallocated and thrown
+	 * repeatedly, as long as its wait isn't changed
+	 *
+	 * @param wait The wait in milliseconds
+	 * @return A stackless WaitAndRetryException
+	 */
+	public static WaitAndRetryException signal(int wait) {
+		return new WaitAndRetryException(wait, true);
+	}
+
 	public int getWait() {
 		return wait;
 	}
@@ -0,0 +1,141 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.jfr;
+
+/**
+ * Emits StatefulJ events to the Java Flight Recorder.  Every <code>begin</code> method returns
+ * an opaque handle, or null when JFR isn't present in the JVM or the event isn't enabled in a
+ * running recording; the matching <code>end</code> method is a no-op for a null handle, so
+ * callers never need to check.
+ *
+ * The JFR API is only referenced by the optional <code>statefulj-fsm-jfr</code> module, whose
+ * {@link Recorder} is loaded reflectively.  If the module isn't on the classpath or the JVM doesn't
+ * provide <code>jdk.jfr</code>, nothing is recorded
+ *
+ * @author Andrew Hall
+ *
+ */
+public final class FlightRecorder {
+
+	private static final String RECORDER_CLASS = "org.statefulj.fsm.jfr.impl.JfrRecorder";
+
+	private static final Recorder recorder = loadRecorder();
+
+	private FlightRecorder() {
+	}
+
+	/**
+	 * @return true if the JVM provides the Flight Recorder and the statefulj-fsm-jfr module is present
+	 */
+	public static boolean isAvailable() {
+		return recorder != null;
+	}
+
+	public static Object beginTransition() {
+		return (recorder != null) ? recorder.beginTransition() : null;
+	}
+
+	public static void endTransition(
+			Object handle,
+			String fsm,
+			Object stateful,
+			String from,
+			String event,
+			String to,
+			boolean completed) {
+		if (handle != null) {
+			recorder.endTransition(handle, fsm, stateful, from, event, to, completed);
+		}
+	}
+
+	public static Object beginProcess() {
+		return (recorder != null) ? recorder.beginProcess() : null;
+	}
+
+	public static void endProcess(
+			Object handle,
+			String fsm,
+			Object stateful,
+			String event,
+			String from,
+			String to,
+			int attempts,
+			boolean tooBusy) {
+		if (handle != null) {
+			recorder.endProcess(handle, fsm, stateful, event, from, to, attempts, tooBusy);
+		}
+	}
+
+	public static Object beginRetry() {
+		return (recorder != null) ? recorder.beginRetry() : null;
+	}
+
+	public static void endRetry(
+			Object handle,
+			String fsm,
+			Object stateful,
+			String event,
+			String from,
+			int attempt,
+			long wait) {
+		if (handle != null) {
+			recorder.endRetry(handle, fsm, stateful, event, from, attempt, wait);
+		}
+	}
+
+	public static Object beginPersist() {
+		return (recorder != null) ? recorder.beginPersist() : null;
+	}
+
+	public static void endPersist(
+			Object handle,
+			Object persister,
+			Class<?> entity,
+			String from,
+			String to,
+			int count,
+			int stale) {
+		if (handle != null) {
+			recorder.endPersist(handle, persister, entity, from, to, count, stale);
+		}
+	}
+
+	public static Object beginAction() {
+		return (recorder != null) ? recorder.beginAction() : null;
+	}
+
+	public static void endAction(
+			Object handle,
+			String action,
+			Object stateful,
+			String event) {
+		if (handle != null) {
+			recorder.endAction(handle, action, stateful, event);
+		}
+	}
+
+	private static Recorder loadRecorder() {
+		ClassLoader loader = FlightRecorder.class.getClassLoader();
+		try {
+			Class.forName("jdk.jfr.Event", false, loader);
+			return (Recorder)Class.forName(RECORDER_CLASS, true, loader).newInstance();
+		} catch(Throwable t) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.jfr;
+
+/**
+ * The SPI behind {@link FlightRecorder}.  The implementation lives in the optional
+ * <code>statefulj-fsm-jfr</code> module, so that this module doesn't require <code>jdk.jfr</code>.
+ * Each <code>begin</code> method returns an opaque handle, or null if the event isn't enabled
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface Recorder {
+
+	Object beginTransition();
+
+	void endTransition(
+			Object handle,
+			String fsm,
+			Object stateful,
+			String from,
+			String event,
+			String to,
+			boolean completed);
+
+	Object beginProcess();
+
+	void endProcess(
+			Object handle,
+			String fsm,
+			Object stateful,
+			String event,
+			String from,
+			String to,
+			int attempts,
+			boolean tooBusy);
+
+	Object beginRetry();
+
+	void endRetry(
+			Object handle,
+			String fsm,
+			Object stateful,
+			String event,
+			String from,
+			int attempt,
+			long wait);
+
+	Object beginPersist();
+
+	void endPersist(
+			Object handle,
+			Object persister,
+			Class<?> entity,
+			String from,
+			String to,
+			int count,
+			int stale);
+
+	Object beginAction();
+
+	void endAction(
+			Object handle,
+			String action,
+			Object stateful,
+			String event);
+}
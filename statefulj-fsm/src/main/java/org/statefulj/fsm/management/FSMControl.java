@@ -0,0 +1,287 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.management;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.FSMListener;
+
+/**
+ * Exposes an {@link FSM} as an MBean, named <code>org.statefulj:type=FSM,name=&lt;name&gt;</code>,
+ * where the name defaults to the FSM's name.  The FSMControl counts events by installing itself as the
+ * FSM's {@link FSMListener}, forwarding all callbacks to the listener it replaced.  The retry settings
+ * are read and written through to the FSM, so they take effect on the next event.  The retry settings
+ * can't be changed once the FSM has a RetryPolicy, as the RetryPolicy supersedes them
+ *
+ * @author Andrew Hall
+ *
+ */
+public class FSMControl<T> implements FSMControlMBean, FSMListener<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(FSMControl.class);
+
+	public static final String DOMAIN = "org.statefulj";
+
+	private static final Pattern UNQUOTED = Pattern.compile("[^,=:\"*?\\n]+");
+
+	private final FSM<T> fsm;
+	private final FSMListener<T> delegate;
+	private final ObjectName objectName;
+	private MBeanServer server;
+
+	private final LongAdder started = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder stale = new LongAdder();
+	private final LongAdder noops = new LongAdder();
+	private final LongAdder tooBusy = new LongAdder();
+	private volatile long resetAt = System.nanoTime();
+
+	public FSMControl(FSM<T> fsm) {
+		this(fsm, fsm.getName());
+	}
+
+	/**
+	 * @param name The name of the MBean
+	 */
+	public FSMControl(FSM<T> fsm, String name) {
+		this.fsm = fsm;
+		this.delegate = fsm.getListener();
+		this.objectName = objectName(name);
+		fsm.setListener(this);
+	}
+
+	public static ObjectName objectName(String fsm) {
+		String name = (UNQUOTED.matcher(fsm).matches()) ? fsm : ObjectName.quote(fsm);
+		try {
+			return new ObjectName(DOMAIN + ":type=FSM,name=" + name);
+		} catch (MalformedObjectNameException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Register with the platform MBeanServer.  If an MBean is already registered for an FSM of
+	 * the same name, this FSM is not registered
+	 */
+	public void register() {
+		register(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	public synchronized void register(MBeanServer server) {
+		try {
+			server.registerMBean(this, this.objectName);
+			this.server = server;
+		} catch (InstanceAlreadyExistsException e) {
+			logger.warn("{} is already registered, not registering FSM {}", this.objectName, this.fsm.getName());
+		} catch (JMException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public synchronized void unregister() {
+		if (this.server != null) {
+			try {
+				this.server.unregisterMBean(this.objectName);
+			} catch (InstanceNotFoundException e) {
+				// Already gone
+				//
+			} catch (JMException e) {
+				throw new RuntimeException(e);
+			}
+			this.server = null;
+		}
+	}
+
+	public FSM<T> getFSM() {
+		return fsm;
+	}
+
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	@Override
+	public String getName() {
+		return fsm.getName();
+	}
+
+	@Override
+	public long getEventsProcessed() {
+		return completed.sum() + noops.sum();
+	}
+
+	@Override
+	public double getEventsPerSecond() {
+		long elapsed = System.nanoTime() - this.resetAt;
+		return (elapsed > 0) ? getEventsProcessed() * 1e9 / elapsed : 0;
+	}
+
+	@Override
+	public long getTransitionsStarted() {
+		return started.sum();
+	}
+
+	@Override
+	public long getTransitionsCompleted() {
+		return completed.sum();
+	}
+
+	@Override
+	public long getTransitionsFailed() {
+		return failed.sum();
+	}
+
+	@Override
+	public long getInFlight() {
+
+		// Read the ends before the starts, so a Transition completing between the reads
+		// can't make the count negative
+		//
+		long ended = completed.sum() + failed.sum();
+		return Math.max(0, started.sum() - ended);
+	}
+
+	@Override
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	@Override
+	public long getStaleStates() {
+		return stale.sum();
+	}
+
+	@Override
+	public long getNoops() {
+		return noops.sum();
+	}
+
+	@Override
+	public long getTooBusy() {
+		return tooBusy.sum();
+	}
+
+	@Override
+	public int getRetryAttempts() {
+		return fsm.getRetryAttempts();
+	}
+
+	@Override
+	public void setRetryAttempts(int retryAttempts) {
+		this.assertNoRetryPolicy("retryAttempts");
+		logger.info("{}::retryAttempts {} -> {}", fsm.getName(), fsm.getRetryAttempts(), retryAttempts);
+		fsm.setRetryAttempts(retryAttempts);
+	}
+
+	@Override
+	public int getRetryInterval() {
+		return fsm.getRetryInterval();
+	}
+
+	@Override
+	public void setRetryInterval(int retryInterval) {
+		this.assertNoRetryPolicy("retryInterval");
+		logger.info("{}::retryInterval {} -> {}", fsm.getName(), fsm.getRetryInterval(), retryInterval);
+		fsm.setRetryInterval(retryInterval);
+	}
+
+	@Override
+	public String getRetryPolicy() {
+		return fsm.getRetryPolicy().getClass().getName();
+	}
+
+	private void assertNoRetryPolicy(String setting) {
+		if (fsm.hasRetryPolicy()) {
+			throw new IllegalStateException(
+					"FSM " + fsm.getName() + " retries per " + getRetryPolicy() + ", " + setting + " can't be changed");
+		}
+	}
+
+	/**
+	 * Reset the counters.  Transitions in progress are still counted as in flight
+	 */
+	@Override
+	public void resetCounters() {
+		long inFlight = getInFlight();
+		started.reset();
+		completed.reset();
+		failed.reset();
+		retries.reset();
+		stale.reset();
+		noops.reset();
+		tooBusy.reset();
+		started.add(inFlight);
+		this.resetAt = System.nanoTime();
+	}
+
+	@Override
+	public void onTransitionStart(String fsm, T stateful, String from, String event, String to) {
+		started.increment();
+		delegate.onTransitionStart(fsm, stateful, from, event, to);
+	}
+
+	@Override
+	public void onTransitionEnd(String fsm, T stateful, String from, String event, String to, long nanos) {
+		completed.increment();
+		delegate.onTransitionEnd(fsm, stateful, from, event, to, nanos);
+	}
+
+	@Override
+	public void onTransitionFailed(String fsm, T stateful, String from, String event, String to) {
+		failed.increment();
+		delegate.onTransitionFailed(fsm, stateful, from, event, to);
+	}
+
+	@Override
+	public void onRetry(String fsm, T stateful, String from, String event, String to) {
+		retries.increment();
+		delegate.onRetry(fsm, stateful, from, event, to);
+	}
+
+	@Override
+	public void onStaleState(String fsm, T stateful, String from, String event, String to) {
+		stale.increment();
+		delegate.onStaleState(fsm, stateful, from, event, to);
+	}
+
+	@Override
+	public void onNoop(String fsm, T stateful, String from, String event, String to) {
+		noops.increment();
+		delegate.onNoop(fsm, stateful, from, event, to);
+	}
+
+	@Override
+	public void onTooBusy(String fsm, T stateful, String from, String event, String to) {
+		tooBusy.increment();
+		delegate.onTooBusy(fsm, stateful, from, event, to);
+	}
+}
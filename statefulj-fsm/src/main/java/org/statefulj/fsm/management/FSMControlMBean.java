@@ -0,0 +1,86 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.management;
+
+/**
+ * The JMX management interface of an {@link org.statefulj.fsm.FSM}.  Counters are cumulative
+ * since the FSM was registered, or since {@link #resetCounters()}
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface FSMControlMBean {
+
+	String getName();
+
+	/**
+	 * @return The number of events which completed a Transition or had no Transition from the
+	 * current State
+	 */
+	long getEventsProcessed();
+
+	/**
+	 * @return The average number of events processed per second since the counters were reset
+	 */
+	double getEventsPerSecond();
+
+	long getTransitionsStarted();
+
+	long getTransitionsCompleted();
+
+	long getTransitionsFailed();
+
+	/**
+	 * @return The number of Transitions currently in progress
+	 */
+	long getInFlight();
+
+	long getRetries();
+
+	long getStaleStates();
+
+	long getNoops();
+
+	long getTooBusy();
+
+	int getRetryAttempts();
+
+	/**
+	 * Set the maximum number of attempts at an event
+	 *
+	 * @param retryAttempts The maximum attempts, -1 for unlimited
+	 * @throws IllegalStateException if the FSM has a RetryPolicy, which supersedes the retryAttempts
+	 */
+	void setRetryAttempts(int retryAttempts);
+
+	int getRetryInterval();
+
+	/**
+	 * @param retryInterval The milliseconds to wait before retrying an event on a Blocking State
+	 * @throws IllegalStateException if the FSM has a RetryPolicy, which decides the wait between retries
+	 */
+	void setRetryInterval(int retryInterval);
+
+	/**
+	 * @return The class of the RetryPolicy in effect
+	 */
+	String getRetryPolicy();
+
+	void resetCounters();
+
+}
@@ -0,0 +1,89 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.metrics;
+
+/**
+ * A Stateful Entity reported by the {@link ContentionMonitor} as one of the most contended
+ *
+ * @author Andrew Hall
+ *
+ */
+public class ContendedEntity {
+
+	private final Class<?> type;
+	private final Object id;
+	private final long conflicts;
+	private final long error;
+	private final double share;
+	private final double conflictsPerSecond;
+
+	public ContendedEntity(Class<?> type, Object id, long conflicts, long error, double share, double conflictsPerSecond) {
+		this.type = type;
+		this.id = id;
+		this.conflicts = conflicts;
+		this.error = error;
+		this.share = share;
+		this.conflictsPerSecond = conflictsPerSecond;
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	public Object getId() {
+		return id;
+	}
+
+	/**
+	 * @return The estimated number of conflicts, an overestimate by at most the error
+	 */
+	public long getConflicts() {
+		return conflicts;
+	}
+
+	public long getError() {
+		return error;
+	}
+
+	/**
+	 * @return The fraction of all conflicts attributed to this Entity
+	 */
+	public double getShare() {
+		return share;
+	}
+
+	/**
+	 * @return The rate of the conflicts observed since the Entity was first seen by the monitor.  The
+	 * error, inherited from an evicted Entity, isn't included
+	 */
+	public double getConflictsPerSecond() {
+		return conflictsPerSecond;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%s(%s): conflicts=%d, error=%d, share=%.3f, rate=%.2f/s",
+				type.getSimpleName(),
+				id,
+				conflicts,
+				error,
+				share,
+				conflictsPerSecond);
+	}
+}
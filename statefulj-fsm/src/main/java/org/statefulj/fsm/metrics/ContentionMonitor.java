@@ -0,0 +1,284 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.statefulj.common.utils.FieldAccessor;
+import org.statefulj.fsm.FSMListener;
+
+/**
+ * Finds the Stateful Entities causing retry storms.  Conflicts, i.e. stale States and retries, are
+ * counted by (Entity class, id) in a bounded {@link SpaceSavingSketch}, so the most contended
+ * Entities are tracked in constant memory regardless of how many Entities conflict.
+ *
+ * Each conflict is counted once, at one site.  Stale States are reported by the Persisters given the
+ * monitor, see <code>AbstractPersister.setContentionMonitor</code>, so {@link #onStaleState} is ignored.
+ * Retries are reported when the monitor is the {@link FSMListener} of the FSM, which never reports a
+ * stale State as a retry; the id of the Entity is read with the id accessor registered by the
+ * Persister.  All other callbacks are ignored
+ *
+ * @author Andrew Hall
+ *
+ */
+public class ContentionMonitor<T> implements FSMListener<T>, ContentionMonitorMBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(ContentionMonitor.class);
+
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	private static final int DEFAULT_TOP = 10;
+
+	private final SpaceSavingSketch<EntityKey> sketch;
+	private final ConcurrentHashMap<Class<?>, FieldAccessor<Object, ?>> idAccessors =
+			new ConcurrentHashMap<Class<?>, FieldAccessor<Object, ?>>();
+	private final LongAdder staleStates = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private String name = "ContentionMonitor";
+	private MBeanServer server;
+
+	public ContentionMonitor() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity The number of Entities tracked.  Any Entity with more than 1/capacity of the
+	 * conflicts is guaranteed to be tracked
+	 */
+	public ContentionMonitor(int capacity) {
+		this.sketch = new SpaceSavingSketch<EntityKey>(capacity);
+	}
+
+	/**
+	 * Register how to read the id of a Stateful Entity type, so that retries reported through the
+	 * {@link FSMListener} callbacks can be attributed
+	 */
+	@SuppressWarnings("unchecked")
+	public <E> void registerIdAccessor(Class<E> type, FieldAccessor<E, ?> idAccessor) {
+		this.idAccessors.put(type, (FieldAccessor<Object, ?>)idAccessor);
+	}
+
+	public void recordStaleState(Class<?> type, Object id) {
+		staleStates.increment();
+		sketch.offer(new EntityKey(type, id));
+	}
+
+	public void recordRetry(Class<?> type, Object id) {
+		retries.increment();
+		sketch.offer(new EntityKey(type, id));
+	}
+
+	/**
+	 * @param k The number of Entities to return
+	 * @return The k most contended Entities, most contended first
+	 */
+	public List<ContendedEntity> getTopContended(int k) {
+		long total = sketch.getTotal();
+		long now = System.nanoTime();
+		List<ContendedEntity> top = new ArrayList<ContendedEntity>();
+		for(SpaceSavingSketch.Counter<EntityKey> counter : sketch.top(k)) {
+
+			// The rate only counts the conflicts observed since the Entity was first seen, not the
+			// count inherited from an evicted Entity
+			//
+			double seconds = Math.max(1.0, (now - counter.getFirstSeen()) / 1e9);
+			top.add(new ContendedEntity(
+					counter.getKey().type,
+					counter.getKey().id,
+					counter.getCount(),
+					counter.getError(),
+					(total > 0) ? (double)counter.getCount() / total : 0,
+					counter.getObserved() / seconds));
+		}
+		return top;
+	}
+
+	@Override
+	public String[] getTopContended() {
+		List<ContendedEntity> top = getTopContended(DEFAULT_TOP);
+		String[] lines = new String[top.size()];
+		for(int i = 0; i < lines.length; i++) {
+			lines[i] = top.get(i).toString();
+		}
+		return lines;
+	}
+
+	@Override
+	public long getStaleStates() {
+		return staleStates.sum();
+	}
+
+	@Override
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	@Override
+	public int getCapacity() {
+		return sketch.getCapacity();
+	}
+
+	@Override
+	public void reset() {
+		sketch.reset();
+		staleStates.reset();
+		retries.reset();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param name The name of the MBean, org.statefulj:type=ContentionMonitor,name=&lt;name&gt;
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Register with the platform MBeanServer
+	 */
+	public void register() {
+		register(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	public synchronized void register(MBeanServer server) {
+		try {
+			server.registerMBean(this, getObjectName());
+			this.server = server;
+		} catch (InstanceAlreadyExistsException e) {
+			logger.warn("{} is already registered", getObjectName());
+		} catch (JMException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public synchronized void unregister() {
+		if (this.server != null) {
+			try {
+				this.server.unregisterMBean(getObjectName());
+			} catch (InstanceNotFoundException e) {
+				// Already gone
+				//
+			} catch (JMException e) {
+				throw new RuntimeException(e);
+			}
+			this.server = null;
+		}
+	}
+
+	public ObjectName getObjectName() {
+		try {
+			return new ObjectName("org.statefulj:type=ContentionMonitor,name=" + ObjectName.quote(this.name));
+		} catch (MalformedObjectNameException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void onRetry(String fsm, T stateful, String from, String event, String to) {
+		if (stateful != null) {
+			FieldAccessor<Object, ?> idAccessor = getIdAccessor(stateful.getClass());
+			if (idAccessor != null) {
+				recordRetry(stateful.getClass(), idAccessor.getValue(stateful));
+			}
+		}
+	}
+
+	@Override
+	public void onTransitionStart(String fsm, T stateful, String from, String event, String to) {
+	}
+
+	@Override
+	public void onTransitionEnd(String fsm, T stateful, String from, String event, String to, long nanos) {
+	}
+
+	@Override
+	public void onTransitionFailed(String fsm, T stateful, String from, String event, String to) {
+	}
+
+	/**
+	 * Ignored, the Persister already reported the stale State
+	 */
+	@Override
+	public void onStaleState(String fsm, T stateful, String from, String event, String to) {
+	}
+
+	@Override
+	public void onNoop(String fsm, T stateful, String from, String event, String to) {
+	}
+
+	@Override
+	public void onTooBusy(String fsm, T stateful, String from, String event, String to) {
+	}
+
+	/**
+	 * Find the id accessor of the type or, for subclasses and proxies, of its nearest superclass
+	 */
+	private FieldAccessor<Object, ?> getIdAccessor(Class<?> type) {
+		FieldAccessor<Object, ?> idAccessor = idAccessors.get(type);
+		if (idAccessor == null) {
+			for(Class<?> clazz = type.getSuperclass(); clazz != null && idAccessor == null; clazz = clazz.getSuperclass()) {
+				idAccessor = idAccessors.get(clazz);
+			}
+			if (idAccessor != null) {
+				idAccessors.putIfAbsent(type, idAccessor);
+			}
+		}
+		return idAccessor;
+	}
+
+	private static class EntityKey {
+
+		private final Class<?> type;
+		private final Object id;
+
+		EntityKey(Class<?> type, Object id) {
+			this.type = type;
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + ((id == null) ? 0 : id.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof EntityKey)) {
+				return false;
+			}
+			EntityKey other = (EntityKey)obj;
+			return this.type == other.type && ((this.id == null) ? other.id == null : this.id.equals(other.id));
+		}
+	}
+}
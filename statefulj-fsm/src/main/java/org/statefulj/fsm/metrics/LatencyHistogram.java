@@ -0,0 +1,102 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of latencies.  Latencies are counted in buckets whose upper bounds are
+ * powers of two nanoseconds, so percentiles are accurate to within a factor of two
+ *
+ * @author Andrew Hall
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		nanos = Math.max(nanos, 0);
+		this.buckets.incrementAndGet(bucket(nanos));
+		this.count.increment();
+		this.total.add(nanos);
+		long current = this.max.get();
+		while(nanos > current && !this.max.compareAndSet(current, nanos)) {
+			current = this.max.get();
+		}
+	}
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	public long getTotalNanos() {
+		return this.total.sum();
+	}
+
+	public long getMaxNanos() {
+		return this.max.get();
+	}
+
+	public long getMeanNanos() {
+		long count = this.getCount();
+		return (count == 0) ? 0 : this.getTotalNanos() / count;
+	}
+
+	/**
+	 * Estimate a percentile
+	 *
+	 * @param percentile The percentile, between 0 and 100
+	 * @return The upper bound, in nanoseconds, of the bucket holding the percentile
+	 */
+	public long getPercentileNanos(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			counts[i] = this.buckets.get(i);
+			count += counts[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long)Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100.0);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0) {
+				return Math.min(upperBound(i), this.getMaxNanos());
+			}
+		}
+		return this.getMaxNanos();
+	}
+
+	private static int bucket(long nanos) {
+		return Math.min(BUCKETS - 1, BUCKETS - Long.numberOfLeadingZeros(nanos));
+	}
+
+	private static long upperBound(int bucket) {
+		return (bucket >= BUCKETS - 1) ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+}
@@ -0,0 +1,125 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.statefulj.fsm.FSMListener;
+
+/**
+ * An {@link FSMListener} which records lock free counters and a latency histogram for every
+ * (from, event, to) Transition.  A single MetricsFSMListener may be shared across FSMs; the
+ * metrics are kept per FSM name.  Where the to State isn't known, the metrics are recorded
+ * against {@link #UNKNOWN}
+ *
+ * @author Andrew Hall
+ *
+ */
+public class MetricsFSMListener<T> implements FSMListener<T> {
+
+	public static final String UNKNOWN = "?";
+
+	// fsm -> from -> event -> to
+	//
+	private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, TransitionMetrics>>>> metrics =
+			new ConcurrentHashMap<String, ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, TransitionMetrics>>>>();
+
+	@Override
+	public void onTransitionStart(String fsm, T stateful, String from, String event, String to) {
+		getMetrics(fsm, from, event, to).onStart();
+	}
+
+	@Override
+	public void onTransitionEnd(String fsm, T stateful, String from, String event, String to, long nanos) {
+		getMetrics(fsm, from, event, to).onEnd(nanos);
+	}
+
+	@Override
+	public void onTransitionFailed(String fsm, T stateful, String from, String event, String to) {
+		getMetrics(fsm, from, event, to).onFailed();
+	}
+
+	@Override
+	public void onRetry(String fsm, T stateful, String from, String event, String to) {
+		getMetrics(fsm, from, event, to).onRetry();
+	}
+
+	@Override
+	public void onStaleState(String fsm, T stateful, String from, String event, String to) {
+		getMetrics(fsm, from, event, to).onStale();
+	}
+
+	@Override
+	public void onNoop(String fsm, T stateful, String from, String event, String to) {
+		getMetrics(fsm, from, event, to).onNoop();
+	}
+
+	@Override
+	public void onTooBusy(String fsm, T stateful, String from, String event, String to) {
+		getMetrics(fsm, from, event, to).onTooBusy();
+	}
+
+	/**
+	 * Return the metrics of a Transition
+	 *
+	 * @return The metrics, created if the Transition hasn't been seen
+	 */
+	public TransitionMetrics getMetrics(String fsm, String from, String event, String to) {
+		from = (from == null) ? UNKNOWN : from;
+		event = (event == null) ? UNKNOWN : event;
+		to = (to == null) ? UNKNOWN : to;
+		ConcurrentMap<String, TransitionMetrics> byTo = getOrCreate(getOrCreate(getOrCreate(this.metrics, fsm), from), event);
+		TransitionMetrics transitionMetrics = byTo.get(to);
+		if (transitionMetrics == null) {
+			transitionMetrics = new TransitionMetrics(from, event, to);
+			TransitionMetrics existing = byTo.putIfAbsent(to, transitionMetrics);
+			transitionMetrics = (existing != null) ? existing : transitionMetrics;
+		}
+		return transitionMetrics;
+	}
+
+	/**
+	 * @param fsm The name of the FSM
+	 * @return A snapshot of the metrics of every Transition seen by the FSM
+	 */
+	public List<TransitionMetrics> getMetrics(String fsm) {
+		List<TransitionMetrics> all = new ArrayList<TransitionMetrics>();
+		ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, TransitionMetrics>>> byFrom = this.metrics.get(fsm);
+		if (byFrom != null) {
+			for(ConcurrentMap<String, ConcurrentMap<String, TransitionMetrics>> byEvent : byFrom.values()) {
+				for(ConcurrentMap<String, TransitionMetrics> byTo : byEvent.values()) {
+					all.addAll(byTo.values());
+				}
+			}
+		}
+		return all;
+	}
+
+	private static <V> ConcurrentMap<String, V> getOrCreate(ConcurrentMap<String, ConcurrentMap<String, V>> map, String key) {
+		ConcurrentMap<String, V> value = map.get(key);
+		if (value == null) {
+			value = new ConcurrentHashMap<String, V>();
+			ConcurrentMap<String, V> existing = map.putIfAbsent(key, value);
+			value = (existing != null) ? existing : value;
+		}
+		return value;
+	}
+}
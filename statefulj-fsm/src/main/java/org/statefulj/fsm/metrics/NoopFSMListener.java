@@ -0,0 +1,65 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.metrics;
+
+import org.statefulj.fsm.FSMListener;
+
+/**
+ * The default {@link FSMListener}, ignores all callbacks
+ *
+ * @author Andrew Hall
+ *
+ */
+public class NoopFSMListener<T> implements FSMListener<T> {
+
+	@SuppressWarnings("rawtypes")
+	private static final NoopFSMListener INSTANCE = new NoopFSMListener();
+
+	@SuppressWarnings("unchecked")
+	public static <T> NoopFSMListener<T> getInstance() {
+		return INSTANCE;
+	}
+
+	@Override
+	public void onTransitionStart(String fsm, T stateful, String from, String event, String to) {
+	}
+
+	@Override
+	public void onTransitionEnd(String fsm, T stateful, String from, String event, String to, long nanos) {
+	}
+
+	@Override
+	public void onTransitionFailed(String fsm, T stateful, String from, String event, String to) {
+	}
+
+	@Override
+	public void onRetry(String fsm, T stateful, String from, String event, String to) {
+	}
+
+	@Override
+	public void onStaleState(String fsm, T stateful, String from, String event, String to) {
+	}
+
+	@Override
+	public void onNoop(String fsm, T stateful, String from, String event, String to) {
+	}
+
+	@Override
+	public void onTooBusy(String fsm, T stateful, String from, String event, String to) {
+	}
+}
@@ -0,0 +1,277 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Space-Saving heavy hitters sketch.  At most <code>capacity</code> keys are counted; when a new
+ * key arrives and the sketch is full, the key with the smallest count is evicted and the new key
+ * inherits its count as its error.  Any key whose true count exceeds total/capacity is guaranteed to
+ * be held, and a held key's count overestimates its true count by at most its error.
+ *
+ * Offers don't touch the summary.  Each thread adds to one of a number of stripes, which buffer the
+ * weight per key; a stripe is merged into the summary once it buffers <code>capacity</code> keys and
+ * every stripe is merged before the sketch is read.  Merging weighted updates keeps the guarantees of
+ * the sketch, so an offer only costs an uncontended lock and a HashMap update
+ *
+ * @author Andrew Hall
+ *
+ * @param <K> The type of the key
+ */
+public class SpaceSavingSketch<K> {
+
+	private final int capacity;
+	private final Stripe<K>[] stripes;
+	private final LongAdder total = new LongAdder();
+
+	// The summary, guarded by itself
+	//
+	private final Map<K, Counter<K>> counters;
+	private final TreeSet<Counter<K>> byCount = new TreeSet<Counter<K>>();
+	private long sequence = 0;
+
+	@SuppressWarnings("unchecked")
+	public SpaceSavingSketch(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		this.capacity = capacity;
+		this.counters = new HashMap<K, Counter<K>>(capacity * 2);
+
+		// A power of two stripes, at least one per processor
+		//
+		int processors = Runtime.getRuntime().availableProcessors();
+		int size = Integer.highestOneBit(Math.max(1, processors * 2 - 1));
+		this.stripes = new Stripe[size];
+		for(int i = 0; i < size; i++) {
+			this.stripes[i] = new Stripe<K>();
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return The total of all the offered weights
+	 */
+	public long getTotal() {
+		return total.sum();
+	}
+
+	public void offer(K key) {
+		offer(key, 1);
+	}
+
+	public void offer(K key, long weight) {
+		total.add(weight);
+		Stripe<K> stripe = this.stripes[(int)Thread.currentThread().getId() & (this.stripes.length - 1)];
+		Map<K, Pending> drained = null;
+		synchronized(stripe) {
+			Pending pending = stripe.pending.get(key);
+			if (pending == null) {
+				stripe.pending.put(key, new Pending(weight, System.nanoTime()));
+			} else {
+				pending.weight += weight;
+			}
+			if (stripe.pending.size() >= this.capacity) {
+				drained = stripe.drain();
+			}
+		}
+		if (drained != null) {
+			merge(drained);
+		}
+	}
+
+	/**
+	 * @param k The number of keys to return
+	 * @return Copies of the counters of the k most frequent keys, most frequent first
+	 */
+	public List<Counter<K>> top(int k) {
+		mergeStripes();
+		synchronized(this.counters) {
+			List<Counter<K>> top = new ArrayList<Counter<K>>(Math.min(k, counters.size()));
+			Iterator<Counter<K>> iterator = byCount.descendingIterator();
+			while(iterator.hasNext() && top.size() < k) {
+				Counter<K> counter = iterator.next();
+				top.add(new Counter<K>(counter.key, counter.count, counter.error, counter.firstSeen));
+			}
+			return top;
+		}
+	}
+
+	public void reset() {
+		for(Stripe<K> stripe : this.stripes) {
+			synchronized(stripe) {
+				stripe.pending.clear();
+			}
+		}
+		synchronized(this.counters) {
+			counters.clear();
+			byCount.clear();
+		}
+		total.reset();
+	}
+
+	private void mergeStripes() {
+		for(Stripe<K> stripe : this.stripes) {
+			Map<K, Pending> drained;
+			synchronized(stripe) {
+				drained = stripe.drain();
+			}
+			if (drained != null) {
+				merge(drained);
+			}
+		}
+	}
+
+	/**
+	 * Add the buffered weights to the summary
+	 */
+	private void merge(Map<K, Pending> drained) {
+		synchronized(this.counters) {
+			for(Map.Entry<K, Pending> entry : drained.entrySet()) {
+				K key = entry.getKey();
+				long weight = entry.getValue().weight;
+				Counter<K> counter = counters.get(key);
+				if (counter != null) {
+					byCount.remove(counter);
+					counter.count += weight;
+				} else if (counters.size() < capacity) {
+					counter = new Counter<K>(key, weight, 0, entry.getValue().firstSeen);
+					counters.put(key, counter);
+				} else {
+
+					// Evict the smallest, the new key takes over its count as its error
+					//
+					Counter<K> min = byCount.pollFirst();
+					counters.remove(min.key);
+					counter = new Counter<K>(key, min.count + weight, min.count, entry.getValue().firstSeen);
+					counters.put(key, counter);
+				}
+				counter.sequence = sequence++;
+				byCount.add(counter);
+			}
+		}
+	}
+
+	/**
+	 * Buffers the weight offered per key by the threads mapped onto it, guarded by itself
+	 */
+	private static class Stripe<K> {
+
+		private HashMap<K, Pending> pending = new HashMap<K, Pending>();
+
+		/**
+		 * @return The buffered weights, or null if there are none
+		 */
+		Map<K, Pending> drain() {
+			if (pending.isEmpty()) {
+				return null;
+			}
+			HashMap<K, Pending> drained = pending;
+			pending = new HashMap<K, Pending>();
+			return drained;
+		}
+	}
+
+	private static class Pending {
+
+		private long weight;
+		private final long firstSeen;
+
+		Pending(long weight, long firstSeen) {
+			this.weight = weight;
+			this.firstSeen = firstSeen;
+		}
+	}
+
+	public static class Counter<K> implements Comparable<Counter<K>> {
+
+		private final K key;
+		private long count;
+		private final long error;
+		private final long firstSeen;
+		private long sequence;
+
+		Counter(K key, long count, long error, long firstSeen) {
+			this.key = key;
+			this.count = count;
+			this.error = error;
+			this.firstSeen = firstSeen;
+		}
+
+		public K getKey() {
+			return key;
+		}
+
+		/**
+		 * @return The estimated count, never less than the true count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return The maximum overestimate of the count
+		 */
+		public long getError() {
+			return error;
+		}
+
+		/**
+		 * @return The weight offered for the key since it was first seen, i.e. the count less the
+		 * count inherited on eviction.  Never more than the true count
+		 */
+		public long getObserved() {
+			return count - error;
+		}
+
+		/**
+		 * @return The {@link System#nanoTime()} the key was first counted.  For a key which took over
+		 * an evicted counter, the time it was first counted since, so only the observed count
+		 * accrued since firstSeen
+		 */
+		public long getFirstSeen() {
+			return firstSeen;
+		}
+
+		@Override
+		public int compareTo(Counter<K> other) {
+			if (this.count != other.count) {
+				return (this.count < other.count) ? -1 : 1;
+			}
+
+			// Of equal counts, the least recently updated is evicted first
+			//
+			return (this.sequence < other.sequence) ? -1 : (this.sequence == other.sequence) ? 0 : 1;
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + count + "(+/-" + error + ")";
+		}
+	}
+}
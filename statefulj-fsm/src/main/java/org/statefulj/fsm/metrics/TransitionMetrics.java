@@ -0,0 +1,138 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters and latency histogram of a single (from, event, to) Transition
+ *
+ * @author Andrew Hall
+ *
+ */
+public class TransitionMetrics {
+
+	private final String from;
+	private final String event;
+	private final String to;
+
+	private final LongAdder started = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder stale = new LongAdder();
+	private final LongAdder noops = new LongAdder();
+	private final LongAdder tooBusy = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	public TransitionMetrics(String from, String event, String to) {
+		this.from = from;
+		this.event = event;
+		this.to = to;
+	}
+
+	public String getFrom() {
+		return from;
+	}
+
+	public String getEvent() {
+		return event;
+	}
+
+	public String getTo() {
+		return to;
+	}
+
+	public long getStarted() {
+		return started.sum();
+	}
+
+	public long getCompleted() {
+		return latency.getCount();
+	}
+
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	public long getStale() {
+		return stale.sum();
+	}
+
+	public long getNoops() {
+		return noops.sum();
+	}
+
+	public long getTooBusy() {
+		return tooBusy.sum();
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	void onStart() {
+		started.increment();
+	}
+
+	void onEnd(long nanos) {
+		latency.record(nanos);
+	}
+
+	void onFailed() {
+		failed.increment();
+	}
+
+	void onRetry() {
+		retries.increment();
+	}
+
+	void onStale() {
+		stale.increment();
+	}
+
+	void onNoop() {
+		noops.increment();
+	}
+
+	void onTooBusy() {
+		tooBusy.increment();
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%s(%s)->%s: started=%d, completed=%d, failed=%d, retries=%d, stale=%d, noops=%d, tooBusy=%d, mean=%dns, p99=%dns, max=%dns",
+				from,
+				event,
+				to,
+				getStarted(),
+				getCompleted(),
+				getFailed(),
+				getRetries(),
+				getStale(),
+				getNoops(),
+				getTooBusy(),
+				latency.getMeanNanos(),
+				latency.getPercentileNanos(99),
+				latency.getMaxNanos());
+	}
+}
@@ -0,0 +1,119 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.model.impl;
+
+import org.statefulj.fsm.model.Action;
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.Transition;
+
+/**
+ * A State which belongs to a {@link TransitionTable}.  It holds no Transitions of its own, it
+ * only knows its ordinal within the table.  The set of Transitions is frozen - adding or removing
+ * a Transition will throw an UnsupportedOperationException.
+ *
+ * @author Andrew Hall
+ *
+ * @param <T> The class of the Stateful Entity
+ */
+public class CompiledStateImpl<T> implements State<T> {
+
+	private final String name;
+	private final int ordinal;
+	private final boolean isEndState;
+	private boolean isBlocking;
+	private final TransitionTable<T> transitionTable;
+
+	CompiledStateImpl(String name, int ordinal, boolean isEndState, boolean isBlocking, TransitionTable<T> transitionTable) {
+		this.name = name;
+		this.ordinal = ordinal;
+		this.isEndState = isEndState;
+		this.isBlocking = isBlocking;
+		this.transitionTable = transitionTable;
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return The ordinal of this State within its {@link TransitionTable}
+	 */
+	public int getOrdinal() {
+		return this.ordinal;
+	}
+
+	public TransitionTable<T> getTransitionTable() {
+		return this.transitionTable;
+	}
+
+	@Override
+	public Transition<T> getTransition(String event) {
+		return this.transitionTable.getTransition(this.ordinal, event);
+	}
+
+	/**
+	 * Returns the Transition for an Event ordinal
+	 *
+	 * @param eventId The ordinal of the Event
+	 * @return The Transition for this event
+	 */
+	public Transition<T> getTransition(int eventId) {
+		return this.transitionTable.getTransition(this.ordinal, eventId);
+	}
+
+	@Override
+	public boolean isEndState() {
+		return this.isEndState;
+	}
+
+	@Override
+	public boolean isBlocking() {
+		return this.isBlocking;
+	}
+
+	@Override
+	public void setBlocking(boolean isBlocking) {
+		this.isBlocking = isBlocking;
+	}
+
+	@Override
+	public void removeTransition(String event) {
+		throw new UnsupportedOperationException("Transitions of a compiled State can't be modified, state=" + this.name);
+	}
+
+	@Override
+	public void addTransition(String event, Transition<T> transition) {
+		throw new UnsupportedOperationException("Transitions of a compiled State can't be modified, state=" + this.name);
+	}
+
+	@Override
+	public void addTransition(String event, State<T> next, Action<T> action) {
+		throw new UnsupportedOperationException("Transitions of a compiled State can't be modified, state=" + this.name);
+	}
+
+	@Override
+	public void addTransition(String event, State<T> next) {
+		throw new UnsupportedOperationException("Transitions of a compiled State can't be modified, state=" + this.name);
+	}
+
+	@Override
+	public String toString() {
+		return "State[name=" + this.name + ", isEndState=" + this.isEndState + ", isBlocking=" + this.isBlocking +"]";
+	}
+}
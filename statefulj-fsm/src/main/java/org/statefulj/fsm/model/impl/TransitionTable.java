@@ -0,0 +1,251 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.model.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.StateActionPair;
+import org.statefulj.fsm.model.Transition;
+
+/**
+ * A frozen, index based representation of an FSM graph.  Every State and every Event is interned to a
+ * dense ordinal and the Transitions are held in a single flat <code>state x event</code> array, so
+ * resolving a Transition is an array access rather than a per State HashMap lookup.
+ *
+ * A TransitionTable is immutable once compiled.  The States it holds are {@link CompiledStateImpl}s which
+ * reject any attempt to add or remove Transitions.
+ *
+ * @author Andrew Hall
+ *
+ * @param <T> The class of the Stateful Entity
+ */
+public class TransitionTable<T> {
+
+	private final Map<String, Integer> eventIds;
+
+	private final String[] events;
+
+	private final Map<String, CompiledStateImpl<T>> statesByName;
+
+	private final CompiledStateImpl<T>[] states;
+
+	private final Transition<T>[] transitions;
+
+	/**
+	 * Compile the States into a TransitionTable.  State ordinals follow the iteration order of the
+	 * provided States.  Event ordinals are assigned in the order the Events are first encountered, walking
+	 * the States in order and each State's Events alphabetically.
+	 *
+	 * @param states The States to compile.  Only {@link StateImpl} and {@link CompiledStateImpl} States
+	 * can be compiled, so a compiled FSM can be recompiled with new States
+	 * @return The compiled TransitionTable
+	 */
+	public static <T> TransitionTable<T> compile(Collection<State<T>> states) {
+		return new TransitionTable<T>(states);
+	}
+
+	@SuppressWarnings("unchecked")
+	private TransitionTable(Collection<State<T>> sources) {
+
+		// Intern the States and the Events
+		//
+		Map<String, Integer> eventIds = new LinkedHashMap<String, Integer>();
+		List<Map<String, Transition<T>>> transitionMaps = new ArrayList<Map<String, Transition<T>>>(sources.size());
+		this.statesByName = new HashMap<String, CompiledStateImpl<T>>();
+		this.states = new CompiledStateImpl[sources.size()];
+
+		int ordinal = 0;
+		for(State<T> source : sources) {
+			Map<String, Transition<T>> transitions;
+			if (source instanceof StateImpl) {
+				transitions = new TreeMap<String, Transition<T>>(((StateImpl<T>)source).getTransitions());
+			} else if (source instanceof CompiledStateImpl) {
+				CompiledStateImpl<T> compiled = (CompiledStateImpl<T>)source;
+				transitions = compiled.getTransitionTable().getTransitions(compiled.getOrdinal());
+			} else {
+				throw new RuntimeException(
+						"Unable to compile State " + source.getName() +
+						", only StateImpl and CompiledStateImpl States can be compiled");
+			}
+			if (this.statesByName.containsKey(source.getName())) {
+				throw new RuntimeException("Duplicate State, name=" + source.getName());
+			}
+
+			for(String event : transitions.keySet()) {
+				if (!eventIds.containsKey(event)) {
+					eventIds.put(event, eventIds.size());
+				}
+			}
+			transitionMaps.add(transitions);
+
+			CompiledStateImpl<T> state = new CompiledStateImpl<T>(
+					source.getName(),
+					ordinal,
+					source.isEndState(),
+					source.isBlocking(),
+					this);
+			this.states[ordinal++] = state;
+			this.statesByName.put(state.getName(), state);
+		}
+		this.eventIds = Collections.unmodifiableMap(eventIds);
+		this.events = eventIds.keySet().toArray(new String[eventIds.size()]);
+
+		// Lay the Transitions out in the table.  Deterministic Transitions are rebuilt to point to the
+		// compiled States, all other Transitions are kept as is
+		//
+		this.transitions = new Transition[this.states.length * this.events.length];
+		for(int i = 0; i < this.states.length; i++) {
+			for(Map.Entry<String, Transition<T>> entry : transitionMaps.get(i).entrySet()) {
+				int eventId = eventIds.get(entry.getKey());
+				this.transitions[i * this.events.length + eventId] = compileTransition(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Return the ordinal for the Event
+	 *
+	 * @param event The Event
+	 * @return The ordinal of the Event or -1 if the Event isn't known to the FSM
+	 */
+	public int getEventId(String event) {
+		Integer eventId = this.eventIds.get(event);
+		return (eventId != null) ? eventId : -1;
+	}
+
+	/**
+	 * Return the Event for the ordinal
+	 *
+	 * @param eventId The ordinal of the Event
+	 * @return The Event
+	 */
+	public String getEvent(int eventId) {
+		if (eventId < 0 || eventId >= this.events.length) {
+			throw new RuntimeException("Unknown event, id=" + eventId);
+		}
+		return this.events[eventId];
+	}
+
+	public int getEventCount() {
+		return this.events.length;
+	}
+
+	/**
+	 * @return The Events keyed by name with their ordinals
+	 */
+	public Map<String, Integer> getEventIds() {
+		return this.eventIds;
+	}
+
+	/**
+	 * Return the compiled State by ordinal
+	 *
+	 * @param stateId The ordinal of the State
+	 * @return The State
+	 */
+	public State<T> getState(int stateId) {
+		return this.states[stateId];
+	}
+
+	/**
+	 * Return the compiled State by name
+	 *
+	 * @param name The name of the State
+	 * @return The State or null if not found
+	 */
+	public State<T> getState(String name) {
+		return this.statesByName.get(name);
+	}
+
+	public int getStateCount() {
+		return this.states.length;
+	}
+
+	/**
+	 * @return The compiled States in ordinal order
+	 */
+	public List<State<T>> getStates() {
+		List<State<T>> states = new ArrayList<State<T>>(this.states.length);
+		Collections.addAll(states, this.states);
+		return states;
+	}
+
+	/**
+	 * Resolve the Transition for a State and Event
+	 *
+	 * @param stateId The ordinal of the State
+	 * @param eventId The ordinal of the Event
+	 * @return The Transition or null if there is no Transition for the Event
+	 */
+	public Transition<T> getTransition(int stateId, int eventId) {
+		if (eventId < 0 || eventId >= this.events.length) {
+			throw new RuntimeException("Unknown event, id=" + eventId);
+		}
+		return this.transitions[stateId * this.events.length + eventId];
+	}
+
+	/**
+	 * Resolve the Transition for a State and Event
+	 *
+	 * @param stateId The ordinal of the State
+	 * @param event The Event
+	 * @return The Transition or null if there is no Transition for the Event
+	 */
+	public Transition<T> getTransition(int stateId, String event) {
+		Integer eventId = this.eventIds.get(event);
+		return (eventId != null) ? this.transitions[stateId * this.events.length + eventId] : null;
+	}
+
+	/**
+	 * Return the Transitions of a State
+	 *
+	 * @param stateId The ordinal of the State
+	 * @return The Transitions of the State keyed and sorted by Event
+	 */
+	Map<String, Transition<T>> getTransitions(int stateId) {
+		Map<String, Transition<T>> transitions = new TreeMap<String, Transition<T>>();
+		for(int eventId = 0; eventId < this.events.length; eventId++) {
+			Transition<T> transition = this.transitions[stateId * this.events.length + eventId];
+			if (transition != null) {
+				transitions.put(this.events[eventId], transition);
+			}
+		}
+		return transitions;
+	}
+
+	private Transition<T> compileTransition(String event, Transition<T> transition) {
+		if (transition == null || !transition.getClass().equals(DeterministicTransitionImpl.class)) {
+			return transition;
+		}
+
+		// A DeterministicTransitionImpl ignores the Stateful Entity and arguments, so it's
+		// safe to resolve its StateActionPair up front
+		//
+		StateActionPair<T> pair = ((DeterministicTransitionImpl<T>)transition).getStateActionPair(null, event);
+		State<T> to = this.statesByName.get(pair.getState().getName());
+		return (to != null) ? new DeterministicTransitionImpl<T>(to, pair.getAction()) : transition;
+	}
+}
@@ -22,7 +22,8 @@ import org.statefulj.fsm.WaitAndRetryException;
 import org.statefulj.fsm.model.Action;
 
 /**
- * Action with throws a {@link org.statefulj.fsm.WaitAndRetryException}
+ * Action with throws a {@link org.statefulj.fsm.WaitAndRetryException}.  The exception is preallocated
+ * and stackless
  * 
  * @author Andrew Hall
  *
@@ -32,6 +33,8 @@ public class WaitAndRetryActionImpl<T> implements Action<T> {
 	
 	private int wait = 0;
 
+	private final WaitAndRetryException signal;
+
 	/**
 	 * Constructor with a wait time expressed in milliseconds
 	 * 
@@ -39,11 +42,12 @@ public class WaitAndRetryActionImpl<T> implements Action<T> {
 	 */
 	public WaitAndRetryActionImpl(int wait) {
 		this.wait = wait;
+		this.signal = WaitAndRetryException.signal(wait);
 	}
 	
 	@Override
 	public void execute(T obj, String event, Object... args) throws RetryException {
-		throw new WaitAndRetryException(this.wait);
+		throw this.signal;
 	}
 
 }
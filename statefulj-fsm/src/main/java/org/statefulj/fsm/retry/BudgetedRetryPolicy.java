@@ -0,0 +1,71 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.retry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.RetryPolicy;
+
+/**
+ * Draws every retry from a {@link RetryBudget}.  Once the budget is exhausted, events fail fast
+ * with a {@link org.statefulj.fsm.TooBusyException} rather than adding retry load to an
+ * overloaded system.  Otherwise, the decision is delegated to the wrapped RetryPolicy
+ *
+ * @author Andrew Hall
+ *
+ */
+public class BudgetedRetryPolicy implements RetryPolicy {
+
+	private static final Logger logger = LoggerFactory.getLogger(BudgetedRetryPolicy.class);
+
+	private final RetryPolicy retryPolicy;
+	private final RetryBudget budget;
+
+	/**
+	 * @param retryPolicy The RetryPolicy to delegate to while within budget
+	 * @param budget The RetryBudget, may be shared
+	 */
+	public BudgetedRetryPolicy(RetryPolicy retryPolicy, RetryBudget budget) {
+		this.retryPolicy = retryPolicy;
+		this.budget = budget;
+	}
+
+	@Override
+	public boolean canAttempt(int attempts) {
+		return this.retryPolicy.canAttempt(attempts);
+	}
+
+	@Override
+	public long getWait(int attempts, RetryException exception) {
+		if (!this.budget.tryAcquire()) {
+			logger.warn("Retry budget exhausted, failing fast");
+			return -1;
+		}
+		return this.retryPolicy.getWait(attempts, exception);
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	public RetryBudget getBudget() {
+		return budget;
+	}
+
+}
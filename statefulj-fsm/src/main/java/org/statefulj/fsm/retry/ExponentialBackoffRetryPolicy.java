@@ -0,0 +1,93 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.RetryPolicy;
+
+/**
+ * Exponential backoff with "full jitter": the wait before attempt <code>n</code> is chosen at random
+ * between 0 and <code>min(maxInterval, baseInterval * 2^(n-1))</code>.  Randomizing the whole interval
+ * spreads out threads contending on the same Stateful Entity so they don't wake up and
+ * collide again.  The wait requested by a {@link org.statefulj.fsm.WaitAndRetryException}
+ * is superseded by the backoff
+ *
+ * @author Andrew Hall
+ *
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+	private final int retryAttempts;
+	private final long baseInterval;
+	private final long maxInterval;
+
+	/**
+	 * @param retryAttempts Number of Retry Attempts.  A value of -1 indicates unlimited Attempts
+	 * @param baseInterval The upper bound of the first wait in milliseconds
+	 * @param maxInterval The cap on the upper bound of any wait in milliseconds
+	 */
+	public ExponentialBackoffRetryPolicy(int retryAttempts, long baseInterval, long maxInterval) {
+		if (baseInterval < 0 || maxInterval < baseInterval) {
+			throw new IllegalArgumentException("Intervals must satisfy 0 <= baseInterval <= maxInterval");
+		}
+		this.retryAttempts = retryAttempts;
+		this.baseInterval = baseInterval;
+		this.maxInterval = maxInterval;
+	}
+
+	@Override
+	public boolean canAttempt(int attempts) {
+		return this.retryAttempts == -1 || attempts < this.retryAttempts;
+	}
+
+	@Override
+	public long getWait(int attempts, RetryException exception) {
+		long ceiling = getCeiling(attempts);
+		return (ceiling > 0) ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+	}
+
+	/**
+	 * @param attempts The number of attempts made so far
+	 * @return The upper bound of the wait before the next attempt
+	 */
+	protected long getCeiling(int attempts) {
+
+		// Stop doubling once we've reached the cap, this also guards against overflow
+		//
+		long ceiling = this.baseInterval;
+		for(int i = 1; i < attempts && ceiling < this.maxInterval; i++) {
+			ceiling <<= 1;
+		}
+		return Math.min(ceiling, this.maxInterval);
+	}
+
+	public int getRetryAttempts() {
+		return retryAttempts;
+	}
+
+	public long getBaseInterval() {
+		return baseInterval;
+	}
+
+	public long getMaxInterval() {
+		return maxInterval;
+	}
+
+}
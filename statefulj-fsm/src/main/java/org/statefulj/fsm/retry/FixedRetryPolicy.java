@@ -0,0 +1,59 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.retry;
+
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.RetryPolicy;
+import org.statefulj.fsm.WaitAndRetryException;
+
+/**
+ * Retries a fixed number of times.  Waits for the interval requested by a
+ * {@link WaitAndRetryException}, otherwise retries immediately.  This is the
+ * default policy of the {@link org.statefulj.fsm.FSM}
+ *
+ * @author Andrew Hall
+ *
+ */
+public class FixedRetryPolicy implements RetryPolicy {
+
+	private final int retryAttempts;
+
+	/**
+	 * @param retryAttempts Number of Retry Attempts.  A value of -1 indicates unlimited Attempts
+	 */
+	public FixedRetryPolicy(int retryAttempts) {
+		this.retryAttempts = retryAttempts;
+	}
+
+	@Override
+	public boolean canAttempt(int attempts) {
+		return this.retryAttempts == -1 || attempts < this.retryAttempts;
+	}
+
+	@Override
+	public long getWait(int attempts, RetryException exception) {
+		return (WaitAndRetryException.class.isInstance(exception))
+				? ((WaitAndRetryException)exception).getWait()
+				: 0;
+	}
+
+	public int getRetryAttempts() {
+		return retryAttempts;
+	}
+
+}
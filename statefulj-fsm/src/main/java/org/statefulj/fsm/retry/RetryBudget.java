@@ -0,0 +1,79 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.retry;
+
+/**
+ * A token bucket which bounds the rate of retries.  Every retry takes a token; tokens are
+ * replenished at a fixed rate up to the capacity of the bucket.  Share a single RetryBudget
+ * between {@link BudgetedRetryPolicy}s to bound the retries across the whole process
+ *
+ * @author Andrew Hall
+ *
+ */
+public class RetryBudget {
+
+	private static final double NANOS_PER_SECOND = 1000000000.0;
+
+	private final double capacity;
+	private final double tokensPerNano;
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 * @param capacity The maximum number of retries that may be made in a burst
+	 * @param retriesPerSecond The sustained rate of retries
+	 */
+	public RetryBudget(int capacity, double retriesPerSecond) {
+		if (capacity < 1 || retriesPerSecond <= 0) {
+			throw new IllegalArgumentException("capacity and retriesPerSecond must be positive");
+		}
+		this.capacity = capacity;
+		this.tokensPerNano = retriesPerSecond / NANOS_PER_SECOND;
+		this.tokens = capacity;
+		this.lastRefill = System.nanoTime();
+	}
+
+	/**
+	 * Take a token from the bucket if one is available
+	 *
+	 * @return true if a token was taken; false if the budget is exhausted
+	 */
+	public synchronized boolean tryAcquire() {
+		refill();
+		if (this.tokens >= 1) {
+			this.tokens -= 1;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return The number of whole tokens currently available
+	 */
+	public synchronized int getAvailable() {
+		refill();
+		return (int)this.tokens;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefill) * this.tokensPerNano);
+		this.lastRefill = now;
+	}
+
+}
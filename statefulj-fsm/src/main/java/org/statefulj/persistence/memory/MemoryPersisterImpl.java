@@ -18,35 +18,50 @@
 package org.statefulj.persistence.memory;
 
 import org.statefulj.common.utils.ReflectionUtils;
-import org.statefulj.fsm.Persister;
+import org.statefulj.fsm.CompareAndSetPersister;
+import org.statefulj.fsm.FSMDefinition;
 import org.statefulj.fsm.StaleStateException;
+import org.statefulj.fsm.VersionedPersister;
 import org.statefulj.fsm.model.State;
 import org.statefulj.persistence.StateFieldAccessor;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Thread safe, in memory Persister.
  *
+ * By default, updates of the State are serialized by synchronizing on the Stateful Entity.  In
+ * lock free mode, the State field is instead updated with an atomic compare-and-set, so updates
+ * never block and don't contend with other code locking the Entity.  Lock free mode reads and
+ * writes the State field directly through an AtomicReferenceFieldUpdater, so the State field must be
+ * a volatile String accessible to this package, e.g. public, and any getter or setter is bypassed.
+ * Entity classes whose State field doesn't qualify are updated under the lock.
+ *
+ * The States and start State are held as a single {@link FSMDefinition}, so reading the current
+ * State never locks and the definition can be replaced while events are being processed.
+ *
  * @author Andrew Hall
  *
  */
-public class MemoryPersisterImpl<T> implements Persister<T> {
+public class MemoryPersisterImpl<T> implements CompareAndSetPersister<T>, VersionedPersister<T> {
 
-	private final Map<String, State<T>> states = new HashMap<String, State<T>>();
-	private State<T> startState;
+	private volatile FSMDefinition<T> definition = FSMDefinition.create(Collections.<State<T>>emptyList(), null);
 	private String stateFieldName;
-	private StateFieldAccessor<T> stateFieldAccessor;
+	private final ConcurrentHashMap<Class<?>, StateFieldAccessor<T>> stateFieldAccessors =
+			new ConcurrentHashMap<Class<?>, StateFieldAccessor<T>>();
+	private volatile boolean lockFree = false;
+	private final ConcurrentHashMap<Class<?>, StateFieldUpdater> stateFieldUpdaters =
+			new ConcurrentHashMap<Class<?>, StateFieldUpdater>();
 
 	public MemoryPersisterImpl() {}
 
 	public MemoryPersisterImpl(final Collection<State<T>> states, final State<T> startState) {
-		setStartState(startState);
-		setStates(states);
+		this.definition = FSMDefinition.create(states, startState);
 	}
 
 	public MemoryPersisterImpl(List<State<T>> states, State<T> startState, String stateFieldName) {
@@ -64,12 +79,23 @@ public class MemoryPersisterImpl<T> implements Persister<T> {
 		this.setCurrent(stateful, startState);
 	}
 
-	public synchronized Collection<State<T>> getStates() {
-		return states.values();
+	public Collection<State<T>> getStates() {
+		return this.definition.getStates();
 	}
 
+	/*
+	 * Updates of the definition are serialized, each publishes a new definition.  Readers
+	 * never lock
+	 */
 	public synchronized State<T> addState(final State<T> state) {
-		return states.put(state.getName(), state);
+		State<T> previous = this.definition.getState(state.getName());
+		List<State<T>> states = new ArrayList<State<T>>(this.definition.getStates());
+		if (previous != null) {
+			states.remove(previous);
+		}
+		states.add(state);
+		this.definition = this.definition.withStates(states);
+		return previous;
 	}
 
 	public synchronized State<T> removeState(final State<T> state) {
@@ -77,47 +103,76 @@ public class MemoryPersisterImpl<T> implements Persister<T> {
 	}
 
 	public synchronized State<T> removeState(final String name) {
-		return states.remove(name);
+		State<T> previous = this.definition.getState(name);
+		if (previous != null) {
+			List<State<T>> states = new ArrayList<State<T>>(this.definition.getStates());
+			states.remove(previous);
+			this.definition = this.definition.withStates(states);
+		}
+		return previous;
 	}
 
 	@Override
 	public synchronized void setStates(final Collection<State<T>> states) {
-		//Clear the map
-		//
-		this.states.clear();
-
-		//Add new states
-		//
-		for(State state : states) {
-			this.states.put(state.getName(), state);
-		}
+		this.definition = this.definition.withStates(states);
 	}
 
 	public State<T> getStartState() {
-		return startState;
+		return this.definition.getStartState();
+	}
+
+	@Override
+	public synchronized void setStartState(final State<T> startState) {
+		this.definition = this.definition.withStartState(startState);
+	}
+
+	@Override
+	public FSMDefinition<T> getDefinition() {
+		return this.definition;
 	}
 
 	@Override
-	public void setStartState(final State<T> startState) {
-		this.startState = startState;
+	public synchronized void setDefinition(FSMDefinition<T> definition) {
+		this.definition = definition;
 	}
 
 	public String getStateFieldName() {
 		return stateFieldName;
 	}
 
+	public boolean isLockFree() {
+		return lockFree;
+	}
+
+	/**
+	 * @param lockFree If true, update the State with an atomic compare-and-set of the State field
+	 * rather than synchronizing on the Stateful Entity.  Only a volatile State field accessible to
+	 * this package can be updated atomically, otherwise the Entity is synchronized on
+	 */
+	public void setLockFree(boolean lockFree) {
+		this.lockFree = lockFree;
+	}
+
 	@Override
 	public State<T> getCurrent(T stateful) {
+		StateFieldUpdater updater = this.getStateFieldUpdater(stateful);
+		if (updater != null) {
+			return this.getState(updater.get(stateful));
+		}
 		try {
 			String key = (String)this.getStateFieldAccessor(stateful).getValue(stateful);
-			State<T> state = (key != null) ? states.get(key) : null;
-			return (state != null) ? state : this.startState;
+			return this.getState(key);
 		} catch(Exception e) {
 			throw new RuntimeException(e);
 		}
 	}
 
 	public void setCurrent(T stateful, State<T> current) {
+		StateFieldUpdater updater = this.getStateFieldUpdater(stateful);
+		if (updater != null) {
+			updater.set(stateful, current.getName());
+			return;
+		}
 		synchronized(stateful) {
 			try {
 				this.getStateFieldAccessor(stateful).setValue(stateful, current.getName());
@@ -136,26 +191,83 @@ public class MemoryPersisterImpl<T> implements Persister<T> {
 	 */
 	@Override
 	public void setCurrent(T stateful, State<T> current, State<T> next) throws StaleStateException {
+		if (!this.compareAndSetState(stateful, current, next)) {
+			State<T> actual = this.getCurrent(stateful);
+			throw new StaleStateException(stateful, current.getName(), (actual != null) ? actual.getName() : null);
+		}
+	}
+
+	@Override
+	public boolean compareAndSetState(T stateful, State<T> current, State<T> next) {
+		StateFieldUpdater updater = this.getStateFieldUpdater(stateful);
+		if (updater != null) {
+			return this.compareAndSetField(updater, stateful, current, next);
+		}
 		synchronized(stateful) {
 			if (this.getCurrent(stateful).equals(current)) {
 				this.setCurrent(stateful, next);
-			} else {
-				throw new StaleStateException();
+				return true;
 			}
+			return false;
 		}
 	}
 
-	private StateFieldAccessor<T> getStateFieldAccessor(final T stateful) {
-		if (this.stateFieldAccessor == null)
-			initStateFieldAccessor(stateful);
-		return this.stateFieldAccessor;
+	/*
+	 * Compare-and-set the State field.  The State field normally holds the name of one of
+	 * the States, so the expected State is matched by identity first; only when the field holds
+	 * some other String do we fall back to resolving it to a State.  If the field changed between
+	 * the read and the compare-and-set, reevaluate the field
+	 */
+	private boolean compareAndSetField(StateFieldUpdater updater, T stateful, State<T> current, State<T> next) {
+		String currentName = current.getName();
+		String nextName = next.getName();
+		while(true) {
+			String actual = updater.get(stateful);
+			if (actual != currentName && !this.getState(actual).equals(current)) {
+				return false;
+			}
+			if (updater.compareAndSet(stateful, actual, nextName)) {
+				return true;
+			}
+		}
+	}
+
+	private State<T> getState(String key) {
+		FSMDefinition<T> definition = this.definition;
+		State<T> state = (key != null) ? definition.getState(key) : null;
+		return (state != null) ? state : definition.getStartState();
 	}
 
-	private synchronized void initStateFieldAccessor(T stateful) {
-		if (this.stateFieldAccessor == null) {
-			Field stateField = locateStateField(stateful);
-			this.stateFieldAccessor = new StateFieldAccessor(stateful.getClass(), stateField);
+	/**
+	 * @return The StateFieldUpdater of the Entity's class, or null if not lock free or the class's
+	 * State field can't be updated atomically
+	 */
+	private StateFieldUpdater getStateFieldUpdater(final T stateful) {
+		if (!this.lockFree) {
+			return null;
+		}
+		StateFieldUpdater updater = this.stateFieldUpdaters.get(stateful.getClass());
+		if (updater == null) {
+			updater = StateFieldUpdater.forField(locateStateField(stateful));
+			StateFieldUpdater existing = this.stateFieldUpdaters.putIfAbsent(stateful.getClass(), updater);
+			if (existing != null) {
+				updater = existing;
+			}
+		}
+		return (updater != StateFieldUpdater.UNSUPPORTED) ? updater : null;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private StateFieldAccessor<T> getStateFieldAccessor(final T stateful) {
+		StateFieldAccessor<T> accessor = this.stateFieldAccessors.get(stateful.getClass());
+		if (accessor == null) {
+			accessor = new StateFieldAccessor(stateful.getClass(), locateStateField(stateful));
+			StateFieldAccessor<T> existing = this.stateFieldAccessors.putIfAbsent(stateful.getClass(), accessor);
+			if (existing != null) {
+				accessor = existing;
+			}
 		}
+		return accessor;
 	}
 
 	private synchronized Field locateStateField(final T stateful) {
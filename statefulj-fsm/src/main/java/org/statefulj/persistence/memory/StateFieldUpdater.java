@@ -0,0 +1,93 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.persistence.memory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Atomic access to the State field of a Stateful Entity through an {@link AtomicReferenceFieldUpdater}.
+ * The field is read and written directly, bypassing any getter or setter; updates are a compare-and-set
+ * of the reference held in the field.
+ *
+ * An AtomicReferenceFieldUpdater requires a volatile field which this package may access, e.g. a
+ * public field of a public class.  For any other State field, {@link #forField(Field)} returns
+ * {@link #UNSUPPORTED} and the State is updated under a lock
+ *
+ * @author Andrew Hall
+ *
+ */
+class StateFieldUpdater {
+
+	/**
+	 * Marks a State field which can't be updated atomically
+	 */
+	static final StateFieldUpdater UNSUPPORTED = new StateFieldUpdater(null);
+
+	private final AtomicReferenceFieldUpdater<Object, String> updater;
+
+	private StateFieldUpdater(AtomicReferenceFieldUpdater<Object, String> updater) {
+		this.updater = updater;
+	}
+
+	/**
+	 * @param field The State field
+	 * @return The StateFieldUpdater of the field, or {@link #UNSUPPORTED} if the field isn't a volatile,
+	 * non-static String field accessible to this package
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static StateFieldUpdater forField(Field field) {
+		int modifiers = field.getModifiers();
+		if (!String.class.equals(field.getType()) || !Modifier.isVolatile(modifiers) || Modifier.isStatic(modifiers)) {
+			return UNSUPPORTED;
+		}
+		try {
+			AtomicReferenceFieldUpdater updater = AtomicReferenceFieldUpdater.newUpdater(
+					field.getDeclaringClass(),
+					String.class,
+					field.getName());
+			return new StateFieldUpdater(updater);
+		} catch(RuntimeException e) {
+
+			// The field isn't accessible
+			//
+			return UNSUPPORTED;
+		}
+	}
+
+	String get(Object stateful) {
+		return this.updater.get(stateful);
+	}
+
+	void set(Object stateful, String value) {
+		this.updater.set(stateful, value);
+	}
+
+	/**
+	 * Set the State field to the updated value if, and only if, the field holds the expected reference
+	 *
+	 * @param stateful The Stateful Entity
+	 * @param expected The expected reference, compared by identity
+	 * @param update The updated value
+	 * @return true if the State field was updated
+	 */
+	boolean compareAndSet(Object stateful, String expected, String update) {
+		return this.updater.compareAndSet(stateful, expected, update);
+	}
+}
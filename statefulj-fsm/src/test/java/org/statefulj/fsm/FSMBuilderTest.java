@@ -5,11 +5,20 @@ import org.junit.Test;
 import org.statefulj.fsm.model.Action;
 import org.statefulj.fsm.model.StateActionPair;
 import org.statefulj.fsm.model.Transition;
+import org.statefulj.fsm.model.impl.CompiledStateImpl;
 import org.statefulj.fsm.model.impl.StateActionPairImpl;
 import org.statefulj.fsm.model.impl.StateImpl;
 import org.statefulj.persistence.annotations.State;
 import org.statefulj.persistence.memory.MemoryPersisterImpl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.Assert.*;
 
 /**
@@ -306,4 +315,239 @@ public class FSMBuilderTest {
         this.fooStateFSM.onEvent(fooState, "test");
         assertEquals("Action called", fooState.msg);
     }
+
+    @Test
+    public void testCompiled() throws TooBusyException {
+        FooState fooState = new FooState();
+        this.fooStateFSM = FSM.FSMBuilder
+                .newBuilder(FooState.class)
+                .setCompiled(true)
+                .buildState("FOO")
+                    .addTransition("to-bar", "BAR")
+                    .addTransition("noop", "FOO")
+                .done()
+                .buildState("BAR")
+                    .addTransition("to-foo", "FOO", new Action<FooState>() {
+                        @Override
+                        public void execute(FooState stateful, String event, Object... args) throws RetryException {
+                            stateful.msg = "Called " + event;
+                        }
+                    })
+                .done()
+                .build();
+
+        assertTrue(this.fooStateFSM.isCompiled());
+        assertEquals(3, this.fooStateFSM.getTransitionTable().getEventCount());
+        assertEquals(2, this.fooStateFSM.getTransitionTable().getStateCount());
+        assertEquals(-1, this.fooStateFSM.getEventId("unknown"));
+
+        // Dispatch by name
+        //
+        org.statefulj.fsm.model.State<FooState> bar = this.fooStateFSM.onEvent(fooState, "to-bar");
+        assertEquals("BAR", bar.getName());
+        assertTrue(bar instanceof CompiledStateImpl);
+
+        // Dispatch by ordinal
+        //
+        int toFoo = this.fooStateFSM.getEventId("to-foo");
+        assertEquals("FOO", this.fooStateFSM.onEvent(fooState, toFoo).getName());
+        assertEquals("Called to-foo", fooState.msg);
+
+        // No Transition for the Event in this State
+        //
+        assertEquals("FOO", this.fooStateFSM.onEvent(fooState, toFoo).getName());
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testCompiledIsFrozen() {
+        this.fooStateFSM = FSM.FSMBuilder
+                .newBuilder(FooState.class)
+                .setCompiled(true)
+                .buildState("FOO")
+                    .addTransition("noop", "FOO")
+                .done()
+                .build();
+        this.fooStateFSM.getTransitionTable().getState("FOO").removeTransition("noop");
+    }
+
+    @Test
+    public void testHotSwapDefinition() throws Exception {
+        final FooState fooState = new FooState();
+        this.fooStateFSM = buildToggle(false, null);
+        FSMDefinition<FooState> v1 = this.fooStateFSM.getDefinition();
+        FSMDefinition<FooState> v2 = buildToggle(true, "QUX").getDefinition();
+        assertTrue(v2.getVersion() > v1.getVersion());
+        assertFalse(v1.isCompiled());
+        assertTrue(v2.isCompiled());
+
+        // Swap the definitions while events keep flowing
+        //
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread events = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while(running.get()) {
+                        String current = fooStateFSM.getCurrentState(fooState).getName();
+                        fooStateFSM.onEvent(fooState, current.equals("FOO") ? "to-bar" : "to-foo");
+                    }
+                } catch(Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        events.start();
+        for(int i = 0; i < 1000; i++) {
+            this.fooStateFSM.setDefinition((i % 2 == 0) ? v2 : v1);
+        }
+        running.set(false);
+        events.join();
+        assertNull(failure.get());
+
+        // The latest definition is in effect
+        //
+        this.fooStateFSM.setDefinition(v2);
+        assertSame(v2, this.fooStateFSM.getDefinition());
+        assertSame(v2, ((MemoryPersisterImpl<FooState>)this.fooStateFSM.getPersister()).getDefinition());
+        assertTrue(this.fooStateFSM.isCompiled());
+        if (this.fooStateFSM.getCurrentState(fooState).getName().equals("FOO")) {
+            this.fooStateFSM.onEvent(fooState, "to-bar");
+        }
+        assertEquals("QUX", this.fooStateFSM.onEvent(fooState, "to-qux").getName());
+    }
+
+    @Test
+    public void testRedefineCompiledDefinition() throws Exception {
+        this.fooStateFSM = buildToggle(true, null);
+        FSMDefinition<FooState> v1 = this.fooStateFSM.getDefinition();
+
+        // Adding a State recompiles the definition and resolves the start State to the new table
+        //
+        List<org.statefulj.fsm.model.State<FooState>> states = new ArrayList<org.statefulj.fsm.model.State<FooState>>(v1.getStates());
+        StateImpl<FooState> qux = new StateImpl<FooState>("QUX");
+        qux.addTransition("to-foo", v1.getState("FOO"));
+        states.add(qux);
+        FSMDefinition<FooState> v2 = v1.withStates(states);
+        assertTrue(v2.isCompiled());
+        assertNotSame(v1.getTransitionTable(), v2.getTransitionTable());
+        assertSame(v2.getTransitionTable().getState("FOO"), v2.getStartState());
+        assertTrue(v2.getState("QUX") instanceof CompiledStateImpl);
+        assertSame(
+                v2.getState("BAR"),
+                v2.getState("FOO").getTransition("to-bar").getStateActionPair(null, "to-bar").getState());
+        assertSame(
+                v2.getState("FOO"),
+                v2.getState("QUX").getTransition("to-foo").getStateActionPair(null, "to-foo").getState());
+
+        // A start State is resolved by name to the compiled State
+        //
+        FSMDefinition<FooState> v3 = v2.withStartState(new StateImpl<FooState>("BAR"));
+        assertSame(v2.getTransitionTable(), v3.getTransitionTable());
+        assertSame(v2.getState("BAR"), v3.getStartState());
+
+        // The FSM and its Persister share one definition
+        //
+        this.fooStateFSM.setDefinition(v3);
+        assertSame(v3, this.fooStateFSM.getDefinition());
+        assertSame(v3, ((MemoryPersisterImpl<FooState>)this.fooStateFSM.getPersister()).getDefinition());
+        FooState fooState = new FooState();
+        assertEquals("BAR", this.fooStateFSM.getCurrentState(fooState).getName());
+        assertEquals("FOO", this.fooStateFSM.onEvent(fooState, "to-foo").getName());
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void testCompiledStartStateMustBeDefined() {
+        buildToggle(true, null).getDefinition().withStartState(new StateImpl<FooState>("QUX"));
+    }
+
+    @Test
+    public void testTransitionTableKeepsStartState() throws Exception {
+        FSM<FooState> fsm = buildToggle(true, null);
+        FSM<FooState> recompiled = new FSM<FooState>("recompiled", fsm.getPersister(), 1, 1, fsm.getTransitionTable());
+        assertEquals("FOO", recompiled.getDefinition().getStartState().getName());
+        assertEquals("BAR", recompiled.onEvent(new FooState(), "to-bar").getName());
+    }
+
+    @Test
+    public void testStateCodesSurviveNewDefinitions() throws Exception {
+        MemoryPersisterImpl<FooState> persister = new MemoryPersisterImpl<FooState>();
+        Map<String, Integer> codes = new HashMap<String, Integer>();
+        codes.put("FOO", 1);
+        codes.put("BAR", 2);
+        persister.setDefinition(persister.getDefinition().withStateCodes(codes));
+
+        // Building the FSM keeps the Persister's codes
+        //
+        FSM<FooState> fsm = FSM.FSMBuilder.newBuilder(FooState.class)
+                .setPerister(persister)
+                .buildState("FOO")
+                    .addTransition("to-bar", "BAR")
+                .done()
+                .buildState("BAR")
+                .done()
+                .build();
+        assertEquals(2, persister.getDefinition().getStateCode("BAR"));
+
+        // A new definition keeps the codes and merges its own
+        //
+        FSMDefinition<FooState> v2 = buildToggle(true, "QUX").getDefinition();
+        fsm.setDefinition(v2.withStateCodes(Collections.singletonMap("QUX", 3)));
+        assertTrue(fsm.isCompiled());
+        assertEquals(1, persister.getDefinition().getStateCode("FOO"));
+        assertEquals(2, persister.getDefinition().getStateCode("BAR"));
+        assertEquals(3, persister.getDefinition().getStateCode("QUX"));
+
+        fsm.setStateCodes(Collections.singletonMap("BAZ", 4));
+        assertEquals(4, fsm.getDefinition().getStateCode("BAZ"));
+        assertEquals(3, fsm.getDefinition().getStateCode("QUX"));
+
+        // A code can't be reassigned
+        //
+        try {
+            fsm.setStateCodes(Collections.singletonMap("BAR", 5));
+            fail("Expected the code of BAR to be kept");
+        } catch(RuntimeException e) {
+            assertEquals(2, persister.getDefinition().getStateCode("BAR"));
+        }
+        try {
+            fsm.setStateCodes(Collections.singletonMap("NEW", 1));
+            fail("Expected the code 1 to be kept for FOO");
+        } catch(RuntimeException e) {
+            assertEquals("FOO", persister.getDefinition().getStateName(1));
+        }
+    }
+
+    @Test
+    public void testBuilderStateCodes() throws Exception {
+        FooState fooState = new FooState();
+        FSM<FooState> fsm = FSM.FSMBuilder.newBuilder(FooState.class)
+                .setStateCodes(Collections.singletonMap("FOO", 7))
+                .buildState("FOO")
+                .done()
+                .build();
+        assertEquals(7, fsm.getDefinition().getStateCode("FOO"));
+        assertEquals("FOO", fsm.getCurrentState(fooState).getName());
+    }
+
+    private FSM<FooState> buildToggle(boolean compiled, String extraState) {
+        FSM.FSMBuilder<FooState> builder = FSM.FSMBuilder.newBuilder(FooState.class).setCompiled(compiled);
+        FSM.FSMBuilder.StateBuilder<FooState> bar = builder
+                .buildState("FOO")
+                    .addTransition("to-bar", "BAR")
+                .done()
+                .buildState("BAR")
+                    .addTransition("to-foo", "FOO");
+        if (extraState != null) {
+            bar.addTransition("to-qux", extraState);
+            builder.buildState(extraState);
+        }
+        return builder.build();
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void testEventIdOnUncompiled() throws TooBusyException {
+        this.fooStateFSM.onEvent(new FooState(), 0);
+    }
 }
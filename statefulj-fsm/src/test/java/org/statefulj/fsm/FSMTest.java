@@ -19,12 +19,33 @@ package org.statefulj.fsm;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.mutable.MutableInt;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
 import org.junit.Test;
+import org.statefulj.fsm.management.FSMControl;
+import org.statefulj.fsm.metrics.MetricsFSMListener;
+import org.statefulj.fsm.metrics.TransitionMetrics;
 import org.statefulj.fsm.model.Action;
 import org.statefulj.fsm.model.State;
 import org.statefulj.fsm.model.StateActionPair;
@@ -32,6 +53,7 @@ import org.statefulj.fsm.model.Transition;
 import org.statefulj.fsm.model.impl.StateActionPairImpl;
 import org.statefulj.fsm.model.impl.StateImpl;
 import org.statefulj.fsm.model.impl.WaitAndRetryActionImpl;
+import org.statefulj.fsm.retry.FixedRetryPolicy;
 import org.statefulj.persistence.memory.MemoryPersisterImpl;
 
 import static org.mockito.Mockito.*;
@@ -244,9 +266,11 @@ public class FSMTest {
 			}
 		}).start();
 
-		// Give eventA some time
+		// Give eventA time to move the Stateful into the pending State
 		//
-		Thread.sleep(5);
+		for(int i = 0; i < 200 && persister.getCurrent(stateful) != statePending; i++) {
+			Thread.sleep(5);
+		}
 
 		// Fire off eventB
 		//
@@ -374,6 +398,220 @@ public class FSMTest {
 		fsm.onEvent(stateful, eventA);
 	}
 
+	@Test
+	public void testStacklessSignals() throws TooBusyException {
+
+		// The retry signals are preallocated and carry no stack trace
+		//
+		StaleStateException stale = StaleStateException.signal();
+		assertSame(stale, StaleStateException.signal());
+		assertEquals(0, stale.getStackTrace().length);
+		assertEquals(0, WaitAndRetryException.signal(100).getStackTrace().length);
+		assertEquals(100, WaitAndRetryException.signal(100).getWait());
+
+		// A lost compare-and-set is retried by the FSM
+		//
+		final Foo stateful = new Foo();
+		final String eventA = "eventA";
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+		stateA.addTransition(eventA, stateB);
+
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+
+		final MutableInt attempts = new MutableInt(0);
+		MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(stateful, states, stateA) {
+
+			@Override
+			public boolean compareAndSetState(Foo stateful, State<Foo> current, State<Foo> next) {
+				attempts.increment();
+				return attempts.intValue() > 1 && super.compareAndSetState(stateful, current, next);
+			}
+		};
+		FSM<Foo> fsm = new FSM<Foo>("CAS", persister);
+		fsm.setRetryInterval(1);
+
+		assertEquals(stateB, fsm.onEvent(stateful, eventA));
+		assertEquals(2, attempts.intValue());
+	}
+
+	@Test
+	public void testLockMode() throws TooBusyException {
+		final Foo stateful = new Foo();
+		final String eventA = "eventA";
+		final State<Foo> stateA = new StateImpl<Foo>("stateA");
+		final State<Foo> stateB = new StateImpl<Foo>("stateB");
+		State<Foo> stateC = new StateImpl<Foo>("stateC");
+		stateA.addTransition(eventA, stateB);
+		stateB.addTransition(eventA, stateC);
+
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+
+		// A pessimistic LockMode requires a LockingPersister
+		//
+		FSM<Foo> fsm = new FSM<Foo>("Optimistic", new MemoryPersisterImpl<Foo>(states, stateA));
+		try {
+			fsm.setLockMode(LockMode.PESSIMISTIC_NOWAIT);
+			fail("Expected an IllegalArgumentException");
+		} catch(IllegalArgumentException e) {
+			assertEquals(LockMode.OPTIMISTIC, fsm.getLockMode());
+		}
+
+		// The first two locks are contended, the third refreshes the Stateful Entity
+		// with the locked State before the Transition is evaluated
+		//
+		final MutableInt locks = new MutableInt(0);
+		class LockingMemoryPersister extends MemoryPersisterImpl<Foo> implements LockingPersister<Foo> {
+
+			LockingMemoryPersister(List<State<Foo>> states, State<Foo> startState) {
+				super(states, startState);
+			}
+
+			@Override
+			public void lock(Foo stateful, LockMode lockMode) throws RetryException {
+				assertEquals(LockMode.PESSIMISTIC_NOWAIT, lockMode);
+				locks.increment();
+				if (locks.intValue() < 3) {
+					throw StaleStateException.signal();
+				}
+				try {
+					this.setCurrent(stateful, stateA, stateB);
+				} catch (StaleStateException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		final FSM<Foo> pessimistic = new FSM<Foo>("Pessimistic", new LockingMemoryPersister(states, stateA));
+		pessimistic.setRetryInterval(1);
+		pessimistic.setLockMode(LockMode.PESSIMISTIC_NOWAIT);
+
+		// The lock belongs to the caller's unit of work, so the event isn't retried within it
+		//
+		try {
+			pessimistic.onEvent(stateful, eventA);
+			fail("Expected a TooBusyException");
+		} catch(TooBusyException e) {
+			assertEquals(1, locks.intValue());
+		}
+
+		// Each attempt within its own unit of work is retried
+		//
+		State<Foo> current = pessimistic.retry(new Callable<State<Foo>>() {
+
+			@Override
+			public State<Foo> call() throws Exception {
+				return pessimistic.onEventAttempt(stateful, eventA);
+			}
+		});
+		assertEquals(stateC, current);
+		assertEquals(3, locks.intValue());
+	}
+
+	@Test
+	public void testLockFreePersister() throws Exception {
+
+		// Stateful
+		//
+		final LockFreeFoo stateful = new LockFreeFoo();
+
+		// Events
+		//
+		final String eventA = "eventA";
+
+		// States
+		//
+		final State<LockFreeFoo> stateA = new StateImpl<LockFreeFoo>("stateA");
+		final State<LockFreeFoo> stateB = new StateImpl<LockFreeFoo>("stateB");
+		stateA.addTransition(eventA, stateB);
+		stateB.addTransition(eventA, stateA);
+
+		List<State<LockFreeFoo>> states = new LinkedList<State<LockFreeFoo>>();
+		states.add(stateA);
+		states.add(stateB);
+
+		final MemoryPersisterImpl<LockFreeFoo> persister = new MemoryPersisterImpl<LockFreeFoo>(stateful, states, stateA);
+		persister.setLockFree(true);
+		final FSM<LockFreeFoo> fsm = new FSM<LockFreeFoo>("LockFree", persister);
+
+		// A State field holding a non canonical name still matches
+		//
+		stateful.state = new String("stateA");
+		assertFalse(persister.compareAndSetState(stateful, stateB, stateA));
+		assertTrue(persister.compareAndSetState(stateful, stateA, stateB));
+		assertSame(stateB.getName(), stateful.state);
+
+		// Toggle the State from several threads, every successful compare-and-set is a toggle
+		//
+		final int threads = 4;
+		final int toggles = 10000;
+		final AtomicInteger updated = new AtomicInteger();
+		Thread[] workers = new Thread[threads];
+		for(int i = 0; i < threads; i++) {
+			workers[i] = new Thread(new Runnable() {
+
+				public void run() {
+					for(int j = 0; j < toggles; j++) {
+						State<LockFreeFoo> current = persister.getCurrent(stateful);
+						State<LockFreeFoo> next = (current == stateA) ? stateB : stateA;
+						if (persister.compareAndSetState(stateful, current, next)) {
+							updated.incrementAndGet();
+						}
+					}
+				}
+			});
+			workers[i].start();
+		}
+		for(Thread worker : workers) {
+			worker.join();
+		}
+		State<LockFreeFoo> expected = (updated.get() % 2 == 0) ? stateB : stateA;
+		assertEquals(expected, persister.getCurrent(stateful));
+
+		// Transitions don't block on a lock held on the Stateful Entity
+		//
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		synchronized(stateful) {
+			Future<State<LockFreeFoo>> future = executor.submit(new Callable<State<LockFreeFoo>>() {
+
+				@Override
+				public State<LockFreeFoo> call() throws Exception {
+					return fsm.onEvent(stateful, eventA);
+				}
+			});
+			assertNotEquals(expected, future.get(5, TimeUnit.SECONDS));
+		}
+
+		// The updater is resolved per class; a State field which isn't volatile is updated under the lock
+		//
+		final State<Object> objectA = new StateImpl<Object>("stateA");
+		final State<Object> objectB = new StateImpl<Object>("stateB");
+		final MemoryPersisterImpl<Object> mixed = new MemoryPersisterImpl<Object>(Arrays.asList(objectA, objectB), objectA);
+		mixed.setLockFree(true);
+		Foo foo = new Foo();
+		mixed.setCurrent(foo, objectA);
+		assertTrue(mixed.compareAndSetState(foo, objectA, objectB));
+		assertEquals("stateB", foo.state);
+
+		final LockFreeFoo other = new LockFreeFoo();
+		mixed.setCurrent(other, objectA);
+		synchronized(other) {
+			Future<Boolean> future = executor.submit(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() throws Exception {
+					return mixed.compareAndSetState(other, objectA, objectB);
+				}
+			});
+			assertTrue(future.get(5, TimeUnit.SECONDS));
+		}
+		executor.shutdown();
+	}
+
 	@Test(expected=TooBusyException.class)
 	public void testRetryFailureOnTransition() throws TooBusyException {
 
@@ -482,4 +720,547 @@ public class FSMTest {
 		assertEquals(stateB, state);
 	}
 
+	@Test
+	public void testAsyncTooBusy() throws Exception {
+
+		// Stateful
+		//
+		final Foo stateful = new Foo();
+
+		// Events
+		//
+		final String eventA = "eventA";
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA", false, true); // blocking
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+
+		Persister<Foo> persister = new MemoryPersisterImpl<Foo>(stateful, states, stateA);
+		final FSM<Foo> fsm = new FSM<Foo>("TooBusy", persister);
+		fsm.setRetryAttempts(3);
+		fsm.setRetryInterval(1);
+
+		// Hold the only scheduler thread so that no retry can run until we release it
+		//
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		final CountDownLatch gate = new CountDownLatch(1);
+		scheduler.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					gate.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		fsm.setScheduler(scheduler);
+
+		try {
+
+			// The caller isn't held while the retries are pending
+			//
+			CompletableFuture<State<Foo>> future = fsm.onEventAsync(stateful, eventA);
+			assertFalse(future.isDone());
+
+			gate.countDown();
+			try {
+				future.get(5, TimeUnit.SECONDS);
+				fail("Expected a TooBusyException");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof TooBusyException);
+			}
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testAsyncTransitionOutOfBlocking() throws Exception {
+
+		// Stateful
+		//
+		final Foo stateful = new Foo();
+
+		// Events
+		//
+		final String eventA = "eventA";
+		final String eventB = "eventB";
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA", false, true);
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+
+		// Transitions
+		//
+		stateA.addTransition(eventB, stateB);
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+
+		Persister<Foo> persister = new MemoryPersisterImpl<Foo>(stateful, states, stateA);
+		final FSM<Foo> fsm = new FSM<Foo>("TooBusy", persister);
+		fsm.setRetryAttempts(1000);
+		fsm.setRetryInterval(10);
+
+		CompletableFuture<State<Foo>> future = fsm.onEventAsync(stateful, eventA);
+		assertFalse(future.isDone());
+
+		// Move out of the blocking State on this thread
+		//
+		assertEquals(stateB, fsm.onEvent(stateful, eventB));
+		assertEquals(stateB, future.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testOnEvents() {
+
+		// Stateful
+		//
+		final Foo fooA1 = new Foo();
+		final Foo fooA2 = new Foo();
+		final Foo fooB = new Foo();
+		final Foo fooC = new Foo();
+		final Foo fooD = new Foo();
+
+		// Events
+		//
+		final String eventA = "eventA";
+
+		// Actions
+		//
+		final MutableInt actions = new MutableInt();
+		Action<Foo> countAction = new Action<Foo>() {
+
+			public void execute(Foo stateful, String event, Object... args) throws RetryException {
+				actions.increment();
+			}
+		};
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+		State<Foo> stateC = new StateImpl<Foo>("stateC", false, true); // blocking
+		State<Foo> stateD = new StateImpl<Foo>("stateD");
+
+		// Transitions
+		//
+		stateA.addTransition(eventA, stateB, countAction);
+		stateD.addTransition(eventA, new Transition<Foo>() {
+
+			@Override
+			public StateActionPair<Foo> getStateActionPair(Foo stateful, String event, Object... args) throws RetryException {
+				throw new RetryException();
+			}
+
+		});
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+		states.add(stateD);
+
+		MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+		persister.setCurrent(fooA1, stateA);
+		persister.setCurrent(fooA2, stateA);
+		persister.setCurrent(fooB, stateB);
+		persister.setCurrent(fooC, stateC);
+		persister.setCurrent(fooD, stateD);
+
+		final MutableInt batches = new MutableInt();
+		FSM<Foo> fsm = new FSM<Foo>("Batch", persister) {
+
+			@Override
+			protected boolean[] setCurrent(List<Foo> statefuls, State<Foo> current, State<Foo> next) {
+				batches.increment();
+				return super.setCurrent(statefuls, current, next);
+			}
+		};
+
+		List<EventOutcome> outcomes = fsm.onEvents(Arrays.asList(fooA1, fooB, fooC, fooD, fooA2), eventA);
+
+		assertEquals(
+				Arrays.asList(EventOutcome.SUCCESS, EventOutcome.NOOP, EventOutcome.STALE, EventOutcome.STALE, EventOutcome.SUCCESS),
+				outcomes);
+		assertEquals(1, batches.intValue());
+		assertEquals(2, actions.intValue());
+		assertEquals(stateB, persister.getCurrent(fooA1));
+		assertEquals(stateB, persister.getCurrent(fooA2));
+		assertEquals(stateC, persister.getCurrent(fooC));
+	}
+
+	@Test
+	public void testOnEventsFailure() {
+
+		// Stateful
+		//
+		final Foo fooFail = new Foo();
+		final Foo fooRetry = new Foo();
+		final Foo fooOk = new Foo();
+
+		// Events
+		//
+		final String eventA = "eventA";
+
+		// Actions
+		//
+		Action<Foo> action = new Action<Foo>() {
+
+			public void execute(Foo stateful, String event, Object... args) throws RetryException {
+				if (stateful == fooFail) {
+					throw new RuntimeException("Boom");
+				}
+				if (stateful == fooRetry) {
+					throw new RetryException();
+				}
+			}
+		};
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+		stateA.addTransition(eventA, stateB, action);
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+
+		MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+		FSM<Foo> fsm = new FSM<Foo>("BatchFailure", persister);
+
+		// A failed Action doesn't abort the batch, and the State was still set
+		//
+		List<EventOutcome> outcomes = fsm.onEvents(Arrays.asList(fooFail, fooRetry, fooOk), eventA);
+
+		assertEquals(
+				Arrays.asList(EventOutcome.FAILED, EventOutcome.FAILED, EventOutcome.SUCCESS),
+				outcomes);
+		assertEquals(stateB, persister.getCurrent(fooFail));
+		assertEquals(stateB, persister.getCurrent(fooRetry));
+		assertEquals(stateB, persister.getCurrent(fooOk));
+	}
+
+	@Test
+	public void testListener() throws TooBusyException {
+		Foo foo = new Foo();
+		Foo busy = new Foo();
+
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+		State<Foo> stateC = new StateImpl<Foo>("stateC");
+
+		stateA.addTransition("eventA", stateB, new Action<Foo>() {
+
+			public void execute(Foo stateful, String event, Object... args) throws RetryException {
+			}
+		});
+		stateC.addTransition("eventA", new Transition<Foo>() {
+
+			@Override
+			public StateActionPair<Foo> getStateActionPair(Foo stateful, String event, Object... args) throws RetryException {
+				throw new RetryException();
+			}
+
+		});
+
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+
+		MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+		persister.setCurrent(foo, stateA);
+		persister.setCurrent(busy, stateC);
+
+		MetricsFSMListener<Foo> listener = new MetricsFSMListener<Foo>();
+		FSM<Foo> fsm = new FSM<Foo>("Metrics", persister);
+		fsm.setRetryAttempts(3);
+		fsm.setListener(listener);
+
+		fsm.onEvent(foo, "eventA");
+		TransitionMetrics transition = listener.getMetrics("Metrics", "stateA", "eventA", "stateB");
+		assertEquals(1, transition.getStarted());
+		assertEquals(1, transition.getCompleted());
+		assertEquals(1, transition.getLatency().getCount());
+		assertTrue(transition.getLatency().getPercentileNanos(99) >= transition.getLatency().getMeanNanos());
+
+		// No Transition for eventA from stateB
+		//
+		fsm.onEvent(foo, "eventA");
+		assertEquals(1, listener.getMetrics("Metrics", "stateB", "eventA", "stateB").getNoops());
+
+		try {
+			fsm.onEvent(busy, "eventA");
+			fail("Expected TooBusyException");
+		} catch(TooBusyException e) {
+			// expected
+		}
+		assertEquals(3, listener.getMetrics("Metrics", "stateC", "eventA", null).getRetries());
+		assertEquals(1, listener.getMetrics("Metrics", "stateC", "eventA", MetricsFSMListener.UNKNOWN).getTooBusy());
+		assertEquals(3, listener.getMetrics("Metrics").size());
+	}
+
+	@Test
+	public void testStaleStateEscapes() throws RetryException {
+		final Foo foo = new Foo();
+
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		final State<Foo> stateB = new StateImpl<Foo>("stateB");
+		final State<Foo> stateC = new StateImpl<Foo>("stateC");
+
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+
+		final MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+		persister.setCurrent(foo, stateA);
+
+		// Move foo to stateB underneath the Transition, so that setting stateC is stale
+		//
+		stateA.addTransition("eventA", new Transition<Foo>() {
+
+			@Override
+			public StateActionPair<Foo> getStateActionPair(Foo stateful, String event, Object... args) throws RetryException {
+				persister.setCurrent(foo, stateB);
+				return new StateActionPairImpl<Foo>(stateC, null);
+			}
+		});
+		FSM<Foo> fsm = new FSM<Foo>("Escape", persister);
+
+		// The caller is given a StaleStateException describing the conflict, not the signal
+		//
+		try {
+			fsm.onEventAttempt(foo, "eventA");
+			fail("Expected StaleStateException");
+		} catch(StaleStateException e) {
+			assertFalse(e.isSignal());
+			assertSame(foo, e.getStateful());
+			assertEquals("stateA", e.getExpected());
+			assertEquals("stateB", e.getActual());
+			assertTrue(e.getMessage().contains("stateB"));
+			assertTrue(e.getStackTrace().length > 0);
+		}
+	}
+
+	@Test
+	public void testStaleStateIsNotARetry() throws TooBusyException {
+		final Foo foo = new Foo();
+		Foo blocked = new Foo();
+
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		final State<Foo> stateB = new StateImpl<Foo>("stateB");
+		final State<Foo> stateC = new StateImpl<Foo>("stateC");
+		State<Foo> stateD = new StateImpl<Foo>("stateD", false, true);
+
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+		states.add(stateD);
+
+		final MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+		persister.setCurrent(foo, stateA);
+		persister.setCurrent(blocked, stateD);
+
+		// Move foo to stateB underneath the Transition, so that setting stateC is stale
+		//
+		stateA.addTransition("eventA", new Transition<Foo>() {
+
+			@Override
+			public StateActionPair<Foo> getStateActionPair(Foo stateful, String event, Object... args) throws RetryException {
+				persister.setCurrent(foo, stateB);
+				return new StateActionPairImpl<Foo>(stateC, null);
+			}
+		});
+
+		MetricsFSMListener<Foo> listener = new MetricsFSMListener<Foo>();
+		FSM<Foo> fsm = new FSM<Foo>("Stale", persister);
+		fsm.setListener(listener);
+
+		assertEquals(stateB, fsm.onEvent(foo, "eventA"));
+		TransitionMetrics transition = listener.getMetrics("Stale", "stateA", "eventA", "stateC");
+		assertEquals(1, transition.getStale());
+		assertEquals(0, transition.getRetries());
+
+		// A Blocking State in a batch is a retry, not a stale State
+		//
+		assertEquals(EventOutcome.STALE, fsm.onEvents(Collections.singletonList(blocked), "eventA").get(0));
+		transition = listener.getMetrics("Stale", "stateD", "eventA", "stateD");
+		assertEquals(1, transition.getRetries());
+		assertEquals(0, transition.getStale());
+
+		// A Blocking State which is moved on by another thread is a stale State, not a retry
+		//
+		final State<Foo> blocking = stateD;
+		MemoryPersisterImpl<Foo> unblockingPersister = new MemoryPersisterImpl<Foo>(states, stateA) {
+
+			@Override
+			public boolean compareAndSetState(Foo stateful, State<Foo> current, State<Foo> next) {
+				if (current == blocking && next == blocking) {
+					setCurrent(stateful, stateB);
+				}
+				return super.compareAndSetState(stateful, current, next);
+			}
+		};
+		Foo unblocked = new Foo();
+		unblockingPersister.setCurrent(unblocked, stateD);
+		FSM<Foo> unblockingFSM = new FSM<Foo>("Unblocking", unblockingPersister);
+		unblockingFSM.setListener(listener);
+
+		assertEquals(stateB, unblockingFSM.onEvent(unblocked, "eventA"));
+		transition = listener.getMetrics("Unblocking", "stateD", "eventA", "stateD");
+		assertEquals(0, transition.getRetries());
+		assertEquals(1, transition.getStale());
+	}
+
+	@Test
+	public void testFSMControlStaleBatch() throws Exception {
+		final Foo foo = new Foo();
+
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		final State<Foo> stateB = new StateImpl<Foo>("stateB");
+		final State<Foo> stateC = new StateImpl<Foo>("stateC");
+
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+
+		final MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+		persister.setCurrent(foo, stateA);
+
+		// Move foo to stateC once the Transition started, so that setting stateB is stale
+		//
+		stateA.addTransition("eventA", new Transition<Foo>() {
+
+			@Override
+			public StateActionPair<Foo> getStateActionPair(Foo stateful, String event, Object... args) throws RetryException {
+				persister.setCurrent(foo, stateC);
+				return new StateActionPairImpl<Foo>(stateB, null);
+			}
+		});
+
+		FSM<Foo> fsm = new FSM<Foo>("StaleBatch", persister);
+		MBeanServer server = MBeanServerFactory.newMBeanServer();
+		FSMControl<Foo> control = new FSMControl<Foo>(fsm);
+		control.register(server);
+		ObjectName name = FSMControl.objectName("StaleBatch");
+
+		assertEquals(EventOutcome.STALE, fsm.onEvents(Collections.singletonList(foo), "eventA").get(0));
+		assertEquals(1L, server.getAttribute(name, "TransitionsStarted"));
+		assertEquals(0L, server.getAttribute(name, "InFlight"));
+
+		control.unregister();
+	}
+
+	@Test
+	public void testFSMControl() throws Exception {
+		Foo foo = new Foo();
+		Foo busy = new Foo();
+
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+		State<Foo> stateC = new StateImpl<Foo>("stateC");
+
+		stateA.addTransition("eventA", stateB, new Action<Foo>() {
+
+			public void execute(Foo stateful, String event, Object... args) throws RetryException {
+				throw new IllegalStateException();
+			}
+		});
+		stateA.addTransition("eventB", stateB);
+		stateC.addTransition("eventA", new Transition<Foo>() {
+
+			@Override
+			public StateActionPair<Foo> getStateActionPair(Foo stateful, String event, Object... args) throws RetryException {
+				throw new RetryException();
+			}
+
+		});
+
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+
+		MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+		persister.setCurrent(foo, stateA);
+		persister.setCurrent(busy, stateC);
+
+		MetricsFSMListener<Foo> listener = new MetricsFSMListener<Foo>();
+		FSM<Foo> fsm = new FSM<Foo>("Controlled", persister);
+		fsm.setListener(listener);
+
+		MBeanServer server = MBeanServerFactory.newMBeanServer();
+		FSMControl<Foo> control = new FSMControl<Foo>(fsm);
+		control.register(server);
+		ObjectName name = FSMControl.objectName("Controlled");
+
+		// Tighten the retries at runtime
+		//
+		server.setAttribute(name, new Attribute("RetryAttempts", 2));
+		assertEquals(2, fsm.getRetryAttempts());
+
+		try {
+			fsm.onEvent(foo, "eventA");
+			fail("Expected IllegalStateException");
+		} catch(IllegalStateException e) {
+			// expected
+		}
+		persister.setCurrent(foo, stateA);
+		fsm.onEvent(foo, "eventB");
+		fsm.onEvent(foo, "eventB");
+		try {
+			fsm.onEvent(busy, "eventA");
+			fail("Expected TooBusyException");
+		} catch(TooBusyException e) {
+			// expected
+		}
+
+		assertEquals(2L, server.getAttribute(name, "EventsProcessed"));
+		assertEquals(2L, server.getAttribute(name, "TransitionsStarted"));
+		assertEquals(1L, server.getAttribute(name, "TransitionsFailed"));
+		assertEquals(0L, server.getAttribute(name, "InFlight"));
+		assertEquals(2L, server.getAttribute(name, "Retries"));
+		assertEquals(1L, server.getAttribute(name, "TooBusy"));
+
+		// The replaced listener is still notified
+		//
+		assertEquals(1, listener.getMetrics("Controlled", "stateA", "eventA", "stateB").getFailed());
+
+		server.invoke(name, "resetCounters", null, null);
+		assertEquals(0L, server.getAttribute(name, "EventsProcessed"));
+
+		// A RetryPolicy supersedes the retry settings, so they can't be changed
+		//
+		fsm.setRetryPolicy(new FixedRetryPolicy(5));
+		try {
+			control.setRetryAttempts(3);
+			fail("Expected IllegalStateException");
+		} catch(IllegalStateException e) {
+			// expected
+		}
+		assertEquals(2, fsm.getRetryAttempts());
+
+		control.unregister();
+		assertFalse(server.isRegistered(name));
+	}
 }
@@ -0,0 +1,10 @@
+package org.statefulj.fsm;
+
+import org.statefulj.persistence.annotations.State;
+
+public class LockFreeFoo {
+	
+	@State
+	public volatile String state;
+
+}
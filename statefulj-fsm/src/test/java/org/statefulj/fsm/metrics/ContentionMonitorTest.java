@@ -0,0 +1,146 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.statefulj.common.utils.FieldAccessor;
+
+public class ContentionMonitorTest {
+
+	public static class Account {
+
+		private Long id;
+
+		public Account(Long id) {
+			this.id = id;
+		}
+
+		public Long getId() {
+			return id;
+		}
+
+		public void setId(Long id) {
+			this.id = id;
+		}
+	}
+
+	@Test
+	public void testSpaceSaving() {
+		SpaceSavingSketch<Integer> sketch = new SpaceSavingSketch<Integer>(10);
+
+		// Two heavy hitters among a long tail of distinct keys
+		//
+		for(int i = 0; i < 1000; i++) {
+			sketch.offer(-1);
+			if (i % 2 == 0) {
+				sketch.offer(-2);
+			}
+			sketch.offer(i);
+		}
+		assertEquals(2500, sketch.getTotal());
+
+		List<SpaceSavingSketch.Counter<Integer>> top = sketch.top(2);
+		assertEquals(2, top.size());
+		assertEquals(Integer.valueOf(-1), top.get(0).getKey());
+		assertEquals(Integer.valueOf(-2), top.get(1).getKey());
+
+		// Counts are never under estimated and over estimated by at most the error
+		//
+		for(SpaceSavingSketch.Counter<Integer> counter : top) {
+			long actual = (counter.getKey() == -1) ? 1000 : 500;
+			assertTrue(counter.getCount() >= actual);
+			assertTrue(counter.getObserved() <= actual);
+		}
+
+		// A key taking over an evicted counter has only observed its own weight
+		//
+		List<SpaceSavingSketch.Counter<Integer>> all = sketch.top(10);
+		SpaceSavingSketch.Counter<Integer> tail = all.get(all.size() - 1);
+		assertTrue(tail.getError() > 0);
+		assertTrue(tail.getObserved() <= 1);
+		assertEquals(10, sketch.top(20).size());
+
+		sketch.reset();
+		assertEquals(0, sketch.getTotal());
+		assertTrue(sketch.top(10).isEmpty());
+	}
+
+	@Test
+	public void testConcurrentOffers() throws InterruptedException {
+		final SpaceSavingSketch<Integer> sketch = new SpaceSavingSketch<Integer>(10);
+		Thread[] threads = new Thread[4];
+		for(int t = 0; t < threads.length; t++) {
+			final int offset = t * 1000;
+			threads[t] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					for(int i = 0; i < 1000; i++) {
+						sketch.offer(-1);
+						sketch.offer(offset + i);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(8000, sketch.getTotal());
+		SpaceSavingSketch.Counter<Integer> top = sketch.top(1).get(0);
+		assertEquals(Integer.valueOf(-1), top.getKey());
+		assertTrue(top.getCount() >= 4000);
+		assertTrue(top.getObserved() <= 4000);
+	}
+
+	@Test
+	public void testContentionMonitor() throws NoSuchFieldException {
+		ContentionMonitor<Account> monitor = new ContentionMonitor<Account>(10);
+		monitor.registerIdAccessor(Account.class, new FieldAccessor<Account, Long>(Account.class, Account.class.getDeclaredField("id")));
+
+		Account hot = new Account(1L);
+		for(int i = 0; i < 5; i++) {
+			monitor.onRetry("fsm", hot, "a", "event", "b");
+		}
+		monitor.recordStaleState(Account.class, 1L);
+		monitor.recordStaleState(Account.class, 2L);
+
+		// Subclasses are attributed with the id accessor of their superclass
+		//
+		monitor.onRetry("fsm", new Account(3L) { }, "a", "event", "b");
+
+		assertEquals(6, monitor.getRetries());
+		assertEquals(2, monitor.getStaleStates());
+
+		List<ContendedEntity> top = monitor.getTopContended(1);
+		assertEquals(1, top.size());
+		assertEquals(Account.class, top.get(0).getType());
+		assertEquals(1L, top.get(0).getId());
+		assertEquals(6, top.get(0).getConflicts());
+		assertEquals(0.75, top.get(0).getShare(), 0.0001);
+		assertEquals(3, monitor.getTopContended().length);
+
+		monitor.reset();
+		assertEquals(0, monitor.getTopContended().length);
+	}
+}
@@ -0,0 +1,134 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.retry;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.lang3.mutable.MutableInt;
+import org.junit.Test;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.Foo;
+import org.statefulj.fsm.Persister;
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.WaitAndRetryException;
+import org.statefulj.fsm.metrics.NoopFSMListener;
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.impl.StateImpl;
+import org.statefulj.persistence.memory.MemoryPersisterImpl;
+
+public class RetryPolicyTest {
+
+	@Test
+	public void testFixed() {
+		FixedRetryPolicy policy = new FixedRetryPolicy(2);
+		assertTrue(policy.canAttempt(0));
+		assertTrue(policy.canAttempt(1));
+		assertFalse(policy.canAttempt(2));
+		assertEquals(0, policy.getWait(1, new RetryException()));
+		assertEquals(100, policy.getWait(1, new WaitAndRetryException(100)));
+
+		assertTrue(new FixedRetryPolicy(-1).canAttempt(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testExponentialBackoff() {
+		ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(-1, 10, 1000);
+		assertEquals(10, policy.getCeiling(1));
+		assertEquals(20, policy.getCeiling(2));
+		assertEquals(640, policy.getCeiling(7));
+		assertEquals(1000, policy.getCeiling(8));
+		assertEquals(1000, policy.getCeiling(Integer.MAX_VALUE));
+
+		// Full jitter - every wait falls between 0 and the ceiling
+		//
+		for(int attempts = 1; attempts < 20; attempts++) {
+			long wait = policy.getWait(attempts, new WaitAndRetryException(5000));
+			assertTrue(wait >= 0);
+			assertTrue(wait <= policy.getCeiling(attempts));
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testExponentialBackoffCapBelowBase() {
+		new ExponentialBackoffRetryPolicy(10, 100, 10);
+	}
+
+	@Test
+	public void testBudget() {
+		RetryBudget budget = new RetryBudget(2, 0.001);
+		BudgetedRetryPolicy policy = new BudgetedRetryPolicy(new FixedRetryPolicy(-1), budget);
+		assertEquals(0, policy.getWait(1, new RetryException()));
+		assertEquals(0, policy.getWait(2, new RetryException()));
+		assertEquals(-1, policy.getWait(3, new RetryException()));
+		assertEquals(0, budget.getAvailable());
+	}
+
+	@Test
+	public void testBudgetFailsFast() {
+
+		// Stateful
+		//
+		final Foo stateful = new Foo();
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA", false, true); // blocking
+
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+
+		// FSM, the budget is shared between the two FSMs
+		//
+		RetryBudget budget = new RetryBudget(1, 0.001);
+		Persister<Foo> persister = new MemoryPersisterImpl<Foo>(stateful, states, stateA);
+		FSM<Foo> fsm1 = new FSM<Foo>("Budget1", persister);
+		FSM<Foo> fsm2 = new FSM<Foo>("Budget2", persister);
+		fsm1.setRetryPolicy(new BudgetedRetryPolicy(new FixedRetryPolicy(2), budget));
+		fsm2.setRetryPolicy(new BudgetedRetryPolicy(new FixedRetryPolicy(1000), budget));
+		fsm2.setRetryInterval(1000);
+
+		// Use up the budget
+		//
+		try {
+			fsm1.onEvent(stateful, "eventA");
+			fail("Expected a TooBusyException");
+		} catch (TooBusyException e) {
+		}
+
+		// Don't wait out 1000 retries, give up after the first attempt
+		//
+		final MutableInt attempts = new MutableInt();
+		fsm2.setListener(new NoopFSMListener<Foo>() {
+
+			@Override
+			public void onRetry(String fsm, Foo stateful, String from, String event, String to) {
+				attempts.increment();
+			}
+		});
+		try {
+			fsm2.onEvent(stateful, "eventA");
+			fail("Expected a TooBusyException");
+		} catch (TooBusyException e) {
+		}
+		assertEquals(1, attempts.intValue());
+	}
+}
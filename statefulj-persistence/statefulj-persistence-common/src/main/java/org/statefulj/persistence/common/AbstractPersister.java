@@ -21,7 +21,6 @@ package org.statefulj.persistence.common;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
@@ -29,20 +28,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.statefulj.common.utils.FieldAccessor;
 import org.statefulj.common.utils.ReflectionUtils;
-import org.statefulj.fsm.Persister;
+import org.statefulj.fsm.FSMDefinition;
 import org.statefulj.fsm.StaleStateException;
+import org.statefulj.fsm.VersionedPersister;
+import org.statefulj.fsm.metrics.ContentionMonitor;
 import org.statefulj.fsm.model.State;
 import org.statefulj.persistence.StateFieldAccessor;
 
-public abstract class AbstractPersister<T, ID> implements Persister<T> {
+public abstract class AbstractPersister<T, ID> implements VersionedPersister<T> {
 
 	private static final Logger logger = LoggerFactory.getLogger(AbstractPersister.class);
 
 	private FieldAccessor<T, ID> idFieldAccessor;
 	private StateFieldAccessor<T> stateFieldAccessor;
-	private State<T> startState;
 	private Class<T> clazz;
-	private HashMap<String, State<T>> states = new HashMap<String, State<T>>();
+	private volatile FSMDefinition<T> definition;
+	private volatile ContentionMonitor<? super T> contentionMonitor;
 
 	public AbstractPersister(
 			List<State<T>> states,
@@ -80,23 +81,18 @@ public abstract class AbstractPersister<T, ID> implements Persister<T> {
 		}
 		this.stateFieldAccessor = buildStateFieldAccessor(stateField, clazz);
 
-		// Start state - returned when no state is set
+		// Index the States and the start state - returned when no state is set
 		//
-		this.startState = startState;
-
-		// Index States into a HashMap
-		//
-		for(State<T> state : states) {
-			this.states.put(state.getName(), state);
-		}
+		this.definition = FSMDefinition.create(states, startState);
 	}
 
 	@Override
 	public State<T> getCurrent(T stateful) {
+		FSMDefinition<T> definition = this.definition;
 		State<T> state;
 		try {
-			Serializable stateKey = this.getState(stateful);
-			state = (stateKey == null) ? this.startState : this.states.get(stateKey);
+			String stateKey = this.decodeState(this.getState(stateful));
+			state = (stateKey == null) ? definition.getStartState() : definition.getState(stateKey);
 		} catch (NoSuchFieldException e) {
 			throw new RuntimeException(e);
 		} catch (SecurityException e) {
@@ -106,7 +102,7 @@ public abstract class AbstractPersister<T, ID> implements Persister<T> {
 		} catch (IllegalAccessException e) {
 			throw new RuntimeException(e);
 		}
-		state = (state == null) ? this.startState : state;
+		state = (state == null) ? definition.getStartState() : state;
 		return state;
 	}
 
@@ -123,17 +119,23 @@ public abstract class AbstractPersister<T, ID> implements Persister<T> {
 	public abstract void setCurrent(T stateful, State<T> current, State<T> next) throws StaleStateException;
 
 	@Override
-	public void setStates(Collection<State<T>> states) {
-		this.states.clear();
+	public synchronized void setStates(Collection<State<T>> states) {
+		this.definition = this.definition.withStates(states);
+	}
 
-		for(State<T> state : states) {
-			this.states.put(state.getName(), state);
-		}
+	@Override
+	public synchronized void setStartState(State<T> startState) {
+		this.definition = this.definition.withStartState(startState);
 	}
 
 	@Override
-	public void setStartState(State<T> startState) {
-		this.startState = startState;
+	public FSMDefinition<T> getDefinition() {
+		return this.definition;
+	}
+
+	@Override
+	public synchronized void setDefinition(FSMDefinition<T> definition) {
+		this.definition = definition;
 	}
 
 	public Field getIdField() {
@@ -176,7 +178,7 @@ public abstract class AbstractPersister<T, ID> implements Persister<T> {
 	protected abstract Class<?> getStateFieldType();
 
 	protected State<T> getStartState() {
-		return startState;
+		return this.definition.getStartState();
 	}
 
 	protected Class<T> getClazz() {
@@ -191,9 +193,42 @@ public abstract class AbstractPersister<T, ID> implements Persister<T> {
 		return this.stateFieldAccessor.getValue(obj);
 	}
 
+	/**
+	 * @param obj The Stateful Entity
+	 * @return The name of the Entity's State, decoded from the State field
+	 */
+	protected String getStateName(T obj) throws NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException {
+		return this.decodeState(this.getState(obj));
+	}
+
 	protected void setState(T obj, String state) throws IllegalArgumentException, IllegalAccessException, NoSuchFieldException, SecurityException {
-		state = (state == null) ? this.startState.getName() : state;
-		this.stateFieldAccessor.setValue(obj, state);
+		state = (state == null) ? this.getStartState().getName() : state;
+		this.stateFieldAccessor.setValue(obj, this.encodeState(state));
+	}
+
+	/**
+	 * Encode the name of a State into the value that's stored.  If the definition has State codes,
+	 * the State is stored as its code, otherwise as its name
+	 *
+	 * @param name The name of the State
+	 * @return The stored value of the State
+	 */
+	protected Serializable encodeState(String name) {
+		FSMDefinition<T> definition = this.definition;
+		return (definition.hasStateCodes()) ? definition.getStateCode(name) : name;
+	}
+
+	/**
+	 * Decode a stored value of a State into the name of the State
+	 *
+	 * @param value The stored value of the State, either a code or a name
+	 * @return The name of the State or null if no State was stored
+	 */
+	protected String decodeState(Object value) {
+		if (value instanceof Number) {
+			return this.definition.getStateName(((Number)value).intValue());
+		}
+		return (String)value;
 	}
 
 	protected void throwStaleState(State<T> current, State<T> next) throws StaleStateException {
@@ -204,6 +239,33 @@ public abstract class AbstractPersister<T, ID> implements Persister<T> {
 		throw new StaleStateException(err);
 	}
 
+	public ContentionMonitor<? super T> getContentionMonitor() {
+		return contentionMonitor;
+	}
+
+	/**
+	 * Report stale States to a {@link ContentionMonitor}.  The monitor is also able to attribute
+	 * retries to this Persister's Entities when it's the FSM's listener
+	 *
+	 * @param contentionMonitor The ContentionMonitor, or null to stop reporting
+	 */
+	public void setContentionMonitor(ContentionMonitor<? super T> contentionMonitor) {
+		if (contentionMonitor != null) {
+			contentionMonitor.registerIdAccessor(this.clazz, this.idFieldAccessor);
+		}
+		this.contentionMonitor = contentionMonitor;
+	}
+
+	/**
+	 * Report a stale State of the Stateful Entity to the ContentionMonitor, if there is one
+	 */
+	protected void recordStaleState(T stateful) {
+		ContentionMonitor<? super T> monitor = this.contentionMonitor;
+		if (monitor != null) {
+			monitor.recordStaleState(this.clazz, this.idFieldAccessor.getValue(stateful));
+		}
+	}
+
 	protected StateFieldAccessor<T> getStateFieldAccessor() {
 		return stateFieldAccessor;
 	}
@@ -20,46 +20,81 @@ package org.statefulj.persistence.jpa;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.EmbeddedId;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.Id;
+import javax.persistence.LockModeType;
+import javax.persistence.LockTimeoutException;
 import javax.persistence.NoResultException;
+import javax.persistence.PessimisticLockException;
 import javax.persistence.Query;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.CriteriaUpdate;
-import javax.persistence.criteria.Path;
-import javax.persistence.criteria.Predicate;
-import javax.persistence.criteria.Root;
+import javax.persistence.TypedQuery;
 
+import org.hibernate.LockOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
 import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.TransactionTemplate;
-import org.springframework.transaction.support.TransactionCallback;
+import org.statefulj.fsm.BatchPersister;
+import org.statefulj.fsm.CompareAndSetPersister;
+import org.statefulj.fsm.LockMode;
+import org.statefulj.fsm.LockingPersister;
 import org.statefulj.fsm.Persister;
 import org.statefulj.fsm.StaleStateException;
+import org.statefulj.fsm.jfr.FlightRecorder;
 import org.statefulj.fsm.model.State;
 import org.statefulj.persistence.common.AbstractPersister;
 
 import static org.statefulj.common.utils.ReflectionUtils.*;
 
-public class JPAPerister<T> extends AbstractPersister<T, Serializable> implements Persister<T> {
+public class JPAPerister<T> extends AbstractPersister<T, Serializable> implements BatchPersister<T>, CompareAndSetPersister<T>, LockingPersister<T> {
 
 	private static final Logger logger = LoggerFactory.getLogger(JPAPerister.class);
 
+	private static final String LOCK_TIMEOUT = "javax.persistence.lock.timeout";
+
+	private static final int DEFAULT_MAX_IN_LIST_SIZE = 500;
+
+	/**
+	 * How a stale State is detected when updating the State of an Entity in the database
+	 */
+	public enum ConflictResolution {
+		RELOAD,          // Qualified update; if no row was updated, select the State in a second query
+		LOCK             // Select the State for update, compare in memory, then update.  A conflict is
+		                 // resolved by the select alone
+	}
+
 	private EntityManager entityManager;
 
 	private PlatformTransactionManager transactionManager;
 
+	private volatile Statements statements;
+
+	private volatile ConflictResolution conflictResolution = ConflictResolution.RELOAD;
+
+	private volatile int maxInListSize = DEFAULT_MAX_IN_LIST_SIZE;
+
+	/**
+	 * Construct a JPAPerister bound to the shared EntityManager of the EntityManagerFactory.  The shared
+	 * EntityManager is thread safe, each call delegates to the EntityManager of the current transaction
+	 */
 	public JPAPerister(List<State<T>> states, State<T> startState, Class<T> clazz, EntityManagerFactoryInfo entityManagerFactory, PlatformTransactionManager transactionManager) {
-		this(states, null, startState, clazz, entityManagerFactory.getNativeEntityManagerFactory().createEntityManager(), transactionManager);
+		this(states, null, startState, clazz, createSharedEntityManager(entityManagerFactory), transactionManager);
 	}
 
+	/**
+	 * Construct a JPAPerister.  As the JPAPerister is shared across threads, the EntityManager must be
+	 * thread safe, e.g. a shared EntityManager injected via {@link javax.persistence.PersistenceContext}
+	 */
 	public JPAPerister(List<State<T>> states, String stateFieldName, State<T> startState, Class<T> clazz, EntityManager entityManager, PlatformTransactionManager transactionManager) {
 		super(states, stateFieldName, startState, clazz);
 		this.transactionManager = transactionManager;
@@ -77,17 +112,43 @@ public class JPAPerister<T> extends AbstractPersister<T, Serializable> implement
 	 */
 	@Override
 	public void setCurrent(T stateful, State<T> current, State<T> next) throws StaleStateException {
+		if (!compareAndSetState(stateful, current, next)) {
+			throwStaleState(current, next);
+		}
+	}
+
+	/**
+	 * Set the current State if the state in the db matches the expected current state.  If not, the
+	 * Stateful Entity is updated with the state in the db
+	 *
+	 * @param stateful Stateful Entity
+	 * @param current Expected current State
+	 * @param next The value of the next State
+	 * @return true if the State was set, false if the State was stale
+	 */
+	@Override
+	public boolean compareAndSetState(T stateful, State<T> current, State<T> next) {
+		Object recording = FlightRecorder.beginPersist();
+		int stale = 0;
 		try {
 
 			// Has this Entity been persisted to the database?
 			//
 			Object id = getId(stateful);
+			boolean updated;
 			if (id != null && entityManager.contains(stateful)) {
-				updateStateInDB(stateful, current, next, id);
-				setState(stateful, next.getName());
+				updated = updateStateInDB(stateful, current, next, id);
+				if (updated) {
+					setState(stateful, next.getName());
+				}
 			} else {
-				updateStateInMemory(stateful, current, next);
+				updated = updateStateInMemory(stateful, current, next);
 			}
+			if (!updated) {
+				stale = 1;
+				recordStaleState(stateful);
+			}
+			return updated;
 		} catch (NoSuchFieldException e) {
 			throw new RuntimeException(e);
 		} catch (SecurityException e) {
@@ -96,9 +157,186 @@ public class JPAPerister<T> extends AbstractPersister<T, Serializable> implement
 			throw new RuntimeException(e);
 		} catch (IllegalAccessException e) {
 			throw new RuntimeException(e);
+		} finally {
+			FlightRecorder.endPersist(recording, this, this.getClazz(), current.getName(), next.getName(), 1, stale);
 		}
 	}
 
+	/**
+	 * Lock the row of the Entity with a PESSIMISTIC_WRITE lock, held until the current transaction
+	 * completes, and update the Entity with the locked State.  The row is locked by the Entity's id, so
+	 * a detached Entity is locked as well.  With {@link LockMode#PESSIMISTIC_NOWAIT} and
+	 * {@link LockMode#PESSIMISTIC_SKIP_LOCKED} a row already locked by another transaction is signalled
+	 * as a stale State.  The failed lock may have marked the transaction for rollback, so the event must
+	 * be retried within a new transaction.  Entities which haven't been persisted aren't locked
+	 *
+	 * @param stateful Stateful Entity
+	 * @param lockMode How to acquire the lock
+	 * @throws StaleStateException if the row was locked by another transaction
+	 */
+	@Override
+	public void lock(T stateful, LockMode lockMode) throws StaleStateException {
+		if (lockMode == LockMode.OPTIMISTIC) {
+			return;
+		}
+		try {
+			Object id = getId(stateful);
+			if (id == null) {
+				return;
+			}
+
+			Query query = buildQuery(id, stateful);
+			query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+			if (lockMode == LockMode.PESSIMISTIC_NOWAIT) {
+				query.setHint(LOCK_TIMEOUT, LockOptions.NO_WAIT);
+			} else if (lockMode == LockMode.PESSIMISTIC_SKIP_LOCKED) {
+				query.setHint(LOCK_TIMEOUT, LockOptions.SKIP_LOCKED);
+			}
+
+			String state = null;
+			try {
+				state = decodeState(query.getSingleResult());
+			} catch(NoResultException nre) {
+
+				// Either the row was skipped as it's locked, or the Entity hasn't been persisted
+				//
+				if (lockMode == LockMode.PESSIMISTIC_SKIP_LOCKED && !buildQuery(id, stateful).getResultList().isEmpty()) {
+					throw lockFailed(stateful, lockMode);
+				}
+				return;
+			} catch(PessimisticLockException ple) {
+				throw lockFailed(stateful, lockMode);
+			} catch(LockTimeoutException lte) {
+				throw lockFailed(stateful, lockMode);
+			}
+			setState(stateful, (state == null) ? getStartState().getName() : state);
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Unless debug logging is on, signal the failed lock with the preallocated StaleStateException
+	 */
+	private StaleStateException lockFailed(T stateful, LockMode lockMode) {
+		return (logger.isDebugEnabled())
+				? new StaleStateException(String.format("Unable to lock entity=%s, lockMode=%s", stateful, lockMode))
+				: StaleStateException.signal();
+	}
+
+	/**
+	 * Set the current State of a group of Stateful Entities.  The rows of the persisted Entities which
+	 * hold the current State are selected for update and then updated with a single bulk JPQL update;
+	 * the remaining Entities are updated in memory.  If the Entity has a composite Id, each Entity is
+	 * updated with {@link #setCurrent(Object, State, State)}
+	 *
+	 * @param statefuls Stateful Entities
+	 * @param current Expected current State
+	 * @param next The value of the next State
+	 * @return For each Stateful Entity, whether its State was set
+	 */
+	@Override
+	public boolean[] setCurrent(List<T> statefuls, State<T> current, State<T> next) {
+		boolean[] updated = new boolean[statefuls.size()];
+		Object recording = FlightRecorder.beginPersist();
+		boolean completed = false;
+		try {
+
+			// Split the Entities between those in the database and those only in memory
+			//
+			List<Integer> indexes = new ArrayList<Integer>(statefuls.size());
+			List<Object> ids = new ArrayList<Object>(statefuls.size());
+			for(int i = 0; i < updated.length; i++) {
+				T stateful = statefuls.get(i);
+				Object id = getId(stateful);
+				if (id != null && entityManager.contains(stateful)) {
+					indexes.add(i);
+					ids.add(id);
+				} else {
+					updated[i] = updateStateInMemory(stateful, current, next);
+				}
+			}
+
+			if (!ids.isEmpty()) {
+				boolean[] idsUpdated = updateStatesInDB(ids, current, next);
+
+				// Not able to update in bulk, fall back to updating one Entity at a time
+				//
+				if (idsUpdated == null) {
+					for(int i = 0; i < ids.size(); i++) {
+						int index = indexes.get(i);
+						T stateful = statefuls.get(index);
+						updated[index] = updateStateInDB(stateful, current, next, ids.get(i));
+						if (updated[index]) {
+							setState(stateful, next.getName());
+						}
+					}
+				} else {
+
+					// Any Entity that wasn't updated must be re-read
+					//
+					List<Integer> stale = new ArrayList<Integer>();
+					List<Object> staleIds = new ArrayList<Object>();
+					for(int i = 0; i < idsUpdated.length; i++) {
+						int index = indexes.get(i);
+						if (idsUpdated[i]) {
+							setState(statefuls.get(index), next.getName());
+							updated[index] = true;
+						} else {
+							stale.add(i);
+							staleIds.add(ids.get(i));
+						}
+					}
+
+					if (!stale.isEmpty()) {
+						Map<Object, String> states = fetchStates(staleIds);
+						for(int i : stale) {
+							String state = states.get(ids.get(i));
+							staleState(
+									statefuls.get(indexes.get(i)),
+									current,
+									(state == null) ? getStartState().getName() : state);
+						}
+					}
+				}
+			}
+			completed = true;
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		} catch (SecurityException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		} finally {
+			int stale = 0;
+			for(int i = 0; i < updated.length; i++) {
+				if (!updated[i]) {
+					stale++;
+					if (completed) {
+						recordStaleState(statefuls.get(i));
+					}
+				}
+			}
+			FlightRecorder.endPersist(recording, this, this.getClazz(), current.getName(), next.getName(), updated.length, stale);
+		}
+		return updated;
+	}
+
+	/**
+	 * The transaction manager binds the EntityManager of a transaction to the EntityManagerFactory it
+	 * was configured with, which is the Spring proxy rather than the native EntityManagerFactory
+	 */
+	private static EntityManager createSharedEntityManager(EntityManagerFactoryInfo entityManagerFactory) {
+		EntityManagerFactory emf = (entityManagerFactory instanceof EntityManagerFactory)
+				? (EntityManagerFactory)entityManagerFactory
+				: entityManagerFactory.getNativeEntityManagerFactory();
+		return SharedEntityManagerCreator.createSharedEntityManager(emf);
+	}
+
 	public EntityManager getEntityManager() {
 		return entityManager;
 	}
@@ -107,29 +345,62 @@ public class JPAPerister<T> extends AbstractPersister<T, Serializable> implement
 		this.entityManager = entityManager;
 	}
 
+	public ConflictResolution getConflictResolution() {
+		return conflictResolution;
+	}
+
+	/**
+	 * Set how a stale State is detected.  {@link ConflictResolution#LOCK} suits heavily contended
+	 * Entities: a conflict is detected by a single select, in the calling transaction, rather than
+	 * by a failed update followed by a second select.  It requires a transaction and holds the row
+	 * lock until the transaction completes
+	 *
+	 * @param conflictResolution The ConflictResolution, defaults to {@link ConflictResolution#RELOAD}
+	 */
+	public void setConflictResolution(ConflictResolution conflictResolution) {
+		this.conflictResolution = conflictResolution;
+	}
+
+	public int getMaxInListSize() {
+		return maxInListSize;
+	}
+
+	/**
+	 * Set the maximum number of ids bound to the "in" list of a batch statement.  A larger batch is
+	 * split into chunks, keeping each statement within the database's limits, e.g. Oracle's 1000
+	 * elements of an "in" list
+	 *
+	 * @param maxInListSize The maximum number of ids per statement, defaults to 500
+	 */
+	public void setMaxInListSize(int maxInListSize) {
+		if (maxInListSize < 1) {
+			throw new IllegalArgumentException("maxInListSize must be positive, maxInListSize=" + maxInListSize);
+		}
+		this.maxInListSize = maxInListSize;
+	}
+
 	/**
 	 * @param stateful
 	 * @param current
 	 * @param next
+	 * @return true if the State was set, false if the State was stale
 	 * @throws NoSuchFieldException
 	 * @throws IllegalAccessException
-	 * @throws StaleStateException
 	 */
-	private void updateStateInMemory(T stateful, State<T> current, State<T> next)
-			throws NoSuchFieldException, IllegalAccessException,
-			StaleStateException {
+	private boolean updateStateInMemory(T stateful, State<T> current, State<T> next)
+			throws NoSuchFieldException, IllegalAccessException {
 		// The Entity hasn't been persisted to the database - so it exists only
 		// this Application memory.  So, serialize the qualified update to prevent
 		// concurrency conflicts
 		//
 		synchronized(stateful) {
-			Serializable state = this.getState(stateful);
+			String state = this.getStateName(stateful);
 			state = (state == null) ? getStartState().getName() : state;
 			if (state.equals(current.getName())) {
 				setState(stateful, next.getName());
-			} else {
-				throwStaleState(current, next);
+				return true;
 			}
+			return false;
 		}
 	}
 
@@ -138,13 +409,22 @@ public class JPAPerister<T> extends AbstractPersister<T, Serializable> implement
 	 * @param current
 	 * @param next
 	 * @param id
+	 * @return true if the State was set, false if the State was stale
 	 * @throws NoSuchFieldException
 	 * @throws IllegalAccessException
-	 * @throws StaleStateException
 	 */
-	private void updateStateInDB(T stateful, State<T> current, State<T> next,
-			Object id) throws NoSuchFieldException, IllegalAccessException,
-			StaleStateException {
+	private boolean updateStateInDB(T stateful, State<T> current, State<T> next,
+			Object id) throws NoSuchFieldException, IllegalAccessException {
+		// Lock the row and compare the State in memory, a stale State won't
+		// cost a second query
+		//
+		if (this.conflictResolution == ConflictResolution.LOCK) {
+			String state = this.lockState(id, stateful);
+			if (!state.equals(current.getName())) {
+				return staleState(stateful, current, state);
+			}
+		}
+
 		// Entity is in the database - perform qualified update based off
 		// the current State value
 		//
@@ -155,31 +435,112 @@ public class JPAPerister<T> extends AbstractPersister<T, Serializable> implement
 		if (update.executeUpdate() == 0) {
 
 			// If we aren't able to update - it's most likely that we are out of sync.
-			// So, fetch the latest value and update the Stateful object.  Then throw a RetryException
-			// This will cause the event to be reprocessed by the FSM
+			// So, fetch the latest value, within the transaction of the update, and update
+			// the Stateful object.  Returning false will cause the event to be reprocessed by the FSM
 			//
-			final Query query = buildQuery(id, stateful);
+			Query query = buildQuery(id, stateful);
 			String state = getStartState().getName();
 			try {
-				TransactionTemplate tt = new TransactionTemplate(transactionManager);
-				state =  tt.execute(new TransactionCallback<String>() {
-
-					@Override
-					public String doInTransaction(TransactionStatus status) {
-						return (String) query.getSingleResult();
-					}
-
-				});
+				state = decodeState(query.getSingleResult());
 			} catch(NoResultException nre) {
 				// This is the first time setting the state, ignore
 				//
 			}
 
-			logger.warn("Stale State, expected={}, actual={}", current.getName(), state);
+			return staleState(stateful, current, state);
+		}
+		return true;
+	}
 
-			setState(stateful, state);
-			throwStaleState(current, next);
+	/**
+	 * Select the State of the Entity for update
+	 *
+	 * @return The name of the Entity's State
+	 */
+	private String lockState(Object id, T stateful) throws NoSuchFieldException, IllegalAccessException {
+		Query query = buildQuery(id, stateful);
+		query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+		String state = null;
+		try {
+			state = decodeState(query.getSingleResult());
+		} catch(NoResultException nre) {
+			// This is the first time setting the state, ignore
+			//
+		}
+		return (state == null) ? getStartState().getName() : state;
+	}
+
+	/**
+	 * Update the Entity with the State in the database
+	 *
+	 * @return false
+	 */
+	private boolean staleState(T stateful, State<T> current, String state) throws NoSuchFieldException, IllegalAccessException {
+		logger.debug("Stale State, expected={}, actual={}", current.getName(), state);
+		setState(stateful, state);
+		return false;
+	}
+
+	/**
+	 * Select the rows of the ids still holding the current State for update, then update them with
+	 * a single bulk update.  As the selected rows are locked until the transaction completes, exactly
+	 * the selected rows are updated.  The ids are split into chunks of at most maxInListSize ids, each
+	 * chunk is selected and updated with its own statements
+	 *
+	 * @param ids The ids of the Entities to update
+	 * @param current Expected current State
+	 * @param next The value of the next State
+	 * @return whether each id was updated or null if the Entities can't be updated in bulk
+	 */
+	protected boolean[] updateStatesInDB(List<Object> ids, State<T> current, State<T> next) {
+
+		Statements statements = this.getStatements();
+		if (!statements.bulk) {
+			return null;
+		}
+		boolean[] updated = new boolean[ids.size()];
+		int chunkSize = this.maxInListSize;
+		for(int from = 0; from < ids.size(); from += chunkSize) {
+			int to = Math.min(ids.size(), from + chunkSize);
+			Set<Object> matched = updateStatesInDB(statements, new ArrayList<Object>(ids.subList(from, to)), current, next);
+			for(int i = from; i < to; i++) {
+				updated[i] = matched.contains(ids.get(i));
+			}
+		}
+		return updated;
+	}
+
+	/**
+	 * @return The ids of the chunk which were updated
+	 */
+	private Set<Object> updateStatesInDB(Statements statements, List<Object> ids, State<T> current, State<T> next) {
+		boolean fromStart = current.equals(getStartState());
+
+		// select id from <entity> where id in :ids and state=:current
+		//
+		TypedQuery<Object> select = entityManager.createQuery(
+				(fromStart) ? statements.selectCurrentFromStart : statements.selectCurrent,
+				Object.class);
+		select.setParameter("ids", ids);
+		select.setParameter("current", encodeState(current.getName()));
+		select.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+		Set<Object> matched = new HashSet<Object>(select.getResultList());
+
+		if (!matched.isEmpty()) {
+
+			// update <entity> set state=:next where id in :ids and state=:current
+			//
+			Query update = entityManager.createQuery(
+					(fromStart) ? statements.updateInFromStart : statements.updateIn);
+			update.setParameter("ids", new ArrayList<Object>(matched));
+			update.setParameter("current", encodeState(current.getName()));
+			update.setParameter("next", encodeState(next.getName()));
+			int count = update.executeUpdate();
+			if (count != matched.size()) {
+				throw new RuntimeException("Expected to update " + matched.size() + " rows of " + getClazz().getName() + ", updated=" + count);
+			}
 		}
+		return matched;
 	}
 
 	protected Query buildUpdate(
@@ -190,58 +551,46 @@ public class JPAPerister<T> extends AbstractPersister<T, Serializable> implement
 			Field idField,
 			Field stateField) throws SecurityException, IllegalArgumentException, NoSuchFieldException, IllegalAccessException {
 
-		CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
-
-		// update <class>
-		//
-		CriteriaUpdate<T> cu = cb.createCriteriaUpdate(this.getClazz());
-		Root<T> t = cu.from(this.getClazz());
-
-		Path<?> idPath = t.get(this.getIdField().getName());
-		Path<String> statePath = t.get(this.getStateField().getName());
-
-		// set state=<next_state>
+		// update <entity> set state=:next where id=:id and state=:current
 		//
-		cu.set(statePath, next.getName());
-
-		// where id=<id> and state=<current_state>
-		//
-		Predicate statePredicate = (current.equals(getStartState())) ?
-				cb.or(
-					cb.equal(
-						statePath,
-						current.getName()
-					),
-					cb.equal(
-						statePath,
-						cb.nullLiteral(String.class)
-					)
-				) :
-				cb.equal(
-					statePath,
-					current.getName()
-				);
-
-		cu.where(
-			cb.and(
-				cb.equal(
-					idPath,
-					this.getId(stateful)
-				),
-				statePredicate
-			)
-		);
-
-		Query query = entityManager.createQuery(cu);
-		if (logger.isDebugEnabled()) {
-			logger.debug(query.unwrap(org.hibernate.Query.class).getQueryString());
-		}
+		Statements statements = this.getStatements();
+		Query query = this.entityManager.createQuery(
+				(current.equals(getStartState())) ? statements.updateFromStart : statements.update);
+		query.setParameter("id", this.getId(stateful));
+		query.setParameter("current", this.encodeState(current.getName()));
+		query.setParameter("next", this.encodeState(next.getName()));
 		return query;
 	}
 
+	/**
+	 * The State field is either a String holding the name of the State or, when the States are
+	 * coded, see {@link org.statefulj.fsm.FSMDefinition#withStateCodes(Map)}, an Integer or Short
+	 * holding the code of the State
+	 */
 	@Override
 	protected boolean validStateField(Field stateField) {
-		return (stateField.getType().equals(String.class));
+		Class<?> type = stateField.getType();
+		return type.equals(String.class) || type.equals(Integer.class) || type.equals(Short.class);
+	}
+
+	/**
+	 * A String State field always holds the name of the State, a numeric State field holds the code
+	 * of the State
+	 */
+	@Override
+	protected Serializable encodeState(String name) {
+		Class<?> type = this.getStateField().getType();
+		if (type.equals(String.class)) {
+			return name;
+		}
+		int code = this.getDefinition().getStateCode(name);
+		if (type.equals(Short.class)) {
+			if (code < Short.MIN_VALUE || code > Short.MAX_VALUE) {
+				throw new RuntimeException("Code of State " + name + " doesn't fit a Short, code=" + code);
+			}
+			return (short)code;
+		}
+		return code;
 	}
 
 	@Override
@@ -259,23 +608,103 @@ public class JPAPerister<T> extends AbstractPersister<T, Serializable> implement
 		return String.class;
 	}
 
+	private Map<Object, String> fetchStates(List<Object> ids) {
+		Map<Object, String> states = new HashMap<Object, String>();
+		int chunkSize = this.maxInListSize;
+		for(int from = 0; from < ids.size(); from += chunkSize) {
+			TypedQuery<Object[]> query = entityManager.createQuery(this.getStatements().selectIn, Object[].class);
+			query.setParameter("ids", new ArrayList<Object>(ids.subList(from, Math.min(ids.size(), from + chunkSize))));
+			for(Object[] row : query.getResultList()) {
+				states.put(row[0], decodeState(row[1]));
+			}
+		}
+		return states;
+	}
+
 	private Query buildQuery(Object id, T stateful) throws SecurityException, IllegalArgumentException, NoSuchFieldException, IllegalAccessException {
+		Query query = entityManager.createQuery(this.getStatements().select);
+		query.setParameter("id", this.getId(stateful));
+		return query;
+	}
+
+	/**
+	 * Build the statements on first use.  The Entity name and the columns are resolved from the
+	 * EntityManager, which may be set after the Persister is constructed
+	 */
+	private Statements getStatements() {
+		Statements statements = this.statements;
+		if (statements == null) {
+			statements = new Statements();
+			this.statements = statements;
+		}
+		return statements;
+	}
+
+	/**
+	 * The qualified State update and the State selects, built once per Persister.  Hibernate caches
+	 * the translation of each statement by its text, so an update or select only has to bind the id
+	 * and the States rather than build and translate a Criteria query
+	 */
+	private class Statements {
+
+		// update <entity> set state=:next where id=:id and state=:current
+		//
+		final String update;
+
+		// update <entity> set state=:next where id=:id and (state=:current or state is null)
+		//
+		final String updateFromStart;
+
+		// select state from <entity> where id=:id
+		//
+		final String select;
 
-		CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
-		CriteriaQuery<String> cq = cb.createQuery(String.class);
+		// select id, state from <entity> where id in :ids
+		//
+		final String selectIn;
+
+		// select id from <entity> where id in :ids and state=:current
+		//
+		final String selectCurrent;
 
-		Root<T> t = cq.from(this.getClazz());
-		Path<?> idPath = t.get(this.getIdField().getName());
-		Path<String> statePath = t.get(this.getStateField().getName());
+		// select id from <entity> where id in :ids and (state=:current or state is null)
+		//
+		final String selectCurrentFromStart;
 
-		cq.select(statePath);
+		// update <entity> set state=:next where id in :ids and state=:current
+		//
+		final String updateIn;
 
-		cq.where(cb.equal(idPath, this.getId(stateful)));
+		// update <entity> set state=:next where id in :ids and (state=:current or state is null)
+		//
+		final String updateInFromStart;
 
-		Query query = entityManager.createQuery(cq);
-		if (logger.isDebugEnabled()) {
-			logger.debug(query.unwrap(org.hibernate.Query.class).getQueryString());
+		// Whether the Entities can be updated in bulk, an "in" can't match a composite Id
+		//
+		final boolean bulk;
+
+		Statements() {
+			String entity = entityManager.getMetamodel().entity(getClazz()).getName();
+			String id = "t." + getIdField().getName();
+			String state = "t." + getStateField().getName();
+
+			String update = "update " + entity + " t set " + state + "=:next where " + id + "=:id";
+			this.update = update + " and " + state + "=:current";
+			this.updateFromStart = update + " and (" + state + "=:current or " + state + " is null)";
+			this.select = "select " + state + " from " + entity + " t where " + id + "=:id";
+			this.selectIn = "select " + id + ", " + state + " from " + entity + " t where " + id + " in :ids";
+
+			String selectCurrent = "select " + id + " from " + entity + " t where " + id + " in :ids";
+			this.selectCurrent = selectCurrent + " and " + state + "=:current";
+			this.selectCurrentFromStart = selectCurrent + " and (" + state + "=:current or " + state + " is null)";
+			String updateIn = "update " + entity + " t set " + state + "=:next where " + id + " in :ids";
+			this.updateIn = updateIn + " and " + state + "=:current";
+			this.updateInFromStart = updateIn + " and (" + state + "=:current or " + state + " is null)";
+			this.bulk = !getIdField().isAnnotationPresent(EmbeddedId.class);
+
+			if (logger.isDebugEnabled()) {
+				logger.debug("Statements for {}: {}; {}; {}; {}; {}; {}", getClazz().getName(), this.update, this.updateFromStart, this.select, this.selectIn, this.selectCurrent, this.updateIn);
+			}
 		}
-		return query;
 	}
 }
@@ -0,0 +1,242 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.persistence.jpa;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.LockMode;
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.impl.StateImpl;
+import org.statefulj.persistence.jpa.utils.UnitTestUtils;
+
+/**
+ * Two Transactions contending for the lock on the same row
+ *
+ * @author Andrew Hall
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({"/applicationContext-JPAPersisterLockTests.xml"})
+public class JPAPersisterLockTest {
+
+	@Resource
+	JpaTransactionManager transactionManager;
+
+	@PersistenceContext
+	EntityManager entityManager;
+
+	State<Order> stateA = new StateImpl<Order>("stateA");
+
+	State<Order> stateB = new StateImpl<Order>("stateB");
+
+	State<Order> stateC = new StateImpl<Order>("stateC");
+
+	JPAPerister<Order> persister;
+
+	ExecutorService contender = Executors.newSingleThreadExecutor();
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setUp() {
+		stateA.addTransition("eventA", stateB);
+		stateB.addTransition("eventA", stateC);
+		persister = new JPAPerister<Order>(
+				Arrays.asList(stateA, stateB, stateC),
+				null,
+				stateA,
+				Order.class,
+				entityManager,
+				transactionManager);
+	}
+
+	@After
+	public void tearDown() {
+		contender.shutdownNow();
+	}
+
+	@Test
+	public void testContendedLock() throws Exception {
+		final long id = saveOrder();
+
+		// The first Transaction locks the row
+		//
+		UnitTestUtils.startTransaction(transactionManager);
+		Order order = entityManager.find(Order.class, id);
+		persister.lock(order, LockMode.PESSIMISTIC);
+		assertEquals(stateA, persister.getCurrent(order));
+
+		// The second Transaction waits for the lock
+		//
+		final CountDownLatch locking = new CountDownLatch(1);
+		Future<State<Order>> locked = contender.submit(new Callable<State<Order>>() {
+
+			@Override
+			public State<Order> call() throws Exception {
+				return new TransactionTemplate(transactionManager).execute(new TransactionCallback<State<Order>>() {
+
+					@Override
+					public State<Order> doInTransaction(TransactionStatus status) {
+						Order detached = detachedOrder(id);
+						locking.countDown();
+						try {
+							persister.lock(detached, LockMode.PESSIMISTIC);
+						} catch (RetryException e) {
+							throw new RuntimeException(e);
+						}
+						return persister.getCurrent(detached);
+					}
+				});
+			}
+		});
+		locking.await();
+		Thread.sleep(100);
+		assertFalse(locked.isDone());
+
+		// Once the first Transaction commits, the second Transaction locks the row with the committed State
+		//
+		persister.setCurrent(order, stateA, stateB);
+		UnitTestUtils.commitTransaction(transactionManager);
+		assertEquals(stateB, locked.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testContendedEventRetriedInNewTransaction() throws Exception {
+		final long id = saveOrder();
+		final FSM<Order> fsm = new FSM<Order>("Locking", persister);
+		fsm.setRetryInterval(1);
+		fsm.setLockMode(LockMode.PESSIMISTIC_NOWAIT);
+
+		UnitTestUtils.startTransaction(transactionManager);
+		Order order = entityManager.find(Order.class, id);
+		persister.lock(order, LockMode.PESSIMISTIC);
+
+		// Within a single Transaction, the failed lock isn't retried
+		//
+		Future<Object> tooBusy = contender.submit(new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				return new TransactionTemplate(transactionManager).execute(new TransactionCallback<Object>() {
+
+					@Override
+					public Object doInTransaction(TransactionStatus status) {
+						try {
+							fsm.onEvent(detachedOrder(id), "eventA");
+						} catch (TooBusyException e) {
+							status.setRollbackOnly();
+							return e;
+						}
+						return null;
+					}
+				});
+			}
+		});
+		assertTrue(tooBusy.get(5, TimeUnit.SECONDS) instanceof TooBusyException);
+
+		// Each attempt within a new Transaction is retried until the lock is released
+		//
+		final AtomicInteger failures = new AtomicInteger();
+		Future<State<Order>> retried = contender.submit(new Callable<State<Order>>() {
+
+			@Override
+			public State<Order> call() throws Exception {
+				return fsm.retry(new Callable<State<Order>>() {
+
+					@Override
+					public State<Order> call() throws Exception {
+						final RetryException[] retry = new RetryException[1];
+						State<Order> state = new TransactionTemplate(transactionManager).execute(new TransactionCallback<State<Order>>() {
+
+							@Override
+							public State<Order> doInTransaction(TransactionStatus status) {
+								try {
+									return fsm.onEventAttempt(detachedOrder(id), "eventA");
+								} catch (RetryException e) {
+									status.setRollbackOnly();
+									retry[0] = e;
+									return null;
+								}
+							}
+						});
+						if (retry[0] != null) {
+							failures.incrementAndGet();
+							throw retry[0];
+						}
+						return state;
+					}
+				});
+			}
+		});
+		for(int i = 0; i < 200 && failures.get() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(failures.get() > 0);
+		persister.setCurrent(order, stateA, stateB);
+		UnitTestUtils.commitTransaction(transactionManager);
+
+		assertEquals(stateC, retried.get(10, TimeUnit.SECONDS));
+	}
+
+	private long saveOrder() {
+		return new TransactionTemplate(transactionManager).execute(new TransactionCallback<Long>() {
+
+			@Override
+			public Long doInTransaction(TransactionStatus status) {
+				Order order = new Order();
+				entityManager.persist(order);
+				return order.getId();
+			}
+		});
+	}
+
+	/**
+	 * A copy of the Order which isn't managed by the EntityManager, reading the Order would
+	 * wait for the lock
+	 */
+	private static Order detachedOrder(long id) {
+		Order order = new Order();
+		order.setId(id);
+		return order;
+	}
+}
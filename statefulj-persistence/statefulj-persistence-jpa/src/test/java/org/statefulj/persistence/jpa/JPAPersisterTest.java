@@ -20,16 +20,31 @@ package org.statefulj.persistence.jpa;
 import static org.junit.Assert.*;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Resource;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.statefulj.fsm.CompareAndSetPersister;
+import org.statefulj.fsm.LockMode;
 import org.statefulj.fsm.Persister;
+import org.statefulj.fsm.RetryException;
 import org.statefulj.fsm.StaleStateException;
+import org.statefulj.fsm.metrics.ContendedEntity;
+import org.statefulj.fsm.metrics.ContentionMonitor;
 import org.statefulj.fsm.model.State;
 import org.statefulj.persistence.jpa.model.StatefulEntity;
 import org.statefulj.persistence.jpa.utils.UnitTestUtils;
@@ -55,6 +70,9 @@ public class JPAPersisterTest {
 
 	@Resource
 	State<Order> stateC;
+
+	@PersistenceContext
+	EntityManager entityManager;
 	
 	@Test
 	public void testValidStateChange() throws StaleStateException, IllegalArgumentException, IllegalAccessException, NoSuchFieldException, SecurityException {
@@ -123,4 +141,244 @@ public class JPAPersisterTest {
 		jpaPersister.setCurrent(order, stateB, stateC);
 		UnitTestUtils.commitTransaction(transactionManager);
 	}
+
+	@Test
+	public void testConcurrentStateChanges() throws Exception {
+
+		// Each thread drives its own Order within its own transaction, through the
+		// same Persister
+		//
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Long>> futures = new ArrayList<Future<Long>>();
+		for(int i = 0; i < threads; i++) {
+			futures.add(executor.submit(new Callable<Long>() {
+
+				@Override
+				public Long call() throws Exception {
+					UnitTestUtils.startTransaction(transactionManager);
+					Order order = orderRepo.save(new Order());
+					for(int j = 0; j < 10; j++) {
+						jpaPersister.setCurrent(order, stateA, stateB);
+						jpaPersister.setCurrent(order, stateB, stateA);
+					}
+					jpaPersister.setCurrent(order, stateA, stateC);
+					UnitTestUtils.commitTransaction(transactionManager);
+					return order.getId();
+				}
+			}));
+		}
+		executor.shutdown();
+
+		UnitTestUtils.startTransaction(transactionManager);
+		for(Future<Long> future : futures) {
+			Order dbOrder = orderRepo.findOne(future.get(10, TimeUnit.SECONDS));
+			assertEquals(stateC.getName(), dbOrder.getState());
+		}
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
+
+	@Test
+	public void testCompareAndSetState() {
+		UnitTestUtils.startTransaction(transactionManager);
+		Order order = new Order();
+		order.setAmount(20);
+		orderRepo.save(order);
+
+		CompareAndSetPersister<Order> casPersister = (CompareAndSetPersister<Order>)jpaPersister;
+		assertFalse(casPersister.compareAndSetState(order, stateB, stateC));
+		assertEquals(stateA, jpaPersister.getCurrent(order));
+
+		assertTrue(casPersister.compareAndSetState(order, stateA, stateB));
+		assertEquals(stateB, jpaPersister.getCurrent(order));
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
+
+	@Test
+	public void testLockingConflictResolution() throws StaleStateException, IllegalAccessException, NoSuchFieldException {
+		@SuppressWarnings("unchecked")
+		JPAPerister<Order> lockingPersister = new JPAPerister<Order>(
+				Arrays.asList(stateA, stateB, stateC),
+				null,
+				stateA,
+				Order.class,
+				entityManager,
+				transactionManager);
+		lockingPersister.setConflictResolution(JPAPerister.ConflictResolution.LOCK);
+
+		UnitTestUtils.startTransaction(transactionManager);
+		Order order = new Order();
+		order = this.orderRepo.save(order);
+
+		// Verify the first transition from the implicit Start State
+		//
+		assertTrue(lockingPersister.compareAndSetState(order, stateA, stateB));
+		assertEquals(stateB.getName(), this.orderRepo.findOne(order.getId()).getState());
+
+		// Roll back the in memory State, verify the stale State is detected by the
+		// locking read and the Entity is brought up to date
+		//
+		Field stateField = StatefulEntity.class.getDeclaredField("state");
+		stateField.setAccessible(true);
+		stateField.set(order, stateA.getName());
+		assertFalse(lockingPersister.compareAndSetState(order, stateA, stateC));
+		assertEquals(stateB, lockingPersister.getCurrent(order));
+
+		lockingPersister.setCurrent(order, stateB, stateC);
+		assertEquals(stateC.getName(), this.orderRepo.findOne(order.getId()).getState());
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
+
+	@Test
+	public void testPessimisticLock() throws RetryException {
+		@SuppressWarnings("unchecked")
+		JPAPerister<Order> lockingPersister = new JPAPerister<Order>(
+				Arrays.asList(stateA, stateB, stateC),
+				null,
+				stateA,
+				Order.class,
+				entityManager,
+				transactionManager);
+
+		UnitTestUtils.startTransaction(transactionManager);
+		Order order = new Order();
+		order = this.orderRepo.save(order);
+
+		// An Entity without a State is locked in the Start State
+		//
+		lockingPersister.lock(order, LockMode.PESSIMISTIC);
+		assertEquals(stateA, lockingPersister.getCurrent(order));
+
+		// Move the State forward in the database, the lock refreshes the Entity with the
+		// State in the database
+		//
+		this.entityManager
+			.createQuery("update Order o set o.state = :state where o.id = :id")
+			.setParameter("state", stateB.getName())
+			.setParameter("id", order.getId())
+			.executeUpdate();
+		assertEquals(stateA, lockingPersister.getCurrent(order));
+		lockingPersister.lock(order, LockMode.PESSIMISTIC);
+		assertEquals(stateB, lockingPersister.getCurrent(order));
+
+		// An Entity which hasn't been persisted isn't locked
+		//
+		Order memOrder = new Order();
+		lockingPersister.lock(memOrder, LockMode.PESSIMISTIC_NOWAIT);
+		assertEquals(stateA, lockingPersister.getCurrent(memOrder));
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
+
+	@Test
+	public void testBatchStateChange() throws StaleStateException, IllegalArgumentException, IllegalAccessException, NoSuchFieldException, SecurityException {
+		@SuppressWarnings("unchecked")
+		JPAPerister<Order> batchPersister = new JPAPerister<Order>(
+				Arrays.asList(stateA, stateB, stateC),
+				null,
+				stateA,
+				Order.class,
+				entityManager,
+				transactionManager);
+		ContentionMonitor<Order> monitor = new ContentionMonitor<Order>();
+		batchPersister.setContentionMonitor(monitor);
+
+		UnitTestUtils.startTransaction(transactionManager);
+
+		Order order1 = new Order();
+		order1 = this.orderRepo.save(order1);
+		Order order2 = new Order();
+		order2 = this.orderRepo.save(order2);
+		Order staleOrder = new Order();
+		staleOrder = this.orderRepo.save(staleOrder);
+		Order memOrder = new Order();
+
+		// Move the stale Order forward, then roll back its in memory State
+		//
+		batchPersister.setCurrent(staleOrder, stateA, stateB);
+		Field stateField = StatefulEntity.class.getDeclaredField("state");
+		stateField.setAccessible(true);
+		stateField.set(staleOrder, stateA.getName());
+
+		boolean[] updated = batchPersister.setCurrent(
+				Arrays.asList(order1, memOrder, staleOrder, order2),
+				stateA,
+				stateB);
+
+		assertTrue(updated[0]);
+		assertTrue(updated[1]);
+		assertFalse(updated[2]);
+		assertTrue(updated[3]);
+
+		assertEquals(stateB.getName(), order1.getState());
+		assertEquals(stateB.getName(), order2.getState());
+		assertEquals(stateB.getName(), memOrder.getState());
+
+		// The stale Order has been refreshed with the State in the database
+		//
+		assertEquals(stateB.getName(), staleOrder.getState());
+
+		// The stale Order is reported as contended
+		//
+		try {
+			batchPersister.setCurrent(staleOrder, stateA, stateC);
+			fail("Expected StaleStateException");
+		} catch(StaleStateException e) {
+			// expected
+		}
+		List<ContendedEntity> contended = monitor.getTopContended(10);
+		assertEquals(1, contended.size());
+		assertEquals(staleOrder.getId(), contended.get(0).getId());
+		assertEquals(2, contended.get(0).getConflicts());
+		assertEquals(2, monitor.getStaleStates());
+
+		UnitTestUtils.commitTransaction(transactionManager);
+		UnitTestUtils.startTransaction(transactionManager);
+
+		assertEquals(stateB.getName(), this.orderRepo.findOne(order1.getId()).getState());
+		assertEquals(stateB.getName(), this.orderRepo.findOne(order2.getId()).getState());
+
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
+
+	@Test
+	public void testBatchStateChangeInChunks() throws StaleStateException, IllegalArgumentException, IllegalAccessException, NoSuchFieldException, SecurityException {
+		@SuppressWarnings("unchecked")
+		JPAPerister<Order> batchPersister = new JPAPerister<Order>(
+				Arrays.asList(stateA, stateB, stateC),
+				null,
+				stateA,
+				Order.class,
+				entityManager,
+				transactionManager);
+		batchPersister.setMaxInListSize(2);
+
+		UnitTestUtils.startTransaction(transactionManager);
+
+		// Five Orders span three chunks, the stale Order is in the second chunk
+		//
+		List<Order> orders = new ArrayList<Order>();
+		for(int i = 0; i < 5; i++) {
+			orders.add(this.orderRepo.save(new Order()));
+		}
+		Order staleOrder = orders.get(3);
+		batchPersister.setCurrent(staleOrder, stateA, stateC);
+		Field stateField = StatefulEntity.class.getDeclaredField("state");
+		stateField.setAccessible(true);
+		stateField.set(staleOrder, stateA.getName());
+
+		boolean[] updated = batchPersister.setCurrent(orders, stateA, stateB);
+
+		assertEquals(Arrays.toString(new boolean[] { true, true, true, false, true }), Arrays.toString(updated));
+		assertEquals(stateC.getName(), staleOrder.getState());
+
+		UnitTestUtils.commitTransaction(transactionManager);
+		UnitTestUtils.startTransaction(transactionManager);
+
+		for(int i = 0; i < orders.size(); i++) {
+			String state = (i == 3) ? stateC.getName() : stateB.getName();
+			assertEquals(state, this.orderRepo.findOne(orders.get(i).getId()).getState());
+		}
+
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
 }
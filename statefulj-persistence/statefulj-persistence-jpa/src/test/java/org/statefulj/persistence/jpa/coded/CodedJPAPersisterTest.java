@@ -0,0 +1,164 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.persistence.jpa.coded;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.FSMDefinition;
+import org.statefulj.fsm.StaleStateException;
+import org.statefulj.fsm.model.State;
+import org.statefulj.persistence.jpa.JPAPerister;
+import org.statefulj.persistence.jpa.utils.UnitTestUtils;
+
+import javax.annotation.Resource;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({"/applicationContext-JPAPersisterTests.xml"})
+public class CodedJPAPersisterTest {
+
+	@Resource
+	JPAPerister<CodedOrder> codedJpaPersister;
+
+	@Resource
+	CodedOrderRepository codedOrderRepo;
+
+	@Resource
+	JpaTransactionManager transactionManager;
+
+	@PersistenceContext
+	EntityManager entityManager;
+
+	@Resource
+	State<CodedOrder> stateA;
+
+	@Resource
+	State<CodedOrder> stateB;
+
+	@Resource
+	State<CodedOrder> stateC;
+
+	@Before
+	public void setUp() {
+		Map<String, Integer> codes = new HashMap<String, Integer>();
+		codes.put(stateA.getName(), 1);
+		codes.put(stateB.getName(), 2);
+		codes.put(stateC.getName(), 3);
+		codedJpaPersister.setEntityManager(entityManager);
+		codedJpaPersister.setDefinition(codedJpaPersister.getDefinition().withStateCodes(codes));
+	}
+
+	@Test
+	public void testCodedStateChange() throws StaleStateException {
+		UnitTestUtils.startTransaction(transactionManager);
+
+		// In memory
+		//
+		CodedOrder order = new CodedOrder();
+		assertEquals(stateA, codedJpaPersister.getCurrent(order));
+		codedJpaPersister.setCurrent(order, stateA, stateB);
+		assertEquals(Short.valueOf((short)2), order.getState());
+		assertEquals(stateB, codedJpaPersister.getCurrent(order));
+
+		// In the database
+		//
+		order = codedOrderRepo.save(order);
+		codedJpaPersister.setCurrent(order, stateB, stateC);
+		assertEquals(Short.valueOf((short)3), order.getState());
+		assertEquals(3, storedState(order));
+
+		UnitTestUtils.commitTransaction(transactionManager);
+		UnitTestUtils.startTransaction(transactionManager);
+
+		order = codedOrderRepo.findOne(order.getId());
+		assertEquals(stateC, codedJpaPersister.getCurrent(order));
+
+		// A stale update reloads the code from the database
+		//
+		order.setState((short)1);
+		assertFalse(codedJpaPersister.compareAndSetState(order, stateA, stateB));
+		assertEquals(stateC, codedJpaPersister.getCurrent(order));
+
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
+
+	@Test
+	public void testCodedBatchStateChange() throws StaleStateException {
+		UnitTestUtils.startTransaction(transactionManager);
+
+		CodedOrder order1 = codedOrderRepo.save(new CodedOrder());
+		CodedOrder order2 = codedOrderRepo.save(new CodedOrder());
+		CodedOrder staleOrder = codedOrderRepo.save(new CodedOrder());
+		codedJpaPersister.setCurrent(staleOrder, stateA, stateC);
+		staleOrder.setState((short)1);
+
+		boolean[] updated = codedJpaPersister.setCurrent(Arrays.asList(order1, staleOrder, order2), stateA, stateB);
+		assertTrue(updated[0]);
+		assertFalse(updated[1]);
+		assertTrue(updated[2]);
+		assertEquals(2, storedState(order1));
+		assertEquals(2, storedState(order2));
+		assertEquals(stateC, codedJpaPersister.getCurrent(staleOrder));
+
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
+
+	@Test
+	public void testFSMKeepsStateCodes() {
+		FSMDefinition<CodedOrder> definition = codedJpaPersister.getDefinition();
+		try {
+			FSM<CodedOrder> fsm = new FSM<CodedOrder>(
+					"coded",
+					codedJpaPersister,
+					1,
+					1,
+					FSMDefinition.create(Arrays.asList(stateA, stateB, stateC), stateA));
+			assertSame(fsm.getDefinition(), codedJpaPersister.getDefinition());
+			assertEquals(2, codedJpaPersister.getDefinition().getStateCode(stateB.getName()));
+			assertEquals(stateC.getName(), codedJpaPersister.getDefinition().getStateName(3));
+		} finally {
+			codedJpaPersister.setDefinition(definition);
+		}
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testUncodedState() {
+		CodedOrder order = new CodedOrder();
+		codedJpaPersister.setDefinition(codedJpaPersister.getDefinition().withStateCodes(new HashMap<String, Integer>()));
+		codedJpaPersister.compareAndSetState(order, stateA, stateB);
+	}
+
+	private int storedState(CodedOrder order) {
+		Short state = entityManager
+				.createQuery("select o.state from CodedOrder o where o.id = :id", Short.class)
+				.setParameter("id", order.getId())
+				.getSingleResult();
+		return state;
+	}
+}
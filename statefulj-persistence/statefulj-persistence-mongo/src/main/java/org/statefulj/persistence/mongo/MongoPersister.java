@@ -18,6 +18,7 @@
 
 package org.statefulj.persistence.mongo;
 
+import com.mongodb.BulkWriteOperation;
 import com.mongodb.DBObject;
 import org.bson.types.ObjectId;
 import org.springframework.beans.BeansException;
@@ -34,19 +35,28 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.convert.UpdateMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
-import org.statefulj.fsm.Persister;
+import org.statefulj.fsm.BatchPersister;
+import org.statefulj.fsm.CompareAndSetPersister;
 import org.statefulj.fsm.StaleStateException;
+import org.statefulj.fsm.jfr.FlightRecorder;
 import org.statefulj.fsm.model.State;
 import org.statefulj.persistence.common.AbstractPersister;
 import org.statefulj.persistence.mongo.model.StateDocument;
 
 import javax.persistence.EmbeddedId;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import static org.statefulj.common.utils.ReflectionUtils.getReferencedField;
@@ -54,7 +64,8 @@ import static org.statefulj.common.utils.ReflectionUtils.getReferencedField;
 public class MongoPersister<T>
 			extends AbstractPersister<T, StateDocumentImpl>
 			implements
-				Persister<T>,
+				BatchPersister<T>,
+				CompareAndSetPersister<T>,
 				BeanDefinitionRegistryPostProcessor,
 				ApplicationContextAware {
 
@@ -162,24 +173,134 @@ public class MongoPersister<T>
 	 */
 	@Override
 	public void setCurrent(T stateful, State<T> current, State<T> next) throws StaleStateException {
+		if (!compareAndSetState(stateful, current, next)) {
+			throwStaleState(current.getName(), next.getName());
+		}
+	}
+
+	/**
+	 * Set the current State if the state in the db matches the expected current state.  If not, the
+	 * Stateful Entity is updated with the latest StateDocument
+	 *
+	 * @param stateful Stateful Entity
+	 * @param current Expected current State
+	 * @param next The value of the next State
+	 * @return true if the State was set, false if the State was stale
+	 */
+	@Override
+	public boolean compareAndSetState(T stateful, State<T> current, State<T> next) {
+		Object recording = FlightRecorder.beginPersist();
+		int stale = 0;
 		try {
 
 			// Has this Entity been persisted to Mongo?
 			//
 			StateDocumentImpl stateDoc = this.getStateDocument(stateful);
+			boolean updated;
 			if (stateDoc != null && stateDoc.isPersisted()) {
 
 				// Update state in the DB
 				//
-				updateStateInDB(stateful, current, next, stateDoc);
+				updated = updateStateInDB(stateful, current, next, stateDoc);
 			} else {
 
 				// The Entity hasn't been persisted to Mongo - so it exists only
 				// this Application memory.  So, serialize the qualified update to prevent
 				// concurrency conflicts
 				//
-				updateInMemory(stateful, stateDoc, current.getName(), next.getName());
+				updated = updateInMemory(stateful, stateDoc, current.getName(), next.getName());
+			}
+			if (!updated) {
+				stale = 1;
+				recordStaleState(stateful);
+			}
+			return updated;
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		} catch (SecurityException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		} finally {
+			FlightRecorder.endPersist(recording, this, this.getClazz(), current.getName(), next.getName(), 1, stale);
+		}
+	}
+
+	/**
+	 * Set the current State of a group of Stateful Entities.  The qualified updates of the persisted
+	 * StateDocuments are sent to Mongo as a single unordered bulk operation, the remaining
+	 * Entities are updated in memory
+	 *
+	 * @param statefuls Stateful Entities
+	 * @param current Expected current State
+	 * @param next The value of the next State
+	 * @return For each Stateful Entity, whether its State was set
+	 */
+	@Override
+	public boolean[] setCurrent(List<T> statefuls, State<T> current, State<T> next) {
+		boolean[] updated = new boolean[statefuls.size()];
+		Object recording = FlightRecorder.beginPersist();
+		boolean completed = false;
+		try {
+
+			// Split the Entities between those persisted to Mongo and those only in memory
+			//
+			List<Integer> indexes = new ArrayList<Integer>(statefuls.size());
+			List<StateDocumentImpl> stateDocs = new ArrayList<StateDocumentImpl>(statefuls.size());
+			for(int i = 0; i < updated.length; i++) {
+				T stateful = statefuls.get(i);
+				StateDocumentImpl stateDoc = this.getStateDocument(stateful);
+				if (stateDoc != null && stateDoc.isPersisted()) {
+					indexes.add(i);
+					stateDocs.add(stateDoc);
+				} else {
+					updated[i] = updateInMemory(stateful, stateDoc, current.getName(), next.getName());
+				}
+			}
+
+			if (!stateDocs.isEmpty()) {
+
+				// Stamp the StateDocuments we update with an id unique to this update
+				//
+				String updateId = new ObjectId().toHexString();
+				Update update = buildUpdate(current, next);
+				update.set("updateId", updateId);
+				Date updatedAt = (Date)((DBObject)update.getUpdateObject().get("$set")).get("updated");
+				int matched = updateStateDocs(stateDocs, current, update);
+
+				// If every update matched, we don't need to go back to Mongo
+				//
+				if (matched == stateDocs.size()) {
+					for(int i = 0; i < stateDocs.size(); i++) {
+						StateDocumentImpl stateDoc = stateDocs.get(i);
+						stateDoc.setPrevState(current.getName());
+						stateDoc.setState(next.getName());
+						stateDoc.setUpdated(updatedAt);
+						stateDoc.setUpdateId(updateId);
+						updated[indexes.get(i)] = true;
+					}
+				} else {
+
+					// Otherwise, fetch the latest StateDocuments.  A bulk write only reports the total
+					// number of matches, the StateDocuments we updated are the ones stamped with our
+					// updateId
+					//
+					Map<String, StateDocumentImpl> latest = findStateDocs(stateDocs);
+					for(int i = 0; i < stateDocs.size(); i++) {
+						StateDocumentImpl stateDoc = stateDocs.get(i);
+						StateDocumentImpl updatedDoc = latest.get(stateDoc.getId());
+						if (updatedDoc == null) {
+							throw new RuntimeException("Unable to find StateDocument with id=" + stateDoc.getId());
+						}
+						int index = indexes.get(i);
+						setStateDocument(statefuls.get(index), updatedDoc);
+						updated[index] = updateId.equals(updatedDoc.getUpdateId());
+					}
+				}
 			}
+			completed = true;
 		} catch (NoSuchFieldException e) {
 			throw new RuntimeException(e);
 		} catch (SecurityException e) {
@@ -188,7 +309,19 @@ public class MongoPersister<T>
 			throw new RuntimeException(e);
 		} catch (IllegalAccessException e) {
 			throw new RuntimeException(e);
+		} finally {
+			int stale = 0;
+			for(int i = 0; i < updated.length; i++) {
+				if (!updated[i]) {
+					stale++;
+					if (completed) {
+						recordStaleState(statefuls.get(i));
+					}
+				}
+			}
+			FlightRecorder.endPersist(recording, this, this.getClazz(), current.getName(), next.getName(), updated.length, stale);
 		}
+		return updated;
 	}
 
 	/**
@@ -196,12 +329,11 @@ public class MongoPersister<T>
 	 * @param current
 	 * @param next
 	 * @param stateDoc
+	 * @return true if the State was set, false if the State was stale
 	 * @throws IllegalAccessException
-	 * @throws StaleStateException
 	 */
-	private void updateStateInDB(T stateful, State<T> current, State<T> next,
-			StateDocumentImpl stateDoc) throws IllegalAccessException,
-			StaleStateException {
+	private boolean updateStateInDB(T stateful, State<T> current, State<T> next,
+			StateDocumentImpl stateDoc) throws IllegalAccessException {
 		// Entity is in the database - perform qualified update based off
 		// the current State value
 		//
@@ -216,19 +348,19 @@ public class MongoPersister<T>
 			// Success, update in memory
 			//
 			setStateDocument(stateful, updatedDoc);
+			return true;
 
 		} else {
 
 			// If we aren't able to update - it's most likely that we are out of sync.
-			// So, fetch the latest value and update the Stateful object.  Then throw a RetryException
-			// This will cause the event to be reprocessed by the FSM
+			// So, fetch the latest value and update the Stateful object.  Returning false
+			// will cause the event to be reprocessed by the FSM
 			//
 			updatedDoc = findStateDoc(stateDoc.getId());
 
 			if (updatedDoc != null) {
-				String currentState = stateDoc.getState();
 				setStateDocument(stateful, updatedDoc);
-				throwStaleState(currentState, updatedDoc.getState());
+				return false;
 			} else {
 				throw new RuntimeException("Unable to find StateDocument with id=" + stateDoc.getId());
 			}
@@ -294,13 +426,13 @@ public class MongoPersister<T>
 	}
 
 	protected Query buildQuery(StateDocumentImpl state, State<T> current) {
-		return Query.query(new Criteria("_id").is(state.getId()).and("state").is(current.getName()));
+		return Query.query(new Criteria("_id").is(state.getId()).and("state").is(encodeState(current.getName())));
 	}
 
 	protected Update buildUpdate(State<T> current, State<T> next) {
 		Update update = new Update();
-		update.set("prevState", current.getName());
-		update.set("state", next.getName());
+		update.set("prevState", encodeState(current.getName()));
+		update.set("state", encodeState(next.getName()));
 		update.set("updated", Calendar.getInstance().getTime());
 		return update;
 	}
@@ -325,11 +457,26 @@ public class MongoPersister<T>
 		if (stateDoc instanceof LazyLoadingProxy) {
 			stateDoc = ((LazyLoadingProxy)stateDoc).getTarget();
 		}
-		return (StateDocumentImpl)stateDoc;
+		return withDefinition((StateDocumentImpl)stateDoc);
+	}
+
+	/**
+	 * Attach the current definition to the StateDocument, so the StateDocument is able to decode
+	 * coded States
+	 *
+	 * @param stateDoc The StateDocument, may be null
+	 * @return The StateDocument
+	 */
+	protected StateDocumentImpl withDefinition(StateDocumentImpl stateDoc) {
+		if (stateDoc != null) {
+			stateDoc.setDefinition(this.getDefinition());
+		}
+		return stateDoc;
 	}
 
 	protected StateDocumentImpl createStateDocument(T stateful) throws IllegalArgumentException, IllegalAccessException, SecurityException, NoSuchFieldException {
 		StateDocumentImpl stateDoc = new StateDocumentImpl();
+		stateDoc.setDefinition(this.getDefinition());
 		stateDoc.setPersisted(false);
 		stateDoc.setId(new ObjectId().toHexString());
 		stateDoc.setState(getStartState().getName());
@@ -343,16 +490,16 @@ public class MongoPersister<T>
 		getStateField().set(stateful, stateDoc);
 	}
 
-	protected void updateInMemory(T stateful, StateDocumentImpl stateDoc, String current, String next) throws IllegalArgumentException, IllegalAccessException, NoSuchFieldException, SecurityException, StaleStateException {
+	protected boolean updateInMemory(T stateful, StateDocumentImpl stateDoc, String current, String next) throws IllegalArgumentException, IllegalAccessException, NoSuchFieldException, SecurityException {
 		synchronized(stateful) {
 			if (stateDoc == null) {
 				stateDoc = createStateDocument(stateful);
 			}
 			if (stateDoc.getState().equals(current)) {
 				setState(stateful, next);
-			} else {
-				throwStaleState(current, next);
+				return true;
 			}
+			return false;
 		}
 	}
 
@@ -372,11 +519,47 @@ public class MongoPersister<T>
 	}
 
 	protected StateDocumentImpl updateStateDoc(Query query, Update update) {
-		return getMongoTemplate().findAndModify(query, update, RETURN_NEW, StateDocumentImpl.class);
+		return withDefinition(getMongoTemplate().findAndModify(query, update, RETURN_NEW, StateDocumentImpl.class));
 	}
 
 	protected StateDocumentImpl findStateDoc(String id) {
-		return getMongoTemplate().findById(id, StateDocumentImpl.class);
+		return withDefinition(getMongoTemplate().findById(id, StateDocumentImpl.class));
+	}
+
+	/**
+	 * Apply the qualified update to each StateDocument as a single unordered bulk operation
+	 *
+	 * @param stateDocs StateDocuments to update
+	 * @param current Expected current State
+	 * @param update The update to apply
+	 * @return the number of StateDocuments which matched the qualified update
+	 */
+	protected int updateStateDocs(List<StateDocumentImpl> stateDocs, State<T> current, Update update) {
+		MongoTemplate template = getMongoTemplate();
+		MongoPersistentEntity<?> entity = template.getConverter().getMappingContext().getPersistentEntity(StateDocumentImpl.class);
+		QueryMapper queryMapper = new QueryMapper(template.getConverter());
+		DBObject mappedUpdate = new UpdateMapper(template.getConverter()).getMappedObject(update.getUpdateObject(), entity);
+
+		BulkWriteOperation bulk = template
+				.getCollection(template.getCollectionName(StateDocumentImpl.class))
+				.initializeUnorderedBulkOperation();
+		for(StateDocumentImpl stateDoc : stateDocs) {
+			DBObject mappedQuery = queryMapper.getMappedObject(buildQuery(stateDoc, current).getQueryObject(), entity);
+			bulk.find(mappedQuery).updateOne(mappedUpdate);
+		}
+		return bulk.execute().getMatchedCount();
+	}
+
+	protected Map<String, StateDocumentImpl> findStateDocs(List<StateDocumentImpl> stateDocs) {
+		List<String> ids = new ArrayList<String>(stateDocs.size());
+		for(StateDocumentImpl stateDoc : stateDocs) {
+			ids.add(stateDoc.getId());
+		}
+		Map<String, StateDocumentImpl> found = new HashMap<String, StateDocumentImpl>();
+		for(StateDocumentImpl stateDoc : getMongoTemplate().find(Query.query(new Criteria("_id").in(ids)), StateDocumentImpl.class)) {
+			found.put(stateDoc.getId(), withDefinition(stateDoc));
+		}
+		return found;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -22,8 +22,16 @@ import java.util.Date;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.statefulj.fsm.FSMDefinition;
 import org.statefulj.persistence.mongo.model.StateDocument;
 
+/**
+ * The StateDocument as stored in Mongo.  The State and previous State are stored as the name of
+ * the State or, if the definition of the States has State codes, as the code of the State
+ *
+ * @author Andrew Hall
+ *
+ */
 @Document(collection=StateDocumentImpl.COLLECTION)
 class StateDocumentImpl implements StateDocument {
 
@@ -35,12 +43,17 @@ class StateDocumentImpl implements StateDocument {
 	@Transient
 	private boolean persisted = true;
 
-	private String state;
+	@Transient
+	private FSMDefinition<?> definition;
+
+	private Object state;
 
-	private String prevState;
+	private Object prevState;
 
 	private Date updated;
 
+	private String updateId;
+
 	private String managedCollection;
 
 	private Object managedId;
@@ -64,22 +77,29 @@ class StateDocumentImpl implements StateDocument {
 		this.persisted = persisted;
 	}
 
+	/**
+	 * @param definition The definition used to encode and decode the State
+	 */
+	void setDefinition(FSMDefinition<?> definition) {
+		this.definition = definition;
+	}
+
 	@Override
 	public String getState() {
-		return state;
+		return decode(state);
 	}
 
 	public void setState(String state) {
-		this.state = state;
+		this.state = encode(state);
 	}
 
 	@Override
 	public String getPrevState() {
-		return prevState;
+		return decode(prevState);
 	}
 
 	public void setPrevState(String prevState) {
-		this.prevState = prevState;
+		this.prevState = encode(prevState);
 	}
 
 	@Override
@@ -91,6 +111,18 @@ class StateDocumentImpl implements StateDocument {
 		this.updated = updated;
 	}
 
+	/**
+	 * @return The id of the last bulk update applied to the StateDocument, see
+	 * {@link MongoPersister#setCurrent(java.util.List, org.statefulj.fsm.model.State, org.statefulj.fsm.model.State)}
+	 */
+	public String getUpdateId() {
+		return updateId;
+	}
+
+	public void setUpdateId(String updateId) {
+		this.updateId = updateId;
+	}
+
 	@Override
 	public String getManagedCollection() {
 		return managedCollection;
@@ -117,6 +149,22 @@ class StateDocumentImpl implements StateDocument {
 	public void setManagedField(String managedField) {
 		this.managedField = managedField;
 	}
+
+	private Object encode(String name) {
+		return (name != null && definition != null && definition.hasStateCodes())
+				? definition.getStateCode(name)
+				: name;
+	}
+
+	private String decode(Object value) {
+		if (value instanceof Number) {
+			if (definition == null) {
+				throw new RuntimeException("Unable to decode State code " + value + ", StateDocument id=" + id);
+			}
+			return definition.getStateName(((Number)value).intValue());
+		}
+		return (String)value;
+	}
 }
 
 
@@ -0,0 +1,161 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.persistence.mongo;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.impl.StateImpl;
+
+import com.mongodb.DBObject;
+
+/**
+ * Exercises the bookkeeping of the bulk update against an in memory stand-in for the
+ * StateDocument collection, so no Mongo instance is required
+ *
+ * @author Andrew Hall
+ *
+ */
+public class MongoPersisterBatchTest {
+
+	private State<Order> stateA = new StateImpl<Order>("stateA");
+
+	private State<Order> stateB = new StateImpl<Order>("stateB");
+
+	@Test
+	public void testBatchStateChange() throws Exception {
+		final Map<String, StateDocumentImpl> collection = new HashMap<String, StateDocumentImpl>();
+		MongoPersister<Order> persister = new InMemoryMongoPersister(collection);
+
+		Order order1 = newOrder(persister, collection, "order1", stateA.getName());
+		Order order2 = newOrder(persister, collection, "order2", stateA.getName());
+
+		// Another writer already moved the stale Order to the next State, within the same
+		// millisecond as our update
+		//
+		Order staleOrder = newOrder(persister, collection, "stale", stateA.getName());
+		StateDocumentImpl staleDoc = collection.get("stale");
+		staleDoc.setState(stateB.getName());
+		staleDoc.setUpdateId("another-update");
+
+		boolean[] updated = persister.setCurrent(Arrays.asList(order1, staleOrder, order2), stateA, stateB);
+
+		assertTrue(updated[0]);
+		assertFalse(updated[1]);
+		assertTrue(updated[2]);
+
+		assertEquals(stateB.getName(), order1.getStateDocument().getState());
+		assertEquals(stateB.getName(), order2.getStateDocument().getState());
+
+		// The stale Order has been refreshed with the StateDocument in the collection
+		//
+		assertEquals(stateB.getName(), staleOrder.getStateDocument().getState());
+		assertEquals("another-update", ((StateDocumentImpl)staleOrder.getStateDocument()).getUpdateId());
+	}
+
+	@Test
+	public void testBatchStateChangeAllMatched() throws Exception {
+		final Map<String, StateDocumentImpl> collection = new HashMap<String, StateDocumentImpl>();
+		MongoPersister<Order> persister = new InMemoryMongoPersister(collection);
+
+		Order order1 = newOrder(persister, collection, "order1", stateA.getName());
+		Order order2 = newOrder(persister, collection, "order2", stateA.getName());
+
+		boolean[] updated = persister.setCurrent(Arrays.asList(order1, order2), stateA, stateB);
+
+		assertTrue(updated[0]);
+		assertTrue(updated[1]);
+		assertEquals(stateB.getName(), order1.getStateDocument().getState());
+		assertEquals(stateA.getName(), order1.getStateDocument().getPrevState());
+		assertEquals(
+				((StateDocumentImpl)order1.getStateDocument()).getUpdateId(),
+				collection.get("order1").getUpdateId());
+	}
+
+	private Order newOrder(MongoPersister<Order> persister, Map<String, StateDocumentImpl> collection, String id, String state) throws Exception {
+		Order order = new Order();
+		order.setId(id);
+
+		StateDocumentImpl stateDoc = new StateDocumentImpl();
+		stateDoc.setId(id);
+		stateDoc.setState(state);
+		persister.setStateDocument(order, stateDoc);
+
+		collection.put(id, copy(stateDoc));
+		return order;
+	}
+
+	private static StateDocumentImpl copy(StateDocumentImpl stateDoc) {
+		StateDocumentImpl copy = new StateDocumentImpl();
+		copy.setId(stateDoc.getId());
+		copy.setState(stateDoc.getState());
+		copy.setPrevState(stateDoc.getPrevState());
+		copy.setUpdated(stateDoc.getUpdated());
+		copy.setUpdateId(stateDoc.getUpdateId());
+		return copy;
+	}
+
+	/**
+	 * Applies the qualified updates to the StateDocuments held in a Map
+	 */
+	private class InMemoryMongoPersister extends MongoPersister<Order> {
+
+		private final Map<String, StateDocumentImpl> collection;
+
+		@SuppressWarnings("unchecked")
+		InMemoryMongoPersister(Map<String, StateDocumentImpl> collection) {
+			super(Arrays.asList(stateA, stateB), stateA, Order.class, (MongoTemplate)null);
+			this.collection = collection;
+		}
+
+		@Override
+		protected int updateStateDocs(List<StateDocumentImpl> stateDocs, State<Order> current, Update update) {
+			DBObject set = (DBObject)update.getUpdateObject().get("$set");
+			int matched = 0;
+			for(StateDocumentImpl stateDoc : stateDocs) {
+				StateDocumentImpl stored = this.collection.get(stateDoc.getId());
+				if (current.getName().equals(stored.getState())) {
+					stored.setPrevState((String)set.get("prevState"));
+					stored.setState((String)set.get("state"));
+					stored.setUpdated((Date)set.get("updated"));
+					stored.setUpdateId((String)set.get("updateId"));
+					matched++;
+				}
+			}
+			return matched;
+		}
+
+		@Override
+		protected Map<String, StateDocumentImpl> findStateDocs(List<StateDocumentImpl> stateDocs) {
+			Map<String, StateDocumentImpl> found = new HashMap<String, StateDocumentImpl>();
+			for(StateDocumentImpl stateDoc : stateDocs) {
+				found.put(stateDoc.getId(), copy(this.collection.get(stateDoc.getId())));
+			}
+			return found;
+		}
+	}
+}
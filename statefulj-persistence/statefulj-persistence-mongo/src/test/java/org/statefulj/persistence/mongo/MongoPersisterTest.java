@@ -20,6 +20,7 @@ package org.statefulj.persistence.mongo;
 import static org.junit.Assert.*;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
 
 import javax.annotation.Resource;
 
@@ -30,6 +31,7 @@ import org.junit.runner.RunWith;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.statefulj.fsm.BatchPersister;
 import org.statefulj.fsm.Persister;
 import org.statefulj.fsm.StaleStateException;
 import org.statefulj.fsm.model.State;
@@ -150,6 +152,40 @@ public class MongoPersisterTest {
 		assertNull(state);
 	}
 
+	@Test
+	public void testBatchStateChange() throws StaleStateException {
+		@SuppressWarnings("unchecked")
+		BatchPersister<Order> batchPersister = (BatchPersister<Order>)mongoPersister;
+
+		Order order1 = orderRepo.save(new Order());
+		Order order2 = orderRepo.save(new Order());
+		Order staleOrder = orderRepo.save(new Order());
+		Order memOrder = new Order();
+
+		// Move the stale Order forward behind the back of the in memory copy
+		//
+		Order otherCopy = orderRepo.findOne(staleOrder.getId());
+		mongoPersister.setCurrent(otherCopy, stateA, stateB);
+
+		boolean[] updated = batchPersister.setCurrent(
+				Arrays.asList(order1, memOrder, staleOrder, order2),
+				stateA,
+				stateB);
+
+		assertTrue(updated[0]);
+		assertTrue(updated[1]);
+		assertFalse(updated[2]);
+		assertTrue(updated[3]);
+
+		assertEquals(stateB, mongoPersister.getCurrent(orderRepo.findOne(order1.getId())));
+		assertEquals(stateB, mongoPersister.getCurrent(orderRepo.findOne(order2.getId())));
+		assertEquals(stateB, mongoPersister.getCurrent(memOrder));
+
+		// The stale Order has been refreshed with the latest StateDocument
+		//
+		assertEquals(stateB, mongoPersister.getCurrent(staleOrder));
+	}
+
 	@Test
 	public void testJPAId() throws StaleStateException {
 		Field field = this.jpaIdPersister.findIdField(JPAIdEntity.class);
@@ -0,0 +1,145 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.persistence.mongo;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.statefulj.fsm.FSMDefinition;
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.impl.StateImpl;
+
+import com.mongodb.DBObject;
+
+/**
+ * Exercises the encoding of coded States into the StateDocument, so no Mongo instance is required
+ *
+ * @author Andrew Hall
+ *
+ */
+public class StateDocumentImplTest {
+
+	private State<Order> stateA = new StateImpl<Order>("stateA");
+
+	private State<Order> stateB = new StateImpl<Order>("stateB");
+
+	@Test
+	public void testUncodedStates() throws Exception {
+		StateDocumentImpl stateDoc = new StateDocumentImpl();
+		stateDoc.setDefinition(definition(false));
+		stateDoc.setState(stateB.getName());
+		stateDoc.setPrevState(stateA.getName());
+
+		assertEquals(stateB.getName(), stored(stateDoc, "state"));
+		assertEquals(stateA.getName(), stored(stateDoc, "prevState"));
+		assertEquals(stateB.getName(), stateDoc.getState());
+		assertEquals(stateA.getName(), stateDoc.getPrevState());
+	}
+
+	@Test
+	public void testCodedStates() throws Exception {
+		StateDocumentImpl stateDoc = new StateDocumentImpl();
+		stateDoc.setDefinition(definition(true));
+		stateDoc.setState(stateB.getName());
+		stateDoc.setPrevState(stateA.getName());
+
+		assertEquals(2, stored(stateDoc, "state"));
+		assertEquals(1, stored(stateDoc, "prevState"));
+		assertEquals(stateB.getName(), stateDoc.getState());
+		assertEquals(stateA.getName(), stateDoc.getPrevState());
+	}
+
+	@Test
+	public void testDecodeReadDocument() throws Exception {
+
+		// Mongo may read the code back as any Number
+		//
+		StateDocumentImpl stateDoc = new StateDocumentImpl();
+		store(stateDoc, "state", Long.valueOf(2));
+		store(stateDoc, "prevState", stateA.getName());
+		stateDoc.setDefinition(definition(true));
+
+		assertEquals(stateB.getName(), stateDoc.getState());
+
+		// A State stored before the States were coded is still read by name
+		//
+		assertEquals(stateA.getName(), stateDoc.getPrevState());
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testDecodeWithoutDefinition() throws Exception {
+		StateDocumentImpl stateDoc = new StateDocumentImpl();
+		store(stateDoc, "state", Integer.valueOf(2));
+		stateDoc.getState();
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testEncodeUncodedState() throws Exception {
+		StateDocumentImpl stateDoc = new StateDocumentImpl();
+		stateDoc.setDefinition(definition(true));
+		stateDoc.setState("stateC");
+	}
+
+	@Test
+	public void testCodedQueryAndUpdate() throws Exception {
+		MongoPersister<Order> persister = new MongoPersister<Order>(
+				Arrays.asList(stateA, stateB),
+				stateA,
+				Order.class,
+				(MongoTemplate)null);
+		persister.setDefinition(definition(true));
+
+		StateDocumentImpl stateDoc = new StateDocumentImpl();
+		stateDoc.setId("order");
+		DBObject query = persister.buildQuery(stateDoc, stateA).getQueryObject();
+		assertEquals(1, query.get("state"));
+
+		DBObject set = (DBObject)persister.buildUpdate(stateA, stateB).getUpdateObject().get("$set");
+		assertEquals(1, set.get("prevState"));
+		assertEquals(2, set.get("state"));
+	}
+
+	private FSMDefinition<Order> definition(boolean coded) {
+		FSMDefinition<Order> definition = FSMDefinition.create(Arrays.asList(stateA, stateB), stateA);
+		if (coded) {
+			Map<String, Integer> codes = new HashMap<String, Integer>();
+			codes.put(stateA.getName(), 1);
+			codes.put(stateB.getName(), 2);
+			definition = definition.withStateCodes(codes);
+		}
+		return definition;
+	}
+
+	private static Object stored(StateDocumentImpl stateDoc, String name) throws Exception {
+		Field field = StateDocumentImpl.class.getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(stateDoc);
+	}
+
+	private static void store(StateDocumentImpl stateDoc, String name, Object value) throws Exception {
+		Field field = StateDocumentImpl.class.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(stateDoc, value);
+	}
+}